@@ -3,10 +3,12 @@ package com.example.fitnessAndrea360;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
 
 @SpringBootApplication
 @ConfigurationPropertiesScan
+@EnableScheduling
 @EnableWebMvc
 public class FitnessAndrea360Application {
 
@@ -6,25 +6,32 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
-import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
+    private static final String LOCATION_HEADER = "X-Location-Id";
+
+    // Referentne tabele - upis uvek ide na globalni šard
+    private static final List<String> GLOBAL_WRITE_PATHS = List.of("/locations", "/services");
+
     private final JwtService jwtService;
     private final UserDetailsService userDetailsService;
+    private final ShardRouter shardRouter;
 
     @Override
     protected void doFilterInternal(
@@ -48,6 +55,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
 
         String token = authHeader.substring(7);
+        String rejection = null;
 
         try {
             String username = jwtService.extractUsername(token);
@@ -65,11 +73,14 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                                     List.of(new SimpleGrantedAuthority("ROLE_"+ role))
                             );
 
-                    authentication.setDetails(
-                            new WebAuthenticationDetailsSource().buildDetails(request)
-                    );
+                    // Lokacija i ID-evi korisnika/člana iz tokena idu u details - servisi i ETag provere ih čitaju bez upita u bazu
+                    Map<String, Object> details = jwtService.extractDetails(token);
+                    details.put("remoteAddress", request.getRemoteAddr());
+                    authentication.setDetails(details);
+                    Long locationId = TokenDetails.locationId(authentication);
 
                     SecurityContextHolder.getContext().setAuthentication(authentication);
+                    rejection = applyShard(locationId, role, request);
                 }
             }
         } catch (Exception ex) {
@@ -77,7 +88,45 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             SecurityContextHolder.clearContext();
         }
 
-        filterChain.doFilter(request, response);
+        if (rejection != null) {
+            ShardContext.clear();
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, rejection);
+            return;
+        }
+
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            ShardContext.clear();
+        }
+    }
+
+    /**
+     * Šard iz lokacije u tokenu; admin nema lokaciju i bira je zaglavljem X-Location-Id.
+     * Upis u referentne tabele ide na globalni šard. Admin upis bez zaglavlja se odbija kada je šardovanje
+     * uključeno - ID-evi su jedinstveni samo unutar šarda, pa bi izmena završila na pogrešnom redu.
+     * Vraća poruku greške ili null.
+     */
+    private String applyShard(Long locationId, String role, HttpServletRequest request) {
+        boolean write = !HttpMethod.GET.matches(request.getMethod()) && !HttpMethod.HEAD.matches(request.getMethod())
+                && !HttpMethod.OPTIONS.matches(request.getMethod());
+        String path = request.getServletPath().startsWith("/api/")
+                ? request.getServletPath().substring(4) : request.getServletPath();
+        if (write && GLOBAL_WRITE_PATHS.stream().anyMatch(path::startsWith)) {
+            ShardContext.set(ShardingProperties.DEFAULT_SHARD);
+            return null;
+        }
+
+        if (locationId == null && "ADMIN".equals(role)) {
+            String header = request.getHeader(LOCATION_HEADER);
+            if (header != null && header.trim().matches("\\d+")) {
+                locationId = Long.valueOf(header.trim());
+            } else if (write && shardRouter.isEnabled()) {
+                return "Izmena podataka lokacije zahteva zaglavlje " + LOCATION_HEADER;
+            }
+        }
+        ShardContext.set(shardRouter.shardFor(locationId));
+        return null;
     }
 
     private boolean shouldSkipFilter(String path) {
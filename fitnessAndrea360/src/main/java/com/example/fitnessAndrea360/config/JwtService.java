@@ -56,6 +56,33 @@ public class JwtService {
         return extractClaim(token, claims -> claims.get("role", String.class));
     }
 
+    // Lokacija korisnika (zaposleni/član) - određuje šard; admin je nema
+    public Long extractLocationId(String token) {
+        return extractClaim(token, claims -> longClaim(claims, "locationId"));
+    }
+
+    /**
+     * Identiteti iz tokena za Authentication details (TokenDetails): locationId, userId i memberId (samo član).
+     * Tokeni izdati pre uvođenja userId/memberId ih nemaju - CurrentMemberResolver tada ide u bazu.
+     */
+    public Map<String, Object> extractDetails(String token) {
+        return extractClaim(token, claims -> {
+            Map<String, Object> details = new HashMap<>();
+            for (String name : new String[]{"locationId", "userId", "memberId"}) {
+                Long value = longClaim(claims, name);
+                if (value != null) {
+                    details.put(name, value);
+                }
+            }
+            return details;
+        });
+    }
+
+    private static Long longClaim(Claims claims, String name) {
+        Number value = claims.get(name, Number.class);
+        return value != null ? value.longValue() : null;
+    }
+
     public boolean isTokenValid(String token, UserDetails userDetails) {
         final String username = extractUsername(token);
         return (username.equals(userDetails.getUsername())) && !isTokenExpired(token);
@@ -0,0 +1,48 @@
+package com.example.fitnessAndrea360.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Podešavanja slanja email obaveštenja iz notification_outbox tabele (app.notifications.*).
+ */
+@Data
+@ConfigurationProperties(prefix = "app.notifications")
+public class NotificationProperties {
+
+    // false = obaveštenja se i dalje upisuju u outbox, ali ih niko ne šalje
+    private boolean enabled = true;
+
+    private String from = "no-reply@fitnessandrea360.rs";
+
+    // Koliko redova jedan prolaz preuzima iz outbox-a
+    private int batchSize = 200;
+
+    // Niti koje renderuju i šalju grupe poruka (jedna SMTP konekcija po grupi)
+    private int workerThreads = 4;
+
+    private long pollIntervalMs = 2000;
+
+    // Posle ovoliko neuspeha obaveštenje prelazi u FAILED
+    private int maxAttempts = 6;
+
+    // Pauza pre ponovnog pokušaja: backoffBaseSeconds * 2^(pokušaj-1), najviše backoffMaxSeconds
+    private long backoffBaseSeconds = 30;
+    private long backoffMaxSeconds = 3600;
+
+    // Preuzet red koji se ne završi za ovo vreme (pad instance) vraća se u PENDING
+    private long leaseSeconds = 120;
+
+    private Reminders reminders = new Reminders();
+
+    @Data
+    public static class Reminders {
+        private boolean enabled = true;
+
+        // Podsetnik se šalje ovoliko sati pre početka termina
+        private int leadHours = 2;
+
+        // Koliko unapred (od trenutka slanja) se podsetnici drže u memoriji; veličina točka u minutima
+        private int horizonHours = 24;
+    }
+}
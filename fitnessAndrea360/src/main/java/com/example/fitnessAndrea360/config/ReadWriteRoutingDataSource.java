@@ -0,0 +1,81 @@
+package com.example.fitnessAndrea360.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Usmerava konekcije na primarnu bazu ili repliku.
+ *
+ * Read-only transakcije idu na repliku, sve ostalo (upisi i rad van transakcije) na primarnu.
+ * Korisnik koji je upravo nešto upisao (npr. rezervisao termin) čita sa primarne dok ne istekne
+ * prozor iz ReadYourWritesTracker-a, da ne bi video stanje bez sopstvene izmene. Zahtevi označeni
+ * sa @StaleReadsAllowed (dashboard-i, izveštaji) uvek čitaju sa replike.
+ *
+ * Mora biti umotan u LazyConnectionDataSourceProxy - transaction manager uzima konekciju pre nego
+ * što postavi readOnly flag, a proxy odlaže stvarno uzimanje konekcije do prve naredbe.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum Route {
+        PRIMARY, REPLICA
+    }
+
+    private static final ThreadLocal<Boolean> STALE_READS_ALLOWED = new ThreadLocal<>();
+
+    private final ReadYourWritesTracker tracker;
+
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource replica, ReadYourWritesTracker tracker) {
+        this.tracker = tracker;
+        setTargetDataSources(Map.of(Route.PRIMARY, primary, Route.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    // Postavlja StaleReadsInterceptor za trajanje zahteva
+    public static void setStaleReadsAllowed(boolean allowed) {
+        if (allowed) {
+            STALE_READS_ALLOWED.set(Boolean.TRUE);
+        } else {
+            STALE_READS_ALLOWED.remove();
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        String principal = currentPrincipal();
+
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            // Upis - posle commit-a korisnik se vezuje za primarnu bazu
+            if (principal != null && TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        tracker.recordWrite(principal);
+                    }
+                });
+            }
+            return Route.PRIMARY;
+        }
+
+        if (Boolean.TRUE.equals(STALE_READS_ALLOWED.get())) {
+            return Route.REPLICA;
+        }
+        return principal != null && tracker.isPinned(principal) ? Route.PRIMARY : Route.REPLICA;
+    }
+
+    private String currentPrincipal() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()
+                || authentication instanceof AnonymousAuthenticationToken) {
+            return null;
+        }
+        return authentication.getName();
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.fitnessAndrea360.config;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pamti kada je koji korisnik poslednji put upisao podatke. Dok traje prozor (procenjeno kašnjenje
+ * replike), njegove read-only transakcije idu na primarnu bazu.
+ */
+public class ReadYourWritesTracker {
+
+    // Istekli unosi se čiste tek kada mapa naraste, da čitanje ostane bez zaključavanja
+    private static final int PURGE_THRESHOLD = 10_000;
+
+    private final Map<String, Instant> pinnedUntil = new ConcurrentHashMap<>();
+    private final Duration pinWindow;
+    private final Clock clock;
+
+    public ReadYourWritesTracker(Duration pinWindow, Clock clock) {
+        this.pinWindow = pinWindow;
+        this.clock = clock;
+    }
+
+    public void recordWrite(String principal) {
+        Instant now = clock.instant();
+        if (pinnedUntil.size() > PURGE_THRESHOLD) {
+            pinnedUntil.values().removeIf(until -> until.isBefore(now));
+        }
+        pinnedUntil.put(principal, now.plus(pinWindow));
+    }
+
+    public boolean isPinned(String principal) {
+        Instant until = pinnedUntil.get(principal);
+        if (until == null) {
+            return false;
+        }
+        if (until.isBefore(clock.instant())) {
+            pinnedUntil.remove(principal, until);
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.fitnessAndrea360.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+import java.time.Clock;
+import java.time.Duration;
+
+/**
+ * Primarna baza + replika za čitanje (app.datasource.replica.enabled=true).
+ * Bez ovog podešavanja aplikacija koristi jedan DataSource iz spring.datasource.*.
+ * Isključeno kada je uključeno šardovanje po lokacijama (ShardingConfig).
+ */
+@Configuration
+@ConditionalOnExpression("${app.datasource.replica.enabled:false} and !${app.sharding.enabled:false}")
+public class ReplicaDataSourceConfig implements WebMvcConfigurer {
+
+    @Bean
+    public ReadYourWritesTracker readYourWritesTracker(
+            @Value("${app.datasource.replica.pin-seconds:5}") long pinSeconds) {
+        return new ReadYourWritesTracker(Duration.ofSeconds(pinSeconds), Clock.systemUTC());
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties properties,
+                                 ReadYourWritesTracker readYourWritesTracker,
+                                 @Value("${app.datasource.replica.url}") String replicaUrl,
+                                 @Value("${app.datasource.replica.username:${spring.datasource.username}}") String replicaUsername,
+                                 @Value("${app.datasource.replica.password:${spring.datasource.password}}") String replicaPassword,
+                                 @Value("${app.datasource.replica.maximum-pool-size:10}") int replicaPoolSize) {
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        primary.setPoolName("primary");
+
+        HikariDataSource replica = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .driverClassName(properties.determineDriverClassName())
+                .url(replicaUrl)
+                .username(replicaUsername)
+                .password(replicaPassword)
+                .build();
+        replica.setPoolName("replica");
+        replica.setMaximumPoolSize(replicaPoolSize);
+        replica.setReadOnly(true);
+
+        return new LazyConnectionDataSourceProxy(
+                new ReadWriteRoutingDataSource(primary, replica, readYourWritesTracker));
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new StaleReadsInterceptor());
+    }
+
+    // Uključuje čitanje sa replike bez vezivanja za primarnu za endpoint-e sa @StaleReadsAllowed
+    static class StaleReadsInterceptor implements HandlerInterceptor {
+
+        @Override
+        public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+            if (handler instanceof HandlerMethod handlerMethod
+                    && (handlerMethod.hasMethodAnnotation(StaleReadsAllowed.class)
+                    || handlerMethod.getBeanType().isAnnotationPresent(StaleReadsAllowed.class))) {
+                ReadWriteRoutingDataSource.setStaleReadsAllowed(true);
+            }
+            return true;
+        }
+
+        @Override
+        public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+            ReadWriteRoutingDataSource.setStaleReadsAllowed(false);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.fitnessAndrea360.config;
 
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -60,6 +61,16 @@ public class SecurityConfig {
 
                         .requestMatchers("/auth/**").permitAll()
 
+                        // Metrike (npr. attendance.*) samo za admina; health je javan
+                        .requestMatchers("/actuator/health").permitAll()
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
+
+                        // STOMP handshake - JWT se proverava na CONNECT frame-u (StompAuthorizationInterceptor)
+                        .requestMatchers("/ws-capacity/**").permitAll()
+
+                        // Async dispatch strimovanog izvoza - originalni zahtev je već autorizovan
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+
 
                         .anyRequest().authenticated()
                 )
@@ -83,7 +94,7 @@ public class SecurityConfig {
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "PATCH", "OPTIONS"));
         configuration.setAllowedHeaders(Arrays.asList("*"));
         configuration.setAllowCredentials(true);
-        configuration.setExposedHeaders(Arrays.asList("Authorization"));
+        configuration.setExposedHeaders(Arrays.asList("Authorization", "ETag"));
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
         source.registerCorsConfiguration("/**", configuration);
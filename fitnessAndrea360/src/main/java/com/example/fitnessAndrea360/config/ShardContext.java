@@ -0,0 +1,29 @@
+package com.example.fitnessAndrea360.config;
+
+/**
+ * Šard tekućeg zahteva/niti. Postavlja ga JwtAuthenticationFilter iz lokacije u tokenu,
+ * a ShardRouter za upite nad tačno određenim šardom.
+ */
+public final class ShardContext {
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    public static String current() {
+        return CURRENT.get();
+    }
+
+    public static void set(String shard) {
+        if (shard == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(shard);
+        }
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.fitnessAndrea360.config;
+
+import com.example.fitnessAndrea360.exception.ValidationException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Izvršavanje upita na šardu lokacije, na globalnom šardu ili na svim šardovima.
+ *
+ * Globalni šard je podrazumevani: jedini se upisuje u users i referentne tabele (roles, locations, services),
+ * a login ih čita samo sa njega. Kada šardovanje nije uključeno postoji samo podrazumevani šard i sve metode
+ * samo pozivaju prosleđeni upit, pa servisi ne moraju da znaju da li je šardovanje uključeno.
+ */
+@Slf4j
+@Component
+public class ShardRouter {
+
+    private final ShardingProperties properties;
+    private final TransactionTemplate shardReadTemplate;
+    private final TransactionTemplate globalWriteTemplate;
+    private final ExecutorService scatterExecutor;
+
+    public ShardRouter(ShardingProperties properties, PlatformTransactionManager transactionManager) {
+        this.properties = properties;
+
+        // Nova read-only transakcija - konekcija se uzima tek kada je šard postavljen u kontekstu
+        this.shardReadTemplate = new TransactionTemplate(transactionManager);
+        this.shardReadTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.shardReadTemplate.setReadOnly(true);
+        this.globalWriteTemplate = new TransactionTemplate(transactionManager);
+        this.globalWriteTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        for (String shard : properties.getLocations().values()) {
+            if (!ShardingProperties.DEFAULT_SHARD.equals(shard) && !properties.getShards().containsKey(shard)) {
+                throw new IllegalStateException("Lokacija je raspoređena na nepoznat šard: " + shard);
+            }
+        }
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.scatterExecutor = properties.isEnabled()
+                ? Executors.newFixedThreadPool(properties.getScatterThreads(), runnable -> {
+                    Thread thread = new Thread(runnable, "shard-scatter-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                })
+                : null;
+
+        if (properties.isEnabled()) {
+            log.info("Šardovanje po lokacijama uključeno: šardovi {}, raspoređeno lokacija {}",
+                    shards(), properties.getLocations().size());
+        }
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    public String shardFor(Long locationId) {
+        if (!properties.isEnabled() || locationId == null) {
+            return ShardingProperties.DEFAULT_SHARD;
+        }
+        return properties.getLocations().getOrDefault(locationId, ShardingProperties.DEFAULT_SHARD);
+    }
+
+    public boolean isOnGlobalShard() {
+        return !properties.isEnabled() || ShardContext.current() == null
+                || ShardingProperties.DEFAULT_SHARD.equals(ShardContext.current());
+    }
+
+    /**
+     * Upis podataka lokacije mora ići na njen šard. Admin nema lokaciju u tokenu, pa bez zaglavlja
+     * X-Location-Id (ili sa zaglavljem druge lokacije) upis bi završio na pogrešnom šardu.
+     */
+    public void requireLocationShard(Long locationId) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        String current = ShardContext.current() != null ? ShardContext.current() : ShardingProperties.DEFAULT_SHARD;
+        if (!current.equals(shardFor(locationId))) {
+            throw new ValidationException("Upis za lokaciju " + locationId + " zahteva zaglavlje X-Location-Id te lokacije");
+        }
+    }
+
+    public Set<String> shards() {
+        Set<String> shards = new TreeSet<>(properties.getShards().keySet());
+        shards.add(ShardingProperties.DEFAULT_SHARD);
+        return shards;
+    }
+
+    /**
+     * Čitanje podataka jedne lokacije - potrebno kada šard zahteva nije šard lokacije
+     * (admin bez lokacije u tokenu čita podatke neke gym lokacije).
+     */
+    public <T> T readOnLocation(Long locationId, Supplier<T> query) {
+        String shard = shardFor(locationId);
+        String current = ShardContext.current() != null ? ShardContext.current() : ShardingProperties.DEFAULT_SHARD;
+        if (!properties.isEnabled() || shard.equals(current)) {
+            return query.get();
+        }
+
+        String previous = ShardContext.current();
+        ShardContext.set(shard);
+        try {
+            return shardReadTemplate.execute(status -> query.get());
+        } finally {
+            ShardContext.set(previous);
+        }
+    }
+
+    /**
+     * Upis u users/referentne tabele na globalnom šardu, u sopstvenoj transakciji (commit pre povratka).
+     * Na globalnom šardu ili bez šardovanja upit ide u tekuću transakciju.
+     */
+    public <T> T writeGlobal(Supplier<T> write) {
+        if (isOnGlobalShard()) {
+            return write.get();
+        }
+
+        String previous = ShardContext.current();
+        ShardContext.set(ShardingProperties.DEFAULT_SHARD);
+        try {
+            return globalWriteTemplate.execute(status -> write.get());
+        } finally {
+            ShardContext.set(previous);
+        }
+    }
+
+    /**
+     * Isti upit paralelno na svim šardovima, rezultati spojeni redom šardova.
+     * Upit se izvršava u drugim nitima - ne sme zavisiti od SecurityContext-a ni tekuće transakcije.
+     */
+    public <T> List<T> scatterGather(Supplier<List<T>> query) {
+        if (!properties.isEnabled()) {
+            return query.get();
+        }
+
+        List<CompletableFuture<List<T>>> futures = new ArrayList<>();
+        for (String shard : shards()) {
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                ShardContext.set(shard);
+                try {
+                    return shardReadTemplate.execute(status -> query.get());
+                } finally {
+                    ShardContext.clear();
+                }
+            }, scatterExecutor));
+        }
+
+        List<T> result = new ArrayList<>();
+        try {
+            for (CompletableFuture<List<T>> future : futures) {
+                result.addAll(future.join());
+            }
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scatterExecutor != null) {
+            scatterExecutor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.fitnessAndrea360.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Bira bazu šarda iz ShardContext-a; bez šarda u kontekstu (login, admin, pozadinski poslovi)
+ * konekcija ide na podrazumevani šard. Svaki šard ima svoj pool, pa gužva na jednoj lokaciji
+ * ne troši konekcije ostalih.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+    public ShardRoutingDataSource(Map<String, DataSource> shards) {
+        setTargetDataSources(Map.copyOf(shards));
+        setDefaultTargetDataSource(shards.get(ShardingProperties.DEFAULT_SHARD));
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        String shard = ShardContext.current();
+        return shard != null ? shard : ShardingProperties.DEFAULT_SHARD;
+    }
+}
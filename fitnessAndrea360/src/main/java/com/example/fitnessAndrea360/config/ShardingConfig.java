@@ -0,0 +1,55 @@
+package com.example.fitnessAndrea360.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Baza po šardu lokacija (app.sharding.enabled=true). Podrazumevani šard je spring.datasource.*,
+ * ostali se navode u app.sharding.shards.<ime>.*. Ne kombinuje se sa replikom za čitanje.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.sharding.enabled", havingValue = "true")
+public class ShardingConfig {
+
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties properties, ShardingProperties shardingProperties) {
+        Map<String, DataSource> shards = new LinkedHashMap<>();
+
+        HikariDataSource defaultShard = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        defaultShard.setPoolName("shard-" + ShardingProperties.DEFAULT_SHARD);
+        shards.put(ShardingProperties.DEFAULT_SHARD, defaultShard);
+
+        // spring.sql.init pravi šemu samo na podrazumevanom šardu - ostalima se izvršava schema.sql ovde
+        ResourceDatabasePopulator schema = new ResourceDatabasePopulator(new ClassPathResource("schema.sql"));
+        schema.setContinueOnError(true);
+
+        shardingProperties.getShards().forEach((name, node) -> {
+            HikariDataSource shard = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .driverClassName(properties.determineDriverClassName())
+                    .url(node.getUrl())
+                    .username(node.getUsername() != null ? node.getUsername() : properties.determineUsername())
+                    .password(node.getPassword() != null ? node.getPassword() : properties.determinePassword())
+                    .build();
+            shard.setPoolName("shard-" + name);
+            shard.setMaximumPoolSize(node.getMaximumPoolSize());
+            schema.execute(shard);
+            shards.put(name, shard);
+        });
+
+        return new LazyConnectionDataSourceProxy(new ShardRoutingDataSource(shards));
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.fitnessAndrea360.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Raspodela lokacija po šardovima (app.sharding.*).
+ *
+ * Podrazumevani šard je baza iz spring.datasource.* i u njemu su sve lokacije koje nisu navedene
+ * u app.sharding.locations. On je i globalni šard: users i referentne tabele (roles, locations, services)
+ * upisuju se samo u njega (ShardRouter.writeGlobal). Ostali šardovi drže njihove kopije zbog spoljnih ključeva
+ * i JOIN-ova - sadržaj održava replikacija sa globalnog šarda (replica_exec_mode=IDEMPOTENT, jer aplikacija
+ * red korisnika novog člana/zaposlenog odmah kopira na šard lokacije).
+ */
+@Data
+@ConfigurationProperties(prefix = "app.sharding")
+public class ShardingProperties {
+
+    public static final String DEFAULT_SHARD = "default";
+
+    private boolean enabled = false;
+
+    // Ime šarda -> konekcija (podrazumevani šard se ne navodi)
+    private Map<String, Node> shards = new HashMap<>();
+
+    // ID lokacije -> ime šarda
+    private Map<Long, String> locations = new HashMap<>();
+
+    // Niti za paralelne admin upite preko svih šardova
+    private int scatterThreads = 8;
+
+    @Data
+    public static class Node {
+        private String url;
+        private String username;
+        private String password;
+        private int maximumPoolSize = 10;
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.fitnessAndrea360.config;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Endpoint podnosi podatke replike koji kasne par sekundi (dashboard-i, zbirni izveštaji).
+ * Njegove read-only transakcije idu na repliku i kada je korisnik upravo nešto upisao.
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface StaleReadsAllowed {
+}
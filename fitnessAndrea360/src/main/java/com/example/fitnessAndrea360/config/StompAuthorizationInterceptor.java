@@ -0,0 +1,110 @@
+package com.example.fitnessAndrea360.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.stereotype.Component;
+
+import java.security.Principal;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Autentikacija STOMP sesije i dozvole za pretplatu.
+ *
+ * CONNECT nosi JWT u zaglavlju Authorization (SockJS iz browser-a ne može da pošalje zaglavlje
+ * pri handshake-u). Pretplata na /topic/capacity/location/{id} dozvoljena je adminu i korisnicima
+ * sa tom lokacijom u tokenu; ostale destinacije van liste se odbijaju. Provera je u aplikaciji,
+ * pre relay-a, pa važi isto za simple broker i za eksterni broker.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StompAuthorizationInterceptor implements ChannelInterceptor {
+
+    public static final String LOCATION_CAPACITY_TOPIC = "/topic/capacity/location/";
+    public static final String CAPACITY_TOPIC = "/topic/capacity";
+
+    private static final Pattern LOCATION_CAPACITY = Pattern.compile("^/topic/capacity/location/(\\d+)$");
+
+    private final JwtService jwtService;
+    private final UserDetailsService userDetailsService;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() == null) {
+            return message;
+        }
+
+        if (accessor.getCommand() == StompCommand.CONNECT) {
+            Authentication authentication = authenticate(accessor.getFirstNativeHeader("Authorization"));
+            if (authentication != null) {
+                accessor.setUser(authentication);
+            } else if (!(accessor.getUser() instanceof Authentication)) {
+                throw new AccessDeniedException("Nedostaje ili nije validan JWT token");
+            }
+        } else if (accessor.getCommand() == StompCommand.SUBSCRIBE) {
+            checkSubscription(accessor.getUser(), accessor.getDestination());
+        }
+        return message;
+    }
+
+    void checkSubscription(Principal user, String destination) {
+        if (!(user instanceof Authentication authentication) || !authentication.isAuthenticated()) {
+            throw new AccessDeniedException("Pretplata zahteva prijavu");
+        }
+        if (destination == null) {
+            throw new AccessDeniedException("Pretplata bez destinacije");
+        }
+        if (destination.equals(CAPACITY_TOPIC)) {
+            return;
+        }
+
+        Matcher matcher = LOCATION_CAPACITY.matcher(destination);
+        if (matcher.matches()) {
+            Long locationId = Long.valueOf(matcher.group(1));
+            if (TokenDetails.hasRole(authentication, "ADMIN") || locationId.equals(TokenDetails.locationId(authentication))) {
+                return;
+            }
+            throw new AccessDeniedException("Možete pratiti samo kapacitete svoje lokacije");
+        }
+
+        throw new AccessDeniedException("Nepoznata destinacija: " + destination);
+    }
+
+    // Isti podaci kao u JwtAuthenticationFilter - TokenDetails radi i za STOMP korisnika
+    private Authentication authenticate(String authHeader) {
+        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+            return null;
+        }
+        String token = authHeader.substring(7);
+        try {
+            String username = jwtService.extractUsername(token);
+            UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+            if (!jwtService.isTokenValid(token, userDetails)) {
+                return null;
+            }
+
+            UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                    userDetails, null, List.of(new SimpleGrantedAuthority("ROLE_" + jwtService.extractRole(token))));
+            authentication.setDetails(jwtService.extractDetails(token));
+            return authentication;
+        } catch (Exception ex) {
+            log.warn("Invalid STOMP JWT token: {}", ex.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.fitnessAndrea360.config;
+
+import org.springframework.security.core.Authentication;
+
+import java.util.Map;
+
+/**
+ * Podaci iz JWT tokena koje JwtAuthenticationFilter stavlja u Authentication - čitaju se bez upita u bazu.
+ */
+public final class TokenDetails {
+
+    private TokenDetails() {
+    }
+
+    public static Long locationId(Authentication authentication) {
+        return longDetail(authentication, "locationId");
+    }
+
+    public static Long userId(Authentication authentication) {
+        return longDetail(authentication, "userId");
+    }
+
+    // Samo za člana; zaposleni i admin ga nemaju
+    public static Long memberId(Authentication authentication) {
+        return longDetail(authentication, "memberId");
+    }
+
+    public static boolean hasRole(Authentication authentication, String role) {
+        return authentication != null && authentication.getAuthorities().stream()
+                .anyMatch(authority -> authority.getAuthority().equals("ROLE_" + role));
+    }
+
+    private static Long longDetail(Authentication authentication, String name) {
+        if (authentication != null && authentication.getDetails() instanceof Map<?, ?> details
+                && details.get(name) instanceof Number value) {
+            return value.longValue();
+        }
+        return null;
+    }
+}
@@ -1,25 +1,97 @@
 package com.example.fitnessAndrea360.config;
 
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.config.StompBrokerRelayRegistration;
+import org.springframework.messaging.tcp.TcpOperations;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
 
+/**
+ * STOMP preko /ws-capacity.
+ *
+ * Podrazumevano simple broker u memoriji (pretplate vidi samo ova instanca). Sa
+ * app.websocket.relay.enabled=true poruke za /topic idu kroz eksterni STOMP broker (RabbitMQ,
+ * ActiveMQ...), pa poruka objavljena na jednoj instanci stiže do klijenata svih instanci.
+ * Transport relay-a je zamenljiv: bean tipa TcpOperations&lt;byte[]&gt; (npr. TLS klijent ili
+ * broker u memoriji u testovima) zamenjuje podrazumevani Reactor Netty TCP klijent.
+ */
+@Slf4j
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private final StompAuthorizationInterceptor stompAuthorizationInterceptor;
+    private final ObjectProvider<TcpOperations<byte[]>> relayTransport;
+
+    @Value("${app.websocket.relay.enabled:false}")
+    private boolean relayEnabled;
+
+    @Value("${app.websocket.relay.host:localhost}")
+    private String relayHost;
+
+    @Value("${app.websocket.relay.port:61613}")
+    private int relayPort;
+
+    @Value("${app.websocket.relay.virtual-host:}")
+    private String relayVirtualHost;
+
+    @Value("${app.websocket.relay.client-login:guest}")
+    private String relayClientLogin;
+
+    @Value("${app.websocket.relay.client-passcode:guest}")
+    private String relayClientPasscode;
+
+    @Value("${app.websocket.relay.system-login:guest}")
+    private String relaySystemLogin;
+
+    @Value("${app.websocket.relay.system-passcode:guest}")
+    private String relaySystemPasscode;
+
+    public WebSocketConfig(StompAuthorizationInterceptor stompAuthorizationInterceptor,
+                           ObjectProvider<TcpOperations<byte[]>> relayTransport) {
+        this.stompAuthorizationInterceptor = stompAuthorizationInterceptor;
+        this.relayTransport = relayTransport;
+    }
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic");
+        if (relayEnabled) {
+            StompBrokerRelayRegistration relay = config.enableStompBrokerRelay("/topic")
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setClientLogin(relayClientLogin)
+                    .setClientPasscode(relayClientPasscode)
+                    .setSystemLogin(relaySystemLogin)
+                    .setSystemPasscode(relaySystemPasscode);
+            if (!relayVirtualHost.isBlank()) {
+                relay.setVirtualHost(relayVirtualHost);
+            }
+            TcpOperations<byte[]> transport = relayTransport.getIfAvailable();
+            if (transport != null) {
+                relay.setTcpClient(transport);
+            }
+            log.info("STOMP broker relay: {}:{}{}", relayHost, relayPort, transport != null ? " (custom transport)" : "");
+        } else {
+            config.enableSimpleBroker("/topic");
+        }
         config.setApplicationDestinationPrefixes("/app");
     }
 
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(stompAuthorizationInterceptor);
+    }
+
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         registry.addEndpoint("/ws-capacity")
                 .setAllowedOriginPatterns("*")
                 .withSockJS();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,73 @@
+package com.example.fitnessAndrea360.controller;
+
+import com.example.fitnessAndrea360.config.StaleReadsAllowed;
+import com.example.fitnessAndrea360.dto.SalesBackfillResultDTO;
+import com.example.fitnessAndrea360.dto.SalesStatsDTO;
+import com.example.fitnessAndrea360.service.AnalyticsService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/analytics")
+@RequiredArgsConstructor
+@Tag(name = "Analytics", description = "API za analitiku prihoda i prodaje")
+@SecurityRequirement(name = "bearerAuth")
+public class AnalyticsController {
+
+    private final AnalyticsService analyticsService;
+
+    @GetMapping("/revenue/daily")
+    @StaleReadsAllowed
+    @PreAuthorize("hasRole('ADMIN') or hasRole('EMPLOYEE')")
+    @Operation(summary = "Dnevna vremenska serija prihoda",
+            description = "Prihod, prodate sesije i povraćaji po danu (opciono po lokaciji i usluzi)")
+    public ResponseEntity<List<SalesStatsDTO>> getDailyRevenue(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Long locationId,
+            @RequestParam(required = false) Long serviceId) {
+        return ResponseEntity.ok(analyticsService.getDailySeries(from, to, locationId, serviceId));
+    }
+
+    @GetMapping("/revenue/monthly")
+    @StaleReadsAllowed
+    @PreAuthorize("hasRole('ADMIN') or hasRole('EMPLOYEE')")
+    @Operation(summary = "Mesečna vremenska serija prihoda (format meseca: yyyy-MM)")
+    public ResponseEntity<List<SalesStatsDTO>> getMonthlyRevenue(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM") YearMonth from,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM") YearMonth to,
+            @RequestParam(required = false) Long locationId,
+            @RequestParam(required = false) Long serviceId) {
+        return ResponseEntity.ok(analyticsService.getMonthlySeries(from, to, locationId, serviceId));
+    }
+
+    @GetMapping("/revenue/by-service")
+    @StaleReadsAllowed
+    @PreAuthorize("hasRole('ADMIN') or hasRole('EMPLOYEE')")
+    @Operation(summary = "Prihod po usluzi za period")
+    public ResponseEntity<List<SalesStatsDTO>> getRevenueByService(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Long locationId) {
+        return ResponseEntity.ok(analyticsService.getSalesByService(from, to, locationId));
+    }
+
+    @PostMapping("/backfill")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Ponovo izračunaj dnevni rollup iz istorijskih transakcija", description = "Admin only")
+    public ResponseEntity<SalesBackfillResultDTO> backfill(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok(analyticsService.backfill(from, to));
+    }
+}
@@ -1,8 +1,15 @@
 package com.example.fitnessAndrea360.controller;
 
+import com.example.fitnessAndrea360.config.TokenDetails;
 import com.example.fitnessAndrea360.dto.AppointmentRequestDTO;
 import com.example.fitnessAndrea360.dto.AppointmentResponseDTO;
+import com.example.fitnessAndrea360.dto.AppointmentSeriesRequestDTO;
+import com.example.fitnessAndrea360.dto.AppointmentSeriesResultDTO;
+import com.example.fitnessAndrea360.dto.AvailableSlotDTO;
+import com.example.fitnessAndrea360.service.AppointmentSeriesService;
+import com.example.fitnessAndrea360.service.AppointmentSlotService;
 import com.example.fitnessAndrea360.service.AppointmentService;
+import com.example.fitnessAndrea360.service.ResourceVersionRegistry;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -12,7 +19,9 @@ import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -26,6 +35,9 @@ import java.util.List;
 public class AppointmentController {
 
     private final AppointmentService appointmentService;
+    private final AppointmentSeriesService appointmentSeriesService;
+    private final AppointmentSlotService appointmentSlotService;
+    private final ResourceVersionRegistry resourceVersionRegistry;
 
     @PostMapping
     @PreAuthorize("hasRole('ADMIN') or hasRole('EMPLOYEE') or hasRole('MEMBER')")
@@ -36,8 +48,33 @@ public class AppointmentController {
         return ResponseEntity.status(HttpStatus.CREATED).body(appointment);
     }
 
+    @PostMapping("/series")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('EMPLOYEE')")
+    @Operation(summary = "Kreiranje serije termina",
+            description = "Nedeljno pravilo (dani, vreme, period, izuzeci). Termini u konfliktu se preskaču ili odbijaju celu seriju.")
+    public ResponseEntity<AppointmentSeriesResultDTO> createSeries(@Valid @RequestBody AppointmentSeriesRequestDTO request) {
+        return ResponseEntity.status(HttpStatus.CREATED).body(appointmentSeriesService.createSeries(request));
+    }
+
 
 
+    @GetMapping("/slots")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('EMPLOYEE') or hasRole('MEMBER')")
+    @Operation(summary = "Pretraga slobodnih termina",
+            description = "Slobodni počeci za uslugu na lokaciji u periodu (najviše 31 dan), rangirani. " +
+                    "Član uvek dobija termine slobodne i za sebe, osoblje opciono prosleđuje memberId.")
+    public ResponseEntity<List<AvailableSlotDTO>> findAvailableSlots(
+            @RequestParam Long locationId,
+            @RequestParam Long serviceId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Long memberId,
+            @RequestParam(required = false) Integer stepMinutes,
+            @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(appointmentSlotService.findAvailableSlots(
+                locationId, serviceId, from, to, memberId, stepMinutes, limit));
+    }
+
     @GetMapping("/available")
     @PreAuthorize("hasRole('MEMBER')")
     @Operation(summary = "Dohvati dostupne termine za člana",
@@ -50,13 +87,24 @@ public class AppointmentController {
     @GetMapping("/upcoming")
     @PreAuthorize("hasRole('ADMIN') or hasRole('EMPLOYEE') or hasRole('MEMBER')")
     @Operation(summary = "Dohvati nadolazeće termine",
-            description = "Vraća termine koji će se održati u budućnosti")
+            description = "Vraća termine koji će se održati u budućnosti. Podržava If-None-Match (304 bez promena).")
     public ResponseEntity<List<AppointmentResponseDTO>> getUpcomingAppointments(
-            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate) {
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
+            WebRequest webRequest) {
 
         LocalDate startDate = fromDate != null ? fromDate : LocalDate.now();
+
+        // Verzija se čita pre upita - nepromenjen raspored vraća 304 bez upita i serijalizacije
+        String etag = resourceVersionRegistry.scheduleEtag(startDate);
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+
         List<AppointmentResponseDTO> appointments = appointmentService.getUpcomingAppointments(startDate);
-        return ResponseEntity.ok(appointments);
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(ResourceVersionRegistry.SCHEDULE_CACHE)
+                .body(appointments);
     }
 
     @GetMapping
@@ -99,9 +147,26 @@ public class AppointmentController {
     @GetMapping("/location/{locationId}")
     @PreAuthorize("hasRole('ADMIN') or hasRole('EMPLOYEE')")
     @Operation(summary = "Dohvati termine po lokaciji")
-    public ResponseEntity<List<AppointmentResponseDTO>> getAppointmentsByLocation(@PathVariable Long locationId) {
+    public ResponseEntity<List<AppointmentResponseDTO>> getAppointmentsByLocation(@PathVariable Long locationId,
+                                                                                  Authentication authentication,
+                                                                                  WebRequest webRequest) {
+        // ETag samo kada se pristup vidi iz tokena (admin ili zaposleni te lokacije), inače prvo provera u servisu
+        boolean accessFromToken = TokenDetails.hasRole(authentication, "ADMIN")
+                || locationId.equals(TokenDetails.locationId(authentication));
+        if (!accessFromToken) {
+            return ResponseEntity.ok(appointmentService.getAppointmentsByLocation(locationId));
+        }
+
+        String etag = resourceVersionRegistry.locationScheduleEtag(locationId);
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+
         List<AppointmentResponseDTO> appointments = appointmentService.getAppointmentsByLocation(locationId);
-        return ResponseEntity.ok(appointments);
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(ResourceVersionRegistry.SCHEDULE_CACHE)
+                .body(appointments);
     }
 
     @GetMapping("/member/current")
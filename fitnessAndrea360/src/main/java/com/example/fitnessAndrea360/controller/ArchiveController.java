@@ -0,0 +1,37 @@
+package com.example.fitnessAndrea360.controller;
+
+import com.example.fitnessAndrea360.dto.ArchiveRunResultDTO;
+import com.example.fitnessAndrea360.dto.ArchiveStatusDTO;
+import com.example.fitnessAndrea360.service.ArchiveService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/archive")
+@RequiredArgsConstructor
+@Tag(name = "Archive", description = "API za arhiviranje starih termina i rezervacija")
+@SecurityRequirement(name = "bearerAuth")
+public class ArchiveController {
+
+    private final ArchiveService archiveService;
+
+    @GetMapping("/status")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Veličina vrućeg i arhivskog sloja", description = "Admin only - broj redova po sloju, " +
+            "najstariji termin u vrućoj tabeli, trajanje upcoming upita i rezultat poslednjeg arhiviranja")
+    public ResponseEntity<ArchiveStatusDTO> getStatus() {
+        return ResponseEntity.ok(archiveService.getStatus());
+    }
+
+    @PostMapping("/run")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Pokreni arhiviranje odmah", description = "Admin only - inače se pokreće noću (app.archive.cron)")
+    public ResponseEntity<ArchiveRunResultDTO> runArchive() {
+        return ResponseEntity.ok(archiveService.runArchive());
+    }
+}
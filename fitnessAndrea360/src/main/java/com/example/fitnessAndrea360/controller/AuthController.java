@@ -1,10 +1,12 @@
 package com.example.fitnessAndrea360.controller;
 
 import com.example.fitnessAndrea360.config.JwtService;
+import com.example.fitnessAndrea360.config.ShardRouter;
 import com.example.fitnessAndrea360.dto.AuthResponse;
 import com.example.fitnessAndrea360.dto.LoginRequest;
 import com.example.fitnessAndrea360.model.User;
 import com.example.fitnessAndrea360.repository.EmployeeRepository;
+import com.example.fitnessAndrea360.repository.MemberRepository;
 import com.example.fitnessAndrea360.service.UserService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -19,6 +21,7 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.HashMap;
 import java.util.Map;
 
 @RestController
@@ -32,6 +35,8 @@ public class AuthController {
     private final JwtService jwtService;
     private final UserService userService;
     private final EmployeeRepository employeeRepository;
+    private final MemberRepository memberRepository;
+    private final ShardRouter shardRouter;
 
     @PostMapping("/login")
     @Operation(summary = "Login user")
@@ -68,8 +73,22 @@ public class AuthController {
                 locationName = employeeOpt.get().getLocation().getName();
             }
 
-            // 4. Generate JWT
+            // 4. Generate JWT - lokacija zaposlenog/člana ide u token i određuje šard baze
+            Map<String, Object> claims = new HashMap<>();
+            Long claimLocationId = user.getLocation() != null ? user.getLocation().getId() : locationId;
+            if (claimLocationId != null && !"ADMIN".equals(user.getRole().getName())) {
+                claims.put("locationId", claimLocationId);
+            }
+            // ID-evi korisnika i člana - CurrentMemberResolver pronalazi člana bez upita u bazu.
+            // Login čita globalni šard, a član je na šardu svoje lokacije (ID je jedinstven samo tamo).
+            claims.put("userId", user.getId());
+            if (claimLocationId != null) {
+                shardRouter.readOnLocation(claimLocationId, () -> memberRepository.findIdByUserId(user.getId()))
+                        .ifPresent(memberId -> claims.put("memberId", memberId));
+            }
+
             String token = jwtService.generateToken(
+                    claims,
                     userDetails,
                     user.getRole().getName()
             );
@@ -0,0 +1,48 @@
+package com.example.fitnessAndrea360.controller;
+
+import com.example.fitnessAndrea360.dto.CreditBalanceDTO;
+import com.example.fitnessAndrea360.dto.CreditLedgerEntryDTO;
+import com.example.fitnessAndrea360.dto.LedgerVerificationResultDTO;
+import com.example.fitnessAndrea360.service.CreditLedgerService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/credits")
+@RequiredArgsConstructor
+@Tag(name = "Credits", description = "API za dnevnik sesija članova")
+@SecurityRequirement(name = "bearerAuth")
+public class CreditController {
+
+    private final CreditLedgerService creditLedgerService;
+
+    @GetMapping("/members/{memberId}/balance")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Stanje sesija člana po usluzi", description = "Admin only - zbir dnevnika sesija")
+    public ResponseEntity<List<CreditBalanceDTO>> getBalances(@PathVariable Long memberId) {
+        return ResponseEntity.ok(creditLedgerService.getBalances(memberId));
+    }
+
+    @GetMapping("/members/{memberId}/ledger")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Dnevnik sesija člana", description = "Admin only - poslednji unosi (GRANT, CONSUME, REFUND, EXPIRE)")
+    public ResponseEntity<List<CreditLedgerEntryDTO>> getEntries(@PathVariable Long memberId,
+                                                                 @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(creditLedgerService.getEntries(memberId, limit));
+    }
+
+    @PostMapping("/verify")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Proveri dnevnik sesija odmah", description = "Admin only - poredi remaining_uses i keš sa " +
+            "dnevnikom; inače se pokreće noću (app.ledger.verify-cron)")
+    public ResponseEntity<LedgerVerificationResultDTO> verify() {
+        return ResponseEntity.ok(creditLedgerService.verify());
+    }
+}
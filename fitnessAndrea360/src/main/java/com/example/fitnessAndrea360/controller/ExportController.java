@@ -0,0 +1,69 @@
+package com.example.fitnessAndrea360.controller;
+
+import com.example.fitnessAndrea360.service.ExportService;
+import com.example.fitnessAndrea360.service.ExportService.ExportFormat;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.LocalDate;
+
+@RestController
+@RequestMapping("/export")
+@RequiredArgsConstructor
+@Tag(name = "Export", description = "API za strimovani izvoz podataka (CSV / NDJSON)")
+@SecurityRequirement(name = "bearerAuth")
+public class ExportController {
+
+    private final ExportService exportService;
+
+    @GetMapping("/members")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('EMPLOYEE')")
+    @Operation(summary = "Izvoz članova",
+            description = "Admin izvozi sve (opciono po lokaciji), zaposleni samo svoju lokaciju")
+    public ResponseEntity<StreamingResponseBody> exportMembers(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) Long locationId) {
+        ExportFormat exportFormat = ExportFormat.from(format);
+        return toResponse("members", exportFormat, exportService.exportMembers(exportFormat, locationId));
+    }
+
+    @GetMapping("/reservations")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('EMPLOYEE')")
+    @Operation(summary = "Izvoz rezervacija",
+            description = "Opcioni period po datumu termina (from/to uključivo)")
+    public ResponseEntity<StreamingResponseBody> exportReservations(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) Long locationId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        ExportFormat exportFormat = ExportFormat.from(format);
+        return toResponse("reservations", exportFormat,
+                exportService.exportReservations(exportFormat, locationId, from, to));
+    }
+
+    @GetMapping("/transactions")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('EMPLOYEE')")
+    @Operation(summary = "Izvoz transakcija")
+    public ResponseEntity<StreamingResponseBody> exportTransactions(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) Long locationId) {
+        ExportFormat exportFormat = ExportFormat.from(format);
+        return toResponse("transactions", exportFormat, exportService.exportTransactions(exportFormat, locationId));
+    }
+
+    private ResponseEntity<StreamingResponseBody> toResponse(String name, ExportFormat format, StreamingResponseBody body) {
+        return ResponseEntity.ok()
+                .contentType(format.getMediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"" + name + "-" + LocalDate.now() + "." + format.getExtension() + "\"")
+                .body(body);
+    }
+}
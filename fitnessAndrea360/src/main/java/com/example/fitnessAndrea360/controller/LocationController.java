@@ -1,17 +1,25 @@
 package com.example.fitnessAndrea360.controller;
 
+import com.example.fitnessAndrea360.config.TokenDetails;
 import com.example.fitnessAndrea360.dto.CreateLocationRequest;
 import com.example.fitnessAndrea360.dto.LocationResponse;
+import com.example.fitnessAndrea360.exception.UnauthorizedAccessException;
+import com.example.fitnessAndrea360.service.LocationActivityHub;
 import com.example.fitnessAndrea360.service.LocationService;
+import com.example.fitnessAndrea360.service.ResourceVersionRegistry;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 
@@ -23,6 +31,8 @@ import java.util.List;
 public class LocationController {
 
     private final LocationService locationService;
+    private final ResourceVersionRegistry resourceVersionRegistry;
+    private final LocationActivityHub locationActivityHub;
 
     @PostMapping
     @PreAuthorize("hasRole('ADMIN')")
@@ -34,16 +44,42 @@ public class LocationController {
 
     @GetMapping
     @PreAuthorize("hasAnyRole('ADMIN', 'EMPLOYEE', 'MEMBER')")
-    @Operation(summary = "Get all locations")
-    public ResponseEntity<List<LocationResponse>> getAllLocations() {
-        return ResponseEntity.ok(locationService.getAllLocations());
+    @Operation(summary = "Get all locations", description = "Supports If-None-Match (304 when unchanged)")
+    public ResponseEntity<List<LocationResponse>> getAllLocations(WebRequest webRequest) {
+        String etag = resourceVersionRegistry.locationsEtag();
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(ResourceVersionRegistry.CATALOG_CACHE)
+                .body(locationService.getAllLocations());
     }
 
     @GetMapping("/{id}")
     @PreAuthorize("hasAnyRole('ADMIN', 'EMPLOYEE', 'MEMBER')")
-    @Operation(summary = "Get location by ID")
-    public ResponseEntity<LocationResponse> getLocationById(@PathVariable Long id) {
-        return ResponseEntity.ok(locationService.getLocationById(id));
+    @Operation(summary = "Get location by ID", description = "Supports If-None-Match (304 when unchanged)")
+    public ResponseEntity<LocationResponse> getLocationById(@PathVariable Long id, WebRequest webRequest) {
+        String etag = resourceVersionRegistry.locationsEtag(id);
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(ResourceVersionRegistry.CATALOG_CACHE)
+                .body(locationService.getLocationById(id));
+    }
+
+    @GetMapping(value = "/{id}/activity", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasAnyRole('ADMIN', 'EMPLOYEE', 'MEMBER')")
+    @Operation(summary = "Live activity stream of a location (SSE)",
+            description = "Events 'activity' (appointment status, reservations, capacity) and 'dropped' " +
+                    "(number of events skipped for a slow client - refresh state). Admin any location, others own location")
+    public SseEmitter streamLocationActivity(@PathVariable Long id, Authentication authentication) {
+        if (!TokenDetails.hasRole(authentication, "ADMIN") && !id.equals(TokenDetails.locationId(authentication))) {
+            throw new UnauthorizedAccessException("Možete pratiti samo aktivnost svoje lokacije");
+        }
+        return locationActivityHub.subscribe(id);
     }
 
     @PutMapping("/{id}")
@@ -1,8 +1,10 @@
 package com.example.fitnessAndrea360.controller;
 
+import com.example.fitnessAndrea360.dto.MemberImportResultDTO;
 import com.example.fitnessAndrea360.dto.MemberRequestDTO;
 import com.example.fitnessAndrea360.dto.MemberResponseDTO;
 import com.example.fitnessAndrea360.model.Member;
+import com.example.fitnessAndrea360.service.MemberImportService;
 import com.example.fitnessAndrea360.service.MemberService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
@@ -10,9 +12,11 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
 import java.util.List;
 
@@ -24,6 +28,7 @@ import java.util.List;
 public class MemberController {
 
     private final MemberService memberService;
+    private final MemberImportService memberImportService;
 
     @PostMapping
     @PreAuthorize("hasRole('ADMIN') or hasRole('EMPLOYEE')")
@@ -34,6 +39,19 @@ public class MemberController {
         return ResponseEntity.status(HttpStatus.CREATED).body(createdMember);
     }
 
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @PreAuthorize("hasRole('ADMIN') or hasRole('EMPLOYEE')")
+    @Operation(summary = "Masovni uvoz članova iz CSV fajla",
+            description = "Kolone: firstName, lastName, email, phone, dateOfBirth, gender, address, membershipStartDate, " +
+                    "membershipEndDate, username, password (+ opciono emergencyContact, emergencyPhone, medicalNotes, notes). " +
+                    "Admin bira lokaciju, zaposleni uvozi na svoju. dryRun=true samo validira.")
+    public ResponseEntity<MemberImportResultDTO> importMembers(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(required = false) Long locationId,
+            @RequestParam(defaultValue = "false") boolean dryRun) {
+        return ResponseEntity.ok(memberImportService.importMembers(file, locationId, dryRun));
+    }
+
     @GetMapping
     @PreAuthorize("hasRole('ADMIN') or hasRole('EMPLOYEE')")
     @Operation(summary = "Vidi sve članove",
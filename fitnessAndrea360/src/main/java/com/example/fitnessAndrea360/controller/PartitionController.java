@@ -0,0 +1,52 @@
+package com.example.fitnessAndrea360.controller;
+
+import com.example.fitnessAndrea360.dto.PartitionPruningDTO;
+import com.example.fitnessAndrea360.dto.PartitionStatusDTO;
+import com.example.fitnessAndrea360.service.PartitionMaintenanceService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@RestController
+@RequestMapping("/partitions")
+@RequiredArgsConstructor
+@Tag(name = "Partitions", description = "API za mesečne particije termina i rezervacija")
+@SecurityRequirement(name = "bearerAuth")
+public class PartitionController {
+
+    private final PartitionMaintenanceService partitionMaintenanceService;
+
+    @GetMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Particije po tabeli i šardu", description = "Admin only - mesečne particije, " +
+            "pokriveni opseg i procenjen broj redova")
+    public ResponseEntity<List<PartitionStatusDTO>> getStatus() {
+        return ResponseEntity.ok(partitionMaintenanceService.getStatus());
+    }
+
+    @PostMapping("/maintain")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Pokreni održavanje particija odmah", description = "Admin only - inače se pokreće noću " +
+            "(app.partitioning.cron); migrira tabele ako još nisu particionisane")
+    public ResponseEntity<List<PartitionStatusDTO>> maintain() {
+        return ResponseEntity.ok(partitionMaintenanceService.maintain());
+    }
+
+    @GetMapping("/pruning")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Provera odsecanja particija", description = "Admin only - EXPLAIN upita po opsegu datuma: " +
+            "koje particije bi svaki upit pročitao")
+    public ResponseEntity<List<PartitionPruningDTO>> checkPruning(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok(partitionMaintenanceService.checkPruning(from, to));
+    }
+}
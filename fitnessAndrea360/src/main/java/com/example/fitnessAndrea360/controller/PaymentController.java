@@ -2,8 +2,6 @@ package com.example.fitnessAndrea360.controller;
 
 import com.example.fitnessAndrea360.dto.CheckoutRequest;
 import com.example.fitnessAndrea360.dto.CheckoutResponse;
-import com.example.fitnessAndrea360.model.User;
-import com.example.fitnessAndrea360.repository.UserRepository;
 import com.example.fitnessAndrea360.service.StripeService;
 import com.stripe.exception.StripeException;
 import io.swagger.v3.oas.annotations.Operation;
@@ -26,7 +24,6 @@ import org.springframework.web.bind.annotation.*;
 public class PaymentController {
 
     private final StripeService stripeService;
-    private final UserRepository userRepository;
 
     @PostMapping("/checkout")
     @PreAuthorize("hasRole('MEMBER')")
@@ -39,20 +36,10 @@ public class PaymentController {
                 request.getServiceId(), request.getQuantity());
 
 
-        String username = authentication.getName();
-        log.info("Korisnik iz tokena: {}", username);
-
-
-        User user = userRepository.findByEmail(username)
-                .orElseThrow(() -> {
-                    log.error("Korisnik nije pronađen sa email: {}", username);
-                    return new RuntimeException("Korisnik nije pronađen");
-                });
-
-        log.info("Pronađen korisnik: id={}, email={}", user.getId(), user.getEmail());
+        log.info("Korisnik iz tokena: {}", authentication.getName());
 
         try {
-            CheckoutResponse response = stripeService.createCheckoutSession(request, user.getId());
+            CheckoutResponse response = stripeService.createCheckoutSession(request);
             log.info("Checkout sesija kreirana: {}", response.getSessionId());
             return ResponseEntity.ok(response);
         } catch (StripeException e) {
@@ -77,4 +64,13 @@ public class PaymentController {
             return ResponseEntity.badRequest().body("Greška: " + e.getMessage());
         }
     }
+
+    @PostMapping("/refund/{purchaseId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Refund kupovine",
+            description = "Vraća novac za kupovinu čija nijedna sesija nije iskorišćena i otkazuje kupovinu")
+    public ResponseEntity<String> refundPurchase(@PathVariable Long purchaseId) throws StripeException {
+        stripeService.refundPurchase(purchaseId);
+        return ResponseEntity.ok("Kupovina refundirana");
+    }
 }
\ No newline at end of file
@@ -0,0 +1,57 @@
+package com.example.fitnessAndrea360.controller;
+
+import com.example.fitnessAndrea360.config.StaleReadsAllowed;
+import com.example.fitnessAndrea360.dto.MonthlyReservationStatsDTO;
+import com.example.fitnessAndrea360.service.ReportingService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.YearMonth;
+import java.util.List;
+
+@RestController
+@RequestMapping("/reports")
+@RequiredArgsConstructor
+@Tag(name = "Reports", description = "API za statistiku i izveštaje")
+@SecurityRequirement(name = "bearerAuth")
+public class ReportController {
+
+    private final ReportingService reportingService;
+
+    @GetMapping("/reservations/monthly")
+    @StaleReadsAllowed
+    @PreAuthorize("hasRole('ADMIN') or hasRole('EMPLOYEE')")
+    @Operation(summary = "Mesečna statistika rezervacija za lokaciju",
+            description = "Čita unapred izračunate mesečne zbirove (format meseca: yyyy-MM)")
+    public ResponseEntity<List<MonthlyReservationStatsDTO>> getMonthlyReservationStats(
+            @RequestParam Long locationId,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM") YearMonth from,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM") YearMonth to) {
+        return ResponseEntity.ok(reportingService.getMonthlyReservationStats(locationId, from, to));
+    }
+
+    @GetMapping("/reservations/monthly/live")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('EMPLOYEE')")
+    @Operation(summary = "Živo prebrojavanje rezervacija za jedan mesec")
+    public ResponseEntity<Long> countReservationsInMonth(
+            @RequestParam Long locationId,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM") YearMonth month) {
+        return ResponseEntity.ok(reportingService.countReservationsInMonth(locationId, month));
+    }
+
+    @PostMapping("/reservations/monthly/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Ponovo izgradi mesečnu statistiku", description = "Admin only")
+    public ResponseEntity<List<MonthlyReservationStatsDTO>> rebuildMonthlyStats(
+            @RequestParam Long locationId,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM") YearMonth from,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM") YearMonth to) {
+        return ResponseEntity.ok(reportingService.rebuildMonthlyStats(locationId, from, to));
+    }
+}
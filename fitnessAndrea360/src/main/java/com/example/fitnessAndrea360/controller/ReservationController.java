@@ -1,23 +1,22 @@
 package com.example.fitnessAndrea360.controller;
 
 import com.example.fitnessAndrea360.dto.AppointmentCapacityDTO;
+import com.example.fitnessAndrea360.dto.ReservationBatchRequestDTO;
+import com.example.fitnessAndrea360.dto.ReservationBatchResultDTO;
 import com.example.fitnessAndrea360.dto.ReservationRequestDTO;
 import com.example.fitnessAndrea360.dto.ReservationResponseDTO;
 import com.example.fitnessAndrea360.model.Reservation;
+import com.example.fitnessAndrea360.service.ReservationBatchService;
 import com.example.fitnessAndrea360.service.ReservationService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
-import jakarta.validation.ValidationException;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDate;
@@ -31,26 +30,26 @@ import java.util.List;
 public class ReservationController {
 
     private final ReservationService reservationService;
+    private final ReservationBatchService reservationBatchService;
 
     @PostMapping
     @PreAuthorize("hasRole('ADMIN') or hasRole('EMPLOYEE') or hasRole('MEMBER')")
     @Operation(summary = "Kreiraj rezervaciju za termin",
-            description = "Kreiraj rezervaciju za postojeći termin")
+            description = "Kreiraj rezervaciju za postojeći termin; purchaseId je opcion")
     public ResponseEntity<ReservationResponseDTO> createReservation(@Valid @RequestBody ReservationRequestDTO request) {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        UserDetails userDetails = (UserDetails) auth.getPrincipal();
-
-        // Ako je član, MORA da ima purchaseId
-        if (auth.getAuthorities().stream().anyMatch(a -> a.getAuthority().equals("ROLE_MEMBER"))) {
-            if (request.getPurchaseId() == null) {
-                throw new ValidationException("Član mora da izabere paket za rezervaciju");
-            }
-        }
-
+        // Bez purchaseId-a server bira aktivnu kupovinu usluge koja ističe najranije
         ReservationResponseDTO reservation = reservationService.createReservation(request);
         return ResponseEntity.status(HttpStatus.CREATED).body(reservation);
     }
 
+    @PostMapping("/batch")
+    @PreAuthorize("hasRole('MEMBER')")
+    @Operation(summary = "Rezerviši više termina odjednom",
+            description = "Do 50 termina u jednoj transakciji; rezultat se vraća za svaku stavku posebno")
+    public ResponseEntity<ReservationBatchResultDTO> createReservations(@Valid @RequestBody ReservationBatchRequestDTO request) {
+        return ResponseEntity.ok(reservationBatchService.createReservations(request));
+    }
+
     @GetMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN') or hasRole('EMPLOYEE') or hasRole('MEMBER')")
     @Operation(summary = "Dohvati rezervaciju po ID-u")
@@ -1,9 +1,11 @@
 package com.example.fitnessAndrea360.controller;
 
+import com.example.fitnessAndrea360.config.TokenDetails;
 import com.example.fitnessAndrea360.dto.ServiceRequestDTO;
 import com.example.fitnessAndrea360.dto.ServiceResponseDTO;
 import com.example.fitnessAndrea360.exception.ResourceNotFoundException;
 import com.example.fitnessAndrea360.model.Service;
+import com.example.fitnessAndrea360.service.ResourceVersionRegistry;
 import com.example.fitnessAndrea360.service.ServiceService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
@@ -13,7 +15,9 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -25,6 +29,7 @@ import java.util.List;
 public class ServiceController {
 
     private final ServiceService serviceService;
+    private final ResourceVersionRegistry resourceVersionRegistry;
 
     @PostMapping
     @PreAuthorize("hasRole('ADMIN') or hasRole('EMPLOYEE')")
@@ -37,17 +42,48 @@ public class ServiceController {
 
     @GetMapping
     @PreAuthorize("hasRole('ADMIN') or hasRole('EMPLOYEE') or hasRole('MEMBER')")
-    public ResponseEntity<List<ServiceResponseDTO>> getAllServices() {
+    public ResponseEntity<List<ServiceResponseDTO>> getAllServices(Authentication authentication, WebRequest webRequest) {
+        // Admin vidi sve usluge, ostali usluge svoje lokacije iz tokena (stari token bez lokacije - bez ETag-a)
+        boolean admin = TokenDetails.hasRole(authentication, "ADMIN");
+        Long tokenLocationId = TokenDetails.locationId(authentication);
+        if (!admin && tokenLocationId == null) {
+            return ResponseEntity.ok(serviceService.getAllServices());
+        }
+
+        String etag = resourceVersionRegistry.servicesEtag(admin ? null : tokenLocationId);
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+
         List<ServiceResponseDTO> services = serviceService.getAllServices();
-        return ResponseEntity.ok(services);
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(ResourceVersionRegistry.CATALOG_CACHE)
+                .body(services);
     }
 
 
     @GetMapping("/location/{locationId}")
     @PreAuthorize("hasRole('ADMIN') or hasRole('EMPLOYEE') or hasRole('MEMBER')")
-    public ResponseEntity<List<ServiceResponseDTO>> getServicesByLocation(@PathVariable Long locationId) {
+    public ResponseEntity<List<ServiceResponseDTO>> getServicesByLocation(@PathVariable Long locationId,
+                                                                          Authentication authentication,
+                                                                          WebRequest webRequest) {
+        boolean accessFromToken = TokenDetails.hasRole(authentication, "ADMIN")
+                || locationId.equals(TokenDetails.locationId(authentication));
+        if (!accessFromToken) {
+            return ResponseEntity.ok(serviceService.getServicesByLocation(locationId));
+        }
+
+        String etag = resourceVersionRegistry.servicesEtag(locationId);
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+
         List<ServiceResponseDTO> services = serviceService.getServicesByLocation(locationId);
-        return ResponseEntity.ok(services);
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(ResourceVersionRegistry.CATALOG_CACHE)
+                .body(services);
     }
 
 
@@ -0,0 +1,34 @@
+package com.example.fitnessAndrea360.controller;
+
+import com.example.fitnessAndrea360.dto.SyncResponseDTO;
+import com.example.fitnessAndrea360.service.SyncService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/sync")
+@RequiredArgsConstructor
+@Tag(name = "Sync", description = "API za delta sinhronizaciju dashboard-a")
+@SecurityRequirement(name = "bearerAuth")
+public class SyncController {
+
+    private final SyncService syncService;
+
+    @GetMapping
+    @PreAuthorize("hasRole('ADMIN') or hasRole('EMPLOYEE') or hasRole('MEMBER')")
+    @Operation(summary = "Izmene termina, rezervacija i kupovina posle kursora",
+            description = "Bez since (ili sa prestarim kursorom) vraća samo početni kursor i resetRequired=true - " +
+                    "klijent tada učitava pune liste. Inače vraća trenutno stanje izmenjenih zapisa i ID-eve obrisanih; " +
+                    "dok je hasMore=true poziv se ponavlja sa novim kursorom. locationId filter važi samo za admina.")
+    public ResponseEntity<SyncResponseDTO> getChanges(
+            @RequestParam(required = false) Long since,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) Long locationId) {
+        return ResponseEntity.ok(syncService.getChangesSince(since, limit, locationId));
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.fitnessAndrea360.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AppointmentSeriesOccurrenceDTO {
+    private Long appointmentId;
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+    // Razlog preskakanja - null ako je termin kreiran
+    private String conflict;
+}
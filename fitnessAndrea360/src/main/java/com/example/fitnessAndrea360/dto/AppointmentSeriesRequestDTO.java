@@ -0,0 +1,46 @@
+package com.example.fitnessAndrea360.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Set;
+
+@Data
+public class AppointmentSeriesRequestDTO {
+
+    @NotNull(message = "Usluga je obavezna")
+    private Long serviceId;
+
+    @NotNull(message = "Član je obavezan")
+    private Long memberId;
+
+    // Obavezno samo za admina - zaposleni uvek koristi svoju lokaciju
+    private Long locationId;
+
+    @NotNull(message = "Datum početka serije je obavezan")
+    private LocalDate startDate;
+
+    @NotNull(message = "Datum kraja serije je obavezan")
+    private LocalDate endDate;
+
+    @NotEmpty(message = "Bar jedan dan u nedelji je obavezan")
+    private Set<DayOfWeek> daysOfWeek;
+
+    @NotNull(message = "Vreme početka je obavezno")
+    private LocalTime startTime;
+
+    // Razmak u nedeljama (1 = svake nedelje, 2 = svake druge...)
+    private Integer intervalWeeks = 1;
+
+    // Datumi koji se preskaču (praznici, zatvorena sala...)
+    private Set<LocalDate> exceptDates;
+
+    // true = preskoči termine u konfliktu, false = odbij celu seriju ako postoji konflikt
+    private Boolean skipConflicts = true;
+
+    private String notes;
+}
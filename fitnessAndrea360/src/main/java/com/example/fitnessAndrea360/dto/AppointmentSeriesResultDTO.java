@@ -0,0 +1,22 @@
+package com.example.fitnessAndrea360.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AppointmentSeriesResultDTO {
+    private Long serviceId;
+    private Long locationId;
+    private Integer occurrenceCount;
+    private Integer createdCount;
+    private Integer skippedCount;
+    private List<AppointmentSeriesOccurrenceDTO> created;
+    private List<AppointmentSeriesOccurrenceDTO> skipped;
+}
@@ -0,0 +1,23 @@
+package com.example.fitnessAndrea360.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArchiveRunResultDTO {
+
+    private LocalDateTime startedAt;
+    // Arhiviraju se završeni termini sa end_time pre ovog trenutka
+    private LocalDateTime cutoff;
+    private long archivedAppointments;
+    private long archivedReservations;
+    private int chunks;
+    private long durationMillis;
+}
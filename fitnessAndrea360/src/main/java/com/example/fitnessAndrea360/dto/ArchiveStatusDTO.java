@@ -0,0 +1,31 @@
+package com.example.fitnessAndrea360.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArchiveStatusDTO {
+
+    private int retentionDays;
+
+    // Vrući sloj (zbir preko svih šardova)
+    private long hotAppointments;
+    private long hotReservations;
+    private LocalDateTime oldestHotStartTime;
+
+    // Hladni sloj
+    private long archivedAppointments;
+    private long archivedReservations;
+
+    // Trajanje reprezentativnog "upcoming" upita nad vrućom tabelom (najsporiji šard)
+    private long upcomingQueryMillis;
+
+    private ArchiveRunResultDTO lastRun;
+}
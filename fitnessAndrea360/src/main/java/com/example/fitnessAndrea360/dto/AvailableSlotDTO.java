@@ -0,0 +1,22 @@
+package com.example.fitnessAndrea360.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AvailableSlotDTO {
+    private Long serviceId;
+    private Long locationId;
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+    // Veći skor = bolji predlog (nadovezuje se na postojeće termine, pa je raspored zbijeniji)
+    private Integer score;
+    private Boolean adjacentToBooking;
+}
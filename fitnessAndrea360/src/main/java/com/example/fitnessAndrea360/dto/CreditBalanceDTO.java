@@ -0,0 +1,18 @@
+package com.example.fitnessAndrea360.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CreditBalanceDTO {
+
+    private Long memberId;
+    private Long serviceId;
+    // Zbir dnevnika sesija za člana i uslugu
+    private int balance;
+}
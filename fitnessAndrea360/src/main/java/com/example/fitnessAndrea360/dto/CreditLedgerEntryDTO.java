@@ -0,0 +1,27 @@
+package com.example.fitnessAndrea360.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CreditLedgerEntryDTO {
+
+    private Long id;
+    private Long memberId;
+    private Long serviceId;
+    private String serviceName;
+    private Long purchaseId;
+    private Long reservationId;
+    // GRANT, CONSUME, REFUND, EXPIRE, CANCEL
+    private String entryType;
+    private int delta;
+    private String note;
+    private LocalDateTime createdAt;
+}
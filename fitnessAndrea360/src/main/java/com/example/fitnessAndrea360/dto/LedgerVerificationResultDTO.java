@@ -0,0 +1,26 @@
+package com.example.fitnessAndrea360.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LedgerVerificationResultDTO {
+
+    private LocalDateTime startedAt;
+    private long purchasesChecked;
+    // Kupovine kod kojih se remaining_uses razlikuje od zbira dnevnika
+    private long projectionDrift;
+    // Članovi čije se keširano stanje razlikovalo od dnevnika (uklonjeni iz keša)
+    private long cacheDrift;
+    // Prvih nekoliko kupovina sa razlikom, za istragu
+    private List<Long> driftedPurchaseIds;
+    private long durationMillis;
+}
@@ -0,0 +1,24 @@
+package com.example.fitnessAndrea360.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LocationActivityDTO {
+    // ScheduleChangedEvent.Type (APPOINTMENT_CANCELLED, RESERVATION_CREATED, ...)
+    private String type;
+    private Long locationId;
+    private Long appointmentId;
+    // Stanje termina posle izmene - null ako je termin obrisan
+    private String appointmentStatus;
+    private Integer currentCapacity;
+    private Integer maxCapacity;
+    private LocalDateTime occurredAt;
+}
@@ -0,0 +1,22 @@
+package com.example.fitnessAndrea360.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MemberImportResultDTO {
+    private Long locationId;
+    private Integer totalRows;
+    private Integer importedCount;
+    private Integer failedCount;
+    private Boolean dryRun;
+    private List<MemberImportRowErrorDTO> errors;
+    private Long elapsedMs;
+}
@@ -0,0 +1,19 @@
+package com.example.fitnessAndrea360.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MemberImportRowErrorDTO {
+    // Redni broj zapisa u CSV fajlu (zaglavlje je zapis 1)
+    private Integer line;
+    private String email;
+    private List<String> messages;
+}
@@ -0,0 +1,19 @@
+package com.example.fitnessAndrea360.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MonthlyReservationStatsDTO {
+    private Long locationId;
+    private Integer year;
+    private Integer month;
+    private Long reservationCount;
+    private Long cancelledCount;
+    private Long activeCount;
+}
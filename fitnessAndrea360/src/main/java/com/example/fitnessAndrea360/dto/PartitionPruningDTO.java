@@ -0,0 +1,26 @@
+package com.example.fitnessAndrea360.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PartitionPruningDTO {
+
+    private String shard;
+    private String query;
+    private String tableName;
+
+    // Particije koje upit čita prema EXPLAIN
+    private List<String> partitionsScanned;
+    private int totalPartitions;
+
+    // true kada upit ne čita sve particije
+    private boolean pruned;
+}
@@ -0,0 +1,30 @@
+package com.example.fitnessAndrea360.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PartitionStatusDTO {
+
+    private String shard;
+    private String tableName;
+    private boolean partitioned;
+
+    // Mesečne particije po redu (p_future na kraju)
+    private List<String> partitions;
+
+    // Granice pokrivenih meseci: početak najstarije i kraj najnovije mesečne particije
+    private LocalDate coveredFrom;
+    private LocalDate coveredUntil;
+
+    // Procena iz statistike (information_schema.PARTITIONS.TABLE_ROWS)
+    private long estimatedRows;
+}
@@ -0,0 +1,19 @@
+package com.example.fitnessAndrea360.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReservationBatchItemResultDTO {
+    private Long appointmentId;
+    private Long purchaseId;
+    private Boolean success;
+    private Long reservationId;
+    // Razlog odbijanja - null ako je rezervacija kreirana
+    private String error;
+}
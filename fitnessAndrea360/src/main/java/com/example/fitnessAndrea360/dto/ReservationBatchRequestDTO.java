@@ -0,0 +1,16 @@
+package com.example.fitnessAndrea360.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class ReservationBatchRequestDTO {
+
+    @NotEmpty(message = "Lista rezervacija je obavezna")
+    @Size(max = 50, message = "Najviše 50 rezervacija odjednom")
+    private List<@Valid ReservationRequestDTO> reservations;
+}
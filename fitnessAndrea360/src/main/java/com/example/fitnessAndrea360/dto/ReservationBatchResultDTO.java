@@ -0,0 +1,20 @@
+package com.example.fitnessAndrea360.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReservationBatchResultDTO {
+    private Integer requestedCount;
+    private Integer reservedCount;
+    private Integer failedCount;
+    // Isti redosled kao u zahtevu
+    private List<ReservationBatchItemResultDTO> items;
+}
@@ -9,7 +9,7 @@ public class ReservationRequestDTO {
     @NotNull(message = "Termin je obavezan")
     private Long appointmentId;
 
-    @NotNull(message = "Kupovina je obavezna")
+    // Opciono - bez kupovine server troši sesiju sa aktivne kupovine usluge koja ističe najranije
     private Long purchaseId;
 
     private String notes;
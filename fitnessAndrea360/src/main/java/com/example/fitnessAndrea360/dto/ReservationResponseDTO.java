@@ -28,4 +28,7 @@ public class ReservationResponseDTO {
     private String notes;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
+
+    // Šard sa kog je rezervacija pročitana - samo u admin pregledu preko svih šardova (ID-evi su jedinstveni po šardu)
+    private String shard;
 }
\ No newline at end of file
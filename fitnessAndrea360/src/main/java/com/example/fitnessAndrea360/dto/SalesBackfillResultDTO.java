@@ -0,0 +1,20 @@
+package com.example.fitnessAndrea360.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SalesBackfillResultDTO {
+    private LocalDate from;
+    private LocalDate to;
+    private Long rowsScanned;
+    private Integer rollupRowsWritten;
+    private Long elapsedMs;
+}
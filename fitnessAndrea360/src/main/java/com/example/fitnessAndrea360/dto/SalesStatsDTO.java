@@ -0,0 +1,25 @@
+package com.example.fitnessAndrea360.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SalesStatsDTO {
+    private LocalDate periodStart; // dan ili prvi dan meseca (null za zbir po usluzi)
+    private Long serviceId;
+    private String serviceName;
+    private BigDecimal revenueEur;
+    private Long unitsSold;
+    private Long transactionCount;
+    private BigDecimal refundEur;
+    private Long refundCount;
+    private BigDecimal netRevenueEur;
+}
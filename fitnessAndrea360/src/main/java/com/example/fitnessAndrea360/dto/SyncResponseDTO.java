@@ -0,0 +1,30 @@
+package com.example.fitnessAndrea360.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SyncResponseDTO {
+    // Sledeći poziv šalje ovu vrednost kao since
+    private Long cursor;
+    // Ima još izmena posle cursor-a - pozvati odmah ponovo
+    private Boolean hasMore;
+    // Kursor je prestar (izmene obrisane) ili nije poslat - klijent ponovo učitava pune liste
+    private Boolean resetRequired;
+
+    // Trenutno stanje dodatih/izmenjenih zapisa
+    private List<AppointmentResponseDTO> appointments;
+    private List<ReservationResponseDTO> reservations;
+    private List<PurchaseResponseDTO> purchases;
+
+    private List<Long> deletedAppointmentIds;
+    private List<Long> deletedReservationIds;
+    private List<Long> deletedPurchaseIds;
+}
@@ -0,0 +1,14 @@
+package com.example.fitnessAndrea360.event;
+
+import java.util.Set;
+
+/**
+ * Promena kataloga - usluga (sa lokacijama na kojima je dostupna) ili lokacije.
+ */
+public record CatalogChangedEvent(Catalog catalog, Long id, Set<Long> locationIds) {
+
+    public enum Catalog {
+        SERVICES,
+        LOCATIONS
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.fitnessAndrea360.event;
+
+/**
+ * Promena sesija člana - kupovina, potrošnja ili povraćaj sesije uz rezervaciju, istek ili otkazivanje kupovine.
+ * Objavljuje je CreditLedgerService u transakciji upisa; EntitlementCache posle commit-a poništava člana.
+ */
+public record EntitlementChangedEvent(String shard, Long memberId, Type type) {
+
+    public enum Type {
+        PURCHASE_GRANTED,
+        RESERVATION_CONSUMED,
+        RESERVATION_REFUNDED,
+        PURCHASE_EXPIRED,
+        PURCHASE_CANCELLED
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.fitnessAndrea360.event;
+
+/**
+ * Promena rasporeda na lokaciji - termin ili zauzetost termina (rezervacije).
+ * Objavljuje se iz putanja upisa unutar transakcije; slušaoci reaguju tek posle commit-a.
+ */
+public record ScheduleChangedEvent(Long locationId, Long appointmentId, Type type) {
+
+    public enum Type {
+        APPOINTMENT_CREATED,
+        APPOINTMENT_UPDATED,
+        APPOINTMENT_CANCELLED,
+        APPOINTMENT_DELETED,
+        RESERVATION_CREATED,
+        RESERVATION_UPDATED,
+        RESERVATION_CANCELLED,
+        RESERVATION_DELETED
+    }
+}
@@ -8,6 +8,8 @@ import lombok.Setter;
 
 import java.time.LocalDateTime;
 
+// Veze bez stranih ključeva (NO_CONSTRAINT): particionisana tabela ih ne podržava (PartitionMaintenanceService),
+// a ddl-auto=update bi ih inače ponovo dodavao posle migracije
 @Entity
 @Table(name = "appointments")
 @Getter
@@ -22,17 +24,17 @@ public class Appointment {
 
     // Termin je za određenu uslugu
     @ManyToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "service_id", nullable = false)
+    @JoinColumn(name = "service_id", nullable = false, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     private Service service;
 
     // Termin je za određenog člana
     @ManyToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "member_id", nullable = false)
+    @JoinColumn(name = "member_id", nullable = false, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     private Member member;
 
     // Termin je na određenoj lokaciji
     @ManyToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "location_id", nullable = false)
+    @JoinColumn(name = "location_id", nullable = false, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     private Location location;
 
     @Column(name = "max_capacity", nullable = false)
@@ -43,7 +45,7 @@ public class Appointment {
 
     // Ko je zakazao termin (može biti admin, zaposleni ili član sam sebi)
     @ManyToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "created_by")
+    @JoinColumn(name = "created_by", foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     private User createdBy;
 
     @Column(name = "start_time", nullable = false)
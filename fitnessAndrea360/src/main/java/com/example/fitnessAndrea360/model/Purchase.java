@@ -3,13 +3,16 @@ package com.example.fitnessAndrea360.model;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 
+// remaining_uses i status menja CreditLedgerService uslovnim UPDATE-om - save() piše samo izmenjene kolone
 @Entity
 @Table(name = "purchases")
+@DynamicUpdate
 @Getter
 @Setter
 public class Purchase {
@@ -6,6 +6,7 @@ import lombok.Setter;
 
 import java.time.LocalDateTime;
 
+// Veze bez stranih ključeva (NO_CONSTRAINT), kao u Appointment - tabela može biti particionisana
 @Entity
 @Table(name = "reservations")
 @Getter
@@ -17,15 +18,15 @@ public class Reservation {
     private Long id;
 
     @ManyToOne
-    @JoinColumn(name = "member_id", nullable = false)
+    @JoinColumn(name = "member_id", nullable = false, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     private Member member;
 
     @ManyToOne
-    @JoinColumn(name = "appointment_id", nullable = false)
+    @JoinColumn(name = "appointment_id", nullable = false, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     private Appointment appointment;
 
     @ManyToOne
-    @JoinColumn(name = "purchase_id", nullable = false)
+    @JoinColumn(name = "purchase_id", nullable = false, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     private Purchase purchase;
 
     @Enumerated(EnumType.STRING)
@@ -36,15 +37,40 @@ public class Reservation {
     @Column(length = 1000)
     private String notes;
 
+    // Kopije polja termina - upiti po datumu, lokaciji i usluzi bez join-a sa appointments;
+    // start_time je i ključ particionisanja tabele rezervacija
+    @Column(name = "start_time")
+    private LocalDateTime startTime;
+
+    @Column(name = "location_id")
+    private Long locationId;
+
+    @Column(name = "service_id")
+    private Long serviceId;
+
     @Column(name = "created_at")
     private LocalDateTime createdAt = LocalDateTime.now();
 
     @Column(name = "updated_at")
     private LocalDateTime updatedAt = LocalDateTime.now();
 
+    @PrePersist
+    protected void onCreate() {
+        syncAppointmentCopies();
+    }
+
     @PreUpdate
     protected void onUpdate() {
         updatedAt = LocalDateTime.now();
+        syncAppointmentCopies();
+    }
+
+    private void syncAppointmentCopies() {
+        if (appointment != null) {
+            startTime = appointment.getStartTime();
+            locationId = appointment.getLocation() != null ? appointment.getLocation().getId() : null;
+            serviceId = appointment.getService() != null ? appointment.getService().getId() : null;
+        }
     }
 
     public enum Status {
@@ -0,0 +1,38 @@
+package com.example.fitnessAndrea360.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// Mesečni zbir rezervacija po lokaciji - ažurira se inkrementalno kroz životni ciklus rezervacije
+@Entity
+@Table(name = "reservation_monthly_stats",
+        uniqueConstraints = @UniqueConstraint(name = "unique_location_period",
+                columnNames = {"location_id", "period_start"}))
+@Getter
+@Setter
+public class ReservationMonthlyStat {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "location_id", nullable = false)
+    private Long locationId;
+
+    // Prvi dan meseca na koji se statistika odnosi
+    @Column(name = "period_start", nullable = false)
+    private LocalDate periodStart;
+
+    @Column(name = "reservation_count", nullable = false)
+    private Long reservationCount = 0L;
+
+    @Column(name = "cancelled_count", nullable = false)
+    private Long cancelledCount = 0L;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt = LocalDateTime.now();
+}
@@ -0,0 +1,51 @@
+package com.example.fitnessAndrea360.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// Dnevni zbir prodaje po lokaciji i usluzi - ažurira se inkrementalno pri potvrdi plaćanja
+@Entity
+@Table(name = "sales_daily_stats",
+        uniqueConstraints = @UniqueConstraint(name = "unique_sales_day",
+                columnNames = {"stat_date", "location_id", "service_id"}),
+        indexes = @Index(name = "idx_sales_location_date", columnList = "location_id, stat_date"))
+@Getter
+@Setter
+public class SalesDailyStat {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "stat_date", nullable = false)
+    private LocalDate statDate;
+
+    @Column(name = "location_id", nullable = false)
+    private Long locationId;
+
+    @Column(name = "service_id", nullable = false)
+    private Long serviceId;
+
+    @Column(name = "revenue_eur", nullable = false, precision = 12, scale = 2)
+    private BigDecimal revenueEur = BigDecimal.ZERO;
+
+    @Column(name = "units_sold", nullable = false)
+    private Long unitsSold = 0L;
+
+    @Column(name = "transaction_count", nullable = false)
+    private Long transactionCount = 0L;
+
+    @Column(name = "refund_eur", nullable = false, precision = 12, scale = 2)
+    private BigDecimal refundEur = BigDecimal.ZERO;
+
+    @Column(name = "refund_count", nullable = false)
+    private Long refundCount = 0L;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt = LocalDateTime.now();
+}
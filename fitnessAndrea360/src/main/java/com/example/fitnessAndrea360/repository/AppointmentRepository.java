@@ -1,12 +1,15 @@
 package com.example.fitnessAndrea360.repository;
 
 import com.example.fitnessAndrea360.model.Appointment;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -43,6 +46,33 @@ public interface AppointmentRepository extends JpaRepository<Appointment, Long>
 
 
 
+    // Neotkazani termini lokacije koji se preklapaju sa [from, to) - za ScheduleConflictGuard i AppointmentIntervalIndex
+    // Vraća redove: [id, memberId, locationId, startTime, endTime]
+    @Query("SELECT a.id, a.member.id, a.location.id, a.startTime, a.endTime FROM Appointment a WHERE " +
+            "a.location.id = :locationId AND " +
+            "a.status NOT IN ('CANCELLED') AND " +
+            "a.startTime < :to AND a.endTime > :from")
+    List<Object[]> findIntervalsByLocation(
+            @Param("locationId") Long locationId,
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to);
+
+    // Isto za termine člana (na bilo kojoj lokaciji)
+    // Vraća redove: [id, memberId, locationId, startTime, endTime]
+    @Query("SELECT a.id, a.member.id, a.location.id, a.startTime, a.endTime FROM Appointment a WHERE " +
+            "a.member.id = :memberId AND " +
+            "a.status NOT IN ('CANCELLED') AND " +
+            "a.startTime < :to AND a.endTime > :from")
+    List<Object[]> findIntervalsByMember(
+            @Param("memberId") Long memberId,
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to);
+
+    // Zaključava termine uvek rastućim redosledom ID-a da dve paralelne grupne rezervacije ne bi ušle u deadlock
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM Appointment a JOIN FETCH a.service WHERE a.id IN :ids ORDER BY a.id")
+    List<Appointment> findAllByIdForUpdate(@Param("ids") Collection<Long> ids);
+
     // Pronađi termine koji počinju nakon određenog vremena i imaju određeni status
     List<Appointment> findByStartTimeAfterAndStatus(LocalDateTime startTime, String status);
 
@@ -0,0 +1,241 @@
+package com.example.fitnessAndrea360.repository;
+
+import com.example.fitnessAndrea360.dto.AppointmentResponseDTO;
+import com.example.fitnessAndrea360.dto.ReservationResponseDTO;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Hladni sloj termina i rezervacija (appointments_archive, reservations_archive).
+ * Premeštanje ide u delovima: INSERT ... SELECT u arhivu pa DELETE iz vruće tabele, u istoj transakciji.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ArchiveJdbcRepository {
+
+    public record TierSizes(long hotAppointments, long hotReservations,
+                            long archivedAppointments, long archivedReservations) {
+    }
+
+    // Završni statusi - termin u nekom od njih se više ne menja
+    private static final String FINAL_STATUSES = "('COMPLETED', 'CANCELLED', 'NO_SHOW')";
+
+    private static final String APPOINTMENT_COLUMNS =
+            "id, service_id, member_id, location_id, max_capacity, current_capacity, created_by, " +
+            "start_time, end_time, status, notes, created_at, updated_at";
+
+    private static final String RESERVATION_COLUMNS =
+            "id, member_id, appointment_id, purchase_id, status, notes, start_time, location_id, service_id, " +
+            "created_at, updated_at";
+
+    // Isti oblik kao ReservationJdbcRepository.RESERVATION_VIEW_SQL, nad arhivskim tabelama
+    private static final String ARCHIVED_RESERVATION_VIEW_SQL =
+            "SELECT r.id, r.status, r.notes, r.created_at, r.updated_at, r.member_id, " +
+            "m.first_name AS member_first_name, m.last_name AS member_last_name, " +
+            "r.appointment_id, a.start_time, a.end_time, s.name AS service_name, " +
+            "a.location_id, l.name AS location_name, r.purchase_id, ps.name AS purchase_name " +
+            "FROM reservations_archive r " +
+            "JOIN appointments_archive a ON a.id = r.appointment_id " +
+            "JOIN members m ON m.id = r.member_id " +
+            "JOIN services s ON s.id = a.service_id " +
+            "JOIN locations l ON l.id = a.location_id " +
+            "LEFT JOIN purchases p ON p.id = r.purchase_id " +
+            "LEFT JOIN services ps ON ps.id = p.service_id ";
+
+    private static final String ARCHIVED_APPOINTMENT_VIEW_SQL =
+            "SELECT a.*, s.name AS service_name, s.price_eur, s.duration_minutes, s.max_capacity AS service_max_capacity, " +
+            "m.first_name AS member_first_name, m.last_name AS member_last_name, m.email AS member_email, " +
+            "l.name AS location_name, u.first_name AS created_by_first_name, u.last_name AS created_by_last_name " +
+            "FROM appointments_archive a " +
+            "JOIN services s ON s.id = a.service_id " +
+            "JOIN members m ON m.id = a.member_id " +
+            "JOIN locations l ON l.id = a.location_id " +
+            "LEFT JOIN users u ON u.id = a.created_by ";
+
+    // Kao AppointmentService.mapToResponse (maxCapacity je kapacitet usluge)
+    private static final RowMapper<AppointmentResponseDTO> ARCHIVED_APPOINTMENT_MAPPER = (rs, rowNum) -> {
+        Long createdById = rs.getObject("created_by", Long.class);
+        return AppointmentResponseDTO.builder()
+                .id(rs.getLong("id"))
+                .serviceId(rs.getLong("service_id"))
+                .serviceName(rs.getString("service_name"))
+                .servicePrice(rs.getBigDecimal("price_eur"))
+                .durationMinutes(rs.getObject("duration_minutes", Integer.class))
+                .maxCapacity(rs.getObject("service_max_capacity", Integer.class))
+                .currentCapacity(rs.getInt("current_capacity"))
+                .memberId(rs.getLong("member_id"))
+                .memberName(rs.getString("member_first_name") + " " + rs.getString("member_last_name"))
+                .memberEmail(rs.getString("member_email"))
+                .locationId(rs.getLong("location_id"))
+                .locationName(rs.getString("location_name"))
+                .createdById(createdById)
+                .createdByName(createdById != null
+                        ? rs.getString("created_by_first_name") + " " + rs.getString("created_by_last_name") : null)
+                .startTime(toLocalDateTime(rs.getTimestamp("start_time")))
+                .endTime(toLocalDateTime(rs.getTimestamp("end_time")))
+                .status(rs.getString("status"))
+                .notes(rs.getString("notes"))
+                .createdAt(toLocalDateTime(rs.getTimestamp("created_at")))
+                .updatedAt(toLocalDateTime(rs.getTimestamp("updated_at")))
+                .build();
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // ========== PREMEŠTANJE ==========
+
+    public List<Long> findArchivable(LocalDateTime endedBefore, int limit) {
+        return jdbcTemplate.queryForList(
+                "SELECT id FROM appointments WHERE end_time < ? AND status IN " + FINAL_STATUSES + " ORDER BY id LIMIT ?",
+                Long.class, Timestamp.valueOf(endedBefore), limit);
+    }
+
+    /**
+     * Premešta termine i sve njihove rezervacije. Vraća [termina, rezervacija].
+     * Poziva se u transakciji; status se ponovo proverava, pa termin izmenjen u međuvremenu ostaje.
+     */
+    public int[] moveToArchive(List<Long> appointmentIds, LocalDateTime archivedAt) {
+        String ids = placeholders(appointmentIds.size());
+        List<Object> params = new ArrayList<>();
+        params.add(Timestamp.valueOf(archivedAt));
+        params.addAll(appointmentIds);
+        Object[] withArchivedAt = params.toArray();
+        Object[] idsOnly = appointmentIds.toArray();
+
+        int appointments = jdbcTemplate.update(
+                "INSERT INTO appointments_archive (" + APPOINTMENT_COLUMNS + ", archived_at) " +
+                "SELECT " + APPOINTMENT_COLUMNS + ", ? FROM appointments " +
+                "WHERE id IN (" + ids + ") AND status IN " + FINAL_STATUSES,
+                withArchivedAt);
+        if (appointments == 0) {
+            return new int[]{0, 0};
+        }
+        // Samo termini koji su upravo upisani u arhivu
+        String archived = "SELECT id FROM appointments_archive WHERE id IN (" + ids + ")";
+        List<Long> archivedIds = jdbcTemplate.queryForList(archived, Long.class, idsOnly);
+        String archivedList = placeholders(archivedIds.size());
+        Object[] archivedParams = archivedIds.toArray();
+
+        List<Object> reservationParams = new ArrayList<>();
+        reservationParams.add(Timestamp.valueOf(archivedAt));
+        reservationParams.addAll(archivedIds);
+        int reservations = jdbcTemplate.update(
+                "INSERT INTO reservations_archive (" + RESERVATION_COLUMNS + ", archived_at) " +
+                "SELECT " + RESERVATION_COLUMNS + ", ? FROM reservations WHERE appointment_id IN (" + archivedList + ")",
+                reservationParams.toArray());
+        jdbcTemplate.update("DELETE FROM reservations WHERE appointment_id IN (" + archivedList + ")", archivedParams);
+        jdbcTemplate.update("DELETE FROM appointments WHERE id IN (" + archivedList + ")", archivedParams);
+        return new int[]{appointments, reservations};
+    }
+
+    /**
+     * Kopira celu mesečnu particiju u arhivu pre DROP PARTITION (PartitionMaintenanceService).
+     * INSERT IGNORE - ponovljeno kopiranje posle prekinutog prolaza ne pravi duplikate.
+     */
+    public int copyAppointmentPartition(String partition, LocalDateTime archivedAt) {
+        return jdbcTemplate.update(
+                "INSERT IGNORE INTO appointments_archive (" + APPOINTMENT_COLUMNS + ", archived_at) " +
+                "SELECT " + APPOINTMENT_COLUMNS + ", ? FROM appointments PARTITION (`" + partition + "`)",
+                Timestamp.valueOf(archivedAt));
+    }
+
+    public int copyReservationPartition(String partition, LocalDateTime archivedAt) {
+        return jdbcTemplate.update(
+                "INSERT IGNORE INTO reservations_archive (" + RESERVATION_COLUMNS + ", archived_at) " +
+                "SELECT " + RESERVATION_COLUMNS + ", ? FROM reservations PARTITION (`" + partition + "`)",
+                Timestamp.valueOf(archivedAt));
+    }
+
+    /**
+     * Redovi particije koji nemaju kopiju u arhivi - particija se sme ukloniti tek kada je ovo 0.
+     * Arhivska tabela nije particionisana, pa se poredi po id.
+     */
+    public long countUnarchivedInPartition(String table, String partition) {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM " + table + " PARTITION (`" + partition + "`) t " +
+                "WHERE NOT EXISTS (SELECT 1 FROM " + table + "_archive x WHERE x.id = t.id)",
+                Long.class);
+    }
+
+    // Kopije polja termina za rezervacije arhivirane pre uvođenja kolona (jednokratno, PartitionMaintenanceService)
+    public int backfillAppointmentCopies() {
+        return jdbcTemplate.update(
+                "UPDATE reservations_archive r JOIN appointments_archive a ON a.id = r.appointment_id " +
+                "SET r.start_time = a.start_time, r.location_id = a.location_id, r.service_id = a.service_id " +
+                "WHERE r.location_id IS NULL");
+    }
+
+    // ========== ČITANJE ARHIVE ==========
+
+    public List<ReservationResponseDTO> findReservationsByMember(Long memberId) {
+        return jdbcTemplate.query(ARCHIVED_RESERVATION_VIEW_SQL + "WHERE r.member_id = ? ORDER BY r.start_time",
+                ReservationJdbcRepository.RESERVATION_VIEW_MAPPER, memberId);
+    }
+
+    // locationId i memberId su opcioni filteri; filtrira po kopijama polja termina (idx_reservations_archive_location_time)
+    public List<ReservationResponseDTO> findReservationsBetween(LocalDateTime from, LocalDateTime to,
+                                                                Long locationId, Long memberId) {
+        StringBuilder sql = new StringBuilder(ARCHIVED_RESERVATION_VIEW_SQL + "WHERE r.start_time BETWEEN ? AND ?");
+        List<Object> params = new ArrayList<>(List.of(Timestamp.valueOf(from), Timestamp.valueOf(to)));
+        if (locationId != null) {
+            sql.append(" AND r.location_id = ?");
+            params.add(locationId);
+        }
+        if (memberId != null) {
+            sql.append(" AND r.member_id = ?");
+            params.add(memberId);
+        }
+        sql.append(" ORDER BY r.start_time");
+        return jdbcTemplate.query(sql.toString(), ReservationJdbcRepository.RESERVATION_VIEW_MAPPER, params.toArray());
+    }
+
+    public List<AppointmentResponseDTO> findAppointmentsBetween(LocalDateTime from, LocalDateTime to) {
+        return jdbcTemplate.query(ARCHIVED_APPOINTMENT_VIEW_SQL + "WHERE a.start_time BETWEEN ? AND ? ORDER BY a.start_time",
+                ARCHIVED_APPOINTMENT_MAPPER, Timestamp.valueOf(from), Timestamp.valueOf(to));
+    }
+
+    public List<AppointmentResponseDTO> findAppointmentsByMember(Long memberId) {
+        return jdbcTemplate.query(ARCHIVED_APPOINTMENT_VIEW_SQL + "WHERE a.member_id = ? ORDER BY a.start_time",
+                ARCHIVED_APPOINTMENT_MAPPER, memberId);
+    }
+
+    // ========== MERENJE ==========
+
+    public TierSizes countTiers() {
+        return new TierSizes(countRows("appointments"), countRows("reservations"),
+                countRows("appointments_archive"), countRows("reservations_archive"));
+    }
+
+    public Optional<LocalDateTime> findOldestHotStart() {
+        Timestamp oldest = jdbcTemplate.queryForObject("SELECT MIN(start_time) FROM appointments", Timestamp.class);
+        return Optional.ofNullable(oldest).map(Timestamp::toLocalDateTime);
+    }
+
+    // Reprezentativan "upcoming" upit nad vrućom tabelom (kao findByStartTimeAfterAndStatus)
+    public long countUpcoming(LocalDateTime now) {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM appointments WHERE start_time > ? AND status = 'SCHEDULED'",
+                Long.class, Timestamp.valueOf(now));
+    }
+
+    private long countRows(String table) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Long.class);
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.fitnessAndrea360.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Grupni UPDATE-i za automatsko napredovanje statusa termina i rezervacija (AttendanceJob).
+ * Svaki UPDATE ponavlja uslov statusa, pa ručna izmena napravljena u međuvremenu ostaje netaknuta.
+ */
+@Repository
+@RequiredArgsConstructor
+public class AttendanceJdbcRepository {
+
+    public record AppointmentRef(Long id, Long locationId) {
+    }
+
+    public record ReservationRef(Long id, Long memberId, Long appointmentId) {
+    }
+
+    private static final String OPEN_STATUSES = "('SCHEDULED', 'CONFIRMED')";
+    private static final String CLOSABLE_STATUSES = "('SCHEDULED', 'CONFIRMED', 'IN_PROGRESS')";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // Termini koji su počeli, a još nisu za zatvaranje
+    public List<AppointmentRef> findToStart(LocalDateTime now, LocalDateTime closeBefore, int limit) {
+        return jdbcTemplate.query(
+                "SELECT id, location_id FROM appointments WHERE status IN " + OPEN_STATUSES +
+                " AND start_time <= ? AND end_time > ? ORDER BY id LIMIT ?",
+                (rs, rowNum) -> new AppointmentRef(rs.getLong("id"), rs.getLong("location_id")),
+                Timestamp.valueOf(now), Timestamp.valueOf(closeBefore), limit);
+    }
+
+    // Termini završeni pre closeBefore (kraj + vreme za ručno evidentiranje dolazaka)
+    public List<AppointmentRef> findToClose(LocalDateTime closeBefore, int limit) {
+        return jdbcTemplate.query(
+                "SELECT id, location_id FROM appointments WHERE status IN " + CLOSABLE_STATUSES +
+                " AND end_time <= ? ORDER BY id LIMIT ?",
+                (rs, rowNum) -> new AppointmentRef(rs.getLong("id"), rs.getLong("location_id")),
+                Timestamp.valueOf(closeBefore), limit);
+    }
+
+    public int markInProgress(List<Long> appointmentIds) {
+        return updateIn("UPDATE appointments SET status = 'IN_PROGRESS' WHERE status IN " + OPEN_STATUSES +
+                " AND id IN (%s)", List.of(), appointmentIds);
+    }
+
+    public List<ReservationRef> findConfirmedReservations(List<Long> appointmentIds) {
+        return jdbcTemplate.query(
+                "SELECT id, member_id, appointment_id FROM reservations WHERE status = 'CONFIRMED' AND appointment_id IN (" +
+                placeholders(appointmentIds.size()) + ")",
+                (rs, rowNum) -> new ReservationRef(rs.getLong("id"), rs.getLong("member_id"), rs.getLong("appointment_id")),
+                appointmentIds.toArray());
+    }
+
+    public int markNoShow(List<Long> reservationIds, LocalDateTime now) {
+        if (reservationIds.isEmpty()) {
+            return 0;
+        }
+        return updateIn("UPDATE reservations SET status = 'NO_SHOW', updated_at = ? WHERE status = 'CONFIRMED' AND id IN (%s)",
+                List.of(Timestamp.valueOf(now)), reservationIds);
+    }
+
+    /**
+     * Zatvara termine: NO_SHOW ako ima izostanaka a niko nije došao, inače COMPLETED.
+     * Vraća broj zatvorenih termina po novom statusu.
+     */
+    public Map<String, Integer> close(List<Long> appointmentIds) {
+        updateIn("UPDATE appointments SET status = CASE " +
+                "WHEN EXISTS (SELECT 1 FROM reservations r WHERE r.appointment_id = appointments.id AND r.status = 'NO_SHOW') " +
+                "AND NOT EXISTS (SELECT 1 FROM reservations r WHERE r.appointment_id = appointments.id AND r.status = 'ATTENDED') " +
+                "THEN 'NO_SHOW' ELSE 'COMPLETED' END " +
+                "WHERE status IN " + CLOSABLE_STATUSES + " AND id IN (%s)", List.of(), appointmentIds);
+
+        Map<String, Integer> closed = new HashMap<>();
+        jdbcTemplate.query(
+                "SELECT status, COUNT(*) AS closed FROM appointments WHERE status IN ('COMPLETED', 'NO_SHOW') AND id IN (" +
+                placeholders(appointmentIds.size()) + ") GROUP BY status",
+                rs -> {
+                    closed.put(rs.getString("status"), rs.getInt("closed"));
+                },
+                appointmentIds.toArray());
+        return closed;
+    }
+
+    private int updateIn(String sqlWithIdList, List<Object> leadingParams, List<Long> ids) {
+        List<Object> params = new ArrayList<>(leadingParams);
+        params.addAll(ids);
+        return jdbcTemplate.update(String.format(sqlWithIdList, placeholders(ids.size())), params.toArray());
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.fitnessAndrea360.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Dnevnik izmena (change_log) za delta sinhronizaciju klijenata. Upisuje se u istoj transakciji
+ * kao i sama izmena, pa se red pojavljuje tačno kada i izmena.
+ *
+ * Kursor je seq, a ne id: id se dodeljuje pri INSERT-u, pa transakcija sa manjim id-em može da se
+ * commit-uje posle klijentovog čitanja i ostala bi iza njegovog kursora. seq dodeljuje sekvencer
+ * (assignSequence) samo redovima koji su već commit-ovani, pod bravom reda change_log_sequence -
+ * red commit-ovan kasnije uvek dobija veći seq od svih već viđenih.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ChangeLogRepository {
+
+    public enum EntityType {
+        APPOINTMENT, RESERVATION, PURCHASE
+    }
+
+    public enum Operation {
+        INSERT, UPDATE, DELETE
+    }
+
+    public record Change(EntityType entityType, Long entityId, Operation operation, Long locationId, Long memberId) {
+    }
+
+    public record Entry(long cursor, EntityType entityType, Long entityId, Operation operation) {
+    }
+
+    private static final String INSERT_SQL =
+            "INSERT INTO change_log (entity_type, entity_id, operation, location_id, member_id) VALUES (?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void record(EntityType entityType, Long entityId, Operation operation, Long locationId, Long memberId) {
+        jdbcTemplate.update(INSERT_SQL, entityType.name(), entityId, operation.name(), locationId, memberId);
+    }
+
+    public void recordAll(List<Change> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, changes, changes.size(), (ps, change) -> {
+            ps.setString(1, change.entityType().name());
+            ps.setLong(2, change.entityId());
+            ps.setString(3, change.operation().name());
+            ps.setObject(4, change.locationId());
+            ps.setObject(5, change.memberId());
+        });
+    }
+
+    /**
+     * Dodeljuje seq commit-ovanim redovima bez kursora, redom po id (najviše limit). Poziva se u transakciji;
+     * brava na redu change_log_sequence čini da kursore dodeljuje jedan prolaz u isto vreme, a redovi
+     * transakcija koje još nisu commit-ovane se ne vide i dobijaju seq u nekom od sledećih prolaza.
+     * Vraća broj dodeljenih kursora.
+     */
+    public int assignSequence(int limit) {
+        List<Long> locked = jdbcTemplate.queryForList(
+                "SELECT last_seq FROM change_log_sequence WHERE id = 1 FOR UPDATE", Long.class);
+        if (locked.isEmpty()) {
+            return initializeSequence();
+        }
+        long lastSeq = locked.get(0);
+        List<Long> ids = jdbcTemplate.queryForList(
+                "SELECT id FROM change_log WHERE seq IS NULL ORDER BY id LIMIT ?", Long.class, limit);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        List<Object[]> assignments = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            assignments.add(new Object[]{++lastSeq, id});
+        }
+        jdbcTemplate.batchUpdate("UPDATE change_log SET seq = ? WHERE id = ?", assignments);
+        jdbcTemplate.update("UPDATE change_log_sequence SET last_seq = ? WHERE id = 1", lastSeq);
+        return ids.size();
+    }
+
+    // Prvi prolaz: redovi upisani pre seq kolone zadržavaju id kao kursor, pa postojeći kursori klijenata važe
+    private int initializeSequence() {
+        int migrated = jdbcTemplate.update("UPDATE change_log SET seq = id WHERE seq IS NULL");
+        jdbcTemplate.update("INSERT INTO change_log_sequence (id, last_seq) SELECT 1, COALESCE(MAX(seq), 0) FROM change_log");
+        return migrated;
+    }
+
+    /**
+     * Izmene posle kursora, rastuće po kursoru. Oba filtera su opciona:
+     * locationId - samo izmene na lokaciji; memberId - član vidi termine svoje lokacije
+     * i samo sopstvene rezervacije i kupovine.
+     */
+    public List<Entry> findAfter(long cursor, Long locationId, Long memberId, int limit) {
+        StringBuilder sql = new StringBuilder(
+                "SELECT seq, entity_type, entity_id, operation FROM change_log WHERE seq > ?");
+        List<Object> params = new ArrayList<>(List.of(cursor));
+
+        if (memberId != null) {
+            sql.append(" AND ((entity_type = 'APPOINTMENT' AND location_id = ?) OR member_id = ?)");
+            params.add(locationId);
+            params.add(memberId);
+        } else if (locationId != null) {
+            sql.append(" AND location_id = ?");
+            params.add(locationId);
+        }
+        sql.append(" ORDER BY seq LIMIT ?");
+        params.add(limit);
+
+        return jdbcTemplate.query(sql.toString(), (rs, rowNum) -> new Entry(
+                rs.getLong("seq"),
+                EntityType.valueOf(rs.getString("entity_type")),
+                rs.getLong("entity_id"),
+                Operation.valueOf(rs.getString("operation"))), params.toArray());
+    }
+
+    // Najveći dodeljen kursor - početna tačka za klijenta posle punog učitavanja
+    public long findHead() {
+        Long head = jdbcTemplate.queryForObject("SELECT MAX(seq) FROM change_log", Long.class);
+        return head != null ? head : 0L;
+    }
+
+    public Optional<Long> findOldestCursor() {
+        return Optional.ofNullable(jdbcTemplate.queryForObject("SELECT MIN(seq) FROM change_log", Long.class));
+    }
+
+    public Optional<Long> findNewestCursor() {
+        return Optional.ofNullable(jdbcTemplate.queryForObject("SELECT MAX(seq) FROM change_log", Long.class));
+    }
+
+    /**
+     * Red keepFromSeq ostaje i kada je star, da bi se i nad "praznim" dnevnikom prepoznao zastareo kursor.
+     * Redovi bez kursora se ne brišu (seq < ? nije tačno za NULL) - klijenti ih još nisu mogli videti.
+     */
+    public int deleteOlderThan(LocalDateTime cutoff, long keepFromSeq) {
+        return jdbcTemplate.update("DELETE FROM change_log WHERE changed_at < ? AND seq < ?",
+                Timestamp.valueOf(cutoff), keepFromSeq);
+    }
+}
@@ -0,0 +1,290 @@
+package com.example.fitnessAndrea360.repository;
+
+import com.example.fitnessAndrea360.dto.CreditLedgerEntryDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Dnevnik sesija (credit_ledger) i projekcija purchases.remaining_uses.
+ *
+ * Unosi se samo dodaju; član i usluga se uvek prepisuju sa kupovine (INSERT ... SELECT), pa unos
+ * ne može da se razlikuje od kupovine na koju se odnosi. Projekcija se menja samo uslovnim UPDATE-ima
+ * (bez čitanja pa pisanja), u istoj transakciji kao i unos u dnevnik.
+ */
+@Repository
+public class CreditLedgerRepository {
+
+    public enum EntryType {
+        GRANT, CONSUME, REFUND, EXPIRE, CANCEL
+    }
+
+    // Unos za kupovinu; reservationId, dedupKey i note su opcioni
+    public record PurchaseEntry(Long purchaseId, Long reservationId, EntryType type, int delta,
+                                String dedupKey, String note) {
+    }
+
+    public record ExpiringPurchase(Long purchaseId, Long memberId, Long serviceId, int remainingUses) {
+    }
+
+    // Stanje jedne kupovine: projekcija iz purchases i zbir dnevnika
+    public record PurchaseBalance(Long purchaseId, Long memberId, Long serviceId, String status, int remainingUses,
+                                  long ledgerBalance) {
+    }
+
+    // Aktivna kupovina sa preostalim sesijama (EntitlementCache)
+    public record Credit(Long purchaseId, Long serviceId, int remainingUses, LocalDate expiryDate) {
+    }
+
+    private static final String APPEND_SQL =
+            "INSERT INTO credit_ledger (member_id, service_id, purchase_id, reservation_id, entry_type, delta, dedup_key, note) " +
+            "SELECT p.member_id, p.service_id, p.id, ?, ?, ?, ?, ? FROM purchases p WHERE p.id = ?";
+
+    // Samo za unose sa dedup_key (GRANT, EXPIRE, CANCEL) - ponovljen unos se preskače.
+    // REFUND ima dedup_key, ali ide kroz APPEND_SQL: dupli povraćaj mora da obori transakciju, ne da se preskoči.
+    private static final String APPEND_ONCE_SQL = APPEND_SQL.replaceFirst("INSERT INTO", "INSERT IGNORE INTO");
+
+    // Sesija se troši samo sa aktivne, neistekle kupovine koja ih ima dovoljno
+    private static final String DECREMENT_SQL =
+            "UPDATE purchases SET remaining_uses = remaining_uses - ?, updated_at = ? " +
+            "WHERE id = ? AND remaining_uses >= ? AND status = 'ACTIVE' " +
+            "AND (expiry_date IS NULL OR expiry_date >= CURRENT_DATE)";
+
+    // Brza putanja rezervacije: isto kao DECREMENT_SQL za jednu sesiju, uz člana i uslugu termina
+    private static final String DECREMENT_FOR_APPOINTMENT_SQL =
+            "UPDATE purchases SET remaining_uses = remaining_uses - 1, updated_at = ? " +
+            "WHERE id = ? AND member_id = ? AND remaining_uses > 0 AND status = 'ACTIVE' " +
+            "AND (expiry_date IS NULL OR expiry_date >= CURRENT_DATE) " +
+            "AND service_id = (SELECT a.service_id FROM appointments a WHERE a.id = ?)";
+
+    private static final String MARK_USED_SQL =
+            "UPDATE purchases SET status = 'USED', updated_at = ? WHERE id = ? AND remaining_uses = 0 AND status = 'ACTIVE'";
+
+    // Vraćena sesija ponovo otvara potrošenu kupovinu; istekla kupovina je ne dobija
+    private static final String INCREMENT_SQL =
+            "UPDATE purchases SET remaining_uses = remaining_uses + ?, " +
+            "status = CASE WHEN status = 'USED' THEN 'ACTIVE' ELSE status END, updated_at = ? " +
+            "WHERE id = ? AND status <> 'EXPIRED'";
+
+    // Kupovine bez ijednog unosa (pre uvođenja dnevnika) dobijaju početni GRANT jednak remaining_uses
+    private static final String OPENING_GRANTS_SQL =
+            "INSERT IGNORE INTO credit_ledger (member_id, service_id, purchase_id, entry_type, delta, dedup_key, note) " +
+            "SELECT p.member_id, p.service_id, p.id, 'GRANT', p.remaining_uses, CONCAT('GRANT:p', p.id), " +
+            "'početno stanje (remaining_uses)' FROM purchases p " +
+            "WHERE NOT EXISTS (SELECT 1 FROM credit_ledger l WHERE l.purchase_id = p.id)";
+
+    // Sortirano po kupovini - zbir se računa u prolazu, bez mape svih kupovina
+    private static final String PURCHASE_BALANCES_SQL =
+            "SELECT p.id, p.member_id, p.service_id, p.status, p.remaining_uses, l.delta " +
+            "FROM purchases p LEFT JOIN credit_ledger l ON l.purchase_id = p.id ORDER BY p.id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate streamingJdbcTemplate;
+
+    public CreditLedgerRepository(JdbcTemplate jdbcTemplate,
+                                  DataSource dataSource,
+                                  @Value("${app.ledger.verify-fetch-size:-2147483648}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        // Kao u ExportService: za MySQL Integer.MIN_VALUE = red po red, bez učitavanja celog rezultata
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(fetchSize);
+    }
+
+    // ========== DNEVNIK ==========
+
+    public void append(List<PurchaseEntry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(APPEND_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                bind(ps, entries.get(i));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return entries.size();
+            }
+        });
+    }
+
+    // false = unos sa istim dedup_key već postoji
+    public boolean appendOnce(PurchaseEntry entry) {
+        return jdbcTemplate.update(APPEND_ONCE_SQL, ps -> bind(ps, entry)) > 0;
+    }
+
+    // Broj dosadašnjih povraćaja rezervacije - redni broj u dedup_key sledećeg (refund:<rezervacija>:<n>)
+    public int countRefunds(Long reservationId) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM credit_ledger WHERE reservation_id = ? AND entry_type = 'REFUND'",
+                Integer.class, reservationId);
+        return count != null ? count : 0;
+    }
+
+    public int appendOpeningGrants() {
+        return jdbcTemplate.update(OPENING_GRANTS_SQL);
+    }
+
+    // serviceId -> stanje (zbir unosa)
+    public Map<Long, Integer> findBalancesByMember(Long memberId) {
+        Map<Long, Integer> balances = new HashMap<>();
+        jdbcTemplate.query(
+                "SELECT service_id, SUM(delta) FROM credit_ledger WHERE member_id = ? GROUP BY service_id",
+                rs -> {
+                    balances.put(rs.getLong(1), rs.getInt(2));
+                },
+                memberId);
+        return balances;
+    }
+
+    public List<CreditLedgerEntryDTO> findEntriesByMember(Long memberId, int limit) {
+        return jdbcTemplate.query(
+                "SELECT l.id, l.member_id, l.service_id, s.name AS service_name, l.purchase_id, l.reservation_id, " +
+                "l.entry_type, l.delta, l.note, l.created_at FROM credit_ledger l " +
+                "LEFT JOIN services s ON s.id = l.service_id WHERE l.member_id = ? ORDER BY l.id DESC LIMIT ?",
+                (rs, rowNum) -> {
+                    Timestamp createdAt = rs.getTimestamp("created_at");
+                    return CreditLedgerEntryDTO.builder()
+                            .id(rs.getLong("id"))
+                            .memberId(rs.getLong("member_id"))
+                            .serviceId(rs.getLong("service_id"))
+                            .serviceName(rs.getString("service_name"))
+                            .purchaseId(rs.getLong("purchase_id"))
+                            .reservationId(rs.getObject("reservation_id", Long.class))
+                            .entryType(rs.getString("entry_type"))
+                            .delta(rs.getInt("delta"))
+                            .note(rs.getString("note"))
+                            .createdAt(createdAt != null ? createdAt.toLocalDateTime() : null)
+                            .build();
+                },
+                memberId, limit);
+    }
+
+    /**
+     * Prolaz kroz sve kupovine sa zbirom dnevnika, red po red - za proveru projekcije i keša.
+     */
+    public void streamPurchaseBalances(Consumer<PurchaseBalance> consumer) {
+        PurchaseBalance[] current = new PurchaseBalance[1];
+        streamingJdbcTemplate.query(PURCHASE_BALANCES_SQL, rs -> {
+            long purchaseId = rs.getLong(1);
+            int delta = rs.getInt(6);
+            if (current[0] != null && current[0].purchaseId() == purchaseId) {
+                PurchaseBalance previous = current[0];
+                current[0] = new PurchaseBalance(previous.purchaseId(), previous.memberId(), previous.serviceId(),
+                        previous.status(), previous.remainingUses(), previous.ledgerBalance() + delta);
+                return;
+            }
+            if (current[0] != null) {
+                consumer.accept(current[0]);
+            }
+            current[0] = new PurchaseBalance(purchaseId, rs.getLong(2), rs.getLong(3), rs.getString(4), rs.getInt(5), delta);
+        });
+        if (current[0] != null) {
+            consumer.accept(current[0]);
+        }
+    }
+
+    // ========== PROJEKCIJA (purchases.remaining_uses) ==========
+
+    // 0 = kupovina nema dovoljno sesija, nije aktivna ili je istekla
+    public int decrementRemaining(Long purchaseId, int count) {
+        return jdbcTemplate.update(DECREMENT_SQL, count, Timestamp.valueOf(LocalDateTime.now()), purchaseId, count);
+    }
+
+    // purchaseId -> broj sesija; vraća broj izmenjenih redova istim redosledom kao ulazna mapa
+    public int[] decrementRemaining(Map<Long, Integer> counts) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        return jdbcTemplate.batchUpdate(DECREMENT_SQL, counts.entrySet().stream()
+                .map(entry -> new Object[]{entry.getValue(), now, entry.getKey(), entry.getValue()})
+                .toList());
+    }
+
+    public int decrementForAppointment(Long purchaseId, Long memberId, Long appointmentId) {
+        return jdbcTemplate.update(DECREMENT_FOR_APPOINTMENT_SQL, Timestamp.valueOf(LocalDateTime.now()),
+                purchaseId, memberId, appointmentId);
+    }
+
+    public int incrementRemaining(Long purchaseId, int count) {
+        return jdbcTemplate.update(INCREMENT_SQL, count, Timestamp.valueOf(LocalDateTime.now()), purchaseId);
+    }
+
+    // Jedan upit po članu, bez entiteta i lazy učitavanja usluge; istek se proverava pri čitanju
+    public List<Credit> findCredits(Long memberId) {
+        return jdbcTemplate.query(
+                "SELECT id, service_id, remaining_uses, expiry_date FROM purchases " +
+                "WHERE member_id = ? AND status = 'ACTIVE' AND remaining_uses > 0",
+                (rs, rowNum) -> {
+                    Date expiryDate = rs.getDate(4);
+                    return new Credit(rs.getLong(1), rs.getLong(2), rs.getInt(3),
+                            expiryDate != null ? expiryDate.toLocalDate() : null);
+                },
+                memberId);
+    }
+
+    public int findRemainingUses(Long purchaseId) {
+        Integer remaining = jdbcTemplate.queryForObject(
+                "SELECT remaining_uses FROM purchases WHERE id = ?", Integer.class, purchaseId);
+        return remaining != null ? remaining : 0;
+    }
+
+    public int markUsedIfEmpty(Long purchaseId) {
+        return jdbcTemplate.update(MARK_USED_SQL, Timestamp.valueOf(LocalDateTime.now()), purchaseId);
+    }
+
+    public void markUsedIfEmpty(Collection<Long> purchaseIds) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(MARK_USED_SQL, purchaseIds.stream().map(id -> new Object[]{now, id}).toList());
+    }
+
+    public List<ExpiringPurchase> findExpiring(LocalDate today, int limit) {
+        return jdbcTemplate.query(
+                "SELECT id, member_id, service_id, remaining_uses FROM purchases " +
+                "WHERE expiry_date < ? AND remaining_uses > 0 AND status IN ('ACTIVE', 'USED') ORDER BY id LIMIT ?",
+                (rs, rowNum) -> new ExpiringPurchase(rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getInt(4)),
+                Date.valueOf(today), limit);
+    }
+
+    // Uslov na viđeni broj sesija - kupovina potrošena u međuvremenu čeka sledeći prolaz
+    public int expire(Long purchaseId, int remainingUses) {
+        return jdbcTemplate.update(
+                "UPDATE purchases SET remaining_uses = 0, status = 'EXPIRED', updated_at = ? WHERE id = ? AND remaining_uses = ?",
+                Timestamp.valueOf(LocalDateTime.now()), purchaseId, remainingUses);
+    }
+
+    // Otkazuje se samo aktivna kupovina čija nijedna sesija nije potrošena
+    public int cancelUnused(Long purchaseId, int quantity) {
+        return jdbcTemplate.update(
+                "UPDATE purchases SET remaining_uses = 0, status = 'CANCELLED', updated_at = ? " +
+                "WHERE id = ? AND status = 'ACTIVE' AND remaining_uses = ?",
+                Timestamp.valueOf(LocalDateTime.now()), purchaseId, quantity);
+    }
+
+    private static void bind(PreparedStatement ps, PurchaseEntry entry) throws SQLException {
+        if (entry.reservationId() != null) {
+            ps.setLong(1, entry.reservationId());
+        } else {
+            ps.setNull(1, Types.BIGINT);
+        }
+        ps.setString(2, entry.type().name());
+        ps.setInt(3, entry.delta());
+        ps.setString(4, entry.dedupKey());
+        ps.setString(5, entry.note());
+        ps.setLong(6, entry.purchaseId());
+    }
+}
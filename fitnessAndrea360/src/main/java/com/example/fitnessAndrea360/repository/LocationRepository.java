@@ -1,7 +1,18 @@
 package com.example.fitnessAndrea360.repository;
 
 import com.example.fitnessAndrea360.model.Location;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Optional;
 
 public interface LocationRepository extends JpaRepository<Location, Long> {
+
+    // Red lokacije kao brava za proveru zauzetosti lokacije (ScheduleConflictGuard) - do kraja transakcije
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT l FROM Location l WHERE l.id = :id")
+    Optional<Location> findByIdForUpdate(@Param("id") Long id);
 }
@@ -1,7 +1,9 @@
 package com.example.fitnessAndrea360.repository;
 
 import com.example.fitnessAndrea360.model.Member;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -18,8 +20,21 @@ public interface MemberRepository extends JpaRepository<Member, Long> {
     @Query("SELECT m FROM Member m WHERE m.user.id = :userId")
     Optional<Member> findByUserId(@Param("userId") Long userId);
 
+    // Samo ID - indeks na members.user_id, bez učitavanja člana (CurrentMemberResolver, token pri prijavi)
+    @Query("SELECT m.id FROM Member m WHERE m.user.id = :userId")
+    Optional<Long> findIdByUserId(@Param("userId") Long userId);
+
+    // Tokeni bez userId claim-a (izdati pre njegovog uvođenja)
+    @Query("SELECT m.id FROM Member m WHERE m.user.email = :email")
+    Optional<Long> findIdByUserEmail(@Param("email") String email);
+
     boolean existsByEmail(String email);
 
+    // Red člana kao brava za proveru preklapanja termina člana (ScheduleConflictGuard) - do kraja transakcije
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT m FROM Member m WHERE m.id = :id")
+    Optional<Member> findByIdForUpdate(@Param("id") Long id);
+
     boolean existsByUserId(Long userId);
 
     List<Member> findByLocationId(Long locationId);
@@ -0,0 +1,247 @@
+package com.example.fitnessAndrea360.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Outbox email obaveštenja (notification_outbox). Obaveštenje se upisuje u istoj transakciji kao
+ * i rezervacija/otkazivanje, a šalje ga NotificationOutboxWorker posle commit-a - SMTP nikada nije
+ * na putanji zahteva. dedup_key je jedinstven, pa ponovljen upis istog obaveštenja ne pravi duplikat.
+ */
+@Repository
+@RequiredArgsConstructor
+public class NotificationOutboxRepository {
+
+    public enum Type {
+        BOOKING_CONFIRMED, RESERVATION_CANCELLED, APPOINTMENT_CANCELLED, CLASS_REMINDER
+    }
+
+    public record OutboxEntry(Long id, Type type, Long appointmentId, Long reservationId, Long memberId,
+                              String recipientEmail, String recipientName, int attempts) {
+    }
+
+    public record ClassInfo(String serviceName, LocalDateTime startTime, LocalDateTime endTime,
+                            String locationName, String locationAddress) {
+    }
+
+    // Termin sa potvrđenim rezervacijama za koji treba zakazati podsetnik
+    public record ReminderCandidate(Long appointmentId, LocalDateTime startTime, List<Long> reservationIds) {
+    }
+
+    // Neuspelo slanje: PENDING sa novim next_attempt_at ili FAILED kada se iscrpe pokušaji
+    public record Retry(Long id, boolean exhausted, LocalDateTime nextAttemptAt, String error) {
+    }
+
+    private static final String INSERT_COLUMNS =
+            "INSERT IGNORE INTO notification_outbox (type, dedup_key, member_id, appointment_id, reservation_id, " +
+            "recipient_email, recipient_name, status, next_attempt_at) ";
+
+    private static final String RECIPIENT_COLUMNS =
+            "r.member_id, r.appointment_id, r.id, m.email, CONCAT(m.first_name, ' ', m.last_name), 'PENDING', ? " +
+            "FROM reservations r JOIN members m ON m.id = r.member_id ";
+
+    private static final String NOT_CANCELLED = "COALESCE(a.status, 'SCHEDULED') <> 'CANCELLED'";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // Jedno obaveštenje po rezervaciji (potvrda, otkazivanje) - dedup: TIP:r{id rezervacije}
+    public void enqueueForReservation(Type type, Long reservationId) {
+        enqueueForReservations(type, List.of(reservationId));
+    }
+
+    public void enqueueForReservations(Type type, List<Long> reservationIds) {
+        if (reservationIds.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(INSERT_COLUMNS + "SELECT ?, CONCAT(?, r.id), " + RECIPIENT_COLUMNS + "WHERE r.id = ?",
+                reservationIds, reservationIds.size(), (ps, reservationId) -> {
+                    ps.setString(1, type.name());
+                    ps.setString(2, type.name() + ":r");
+                    ps.setTimestamp(3, now);
+                    ps.setLong(4, reservationId);
+                });
+    }
+
+    // Svim članovima sa potvrđenom rezervacijom na terminu, jednim upitom - dedup: TIP:a{termin}:m{član}
+    public int enqueueForAppointment(Type type, Long appointmentId) {
+        return jdbcTemplate.update(INSERT_COLUMNS +
+                        "SELECT ?, CONCAT(?, r.appointment_id, ':m', r.member_id), " + RECIPIENT_COLUMNS +
+                        "WHERE r.appointment_id = ? AND r.status = 'CONFIRMED'",
+                type.name(), type.name() + ":a", Timestamp.valueOf(LocalDateTime.now()), appointmentId);
+    }
+
+    /**
+     * Podsetnici za rezervacije, jednim upitom - rezervacija se ponovo proverava u bazi (potvrđena,
+     * termin nije otkazan ni počeo), pa zastareo raspored u memoriji ne šalje pogrešan podsetnik.
+     * Dedup: CLASS_REMINDER:r{id rezervacije}.
+     */
+    public int enqueueReminders(List<Long> reservationIds, LocalDateTime now) {
+        if (reservationIds.isEmpty()) {
+            return 0;
+        }
+        List<Object> params = new ArrayList<>(List.of(Type.CLASS_REMINDER.name(), Type.CLASS_REMINDER.name() + ":r",
+                Timestamp.valueOf(now)));
+        params.addAll(reservationIds);
+        params.add(Timestamp.valueOf(now));
+        return jdbcTemplate.update(INSERT_COLUMNS + "SELECT ?, CONCAT(?, r.id), " + RECIPIENT_COLUMNS +
+                        "JOIN appointments a ON a.id = r.appointment_id " +
+                        "WHERE r.id IN (" + placeholders(reservationIds.size()) + ") AND r.status = 'CONFIRMED' " +
+                        "AND " + NOT_CANCELLED + " AND a.start_time > ?",
+                params.toArray());
+    }
+
+    // Termini koji počinju u (from, to] sa potvrđenim rezervacijama
+    public List<ReminderCandidate> findReminderCandidates(LocalDateTime from, LocalDateTime to) {
+        return queryReminderCandidates("a.start_time > ? AND a.start_time <= ?", Timestamp.valueOf(from), Timestamp.valueOf(to));
+    }
+
+    public Optional<ReminderCandidate> findReminderCandidate(Long appointmentId) {
+        return queryReminderCandidates("a.id = ?", appointmentId).stream().findFirst();
+    }
+
+    private List<ReminderCandidate> queryReminderCandidates(String condition, Object... params) {
+        Map<Long, ReminderCandidate> candidates = new LinkedHashMap<>();
+        jdbcTemplate.query(
+                "SELECT a.id, a.start_time, r.id AS reservation_id FROM appointments a " +
+                "JOIN reservations r ON r.appointment_id = a.id AND r.status = 'CONFIRMED' " +
+                "WHERE " + condition + " AND " + NOT_CANCELLED + " ORDER BY a.id, r.id",
+                rs -> {
+                    long appointmentId = rs.getLong("id");
+                    ReminderCandidate candidate = candidates.get(appointmentId);
+                    if (candidate == null) {
+                        candidate = new ReminderCandidate(appointmentId,
+                                rs.getTimestamp("start_time").toLocalDateTime(), new ArrayList<>());
+                        candidates.put(appointmentId, candidate);
+                    }
+                    candidate.reservationIds().add(rs.getLong("reservation_id"));
+                },
+                params);
+        return new ArrayList<>(candidates.values());
+    }
+
+    public List<Long> findDue(LocalDateTime now, int limit) {
+        return jdbcTemplate.queryForList(
+                "SELECT id FROM notification_outbox WHERE status = 'PENDING' AND next_attempt_at <= ? " +
+                "ORDER BY next_attempt_at, id LIMIT ?",
+                Long.class, Timestamp.valueOf(now), limit);
+    }
+
+    /**
+     * Preuzima redove uslovnim UPDATE-om (samo ako su još PENDING) i obeležava ih tokenom - više
+     * instanci može istovremeno da čita isti findDue rezultat, a svaki red dobija samo jedna.
+     */
+    public int claim(List<Long> ids, String claimToken, LocalDateTime lockedUntil) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        List<Object> params = new ArrayList<>(List.of(claimToken, Timestamp.valueOf(lockedUntil)));
+        params.addAll(ids);
+        return jdbcTemplate.update(
+                "UPDATE notification_outbox SET status = 'SENDING', claim_token = ?, locked_until = ? " +
+                "WHERE status = 'PENDING' AND id IN (" + placeholders(ids.size()) + ")",
+                params.toArray());
+    }
+
+    public List<OutboxEntry> findClaimed(String claimToken) {
+        return jdbcTemplate.query(
+                "SELECT id, type, appointment_id, reservation_id, member_id, recipient_email, recipient_name, attempts " +
+                "FROM notification_outbox WHERE claim_token = ? AND status = 'SENDING' ORDER BY id",
+                (rs, rowNum) -> new OutboxEntry(
+                        rs.getLong("id"),
+                        Type.valueOf(rs.getString("type")),
+                        rs.getObject("appointment_id", Long.class),
+                        rs.getObject("reservation_id", Long.class),
+                        rs.getObject("member_id", Long.class),
+                        rs.getString("recipient_email"),
+                        rs.getString("recipient_name"),
+                        rs.getInt("attempts")),
+                claimToken);
+    }
+
+    // Redovi ostali u SENDING posle isteka zakupa (pad instance usred slanja) vraćaju se u red
+    public int releaseExpiredLeases(LocalDateTime now) {
+        return jdbcTemplate.update(
+                "UPDATE notification_outbox SET status = 'PENDING', claim_token = NULL, locked_until = NULL " +
+                "WHERE status = 'SENDING' AND locked_until < ?",
+                Timestamp.valueOf(now));
+    }
+
+    /**
+     * Ishod slanja upisuje samo instanca koja i dalje drži red (isti claim_token, SENDING). Ako je zakup
+     * istekao i red preuzela druga instanca, upis se preskače - vraća se broj stvarno ažuriranih redova.
+     */
+    public int markSent(List<Long> ids, String claimToken, LocalDateTime sentAt) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        List<Object> params = new ArrayList<>(List.of(Timestamp.valueOf(sentAt), claimToken));
+        params.addAll(ids);
+        return jdbcTemplate.update(
+                "UPDATE notification_outbox SET status = 'SENT', sent_at = ?, attempts = attempts + 1, " +
+                "claim_token = NULL, locked_until = NULL, last_error = NULL " +
+                "WHERE status = 'SENDING' AND claim_token = ? AND id IN (" + placeholders(ids.size()) + ")",
+                params.toArray());
+    }
+
+    public int reschedule(List<Retry> retries, String claimToken) {
+        if (retries.isEmpty()) {
+            return 0;
+        }
+        int[][] counts = jdbcTemplate.batchUpdate(
+                "UPDATE notification_outbox SET status = ?, attempts = attempts + 1, next_attempt_at = ?, " +
+                "last_error = ?, claim_token = NULL, locked_until = NULL " +
+                "WHERE id = ? AND status = 'SENDING' AND claim_token = ?",
+                retries, retries.size(), (ps, retry) -> {
+                    ps.setString(1, retry.exhausted() ? "FAILED" : "PENDING");
+                    ps.setTimestamp(2, Timestamp.valueOf(retry.nextAttemptAt()));
+                    ps.setString(3, truncate(retry.error()));
+                    ps.setLong(4, retry.id());
+                    ps.setString(5, claimToken);
+                });
+        int updated = 0;
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                updated += Math.max(count, 0);
+            }
+        }
+        return updated;
+    }
+
+    // Podaci o terminu za šablon - učitavaju se jednom po grupi obaveštenja istog termina
+    public Optional<ClassInfo> findClassInfo(Long appointmentId) {
+        List<ClassInfo> rows = jdbcTemplate.query(
+                "SELECT s.name AS service_name, a.start_time, a.end_time, l.name AS location_name, l.address " +
+                "FROM appointments a JOIN services s ON s.id = a.service_id JOIN locations l ON l.id = a.location_id " +
+                "WHERE a.id = ?",
+                (rs, rowNum) -> new ClassInfo(
+                        rs.getString("service_name"),
+                        rs.getTimestamp("start_time").toLocalDateTime(),
+                        rs.getTimestamp("end_time").toLocalDateTime(),
+                        rs.getString("location_name"),
+                        rs.getString("address")),
+                appointmentId);
+        return rows.stream().findFirst();
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    private static String truncate(String error) {
+        if (error == null) {
+            return null;
+        }
+        return error.length() > 500 ? error.substring(0, 500) : error;
+    }
+}
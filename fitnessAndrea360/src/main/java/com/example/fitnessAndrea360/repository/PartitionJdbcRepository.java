@@ -0,0 +1,167 @@
+package com.example.fitnessAndrea360.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Mesečne particije tabela appointments i reservations: RANGE COLUMNS(start_time).
+ * Particija pYYYYMM sadrži redove do prvog dana sledećeg meseca, a p_future (MAXVALUE) sve posle
+ * poslednjeg meseca - nove mesece dobija REORGANIZE PARTITION p_future dok je još prazna.
+ *
+ * MySQL ne dozvoljava strane ključeve na particionisanim tabelama (ni ka njima), a svaki jedinstveni
+ * ključ (i PRIMARY) mora da sadrži start_time - migracija to menja pre PARTITION BY.
+ */
+@Repository
+@RequiredArgsConstructor
+public class PartitionJdbcRepository {
+
+    public static final String FUTURE_PARTITION = "p_future";
+    public static final String PARTITION_COLUMN = "start_time";
+
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMM");
+
+    // lessThan je null za p_future (MAXVALUE)
+    public record Partition(String name, LocalDate lessThan, long estimatedRows) {
+    }
+
+    public record ForeignKey(String table, String name) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public static String partitionName(YearMonth month) {
+        return month.format(PARTITION_NAME);
+    }
+
+    // ========== METAPODACI ==========
+
+    public boolean isPartitioned(String table) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.PARTITIONS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL",
+                Integer.class, table);
+        return count != null && count > 0;
+    }
+
+    // Redosled particija; broj redova je procena iz statistike (TABLE_ROWS)
+    public List<Partition> findPartitions(String table) {
+        return jdbcTemplate.query(
+                "SELECT PARTITION_NAME, PARTITION_DESCRIPTION, TABLE_ROWS FROM information_schema.PARTITIONS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL " +
+                "ORDER BY PARTITION_ORDINAL_POSITION",
+                (rs, rowNum) -> new Partition(rs.getString(1), parseBound(rs.getString(2)), rs.getLong(3)),
+                table);
+    }
+
+    // Strani ključevi same tabele i oni koji na nju pokazuju
+    public List<ForeignKey> findForeignKeys(String table) {
+        return jdbcTemplate.query(
+                "SELECT TABLE_NAME, CONSTRAINT_NAME FROM information_schema.REFERENTIAL_CONSTRAINTS " +
+                "WHERE CONSTRAINT_SCHEMA = DATABASE() AND (TABLE_NAME = ? OR REFERENCED_TABLE_NAME = ?)",
+                (rs, rowNum) -> new ForeignKey(rs.getString(1), rs.getString(2)),
+                table, table);
+    }
+
+    // Jedinstveni ključevi (sa PRIMARY): ime -> kolone po redu
+    public Map<String, List<String>> findUniqueKeys(String table) {
+        Map<String, List<String>> keys = new LinkedHashMap<>();
+        jdbcTemplate.query(
+                "SELECT INDEX_NAME, COLUMN_NAME FROM information_schema.STATISTICS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND NON_UNIQUE = 0 " +
+                "ORDER BY INDEX_NAME, SEQ_IN_INDEX",
+                rs -> {
+                    keys.computeIfAbsent(rs.getString(1), name -> new ArrayList<>()).add(rs.getString(2));
+                },
+                table);
+        return keys;
+    }
+
+    public Optional<LocalDateTime> findOldestStartTime(String table) {
+        Timestamp oldest = jdbcTemplate.queryForObject("SELECT MIN(start_time) FROM " + table, Timestamp.class);
+        return Optional.ofNullable(oldest).map(Timestamp::toLocalDateTime);
+    }
+
+    // ========== MIGRACIJA ==========
+
+    public void dropForeignKey(ForeignKey foreignKey) {
+        jdbcTemplate.execute("ALTER TABLE `" + foreignKey.table() + "` DROP FOREIGN KEY `" + foreignKey.name() + "`");
+    }
+
+    /**
+     * Particioniše tabelu po mesecima (prvi mesec prima i sve starije redove, p_future sve novije).
+     * start_time postaje NOT NULL i ulazi u PRIMARY i ostale jedinstvene ključeve;
+     * strani ključevi moraju biti uklonjeni pre poziva.
+     */
+    public void partitionByMonth(String table, List<YearMonth> months) {
+        List<String> changes = new ArrayList<>();
+        changes.add("MODIFY " + PARTITION_COLUMN + " DATETIME NOT NULL");
+        findUniqueKeys(table).forEach((name, columns) -> {
+            if (columns.contains(PARTITION_COLUMN)) {
+                return;
+            }
+            String keyColumns = String.join(", ", columns) + ", " + PARTITION_COLUMN;
+            if ("PRIMARY".equals(name)) {
+                changes.add("DROP PRIMARY KEY, ADD PRIMARY KEY (" + keyColumns + ")");
+            } else {
+                changes.add("DROP INDEX `" + name + "`, ADD UNIQUE KEY `" + name + "` (" + keyColumns + ")");
+            }
+        });
+        jdbcTemplate.execute("ALTER TABLE " + table + " " + String.join(", ", changes));
+        jdbcTemplate.execute("ALTER TABLE " + table + " PARTITION BY RANGE COLUMNS(" + PARTITION_COLUMN + ") ("
+                + partitionDefinitions(months) + ")");
+    }
+
+    // ========== ODRŽAVANJE ==========
+
+    // Novi meseci se odvajaju od p_future (koji je u normalnom radu prazan, pa je operacija trenutna)
+    public void addMonths(String table, List<YearMonth> months) {
+        jdbcTemplate.execute("ALTER TABLE " + table + " REORGANIZE PARTITION " + FUTURE_PARTITION + " INTO ("
+                + partitionDefinitions(months) + ")");
+    }
+
+    public void dropPartition(String table, String partition) {
+        jdbcTemplate.execute("ALTER TABLE " + table + " DROP PARTITION `" + partition + "`");
+    }
+
+    /**
+     * Particije koje bi upit pročitao (kolona partitions iz EXPLAIN) - za proveru odsecanja.
+     * Upit mora da čita jednu tabelu.
+     */
+    public List<String> explainPartitions(String sql, Object... params) {
+        List<String> partitions = jdbcTemplate.query("EXPLAIN " + sql, (rs, rowNum) -> rs.getString("partitions"), params);
+        if (partitions.isEmpty() || partitions.get(0) == null) {
+            return List.of();
+        }
+        return Arrays.asList(partitions.get(0).split(","));
+    }
+
+    private static String partitionDefinitions(List<YearMonth> months) {
+        List<String> definitions = new ArrayList<>();
+        for (YearMonth month : months) {
+            definitions.add("PARTITION " + partitionName(month) + " VALUES LESS THAN ('" + month.plusMonths(1).atDay(1) + "')");
+        }
+        definitions.add("PARTITION " + FUTURE_PARTITION + " VALUES LESS THAN (MAXVALUE)");
+        return String.join(", ", definitions);
+    }
+
+    // PARTITION_DESCRIPTION za RANGE COLUMNS: '2026-11-01 00:00:00' ili MAXVALUE
+    private static LocalDate parseBound(String description) {
+        if (description == null || description.equalsIgnoreCase("MAXVALUE")) {
+            return null;
+        }
+        return LocalDate.parse(description.replace("'", "").substring(0, 10));
+    }
+}
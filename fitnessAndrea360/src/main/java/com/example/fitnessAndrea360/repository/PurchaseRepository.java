@@ -1,10 +1,15 @@
 package com.example.fitnessAndrea360.repository;
 
 import com.example.fitnessAndrea360.model.Purchase;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
 
 public interface PurchaseRepository extends JpaRepository<Purchase, Long> {
@@ -25,4 +30,20 @@ public interface PurchaseRepository extends JpaRepository<Purchase, Long> {
             Long memberId, Long serviceId, Purchase.Status status, Integer remainingUses);
 
     List<Purchase> findByMemberIdAndStatus(Long memberId, Purchase.Status status);
+
+    // Kupovine sa kojih se troši sesija kada član ne izabere kupovinu: aktivne, sa sesijama i neistekle tog dana,
+    // prvo ona koja ističe najranije (bez isteka na kraju)
+    default List<Purchase> findBookable(Long memberId, Long serviceId, LocalDate day) {
+        return findByMemberIdAndServiceIdAndStatusAndRemainingUsesGreaterThan(memberId, serviceId, Purchase.Status.ACTIVE, 0)
+                .stream()
+                .filter(purchase -> purchase.getExpiryDate() == null || !purchase.getExpiryDate().isBefore(day))
+                .sorted(Comparator.comparing(Purchase::getExpiryDate, Comparator.nullsLast(Comparator.naturalOrder()))
+                        .thenComparing(Purchase::getId))
+                .toList();
+    }
+
+    // Zaključavanje kupovina - posle termina, rastućim redosledom ID-a (isti redosled u svim transakcijama)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Purchase p WHERE p.id IN :ids ORDER BY p.id")
+    List<Purchase> findAllByIdForUpdate(@Param("ids") Collection<Long> ids);
 }
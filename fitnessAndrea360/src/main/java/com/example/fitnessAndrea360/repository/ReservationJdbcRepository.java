@@ -0,0 +1,220 @@
+package com.example.fitnessAndrea360.repository;
+
+import com.example.fitnessAndrea360.dto.ReservationResponseDTO;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * JDBC upisi za rezervacije bez učitavanja entiteta: uslovni UPDATE-i za brzu putanju jedne
+ * rezervacije i batch upisi za grupnu rezervaciju (pozivalac drži zaključane redove).
+ */
+@Repository
+@RequiredArgsConstructor
+public class ReservationJdbcRepository {
+
+    private static final String INCREMENT_CAPACITY_SQL =
+            "UPDATE appointments SET current_capacity = current_capacity + ?, updated_at = ? WHERE id = ?";
+
+    // start_time, location_id i service_id se prepisuju sa termina (red termina je već zaključan)
+    private static final String INSERT_RESERVATION_SQL =
+            "INSERT INTO reservations (member_id, appointment_id, purchase_id, status, notes, created_at, updated_at, " +
+            "start_time, location_id, service_id) " +
+            "SELECT ?, a.id, ?, ?, ?, ?, ?, a.start_time, a.location_id, a.service_id FROM appointments a WHERE a.id = ?";
+
+    // Mesto se zauzima samo ako ga ima i termin nije otkazan
+    private static final String RESERVE_SEAT_SQL =
+            "UPDATE appointments SET current_capacity = current_capacity + 1, updated_at = ? " +
+            "WHERE id = ? AND current_capacity < max_capacity AND (status IS NULL OR status <> 'CANCELLED')";
+
+    // Oslobađanje mesta - jedan UPDATE umesto čitanja i upisa entiteta (bez izgubljene izmene)
+    private static final String RELEASE_SEAT_SQL =
+            "UPDATE appointments SET current_capacity = current_capacity - 1, updated_at = ? " +
+            "WHERE id = ? AND current_capacity > 0";
+
+    // Otkazana rezervacija se ne menja - samo jedna transakcija prelazi iz neotkazane u CANCELLED (i vraća sesiju)
+    private static final String UPDATE_STATUS_UNLESS_CANCELLED_SQL =
+            "UPDATE reservations SET status = ?, updated_at = ? WHERE id = ? AND status <> 'CANCELLED'";
+
+    private static final String RESERVATION_VIEW_SQL =
+            "SELECT r.id, r.status, r.notes, r.created_at, r.updated_at, r.member_id, " +
+            "m.first_name AS member_first_name, m.last_name AS member_last_name, " +
+            "r.appointment_id, a.start_time, a.end_time, s.name AS service_name, " +
+            "a.location_id, l.name AS location_name, r.purchase_id, ps.name AS purchase_name " +
+            "FROM reservations r " +
+            "JOIN members m ON m.id = r.member_id " +
+            "JOIN appointments a ON a.id = r.appointment_id " +
+            "JOIN services s ON s.id = a.service_id " +
+            "JOIN locations l ON l.id = a.location_id " +
+            "JOIN purchases p ON p.id = r.purchase_id " +
+            "JOIN services ps ON ps.id = p.service_id " +
+            "WHERE r.id = ?";
+
+    // Kolone kao u RESERVATION_VIEW_SQL - koristi ga i ArchiveJdbcRepository za arhivirane rezervacije
+    static final RowMapper<ReservationResponseDTO> RESERVATION_VIEW_MAPPER = (rs, rowNum) -> ReservationResponseDTO.builder()
+            .id(rs.getLong("id"))
+            .status(rs.getString("status"))
+            .notes(rs.getString("notes"))
+            .createdAt(toLocalDateTime(rs.getTimestamp("created_at")))
+            .updatedAt(toLocalDateTime(rs.getTimestamp("updated_at")))
+            .memberId(rs.getLong("member_id"))
+            .memberName((rs.getString("member_first_name") + " " + rs.getString("member_last_name")).trim())
+            .appointmentId(rs.getLong("appointment_id"))
+            .appointmentStartTime(toLocalDateTime(rs.getTimestamp("start_time")))
+            .appointmentEndTime(toLocalDateTime(rs.getTimestamp("end_time")))
+            .serviceName(rs.getString("service_name"))
+            .locationId(rs.getLong("location_id"))
+            .locationName(rs.getString("location_name"))
+            .purchaseId(rs.getLong("purchase_id"))
+            .purchaseName(rs.getString("purchase_name"))
+            .build();
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // ========== BRZA PUTANJA JEDNE REZERVACIJE (uslovni UPDATE-i) ==========
+
+    // 1 = mesto zauzeto, 0 = termin ne postoji, pun je ili otkazan
+    public int reserveSeat(Long appointmentId) {
+        return jdbcTemplate.update(RESERVE_SEAT_SQL, Timestamp.valueOf(LocalDateTime.now()), appointmentId);
+    }
+
+    // Zaključava red termina pre kupovine (refund) - isti redosled kao pri zauzimanju mesta
+    public int releaseSeat(Long appointmentId) {
+        return jdbcTemplate.update(RELEASE_SEAT_SQL, Timestamp.valueOf(LocalDateTime.now()), appointmentId);
+    }
+
+    // 1 = status promenjen (red rezervacije ostaje zaključan), 0 = rezervacija je otkazana ili ne postoji
+    public int updateStatusUnlessCancelled(Long reservationId, String status) {
+        return jdbcTemplate.update(UPDATE_STATUS_UNLESS_CANCELLED_SQL, status, Timestamp.valueOf(LocalDateTime.now()), reservationId);
+    }
+
+    // Baca DuplicateKeyException ako član već ima rezervaciju (unique_member_appointment)
+    public Long insertReservation(NewReservation reservation) {
+        return insertReservations(List.of(reservation)).get(0);
+    }
+
+    public Optional<ReservationResponseDTO> findReservationView(Long reservationId) {
+        return jdbcTemplate.query(RESERVATION_VIEW_SQL, RESERVATION_VIEW_MAPPER, reservationId)
+                .stream().findFirst();
+    }
+
+    // Stanje termina i kupovine - čita se samo kada uslovni UPDATE ne prođe, da bi poruka bila tačna
+    // Vraća: [current_capacity, max_capacity, status] / [member_id, service_id, status, remaining_uses, expiry_date, appointment_service_id]
+    public Optional<Object[]> findAppointmentState(Long appointmentId) {
+        return jdbcTemplate.query("SELECT current_capacity, max_capacity, status FROM appointments WHERE id = ?",
+                (rs, rowNum) -> new Object[]{rs.getInt(1), rs.getInt(2), rs.getString(3)}, appointmentId)
+                .stream().findFirst();
+    }
+
+    public Optional<Long> findAppointmentServiceId(Long appointmentId) {
+        return jdbcTemplate.queryForList("SELECT service_id FROM appointments WHERE id = ?", Long.class, appointmentId)
+                .stream().findFirst();
+    }
+
+    public Optional<Object[]> findPurchaseState(Long purchaseId, Long appointmentId) {
+        return jdbcTemplate.query("SELECT p.member_id, p.service_id, p.status, p.remaining_uses, p.expiry_date, " +
+                        "(SELECT a.service_id FROM appointments a WHERE a.id = ?) FROM purchases p WHERE p.id = ?",
+                (rs, rowNum) -> new Object[]{rs.getLong(1), rs.getLong(2), rs.getString(3), rs.getInt(4),
+                        rs.getDate(5) != null ? rs.getDate(5).toLocalDate() : null, rs.getObject(6)},
+                appointmentId, purchaseId)
+                .stream().findFirst();
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+
+    // ========== BATCH ==========
+
+    // appointmentId -> broj novih rezervacija
+    public void incrementAppointmentCapacities(Map<Long, Integer> deltas) {
+        batchDelta(INCREMENT_CAPACITY_SQL, deltas);
+    }
+
+    // Vraća generisane ID-eve istim redosledom kao ulazna lista
+    public List<Long> insertReservations(List<NewReservation> reservations) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                con -> con.prepareStatement(INSERT_RESERVATION_SQL, Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        NewReservation reservation = reservations.get(i);
+                        ps.setLong(1, reservation.memberId());
+                        ps.setLong(2, reservation.purchaseId());
+                        ps.setString(3, reservation.status());
+                        ps.setString(4, reservation.notes());
+                        ps.setTimestamp(5, now);
+                        ps.setTimestamp(6, now);
+                        ps.setLong(7, reservation.appointmentId());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return reservations.size();
+                    }
+                },
+                keyHolder);
+
+        List<Long> ids = new ArrayList<>(reservations.size());
+        for (Map<String, Object> key : keyHolder.getKeyList()) {
+            ids.add(((Number) key.values().iterator().next()).longValue());
+        }
+        if (ids.size() != reservations.size()) {
+            throw new IllegalStateException("Broj generisanih ključeva (" + ids.size() +
+                    ") ne odgovara broju rezervacija (" + reservations.size() + ")");
+        }
+        return ids;
+    }
+
+    /**
+     * Dopunjava kopije polja termina (start_time, location_id, service_id) u rezervacijama upisanim
+     * pre uvođenja kolona (jednom po šardu, PartitionMaintenanceService). Kopije se uvek pišu zajedno,
+     * pa je NULL location_id dovoljan znak.
+     */
+    public int backfillAppointmentCopies() {
+        return jdbcTemplate.update(
+                "UPDATE reservations r JOIN appointments a ON a.id = r.appointment_id " +
+                "SET r.start_time = a.start_time, r.location_id = a.location_id, r.service_id = a.service_id " +
+                "WHERE r.location_id IS NULL");
+    }
+
+    private void batchDelta(String sql, Map<Long, Integer> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Map.Entry<Long, Integer>> entries = new ArrayList<>(deltas.entrySet());
+        jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setInt(1, entries.get(i).getValue());
+                ps.setTimestamp(2, now);
+                ps.setLong(3, entries.get(i).getKey());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return entries.size();
+            }
+        });
+    }
+
+    public record NewReservation(Long memberId, Long appointmentId, Long purchaseId, String status, String notes) {
+    }
+}
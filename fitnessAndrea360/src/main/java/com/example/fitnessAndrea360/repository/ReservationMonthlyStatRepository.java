@@ -0,0 +1,48 @@
+package com.example.fitnessAndrea360.repository;
+
+import com.example.fitnessAndrea360.model.ReservationMonthlyStat;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface ReservationMonthlyStatRepository extends JpaRepository<ReservationMonthlyStat, Long> {
+
+    // Polu-otvoren opseg [from, to) nad (location_id, period_start) - koristi unique indeks
+    @Query("SELECT s FROM ReservationMonthlyStat s WHERE " +
+            "s.locationId = :locationId AND " +
+            "s.periodStart >= :from AND s.periodStart < :to " +
+            "ORDER BY s.periodStart")
+    List<ReservationMonthlyStat> findByLocationIdAndPeriod(
+            @Param("locationId") Long locationId,
+            @Param("from") LocalDate from,
+            @Param("to") LocalDate to);
+
+    // Atomski upsert - bez read-modify-write, bezbedno za konkurentne rezervacije
+    @Modifying
+    @Query(value = "INSERT INTO reservation_monthly_stats " +
+            "(location_id, period_start, reservation_count, cancelled_count, updated_at) " +
+            "VALUES (:locationId, :periodStart, :reservationDelta, :cancelledDelta, NOW()) " +
+            "ON DUPLICATE KEY UPDATE " +
+            "reservation_count = reservation_count + :reservationDelta, " +
+            "cancelled_count = cancelled_count + :cancelledDelta, " +
+            "updated_at = NOW()", nativeQuery = true)
+    void increment(@Param("locationId") Long locationId,
+                   @Param("periodStart") LocalDate periodStart,
+                   @Param("reservationDelta") long reservationDelta,
+                   @Param("cancelledDelta") long cancelledDelta);
+
+    @Modifying
+    @Query("DELETE FROM ReservationMonthlyStat s WHERE " +
+            "s.locationId = :locationId AND " +
+            "s.periodStart >= :from AND s.periodStart < :to")
+    void deleteByLocationIdAndPeriod(
+            @Param("locationId") Long locationId,
+            @Param("from") LocalDate from,
+            @Param("to") LocalDate to);
+}
@@ -1,12 +1,17 @@
 package com.example.fitnessAndrea360.repository;
 
 import com.example.fitnessAndrea360.model.Reservation;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -19,15 +24,16 @@ public interface ReservationRepository extends JpaRepository<Reservation, Long>
     List<Reservation> findByMemberId(Long memberId);
 
 
-    List<Reservation> findByAppointmentLocationId(Long locationId);
+    @Query("SELECT r FROM Reservation r WHERE r.locationId = :locationId")
+    List<Reservation> findByAppointmentLocationId(@Param("locationId") Long locationId);
 
 
     List<Reservation> findByPurchaseId(Long purchaseId);
 
     // Pronađi rezervacije za lokaciju u određenom vremenskom periodu
     @Query("SELECT r FROM Reservation r WHERE " +
-            "r.appointment.location.id = :locationId AND " +
-            "r.appointment.startTime BETWEEN :startTime AND :endTime")
+            "r.locationId = :locationId AND " +
+            "r.startTime BETWEEN :startTime AND :endTime")
     List<Reservation> findByAppointmentLocationIdAndAppointmentStartTimeBetween(
             @Param("locationId") Long locationId,
             @Param("startTime") LocalDateTime startTime,
@@ -39,6 +45,14 @@ public interface ReservationRepository extends JpaRepository<Reservation, Long>
 
     boolean existsByMemberIdAndAppointmentId(Long memberId, Long appointmentId);
 
+    // Rezervacije člana za termine iz liste - jedan upit za grupnu rezervaciju. Zaključavajuće čitanje (posle termina
+    // i kupovina): vidi i rezervaciju potvrđenu posle početka transakcije, dok bi obično čitanje iz snimka (REPEATABLE READ)
+    // propustilo duplikat do INSERT-a i unique_member_appointment
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM Reservation r WHERE r.member.id = :memberId AND r.appointment.id IN :appointmentIds ORDER BY r.id")
+    List<Reservation> findByMemberAndAppointmentsForUpdate(@Param("memberId") Long memberId,
+                                                           @Param("appointmentIds") Collection<Long> appointmentIds);
+
 
     @Query("SELECT COUNT(r) FROM Reservation r WHERE " +
             "r.appointment.id = :appointmentId AND " +
@@ -63,14 +77,14 @@ public interface ReservationRepository extends JpaRepository<Reservation, Long>
 
     @Query("SELECT r FROM Reservation r WHERE " +
             "r.member.id = :memberId AND " +
-            "r.appointment.startTime BETWEEN :startOfDay AND :endOfDay")
+            "r.startTime BETWEEN :startOfDay AND :endOfDay")
     List<Reservation> findTodayReservationsByMemberId(
             @Param("memberId") Long memberId,
             @Param("startOfDay") LocalDateTime startOfDay,
             @Param("endOfDay") LocalDateTime endOfDay);
 
     @Query("SELECT r FROM Reservation r WHERE " +
-            "r.appointment.startTime BETWEEN :startDate AND :endDate AND " +
+            "r.startTime BETWEEN :startDate AND :endDate AND " +
             "r.status = com.example.fitnessAndrea360.model.Reservation.Status.CONFIRMED")
     List<Reservation> findUpcomingReservations(
             @Param("startDate") LocalDateTime startDate,
@@ -80,15 +94,15 @@ public interface ReservationRepository extends JpaRepository<Reservation, Long>
 
     // Rezervacije za appointment u određenom vremenskom periodu
     @Query("SELECT r FROM Reservation r WHERE " +
-            "r.appointment.startTime BETWEEN :startTime AND :endTime")
+            "r.startTime BETWEEN :startTime AND :endTime")
     List<Reservation> findByAppointmentStartTimeBetween(
             @Param("startTime") LocalDateTime startTime,
             @Param("endTime") LocalDateTime endTime);
 
     // Rezervacije za lokaciju i vremenski period sa statusom
     @Query("SELECT r FROM Reservation r WHERE " +
-            "r.appointment.location.id = :locationId AND " +
-            "r.appointment.startTime BETWEEN :startTime AND :endTime AND " +
+            "r.locationId = :locationId AND " +
+            "r.startTime BETWEEN :startTime AND :endTime AND " +
             "r.status = :status")
     List<Reservation> findByAppointmentStartTimeBetweenAndLocationIdAndStatus(
             @Param("startTime") LocalDateTime startTime,
@@ -99,7 +113,7 @@ public interface ReservationRepository extends JpaRepository<Reservation, Long>
     // Rezervacije za člana u određenom vremenskom periodu
     @Query("SELECT r FROM Reservation r WHERE " +
             "r.member.id = :memberId AND " +
-            "r.appointment.startTime BETWEEN :startTime AND :endTime")
+            "r.startTime BETWEEN :startTime AND :endTime")
     List<Reservation> findByMemberIdAndAppointmentStartTimeBetween(
             @Param("memberId") Long memberId,
             @Param("startTime") LocalDateTime startTime,
@@ -108,7 +122,7 @@ public interface ReservationRepository extends JpaRepository<Reservation, Long>
     // Rezervacije po statusu i lokaciji (za zaposlene)
     @Query("SELECT r FROM Reservation r WHERE " +
             "r.status = :status AND " +
-            "r.appointment.location.id = :locationId")
+            "r.locationId = :locationId")
     List<Reservation> findByStatusAndLocationId(
             @Param("status") String status,
             @Param("locationId") Long locationId);
@@ -117,15 +131,17 @@ public interface ReservationRepository extends JpaRepository<Reservation, Long>
 
     // Rezervacije za lokaciju u određenom vremenskom periodu (za zaposlene)
     @Query("SELECT r FROM Reservation r WHERE " +
-            "r.appointment.location.id = :locationId AND " +
-            "r.appointment.startTime BETWEEN :startTime AND :endTime")
+            "r.locationId = :locationId AND " +
+            "r.startTime BETWEEN :startTime AND :endTime")
     List<Reservation> findByAppointmentStartTimeBetweenAndLocationId(
             @Param("startTime") LocalDateTime startTime,
             @Param("endTime") LocalDateTime endTime,
             @Param("locationId") Long locationId);
 
     // Rezervacije po statusu i lokaciji (sa enum statusom)
-    List<Reservation> findByStatusAndAppointmentLocationId(Reservation.Status status, Long locationId);
+    @Query("SELECT r FROM Reservation r WHERE r.status = :status AND r.locationId = :locationId")
+    List<Reservation> findByStatusAndAppointmentLocationId(@Param("status") Reservation.Status status,
+                                                           @Param("locationId") Long locationId);
 
 
     @Query("SELECT COUNT(r) FROM Reservation r WHERE " +
@@ -133,27 +149,78 @@ public interface ReservationRepository extends JpaRepository<Reservation, Long>
             "r.status = :status")
     long countByMemberIdAndStatus(@Param("memberId") Long memberId, @Param("status") String status);
 
-    // Statistika - broj rezervacija po mesecu za lokaciju
+    // Statistika - broj rezervacija za lokaciju u polu-otvorenom opsegu [from, to)
+    // (opseg nad r.start_time se seče po particijama i indeksu, za razliku od YEAR()/MONTH() predikata)
     @Query("SELECT COUNT(r) FROM Reservation r WHERE " +
-            "r.appointment.location.id = :locationId AND " +
-            "YEAR(r.appointment.startTime) = :year AND " +
-            "MONTH(r.appointment.startTime) = :month")
-    long countByLocationIdAndYearAndMonth(
+            "r.locationId = :locationId AND " +
+            "r.startTime >= :from AND " +
+            "r.startTime < :to")
+    long countByLocationIdAndStartTimeRange(
             @Param("locationId") Long locationId,
-            @Param("year") int year,
-            @Param("month") int month);
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to);
+
+    // Arhivirane rezervacije u opsegu - kopije polja termina u reservations_archive
+    @Query(value = "SELECT COUNT(*) FROM reservations_archive r WHERE " +
+            "r.location_id = :locationId AND r.start_time >= :from AND r.start_time < :to", nativeQuery = true)
+    long countArchivedByLocationIdAndStartTimeRange(
+            @Param("locationId") Long locationId,
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to);
+
+    // Statistika - broj rezervacija po mesecu za lokaciju, iz vruće i arhivske tabele (kao rollup)
+    default long countByLocationIdAndYearAndMonth(Long locationId, int year, int month) {
+        YearMonth period = YearMonth.of(year, month);
+        LocalDateTime from = period.atDay(1).atStartOfDay();
+        LocalDateTime to = period.plusMonths(1).atDay(1).atStartOfDay();
+        return countByLocationIdAndStartTimeRange(locationId, from, to)
+                + countArchivedByLocationIdAndStartTimeRange(locationId, from, to);
+    }
+
+    // [ukupno, otkazanih] rezervacija termina - za pomeranje mesečnog rollup-a pri promeni vremena termina
+    @Query("SELECT COUNT(r), COALESCE(SUM(CASE WHEN r.status = " +
+            "com.example.fitnessAndrea360.model.Reservation.Status.CANCELLED THEN 1 ELSE 0 END), 0) " +
+            "FROM Reservation r WHERE r.appointment.id = :appointmentId")
+    List<Object[]> countWithCancelledByAppointmentId(@Param("appointmentId") Long appointmentId);
+
+    // Mesečni zbirovi za lokaciju (za ponovno izgrađivanje rollup tabele), iz vruće i arhivske tabele
+    // Vraća redove: [period_start (DATE), reservation_count, cancelled_count]
+    @Query(value = "SELECT CAST(DATE_FORMAT(t.start_time, '%Y-%m-01') AS DATE) AS period_start, " +
+            "COUNT(*) AS reservation_count, " +
+            "SUM(CASE WHEN t.status = 'CANCELLED' THEN 1 ELSE 0 END) AS cancelled_count " +
+            "FROM (" +
+            "SELECT r.start_time, r.status FROM reservations r " +
+            "WHERE r.location_id = :locationId AND r.start_time >= :from AND r.start_time < :to " +
+            "UNION ALL " +
+            "SELECT r.start_time, r.status FROM reservations_archive r " +
+            "WHERE r.location_id = :locationId AND r.start_time >= :from AND r.start_time < :to" +
+            ") t " +
+            "GROUP BY period_start", nativeQuery = true)
+    List<Object[]> aggregateMonthlyByLocationId(
+            @Param("locationId") Long locationId,
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to);
 
     // Rezervacije sa isteklim terminima (prošle, a još CONFIRMED)
     @Query("SELECT r FROM Reservation r WHERE " +
-            "r.appointment.startTime < :now AND " +
+            "r.startTime < :now AND " +
             "r.status = com.example.fitnessAndrea360.model.Reservation.Status.CONFIRMED")
     List<Reservation> findExpiredReservations(@Param("now") LocalDateTime now);
 
+    // Izmena termina - kopije vremena, lokacije i usluge u rezervacijama prate termin
+    @Modifying
+    @Query("UPDATE Reservation r SET r.startTime = :startTime, r.locationId = :locationId, r.serviceId = :serviceId " +
+            "WHERE r.appointment.id = :appointmentId")
+    int syncAppointmentCopies(@Param("appointmentId") Long appointmentId,
+                              @Param("startTime") LocalDateTime startTime,
+                              @Param("locationId") Long locationId,
+                              @Param("serviceId") Long serviceId);
+
     // Provera da li član ima rezervaciju za određenu uslugu u određenom periodu
     @Query("SELECT COUNT(r) > 0 FROM Reservation r WHERE " +
             "r.member.id = :memberId AND " +
-            "r.appointment.service.id = :serviceId AND " +
-            "r.appointment.startTime BETWEEN :startTime AND :endTime AND " +
+            "r.serviceId = :serviceId AND " +
+            "r.startTime BETWEEN :startTime AND :endTime AND " +
             "r.status NOT IN (com.example.fitnessAndrea360.model.Reservation.Status.CANCELLED)")
     boolean hasReservationForServiceInPeriod(
             @Param("memberId") Long memberId,
@@ -0,0 +1,68 @@
+package com.example.fitnessAndrea360.repository;
+
+import com.example.fitnessAndrea360.model.SalesDailyStat;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface SalesDailyStatRepository extends JpaRepository<SalesDailyStat, Long> {
+
+    // Vremenska serija po danu, opcioni filteri za lokaciju i uslugu
+    // Vraća redove: [statDate, revenueEur, unitsSold, transactionCount, refundEur, refundCount]
+    @Query("SELECT s.statDate, SUM(s.revenueEur), SUM(s.unitsSold), SUM(s.transactionCount), " +
+            "SUM(s.refundEur), SUM(s.refundCount) " +
+            "FROM SalesDailyStat s WHERE " +
+            "s.statDate >= :from AND s.statDate < :to AND " +
+            "(:locationId IS NULL OR s.locationId = :locationId) AND " +
+            "(:serviceId IS NULL OR s.serviceId = :serviceId) " +
+            "GROUP BY s.statDate ORDER BY s.statDate")
+    List<Object[]> sumByDay(@Param("from") LocalDate from,
+                            @Param("to") LocalDate to,
+                            @Param("locationId") Long locationId,
+                            @Param("serviceId") Long serviceId);
+
+    // Zbir po usluzi za period
+    // Vraća redove: [serviceId, revenueEur, unitsSold, transactionCount, refundEur, refundCount]
+    @Query("SELECT s.serviceId, SUM(s.revenueEur), SUM(s.unitsSold), SUM(s.transactionCount), " +
+            "SUM(s.refundEur), SUM(s.refundCount) " +
+            "FROM SalesDailyStat s WHERE " +
+            "s.statDate >= :from AND s.statDate < :to AND " +
+            "(:locationId IS NULL OR s.locationId = :locationId) " +
+            "GROUP BY s.serviceId ORDER BY SUM(s.revenueEur) DESC")
+    List<Object[]> sumByService(@Param("from") LocalDate from,
+                                @Param("to") LocalDate to,
+                                @Param("locationId") Long locationId);
+
+    @Modifying
+    @Query(value = "INSERT INTO sales_daily_stats " +
+            "(stat_date, location_id, service_id, revenue_eur, units_sold, transaction_count, " +
+            "refund_eur, refund_count, updated_at) " +
+            "VALUES (:statDate, :locationId, :serviceId, :revenue, :units, :transactions, " +
+            ":refund, :refunds, NOW()) " +
+            "ON DUPLICATE KEY UPDATE " +
+            "revenue_eur = revenue_eur + :revenue, " +
+            "units_sold = units_sold + :units, " +
+            "transaction_count = transaction_count + :transactions, " +
+            "refund_eur = refund_eur + :refund, " +
+            "refund_count = refund_count + :refunds, " +
+            "updated_at = NOW()", nativeQuery = true)
+    void increment(@Param("statDate") LocalDate statDate,
+                   @Param("locationId") Long locationId,
+                   @Param("serviceId") Long serviceId,
+                   @Param("revenue") BigDecimal revenue,
+                   @Param("units") long units,
+                   @Param("transactions") long transactions,
+                   @Param("refund") BigDecimal refund,
+                   @Param("refunds") long refunds);
+
+    @Modifying
+    @Query("DELETE FROM SalesDailyStat s WHERE s.statDate >= :from AND s.statDate < :to")
+    void deleteByPeriod(@Param("from") LocalDate from, @Param("to") LocalDate to);
+}
@@ -0,0 +1,27 @@
+package com.example.fitnessAndrea360.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Oznake jednokratnih migracija po šardu (schema_migrations). Koraci koji menjaju šemu ili
+ * dopunjuju podatke nad celom tabelom se izvršavaju samo dok oznaka ne postoji, a ne pri svakom pokretanju.
+ */
+@Repository
+@RequiredArgsConstructor
+public class SchemaMigrationJdbcRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public boolean isApplied(String name) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM schema_migrations WHERE name = ?", Integer.class, name);
+        return count != null && count > 0;
+    }
+
+    // INSERT IGNORE - dva čvora koja istovremeno završe isti korak ne prave grešku
+    public void markApplied(String name) {
+        jdbcTemplate.update("INSERT IGNORE INTO schema_migrations (name) VALUES (?)", name);
+    }
+}
@@ -3,7 +3,10 @@ package com.example.fitnessAndrea360.repository;
 import com.example.fitnessAndrea360.model.Location;
 import com.example.fitnessAndrea360.model.Service;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface ServiceRepository extends JpaRepository<Service, Integer> {
@@ -15,4 +18,8 @@ public interface ServiceRepository extends JpaRepository<Service, Integer> {
 
     boolean existsByNameAndLocationsId(String name, Long locationId);
     List<Service> findByLocationsContains(Location location);
+
+    // Samo id i naziv, bez učitavanja lokacija - vraća redove: [id, name]
+    @Query("SELECT s.id, s.name FROM Service s WHERE s.id IN :ids")
+    List<Object[]> findNamesByIds(@Param("ids") Collection<Long> ids);
 }
@@ -3,5 +3,9 @@ package com.example.fitnessAndrea360.repository;
 import com.example.fitnessAndrea360.model.Transaction;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.Optional;
+
 public interface TransactionRepository extends JpaRepository<Transaction, Integer> {
+
+    Optional<Transaction> findByPurchaseId(Long purchaseId);
 }
@@ -0,0 +1,49 @@
+package com.example.fitnessAndrea360.repository;
+
+import com.example.fitnessAndrea360.model.User;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Kopija reda korisnika na šardu lokacije. Original je na globalnom šardu; kopija je potrebna odmah
+ * (members.user_id, employees.user_id), pre nego što je replikacija donese. Isti ID i iste vrednosti,
+ * pa je upis idempotentan i kada replikacija stigne prva.
+ */
+@Repository
+@RequiredArgsConstructor
+public class UserCopyJdbcRepository {
+
+    private static final String UPSERT_SQL =
+            "INSERT INTO users (id, email, password, role_id, first_name, last_name, username, phone, is_active, " +
+            "location_id, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE email = VALUES(email), password = VALUES(password), role_id = VALUES(role_id), " +
+            "first_name = VALUES(first_name), last_name = VALUES(last_name), username = VALUES(username), " +
+            "phone = VALUES(phone), is_active = VALUES(is_active), location_id = VALUES(location_id), " +
+            "updated_at = VALUES(updated_at)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void upsert(User user) {
+        jdbcTemplate.update(UPSERT_SQL, values(user));
+    }
+
+    public void upsertAll(List<User> users) {
+        jdbcTemplate.batchUpdate(UPSERT_SQL, users.stream().map(UserCopyJdbcRepository::values).toList());
+    }
+
+    private static Object[] values(User user) {
+        return new Object[]{user.getId(), user.getEmail(), user.getPassword(), user.getRole().getId(),
+                user.getFirstName(), user.getLastName(), user.getUsername(), user.getPhone(), user.getIsActive(),
+                user.getLocation() != null ? user.getLocation().getId() : null,
+                toTimestamp(user.getCreatedAt()), toTimestamp(user.getUpdatedAt())};
+    }
+
+    private static Timestamp toTimestamp(LocalDateTime value) {
+        return value != null ? Timestamp.valueOf(value) : null;
+    }
+}
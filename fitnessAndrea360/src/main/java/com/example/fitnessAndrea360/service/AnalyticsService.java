@@ -0,0 +1,371 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.config.ShardContext;
+import com.example.fitnessAndrea360.config.ShardRouter;
+import com.example.fitnessAndrea360.dto.SalesBackfillResultDTO;
+import com.example.fitnessAndrea360.dto.SalesStatsDTO;
+import com.example.fitnessAndrea360.exception.UnauthorizedAccessException;
+import com.example.fitnessAndrea360.exception.ValidationException;
+import com.example.fitnessAndrea360.model.Purchase;
+import com.example.fitnessAndrea360.model.Transaction;
+import com.example.fitnessAndrea360.model.User;
+import com.example.fitnessAndrea360.repository.SalesDailyStatRepository;
+import com.example.fitnessAndrea360.repository.ServiceRepository;
+import com.example.fitnessAndrea360.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Analitika prihoda i prodaje.
+ * Upiti čitaju dnevnu rollup tabelu (sales_daily_stats) koju StripeService ažurira pri svakoj
+ * potvrđenoj i refundiranoj kupovini, tako da vremenske serije ne skeniraju transakcije i kupovine.
+ * Refund ostaje na danu plaćanja (kao u backfill-u): prodaja se ne briše, refund_eur se oduzima od neto prihoda.
+ */
+@Slf4j
+@Service
+public class AnalyticsService {
+
+    private static final long MAX_DAYS = 3660;
+
+    // Forward-only čitanje istorije: MySQL Connector/J strimuje red po red samo uz fetchSize = Integer.MIN_VALUE
+    private static final String BACKFILL_SQL =
+            "SELECT t.payment_date, m.location_id, p.service_id, t.amount_eur, p.quantity, t.status " +
+            "FROM transactions t " +
+            "JOIN purchases p ON p.id = t.purchase_id " +
+            "JOIN members m ON m.id = p.member_id " +
+            "WHERE t.status IN ('SUCCESS', 'REFUNDED') " +
+            "AND t.payment_date >= ? AND t.payment_date < ?";
+
+    private static final String INSERT_ROLLUP_SQL =
+            "INSERT INTO sales_daily_stats " +
+            "(stat_date, location_id, service_id, revenue_eur, units_sold, transaction_count, " +
+            "refund_eur, refund_count, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, NOW())";
+
+    private final SalesDailyStatRepository salesDailyStatRepository;
+    private final ServiceRepository serviceRepository;
+    private final UserRepository userRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate shardTemplate;
+
+    public AnalyticsService(SalesDailyStatRepository salesDailyStatRepository,
+                            ServiceRepository serviceRepository,
+                            UserRepository userRepository,
+                            JdbcTemplate jdbcTemplate,
+                            ShardRouter shardRouter,
+                            PlatformTransactionManager transactionManager) {
+        this.salesDailyStatRepository = salesDailyStatRepository;
+        this.serviceRepository = serviceRepository;
+        this.userRepository = userRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.shardRouter = shardRouter;
+        this.shardTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    private User getCurrentUserWithLocation() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String email = authentication.getName();
+        return userRepository.findByEmailWithLocation(email)
+                .orElseThrow(() -> new RuntimeException("Trenutni korisnik nije pronađen u bazi"));
+    }
+
+    // ========== INKREMENTALNO AŽURIRANJE ==========
+
+    /**
+     * Upiši uspešnu prodaju u dnevni rollup (poziva se u istoj transakciji kao i potvrda plaćanja).
+     */
+    public void recordSale(Purchase purchase, Transaction transaction) {
+        salesDailyStatRepository.increment(
+                statDate(transaction),
+                purchase.getMember().getLocation().getId(),
+                purchase.getService().getId(),
+                amount(purchase, transaction),
+                purchase.getQuantity(),
+                1,
+                BigDecimal.ZERO,
+                0);
+    }
+
+    /**
+     * Upiši refund prodaje u red dana plaćanja (poziva se u istoj transakciji kao i refund).
+     */
+    public void recordRefund(Purchase purchase, Transaction transaction) {
+        salesDailyStatRepository.increment(
+                statDate(transaction),
+                purchase.getMember().getLocation().getId(),
+                purchase.getService().getId(),
+                BigDecimal.ZERO,
+                0,
+                0,
+                amount(purchase, transaction),
+                1);
+    }
+
+    // ========== UPITI ==========
+
+    @Transactional(readOnly = true)
+    public List<SalesStatsDTO> getDailySeries(LocalDate from, LocalDate to, Long locationId, Long serviceId) {
+        Long scopedLocationId = resolveLocationScope(locationId);
+        validatePeriod(from, to);
+
+        List<Object[]> rows = queryShards(scopedLocationId,
+                () -> salesDailyStatRepository.sumByDay(from, to.plusDays(1), scopedLocationId, serviceId));
+
+        // Isti dan može doći sa više šardova - sabira se
+        Map<LocalDate, SalesStatsDTO> byDay = new TreeMap<>();
+        for (Object[] row : rows) {
+            SalesStatsDTO day = toStats((LocalDate) row[0], serviceId, null, row);
+            SalesStatsDTO existing = byDay.putIfAbsent(day.getPeriodStart(), day);
+            if (existing != null) {
+                accumulate(existing, day);
+            }
+        }
+        return new ArrayList<>(byDay.values());
+    }
+
+    @Transactional(readOnly = true)
+    public List<SalesStatsDTO> getMonthlySeries(YearMonth from, YearMonth to, Long locationId, Long serviceId) {
+        List<SalesStatsDTO> daily = getDailySeries(from.atDay(1), to.atEndOfMonth(), locationId, serviceId);
+
+        Map<YearMonth, SalesStatsDTO> byMonth = new TreeMap<>();
+        for (SalesStatsDTO day : daily) {
+            YearMonth month = YearMonth.from(day.getPeriodStart());
+            SalesStatsDTO total = byMonth.computeIfAbsent(month, m -> emptyStats(m.atDay(1), serviceId));
+            accumulate(total, day);
+        }
+        return new ArrayList<>(byMonth.values());
+    }
+
+    @Transactional(readOnly = true)
+    public List<SalesStatsDTO> getSalesByService(LocalDate from, LocalDate to, Long locationId) {
+        Long scopedLocationId = resolveLocationScope(locationId);
+        validatePeriod(from, to);
+
+        List<Object[]> rows = queryShards(scopedLocationId,
+                () -> salesDailyStatRepository.sumByService(from, to.plusDays(1), scopedLocationId));
+
+        Set<Long> serviceIds = rows.stream().map(row -> (Long) row[0]).collect(Collectors.toSet());
+        Map<Long, String> serviceNames = new HashMap<>();
+        if (!serviceIds.isEmpty()) {
+            for (Object[] nameRow : serviceRepository.findNamesByIds(serviceIds)) {
+                serviceNames.put((Long) nameRow[0], (String) nameRow[1]);
+            }
+        }
+
+        Map<Long, SalesStatsDTO> byService = new LinkedHashMap<>();
+        for (Object[] row : rows) {
+            SalesStatsDTO stats = toStats(null, (Long) row[0], serviceNames.get((Long) row[0]), row);
+            SalesStatsDTO existing = byService.putIfAbsent(stats.getServiceId(), stats);
+            if (existing != null) {
+                accumulate(existing, stats);
+            }
+        }
+        return byService.values().stream()
+                .sorted(Comparator.comparing(SalesStatsDTO::getRevenueEur).reversed())
+                .collect(Collectors.toList());
+    }
+
+    // ========== BACKFILL ==========
+
+    /**
+     * Ponovo izračunaj rollup za period [from, to] iz istorijskih transakcija, redom po šardovima
+     * (svaki šard ima svoje transakcije i svoj rollup).
+     * Transakcije se čitaju forward-only kursorom i agregiraju u memoriji (jedan unos po danu/lokaciji/usluzi),
+     * pa se rollup šarda za period zamenjuje batch insert-om u transakciji tog šarda.
+     */
+    public SalesBackfillResultDTO backfill(LocalDate from, LocalDate to) {
+        User currentUser = getCurrentUserWithLocation();
+        if (!currentUser.getRole().getName().equals("ADMIN")) {
+            throw new UnauthorizedAccessException("Samo admin može pokrenuti backfill analitike");
+        }
+        validatePeriod(from, to);
+
+        long started = System.currentTimeMillis();
+        long rowsScanned = 0;
+        int rollupRowsWritten = 0;
+        for (String shard : shardRouter.shards()) {
+            ShardContext.set(shard);
+            try {
+                long[] counts = shardTemplate.execute(status -> backfillShard(from, to));
+                rowsScanned += counts[0];
+                rollupRowsWritten += counts[1];
+                log.info("Backfill analitike {} - {} (šard {}): skenirano {} transakcija, upisano {} rollup redova",
+                        from, to, shard, counts[0], counts[1]);
+            } finally {
+                ShardContext.clear();
+            }
+        }
+
+        long elapsed = System.currentTimeMillis() - started;
+        log.info("Backfill analitike {} - {}: skenirano {} transakcija, upisano {} rollup redova za {} ms",
+                from, to, rowsScanned, rollupRowsWritten, elapsed);
+
+        return SalesBackfillResultDTO.builder()
+                .from(from)
+                .to(to)
+                .rowsScanned(rowsScanned)
+                .rollupRowsWritten(rollupRowsWritten)
+                .elapsedMs(elapsed)
+                .build();
+    }
+
+    // [skenirano transakcija, upisano rollup redova] za tekući šard
+    private long[] backfillShard(LocalDate from, LocalDate to) {
+        LocalDate toExclusive = to.plusDays(1);
+
+        Map<RollupKey, RollupTotals> totals = new HashMap<>();
+        long[] rowsScanned = {0};
+
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    BACKFILL_SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(Integer.MIN_VALUE);
+            statement.setDate(1, Date.valueOf(from));
+            statement.setDate(2, Date.valueOf(toExclusive));
+            return statement;
+        }, rs -> {
+            rowsScanned[0]++;
+            RollupKey key = new RollupKey(
+                    rs.getDate(1).toLocalDate(), rs.getLong(2), rs.getLong(3));
+            RollupTotals total = totals.computeIfAbsent(key, k -> new RollupTotals());
+
+            BigDecimal amount = rs.getBigDecimal(4);
+            total.revenue = total.revenue.add(amount);
+            total.units += rs.getInt(5);
+            total.transactions++;
+            if (Transaction.Status.REFUNDED.name().equals(rs.getString(6))) {
+                total.refund = total.refund.add(amount);
+                total.refunds++;
+            }
+        });
+
+        salesDailyStatRepository.deleteByPeriod(from, toExclusive);
+
+        List<Map.Entry<RollupKey, RollupTotals>> entries = new ArrayList<>(totals.entrySet());
+        jdbcTemplate.batchUpdate(INSERT_ROLLUP_SQL, entries, 500, (ps, entry) -> {
+            RollupKey key = entry.getKey();
+            RollupTotals total = entry.getValue();
+            ps.setDate(1, Date.valueOf(key.statDate()));
+            ps.setLong(2, key.locationId());
+            ps.setLong(3, key.serviceId());
+            ps.setBigDecimal(4, total.revenue);
+            ps.setLong(5, total.units);
+            ps.setLong(6, total.transactions);
+            ps.setBigDecimal(7, total.refund);
+            ps.setLong(8, total.refunds);
+        });
+        return new long[]{rowsScanned[0], entries.size()};
+    }
+
+    // ========== POMOĆNE METODE ==========
+
+    private static LocalDate statDate(Transaction transaction) {
+        return transaction.getPaymentDate() != null ? transaction.getPaymentDate() : LocalDate.now();
+    }
+
+    private static BigDecimal amount(Purchase purchase, Transaction transaction) {
+        return transaction.getAmountEur() != null ? transaction.getAmountEur() : purchase.getTotalPriceEur();
+    }
+
+    // Jedna lokacija - njen šard; sve lokacije (admin) - paralelno svi šardovi
+    private List<Object[]> queryShards(Long locationId, Supplier<List<Object[]>> query) {
+        return locationId != null ? shardRouter.readOnLocation(locationId, query) : shardRouter.scatterGather(query);
+    }
+
+    private Long resolveLocationScope(Long requestedLocationId) {
+        User user = getCurrentUserWithLocation();
+        String userRole = user.getRole().getName();
+
+        if (userRole.equals("ADMIN")) {
+            return requestedLocationId;
+        }
+
+        if (userRole.equals("EMPLOYEE")) {
+            if (user.getLocation() == null) {
+                throw new UnauthorizedAccessException("Zaposleni nema dodeljenu lokaciju");
+            }
+            Long employeeLocationId = user.getLocation().getId();
+            if (requestedLocationId != null && !requestedLocationId.equals(employeeLocationId)) {
+                throw new UnauthorizedAccessException("Možete videti samo analitiku svoje lokacije");
+            }
+            return employeeLocationId;
+        }
+
+        throw new UnauthorizedAccessException("Samo admin i zaposleni mogu videti analitiku");
+    }
+
+    private void validatePeriod(LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            throw new ValidationException("Kraj perioda mora biti nakon početka");
+        }
+        if (from.plusDays(MAX_DAYS).isBefore(to)) {
+            throw new ValidationException("Period može obuhvatiti najviše " + MAX_DAYS + " dana");
+        }
+    }
+
+    private SalesStatsDTO toStats(LocalDate periodStart, Long serviceId, String serviceName, Object[] row) {
+        BigDecimal revenue = row[1] != null ? (BigDecimal) row[1] : BigDecimal.ZERO;
+        BigDecimal refund = row[4] != null ? (BigDecimal) row[4] : BigDecimal.ZERO;
+
+        return SalesStatsDTO.builder()
+                .periodStart(periodStart)
+                .serviceId(serviceId)
+                .serviceName(serviceName)
+                .revenueEur(revenue)
+                .unitsSold(row[2] != null ? ((Number) row[2]).longValue() : 0L)
+                .transactionCount(row[3] != null ? ((Number) row[3]).longValue() : 0L)
+                .refundEur(refund)
+                .refundCount(row[5] != null ? ((Number) row[5]).longValue() : 0L)
+                .netRevenueEur(revenue.subtract(refund))
+                .build();
+    }
+
+    private SalesStatsDTO emptyStats(LocalDate periodStart, Long serviceId) {
+        return SalesStatsDTO.builder()
+                .periodStart(periodStart)
+                .serviceId(serviceId)
+                .revenueEur(BigDecimal.ZERO)
+                .unitsSold(0L)
+                .transactionCount(0L)
+                .refundEur(BigDecimal.ZERO)
+                .refundCount(0L)
+                .netRevenueEur(BigDecimal.ZERO)
+                .build();
+    }
+
+    private void accumulate(SalesStatsDTO total, SalesStatsDTO day) {
+        total.setRevenueEur(total.getRevenueEur().add(day.getRevenueEur()));
+        total.setUnitsSold(total.getUnitsSold() + day.getUnitsSold());
+        total.setTransactionCount(total.getTransactionCount() + day.getTransactionCount());
+        total.setRefundEur(total.getRefundEur().add(day.getRefundEur()));
+        total.setRefundCount(total.getRefundCount() + day.getRefundCount());
+        total.setNetRevenueEur(total.getRevenueEur().subtract(total.getRefundEur()));
+    }
+
+    private record RollupKey(LocalDate statDate, Long locationId, Long serviceId) {
+    }
+
+    private static class RollupTotals {
+        private BigDecimal revenue = BigDecimal.ZERO;
+        private long units;
+        private long transactions;
+        private BigDecimal refund = BigDecimal.ZERO;
+        private long refunds;
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.model.Appointment;
+
+import java.time.LocalDateTime;
+
+/**
+ * Zauzet interval neotkazanog termina - jedinica provere preklapanja (ScheduleConflictGuard,
+ * serije termina) i keša za pretragu slobodnih termina (AppointmentIntervalIndex).
+ */
+public record AppointmentInterval(Long id, Long memberId, Long locationId, LocalDateTime start, LocalDateTime end) {
+
+    static AppointmentInterval of(Appointment appointment) {
+        return new AppointmentInterval(appointment.getId(), appointment.getMember().getId(),
+                appointment.getLocation().getId(), appointment.getStartTime(), appointment.getEndTime());
+    }
+
+    // Red iz AppointmentRepository.findIntervalsBy*: [id, memberId, locationId, startTime, endTime]
+    static AppointmentInterval of(Object[] row) {
+        return new AppointmentInterval((Long) row[0], (Long) row[1], (Long) row[2],
+                (LocalDateTime) row[3], (LocalDateTime) row[4]);
+    }
+}
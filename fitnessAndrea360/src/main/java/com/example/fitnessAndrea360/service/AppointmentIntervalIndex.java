@@ -0,0 +1,214 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.model.Appointment;
+import com.example.fitnessAndrea360.repository.AppointmentRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Keš zauzetih intervala (neotkazanih termina) po lokaciji i po članu za pretragu slobodnih termina
+ * (AppointmentSlotService) - jedini korisnik indeksa.
+ *
+ * Indeks se puni iz baze za horizont zakazivanja pri prvom upitu i osvežava po isteku TTL-a (da bi
+ * izmene sa drugih instanci aplikacije bile vidljive). Upisi u ovoj instanci ga ažuriraju tek posle
+ * commit-a transakcije, da predlozi ne nude upravo zauzet termin. Upiti van horizonta idu direktno u bazu.
+ *
+ * ID-evi članova i termina su jedinstveni samo unutar šarda, pa je šard deo ključa bucket-a i svake izmene.
+ *
+ * Indeks može kasniti (TTL, druge instance) i ne odlučuje ni o jednom upisu: preklapanja pri upisu
+ * proverava ScheduleConflictGuard upitom nad bazom pod bravom reda.
+ */
+@Slf4j
+@Component
+public class AppointmentIntervalIndex {
+
+    private final AppointmentRepository appointmentRepository;
+    private final int horizonDays;
+    private final Duration ttl;
+    private final int maxMemberIndexes;
+
+    private final Map<Key, Bucket> locationBuckets = new ConcurrentHashMap<>();
+    private final Map<Key, Bucket> memberBuckets;
+    // Broj primenjenih izmena - bucket učitan dok je izmena primenjivana se ne kešira (snimak pre commit-a)
+    private final AtomicLong generation = new AtomicLong();
+
+    public AppointmentIntervalIndex(AppointmentRepository appointmentRepository,
+                                    @Value("${app.scheduling.index-horizon-days:90}") int horizonDays,
+                                    @Value("${app.scheduling.index-ttl-minutes:5}") int ttlMinutes,
+                                    @Value("${app.scheduling.index-max-members:10000}") int maxMemberIndexes) {
+        this.appointmentRepository = appointmentRepository;
+        this.horizonDays = horizonDays;
+        this.ttl = Duration.ofMinutes(ttlMinutes);
+        this.maxMemberIndexes = maxMemberIndexes;
+        // LRU - indeks člana se učitava tek kada član zakazuje, najstariji ispadaju
+        this.memberBuckets = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Bucket> eldest) {
+                return size() > AppointmentIntervalIndex.this.maxMemberIndexes;
+            }
+        });
+    }
+
+    // ========== UPITI ==========
+
+    public List<AppointmentInterval> findLocationOverlaps(Long locationId, LocalDateTime from, LocalDateTime to) {
+        return overlaps(locationBuckets, new Key(EntitlementCache.currentShard(), locationId), from, to, this::loadLocation);
+    }
+
+    public List<AppointmentInterval> findMemberOverlaps(Long memberId, LocalDateTime from, LocalDateTime to) {
+        return overlaps(memberBuckets, new Key(EntitlementCache.currentShard(), memberId), from, to, this::loadMember);
+    }
+
+    // ========== AŽURIRANJE IZ PUTANJA UPISA ==========
+
+    // Sačuvan ili izmenjen termin - otkazani se uklanjaju iz indeksa
+    public void recordSaved(Appointment appointment) {
+        AppointmentInterval interval = "CANCELLED".equals(appointment.getStatus()) ? null : AppointmentInterval.of(appointment);
+        Long id = appointment.getId();
+        String shard = EntitlementCache.currentShard();
+        afterCommit(() -> change(() -> {
+            removeEverywhere(shard, id);
+            if (interval != null) {
+                apply(shard, interval);
+            }
+        }));
+    }
+
+    public void recordCreated(Collection<AppointmentInterval> intervals) {
+        List<AppointmentInterval> copy = List.copyOf(intervals);
+        String shard = EntitlementCache.currentShard();
+        afterCommit(() -> change(() -> copy.forEach(interval -> apply(shard, interval))));
+    }
+
+    public void recordDeleted(Long appointmentId) {
+        String shard = EntitlementCache.currentShard();
+        afterCommit(() -> change(() -> removeEverywhere(shard, appointmentId)));
+    }
+
+    // ========== INTERNO ==========
+
+    private List<AppointmentInterval> overlaps(Map<Key, Bucket> buckets, Key key, LocalDateTime from, LocalDateTime to,
+                                    Function<Window, List<Object[]>> loader) {
+        LocalDateTime now = LocalDateTime.now();
+        Window horizon = new Window(key.id(), now.minusDays(1), now.plusDays(horizonDays));
+
+        // Van horizonta - direktan upit, bez keširanja
+        if (from.isBefore(horizon.from()) || to.isAfter(horizon.to())) {
+            AppointmentIntervalSet set = new AppointmentIntervalSet();
+            loader.apply(new Window(key.id(), from, to)).forEach(row -> set.add(AppointmentInterval.of(row)));
+            return set.overlapping(from, to);
+        }
+
+        Bucket bucket = buckets.get(key);
+        if (bucket == null || bucket.isExpired(now, ttl) || !bucket.covers(from, to)) {
+            long loadedAtGeneration = generation.get();
+            bucket = new Bucket(horizon, now);
+            for (Object[] row : loader.apply(horizon)) {
+                bucket.set.add(AppointmentInterval.of(row));
+            }
+            // Izmena primenjena tokom učitavanja možda nije u snimku - takav bucket se ne kešira
+            synchronized (generation) {
+                if (generation.get() == loadedAtGeneration) {
+                    buckets.put(key, bucket);
+                }
+            }
+        }
+        synchronized (bucket) {
+            return bucket.set.overlapping(from, to);
+        }
+    }
+
+    // Provera generacije i keširanje novog bucket-a su pod istom bravom kao i primena izmene
+    private void change(Runnable action) {
+        synchronized (generation) {
+            generation.incrementAndGet();
+            action.run();
+        }
+    }
+
+    private void apply(String shard, AppointmentInterval interval) {
+        Bucket location = locationBuckets.get(new Key(shard, interval.locationId()));
+        if (location != null) {
+            synchronized (location) {
+                location.set.add(interval);
+            }
+        }
+        Bucket member = memberBuckets.get(new Key(shard, interval.memberId()));
+        if (member != null) {
+            synchronized (member) {
+                member.set.add(interval);
+            }
+        }
+    }
+
+    private void removeEverywhere(String shard, Long appointmentId) {
+        locationBuckets.forEach((key, bucket) -> remove(shard, key, bucket, appointmentId));
+        synchronized (memberBuckets) {
+            memberBuckets.forEach((key, bucket) -> remove(shard, key, bucket, appointmentId));
+        }
+    }
+
+    private static void remove(String shard, Key key, Bucket bucket, Long appointmentId) {
+        if (key.shard().equals(shard)) {
+            synchronized (bucket) {
+                bucket.set.remove(appointmentId);
+            }
+        }
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private List<Object[]> loadLocation(Window window) {
+        return appointmentRepository.findIntervalsByLocation(window.key(), window.from(), window.to());
+    }
+
+    private List<Object[]> loadMember(Window window) {
+        return appointmentRepository.findIntervalsByMember(window.key(), window.from(), window.to());
+    }
+
+    private record Key(String shard, Long id) {
+    }
+
+    private record Window(Long key, LocalDateTime from, LocalDateTime to) {
+    }
+
+    private static final class Bucket {
+        private final AppointmentIntervalSet set = new AppointmentIntervalSet();
+        private final Window horizon;
+        private final LocalDateTime loadedAt;
+
+        private Bucket(Window horizon, LocalDateTime loadedAt) {
+            this.horizon = horizon;
+            this.loadedAt = loadedAt;
+        }
+
+        private boolean isExpired(LocalDateTime now, Duration ttl) {
+            return loadedAt.plus(ttl).isBefore(now);
+        }
+
+        private boolean covers(LocalDateTime from, LocalDateTime to) {
+            return !from.isBefore(horizon.from()) && !to.isAfter(horizon.to());
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.fitnessAndrea360.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Skup zauzetih intervala sortiran po početku; drži i najduže trajanje u skupu, pa se preklapanje sa
+ * [from, to) svodi na jedan podopseg TreeMap-e: početak u (from - maxTrajanje, to) i kraj posle from.
+ * To je O(log n + k) - isto što daje interval stablo kada su trajanja ograničena (treninzi od par sati).
+ *
+ * Nije thread-safe - AppointmentIntervalIndex ga zaključava po bucket-u, ostali koriste lokalnu instancu.
+ */
+public final class AppointmentIntervalSet {
+    private final TreeMap<LocalDateTime, Map<Long, AppointmentInterval>> byStart = new TreeMap<>();
+    private final Map<Long, AppointmentInterval> byId = new HashMap<>();
+    private Duration maxDuration = Duration.ZERO;
+
+    public void add(AppointmentInterval interval) {
+        remove(interval.id());
+        byStart.computeIfAbsent(interval.start(), start -> new HashMap<>()).put(interval.id(), interval);
+        byId.put(interval.id(), interval);
+        Duration duration = Duration.between(interval.start(), interval.end());
+        if (duration.compareTo(maxDuration) > 0) {
+            maxDuration = duration;
+        }
+    }
+
+    public void remove(Long id) {
+        AppointmentInterval existing = byId.remove(id);
+        if (existing == null) {
+            return;
+        }
+        Map<Long, AppointmentInterval> sameStart = byStart.get(existing.start());
+        sameStart.remove(id);
+        if (sameStart.isEmpty()) {
+            byStart.remove(existing.start());
+        }
+    }
+
+    // Intervali koji se preklapaju sa [from, to) - dodirivanje krajeva nije preklapanje
+    public List<AppointmentInterval> overlapping(LocalDateTime from, LocalDateTime to) {
+        List<AppointmentInterval> result = new ArrayList<>();
+        for (Map<Long, AppointmentInterval> sameStart : byStart.subMap(from.minus(maxDuration), true, to, false).values()) {
+            for (AppointmentInterval interval : sameStart.values()) {
+                if (interval.end().isAfter(from)) {
+                    result.add(interval);
+                }
+            }
+        }
+        return result;
+    }
+
+    public boolean isEmpty() {
+        return byId.isEmpty();
+    }
+
+    public boolean overlaps(LocalDateTime from, LocalDateTime to) {
+        return !overlapping(from, to).isEmpty();
+    }
+
+    public int size() {
+        return byId.size();
+    }
+}
@@ -0,0 +1,299 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.config.ShardRouter;
+import com.example.fitnessAndrea360.dto.AppointmentSeriesOccurrenceDTO;
+import com.example.fitnessAndrea360.dto.AppointmentSeriesRequestDTO;
+import com.example.fitnessAndrea360.dto.AppointmentSeriesResultDTO;
+import com.example.fitnessAndrea360.event.ScheduleChangedEvent;
+import com.example.fitnessAndrea360.exception.ResourceNotFoundException;
+import com.example.fitnessAndrea360.exception.UnauthorizedAccessException;
+import com.example.fitnessAndrea360.exception.ValidationException;
+import com.example.fitnessAndrea360.model.Location;
+import com.example.fitnessAndrea360.model.Member;
+import com.example.fitnessAndrea360.model.User;
+import com.example.fitnessAndrea360.repository.ChangeLogRepository;
+import com.example.fitnessAndrea360.repository.LocationRepository;
+import com.example.fitnessAndrea360.repository.MemberRepository;
+import com.example.fitnessAndrea360.repository.ServiceRepository;
+import com.example.fitnessAndrea360.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generisanje ponavljajućih serija termina (npr. grupni trening svakog utorka i četvrtka u 18h).
+ * Pojave se razvijaju iz nedeljnog pravila, konflikti se proveravaju u memoriji nad jednim
+ * prozorom termina lokacije/člana učitanim iz baze pod bravom (ScheduleConflictGuard), a validni
+ * termini se upisuju JDBC batch insert-om.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AppointmentSeriesService {
+
+    // Najduža serija - jedan termin unapred (godina dana)
+    private static final int MAX_SERIES_DAYS = 366;
+    private static final int INSERT_BATCH_SIZE = 500;
+
+    private static final String INSERT_APPOINTMENT_SQL =
+            "INSERT INTO appointments (service_id, member_id, location_id, max_capacity, current_capacity, " +
+            "created_by, start_time, end_time, status, notes, created_at, updated_at) " +
+            "VALUES (?, ?, ?, ?, 0, ?, ?, ?, 'SCHEDULED', ?, ?, ?)";
+
+    private final ServiceRepository serviceRepository;
+    private final MemberRepository memberRepository;
+    private final LocationRepository locationRepository;
+    private final UserRepository userRepository;
+    private final AppointmentService appointmentService;
+    private final AppointmentIntervalIndex appointmentIntervalIndex;
+    private final ScheduleConflictGuard scheduleConflictGuard;
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ChangeLogRepository changeLogRepository;
+    private final ShardRouter shardRouter;
+
+    private User getCurrentUserWithLocation() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String email = authentication.getName();
+        return userRepository.findByEmailWithLocation(email)
+                .orElseThrow(() -> new RuntimeException("Trenutni korisnik nije pronađen u bazi"));
+    }
+
+    @Transactional
+    public AppointmentSeriesResultDTO createSeries(AppointmentSeriesRequestDTO request) {
+        User currentUser = getCurrentUserWithLocation();
+        Long targetLocationId = resolveTargetLocation(currentUser, request.getLocationId());
+        shardRouter.requireLocationShard(targetLocationId);
+
+        validateSeriesRequest(request);
+
+        // 1. Jednom za celu seriju: usluga, član, lokacija i pravila koja ne zavise od vremena
+        com.example.fitnessAndrea360.model.Service service = serviceRepository.findById(Math.toIntExact(request.getServiceId()))
+                .orElseThrow(() -> new ResourceNotFoundException("Usluga nije pronađena"));
+        Member member = memberRepository.findById(request.getMemberId())
+                .orElseThrow(() -> new ResourceNotFoundException("Član nije pronađen"));
+        Location location = locationRepository.findById(targetLocationId)
+                .orElseThrow(() -> new ResourceNotFoundException("Lokacija nije pronađena"));
+
+        appointmentService.validateAppointmentTarget(service, member, location);
+
+        // 2. Razvijanje pravila u konkretne termine
+        List<Slot> occurrences = expand(request, service.getDurationMinutes());
+        if (occurrences.isEmpty()) {
+            throw new ValidationException("Pravilo serije ne daje nijedan termin u zadatom periodu");
+        }
+
+        // 3. Brava na lokaciju/člana, pa zauzeti intervali za ceo prozor serije iz baze (sa razmakom za termine člana)
+        boolean checkLocation = service.getMaxCapacity() > 1;
+        scheduleConflictGuard.lock(member.getId(), checkLocation ? location.getId() : null);
+        LocalDateTime windowFrom = occurrences.get(0).start.minusMinutes(ScheduleConflictGuard.MEMBER_BUFFER_MINUTES);
+        LocalDateTime windowTo = occurrences.get(occurrences.size() - 1).end.plusMinutes(ScheduleConflictGuard.MEMBER_BUFFER_MINUTES);
+        AppointmentIntervalSet memberBusy = scheduleConflictGuard.memberBusy(member.getId(), windowFrom, windowTo, null);
+        AppointmentIntervalSet locationBusy = checkLocation
+                ? scheduleConflictGuard.locationBusy(location.getId(), windowFrom, windowTo, null)
+                : new AppointmentIntervalSet();
+
+        // 4. Provera konflikata u memoriji - prihvaćeni termini serije ulaze u skup zauzetih
+        List<Slot> accepted = new ArrayList<>();
+        List<AppointmentSeriesOccurrenceDTO> skipped = new ArrayList<>();
+        long pendingId = -1;
+        for (Slot slot : occurrences) {
+            String conflict = findConflict(slot, memberBusy, checkLocation ? locationBusy : null);
+            if (conflict != null) {
+                skipped.add(toOccurrence(null, slot, conflict));
+                continue;
+            }
+            accepted.add(slot);
+            AppointmentInterval pending = new AppointmentInterval(
+                    pendingId--, member.getId(), location.getId(), slot.start, slot.end);
+            memberBusy.add(pending);
+            locationBusy.add(pending);
+        }
+
+        if (!skipped.isEmpty() && !Boolean.TRUE.equals(request.getSkipConflicts())) {
+            AppointmentSeriesOccurrenceDTO first = skipped.get(0);
+            throw new ValidationException("Serija ima " + skipped.size() + " termina u konfliktu (prvi: " +
+                    first.getStartTime() + " - " + first.getConflict() + ")");
+        }
+
+        // 5. Batch upis validnih termina
+        List<AppointmentSeriesOccurrenceDTO> created = new ArrayList<>(accepted.size());
+        List<AppointmentInterval> createdIntervals = new ArrayList<>(accepted.size());
+        for (int from = 0; from < accepted.size(); from += INSERT_BATCH_SIZE) {
+            List<Slot> chunk = accepted.subList(from, Math.min(from + INSERT_BATCH_SIZE, accepted.size()));
+            List<Long> ids = insertChunk(chunk, service, member.getId(), location.getId(), currentUser.getId(), request.getNotes());
+            for (int i = 0; i < chunk.size(); i++) {
+                Slot slot = chunk.get(i);
+                created.add(toOccurrence(ids.get(i), slot, null));
+                createdIntervals.add(new AppointmentInterval(
+                        ids.get(i), member.getId(), location.getId(), slot.start, slot.end));
+            }
+        }
+        appointmentIntervalIndex.recordCreated(createdIntervals);
+        List<ChangeLogRepository.Change> changes = new ArrayList<>(createdIntervals.size());
+        for (AppointmentInterval interval : createdIntervals) {
+            eventPublisher.publishEvent(new ScheduleChangedEvent(
+                    location.getId(), interval.id(), ScheduleChangedEvent.Type.APPOINTMENT_CREATED));
+            changes.add(new ChangeLogRepository.Change(ChangeLogRepository.EntityType.APPOINTMENT, interval.id(),
+                    ChangeLogRepository.Operation.INSERT, location.getId(), null));
+        }
+        changeLogRepository.recordAll(changes);
+
+        log.info("Serija usluge {} na lokaciji {}: {} pojava, {} kreirano, {} preskočeno",
+                service.getId(), location.getId(), occurrences.size(), created.size(), skipped.size());
+
+        return AppointmentSeriesResultDTO.builder()
+                .serviceId(service.getId())
+                .locationId(location.getId())
+                .occurrenceCount(occurrences.size())
+                .createdCount(created.size())
+                .skippedCount(skipped.size())
+                .created(created)
+                .skipped(skipped)
+                .build();
+    }
+
+    // ========== POMOĆNE METODE ==========
+
+    private List<Slot> expand(AppointmentSeriesRequestDTO request, int durationMinutes) {
+        Set<LocalDate> exceptDates = request.getExceptDates() != null ? request.getExceptDates() : Set.of();
+        int intervalWeeks = request.getIntervalWeeks() != null ? request.getIntervalWeeks() : 1;
+        LocalDate firstWeek = request.getStartDate().with(DayOfWeek.MONDAY);
+
+        List<Slot> occurrences = new ArrayList<>();
+        for (LocalDate date = request.getStartDate(); !date.isAfter(request.getEndDate()); date = date.plusDays(1)) {
+            if (!request.getDaysOfWeek().contains(date.getDayOfWeek()) || exceptDates.contains(date)) {
+                continue;
+            }
+            long weekIndex = ChronoUnit.WEEKS.between(firstWeek, date.with(DayOfWeek.MONDAY));
+            if (weekIndex % intervalWeeks != 0) {
+                continue;
+            }
+            LocalDateTime start = date.atTime(request.getStartTime());
+            occurrences.add(new Slot(start, start.plusMinutes(durationMinutes)));
+        }
+        return occurrences;
+    }
+
+    private String findConflict(Slot slot, AppointmentIntervalSet memberBusy,
+                                AppointmentIntervalSet locationBusy) {
+        try {
+            appointmentService.validateSchedulingWindow(slot.start);
+        } catch (ValidationException e) {
+            return e.getMessage();
+        }
+
+        LocalDateTime paddedStart = slot.start.minusMinutes(ScheduleConflictGuard.MEMBER_BUFFER_MINUTES);
+        LocalDateTime paddedEnd = slot.end.plusMinutes(ScheduleConflictGuard.MEMBER_BUFFER_MINUTES);
+        if (memberBusy.overlaps(paddedStart, paddedEnd)) {
+            return "Član već ima termin u ovom vremenskom periodu";
+        }
+        if (locationBusy != null && locationBusy.overlaps(slot.start, slot.end)) {
+            return "Lokacija je zauzeta u ovom terminu";
+        }
+        return null;
+    }
+
+    private List<Long> insertChunk(List<Slot> chunk, com.example.fitnessAndrea360.model.Service service,
+                                   Long memberId, Long locationId, Long createdBy, String notes) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                con -> con.prepareStatement(INSERT_APPOINTMENT_SQL, Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Slot slot = chunk.get(i);
+                        ps.setLong(1, service.getId());
+                        ps.setLong(2, memberId);
+                        ps.setLong(3, locationId);
+                        ps.setInt(4, service.getMaxCapacity());
+                        ps.setLong(5, createdBy);
+                        ps.setTimestamp(6, Timestamp.valueOf(slot.start));
+                        ps.setTimestamp(7, Timestamp.valueOf(slot.end));
+                        ps.setString(8, notes);
+                        ps.setTimestamp(9, now);
+                        ps.setTimestamp(10, now);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return chunk.size();
+                    }
+                },
+                keyHolder);
+
+        List<Long> ids = new ArrayList<>(chunk.size());
+        for (Map<String, Object> key : keyHolder.getKeyList()) {
+            ids.add(((Number) key.values().iterator().next()).longValue());
+        }
+        if (ids.size() != chunk.size()) {
+            throw new IllegalStateException("Broj generisanih ključeva (" + ids.size() +
+                    ") ne odgovara broju termina (" + chunk.size() + ")");
+        }
+        return ids;
+    }
+
+    private void validateSeriesRequest(AppointmentSeriesRequestDTO request) {
+        if (request.getEndDate().isBefore(request.getStartDate())) {
+            throw new ValidationException("Datum kraja serije mora biti nakon datuma početka");
+        }
+        if (ChronoUnit.DAYS.between(request.getStartDate(), request.getEndDate()) > MAX_SERIES_DAYS) {
+            throw new ValidationException("Serija može trajati najviše " + MAX_SERIES_DAYS + " dana");
+        }
+        if (request.getIntervalWeeks() != null && request.getIntervalWeeks() < 1) {
+            throw new ValidationException("Razmak u nedeljama mora biti najmanje 1");
+        }
+    }
+
+    // Serije kreira osoblje - ista pravila lokacije kao createAppointment
+    private Long resolveTargetLocation(User currentUser, Long requestedLocationId) {
+        String userRole = currentUser.getRole().getName();
+        if (userRole.equals("EMPLOYEE")) {
+            if (currentUser.getLocation() == null) {
+                throw new UnauthorizedAccessException("Zaposleni nema dodeljenu lokaciju");
+            }
+            return currentUser.getLocation().getId();
+        }
+        if (userRole.equals("ADMIN")) {
+            if (requestedLocationId == null) {
+                throw new ValidationException("Admin mora specificirati locationId");
+            }
+            return requestedLocationId;
+        }
+        throw new UnauthorizedAccessException("Nemaš pravo da kreiraš serije termina");
+    }
+
+    private AppointmentSeriesOccurrenceDTO toOccurrence(Long id, Slot slot, String conflict) {
+        return AppointmentSeriesOccurrenceDTO.builder()
+                .appointmentId(id)
+                .startTime(slot.start)
+                .endTime(slot.end)
+                .conflict(conflict)
+                .build();
+    }
+
+    private record Slot(LocalDateTime start, LocalDateTime end) {
+    }
+}
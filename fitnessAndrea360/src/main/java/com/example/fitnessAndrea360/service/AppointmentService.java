@@ -1,12 +1,15 @@
 package com.example.fitnessAndrea360.service;
 
+import com.example.fitnessAndrea360.config.ShardRouter;
 import com.example.fitnessAndrea360.dto.AppointmentRequestDTO;
 import com.example.fitnessAndrea360.dto.AppointmentResponseDTO;
 import com.example.fitnessAndrea360.dto.CapacityStatusDTO;
+import com.example.fitnessAndrea360.event.ScheduleChangedEvent;
 import com.example.fitnessAndrea360.exception.*;
 import com.example.fitnessAndrea360.model.*;
 import com.example.fitnessAndrea360.repository.*;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
@@ -14,6 +17,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -26,11 +30,20 @@ public class AppointmentService {
     private final AppointmentRepository appointmentRepository;
     private final ServiceRepository serviceRepository;
     private final MemberRepository memberRepository;
+    private final CurrentMemberResolver currentMemberResolver;
+    private final ScheduleConflictGuard scheduleConflictGuard;
     private final LocationRepository locationRepository;
     private final UserRepository userRepository;
     private final MemberService memberService;
-    private final PurchaseRepository purchaseRepository;
     private final ReservationRepository reservationRepository;
+    private final AppointmentIntervalIndex appointmentIntervalIndex;
+    private final ShardRouter shardRouter;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ChangeLogRepository changeLogRepository;
+    private final NotificationOutboxRepository notificationOutboxRepository;
+    private final ArchiveService archiveService;
+    private final EntitlementCache entitlementCache;
+    private final ReportingService reportingService;
 
 
     private User getCurrentUserWithLocation() {
@@ -45,12 +58,10 @@ public class AppointmentService {
      * Vrati sve dostupne termine za TRENUTNOG člana
      * (samo one koje može da rezerviše - ima kupljenu uslugu)
      */
+    @Transactional(readOnly = true)
     public List<AppointmentResponseDTO> getAvailableAppointmentsForCurrentMember() {
-        User currentUser = getCurrentUserWithLocation();
-
-
-        Member member = memberRepository.findByUserId(currentUser.getId())
-                .orElseThrow(() -> new ResourceNotFoundException("Član nije pronađen"));
+        // Član iz tokena - bez učitavanja korisnika i člana
+        Long memberId = currentMemberResolver.currentMemberId();
 
         LocalDateTime now = LocalDateTime.now();
 
@@ -58,13 +69,13 @@ public class AppointmentService {
         List<Appointment> allAppointments = appointmentRepository.findByStartTimeAfterAndStatus(now, "SCHEDULED");
 
 
-        List<Purchase> memberPurchases = purchaseRepository.findByMemberId(member.getId());
-
-
+        // Prava člana (usluga -> aktivne kupovine sa sesijama) iz keša - bez učitavanja kupovina i usluga
+        EntitlementCache.MemberEntitlements entitlements = entitlementCache.forMember(memberId);
+        LocalDate today = LocalDate.now();
 
         // Filtriraj samo one koje ovaj član MOŽE da rezerviše:
         // 1. Ima slobodno mesto
-        // 2. Ima kupljenu uslugu sa remainingUses > 0
+        // 2. Ima neisteklu aktivnu kupovinu te usluge sa preostalim sesijama
         return allAppointments.stream()
                 .filter(appointment -> {
                     // Provera 1: Ima li slobodno mesto?
@@ -72,19 +83,8 @@ public class AppointmentService {
 
                     if (!hasCapacity) return false;
 
-                    // Provera 2: Ima li kupljenu uslugu? - KORISTI PurchaseRepository!
-                    boolean hasPurchase = memberPurchases.stream()
-                            .anyMatch(purchase ->
-                                    purchase.getService().getId().equals(appointment.getService().getId()) &&
-                                            purchase.getRemainingUses() > 0 &&
-                                            purchase.getStatus().equals("ACTIVE")
-                            );
-
-                    System.out.println("Appointment: " + appointment.getService().getName() +
-                            " - Has capacity: " + hasCapacity +
-                            " - Has purchase: " + hasPurchase);
-
-                    return hasPurchase;
+                    // Provera 2: Ima li kupljenu uslugu?
+                    return entitlements.canBook(appointment.getService().getId(), today);
                 })
                 .map(this::mapToResponse)
                 .collect(Collectors.toList());
@@ -118,14 +118,12 @@ public class AppointmentService {
 
         } else if (userRole.equals("MEMBER")) {
             // Član može samo svoju lokaciju
-            Member member = memberRepository.findByUserId(currentUser.getId())
-                    .orElseThrow(() -> new ResourceNotFoundException("Član nije pronađen"));
-            targetLocationId = member.getLocation().getId();
+            targetLocationId = currentMemberResolver.currentMember().getLocation().getId();
 
         } else {
             throw new UnauthorizedAccessException("Nemaš pravo da kreiraš termine");
         }
-
+        shardRouter.requireLocationShard(targetLocationId);
 
         if (request.getStartTime().isBefore(LocalDateTime.now())) {
             throw new ValidationException("Termin mora biti u budućnosti");
@@ -147,24 +145,21 @@ public class AppointmentService {
 
         validateAppointment(service, member, location, request.getStartTime());
 
-        // 5. Provera zauzetosti - da li član već ima termin u to vreme
-        if (appointmentRepository.existsByMemberIdAndStartTimeBetween(
-                member.getId(),
-                request.getStartTime().minusMinutes(30),
-                request.getStartTime().plusMinutes(service.getDurationMinutes() + 30))) {
+        LocalDateTime endTime = request.getStartTime().plusMinutes(service.getDurationMinutes());
+
+        // 5. Brava na lokaciju/člana pa provera u bazi - paralelna zakazivanja istog člana čekaju ovu transakciju
+        boolean checkLocation = service.getMaxCapacity() > 1;
+        scheduleConflictGuard.lock(member.getId(), checkLocation ? location.getId() : null);
+
+        // 6. Provera zauzetosti - da li član već ima termin koji se preklapa (uz razmak od 30 min)
+        if (scheduleConflictGuard.hasMemberConflict(member.getId(), request.getStartTime(), endTime, null)) {
             throw new ValidationException("Član već ima termin u ovom vremenskom periodu");
         }
 
-        // 6. Provera da li je lokacija slobodna (za grupne treninge)
-        if (service.getMaxCapacity() > 1) {
-            long conflictingAppointments = appointmentRepository.countByLocationIdAndTimeOverlap(
-                    location.getId(),
-                    request.getStartTime(),
-                    request.getStartTime().plusMinutes(service.getDurationMinutes()));
-
-            if (conflictingAppointments > 0) {
-                throw new ValidationException("Lokacija je zauzeta u ovom terminu");
-            }
+        // 7. Provera da li je lokacija slobodna (za grupne treninge)
+        if (checkLocation &&
+                scheduleConflictGuard.hasLocationConflict(location.getId(), request.getStartTime(), endTime, null)) {
+            throw new ValidationException("Lokacija je zauzeta u ovom terminu");
         }
 
 
@@ -176,15 +171,27 @@ public class AppointmentService {
         appointment.setStartTime(request.getStartTime());
         appointment.setMaxCapacity(service.getMaxCapacity());
         appointment.setCurrentCapacity(0);
-        appointment.setEndTime(request.getStartTime().plusMinutes(service.getDurationMinutes()));
+        appointment.setEndTime(endTime);
         appointment.setStatus("SCHEDULED");
         appointment.setNotes(request.getNotes());
 
         Appointment savedAppointment = appointmentRepository.save(appointment);
+        appointmentIntervalIndex.recordSaved(savedAppointment);
+        publishScheduleChange(savedAppointment, ScheduleChangedEvent.Type.APPOINTMENT_CREATED);
 
         return mapToResponse(savedAppointment);
     }
 
+    private void publishScheduleChange(Appointment appointment, ScheduleChangedEvent.Type type) {
+        eventPublisher.publishEvent(new ScheduleChangedEvent(
+                appointment.getLocation().getId(), appointment.getId(), type));
+        changeLogRepository.record(ChangeLogRepository.EntityType.APPOINTMENT, appointment.getId(),
+                type == ScheduleChangedEvent.Type.APPOINTMENT_CREATED ? ChangeLogRepository.Operation.INSERT
+                        : type == ScheduleChangedEvent.Type.APPOINTMENT_DELETED ? ChangeLogRepository.Operation.DELETE
+                        : ChangeLogRepository.Operation.UPDATE,
+                appointment.getLocation().getId(), null);
+    }
+
     private void validateAppointmentAccess(User user, AppointmentRequestDTO request, Long targetLocationId) {
         String userRole = user.getRole().getName();
 
@@ -206,10 +213,7 @@ public class AppointmentService {
 
         if (userRole.equals("MEMBER")) {
             // Član može zakazati termin SAMO sebi
-            Member member = memberRepository.findByUserId(user.getId())
-                    .orElseThrow(() -> new ResourceNotFoundException("Član nije pronađen"));
-
-            if (!member.getId().equals(request.getMemberId())) {
+            if (!currentMemberResolver.currentMemberId().equals(request.getMemberId())) {
                 throw new UnauthorizedAccessException("Član može zakazati termine samo sebi");
             }
             return;
@@ -219,6 +223,12 @@ public class AppointmentService {
     }
 
     private void validateAppointment(com.example.fitnessAndrea360.model.Service service, Member member, Location location, LocalDateTime startTime) {
+        validateAppointmentTarget(service, member, location);
+        validateSchedulingWindow(startTime);
+    }
+
+    // Pravila koja ne zavise od vremena termina - koristi ih i AppointmentSeriesService jednom za celu seriju
+    void validateAppointmentTarget(com.example.fitnessAndrea360.model.Service service, Member member, Location location) {
 
         boolean isServiceAvailableAtLocation = service.getLocations().stream()
                 .anyMatch(loc -> loc.getId().equals(location.getId()));
@@ -236,8 +246,10 @@ public class AppointmentService {
         if (!member.getLocation().getId().equals(location.getId())) {
             throw new ValidationException("Član nije član ove lokacije");
         }
+    }
 
-
+    // Pravila za vreme pojedinačnog termina (radno vreme i minimalna najava)
+    void validateSchedulingWindow(LocalDateTime startTime) {
         int hour = startTime.getHour();
         if (hour < 8 || hour > 22) {
             throw new ValidationException("Termini su dostupni samo između 8:00 i 22:00");
@@ -254,6 +266,7 @@ public class AppointmentService {
     /**
      * Vrati sve dostupne termine za člana
      */
+    @Transactional(readOnly = true)
     public List<AppointmentResponseDTO> getAvailableAppointments() {
         LocalDateTime now = LocalDateTime.now();
 
@@ -269,6 +282,7 @@ public class AppointmentService {
     /**
      * Vrati nadolazeće termine od određenog datuma
      */
+    @Transactional(readOnly = true)
     public List<AppointmentResponseDTO> getUpcomingAppointments(LocalDate fromDate) {
         LocalDateTime startDateTime = fromDate.atStartOfDay();
 
@@ -282,17 +296,18 @@ public class AppointmentService {
     /**
      * Vrati sve termine (samo za admina/zaposlene)
      */
+    @Transactional(readOnly = true)
     public List<AppointmentResponseDTO> getAllAppointments() {
-        List<Appointment> appointments = appointmentRepository.findAll();
-
-        return appointments.stream()
+        // Sa šardovanjem po lokacijama upit ide paralelno na sve šardove
+        return shardRouter.scatterGather(() -> appointmentRepository.findAll().stream()
                 .map(this::mapToResponse)
-                .collect(Collectors.toList());
+                .collect(Collectors.toList()));
     }
 
     /**
      * Vrati termin po ID-u
      */
+    @Transactional(readOnly = true)
     public AppointmentResponseDTO getAppointmentById(Long id) {
         Appointment appointment = appointmentRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Termin nije pronađen"));
@@ -303,6 +318,7 @@ public class AppointmentService {
     /**
      * Vrati termine po servisu
      */
+    @Transactional(readOnly = true)
     public List<AppointmentResponseDTO> getAppointmentsByService(Long serviceId) {
         List<Appointment> appointments = appointmentRepository.findByServiceId(serviceId);
 
@@ -314,48 +330,48 @@ public class AppointmentService {
     /**
      * Vrati termine po vremenskom periodu
      */
+    @Transactional(readOnly = true)
     public List<AppointmentResponseDTO> getAppointmentsByDateRange(LocalDate startDate, LocalDate endDate) {
         LocalDateTime startDateTime = startDate.atStartOfDay();
         LocalDateTime endDateTime = endDate.atTime(23, 59, 59);
 
-        // Koristimo postojeću metodu iz repository-a
+        // Koristimo postojeću metodu iz repository-a; opseg pre granice zadržavanja čita i arhivu
         List<Appointment> appointments = appointmentRepository.findByStartTimeBetween(startDateTime, endDateTime);
 
-        return appointments.stream()
+        List<AppointmentResponseDTO> result = new ArrayList<>(archiveService.archivedAppointmentsBetween(startDateTime, endDateTime));
+        appointments.stream()
                 .map(this::mapToResponse)
-                .collect(Collectors.toList());
+                .forEach(result::add);
+        return result;
     }
 
     /**
      * Vrati termine po lokaciji
      */
+    @Transactional(readOnly = true)
     public List<AppointmentResponseDTO> getAppointmentsByLocation(Long locationId) {
         User currentUser = getCurrentUserWithLocation();
         validateLocationAccess(currentUser, locationId);
 
-        List<Appointment> appointments = appointmentRepository.findByLocationId(locationId);
-
-        return appointments.stream()
+        return shardRouter.readOnLocation(locationId, () -> appointmentRepository.findByLocationId(locationId).stream()
                 .map(this::mapToResponse)
-                .collect(Collectors.toList());
+                .collect(Collectors.toList()));
     }
 
     /**
      * Vrati termine trenutnog člana
      */
+    @Transactional(readOnly = true)
     public List<AppointmentResponseDTO> getCurrentMemberAppointments() {
-        User currentUser = getCurrentUserWithLocation();
-
-        // Pronađi member-a za ovog user-a
-        Member member = memberRepository.findByUserId(currentUser.getId())
-                .orElseThrow(() -> new ResourceNotFoundException("Član nije pronađen"));
+        // Član za ovog user-a (memberId iz tokena)
+        Long memberId = currentMemberResolver.currentMemberId();
 
-        // Dobavi sve appointment-e za ovog member-a
-        List<Appointment> appointments = appointmentRepository.findByMemberId(member.getId());
-
-        return appointments.stream()
+        // Dobavi sve appointment-e za ovog member-a (arhivirani + vrući)
+        List<AppointmentResponseDTO> result = new ArrayList<>(archiveService.archivedAppointmentsByMember(memberId));
+        appointmentRepository.findByMemberId(memberId).stream()
                 .map(this::mapToResponse)
-                .collect(Collectors.toList());
+                .forEach(result::add);
+        return result;
     }
 
     /**
@@ -373,12 +389,38 @@ public class AppointmentService {
         com.example.fitnessAndrea360.model.Service service = serviceRepository.findById(Math.toIntExact(request.getServiceId()))
                 .orElseThrow(() -> new ResourceNotFoundException("Usluga nije pronađena"));
 
+        LocalDateTime endTime = request.getStartTime().plusMinutes(service.getDurationMinutes());
+
+        // Novo vreme ne sme da se preklapa sa drugim terminima (sam termin se isključuje) - provera u bazi pod bravom
+        boolean checkLocation = service.getMaxCapacity() > 1;
+        scheduleConflictGuard.lock(appointment.getMember().getId(), checkLocation ? appointment.getLocation().getId() : null);
+        if (scheduleConflictGuard.hasMemberConflict(
+                appointment.getMember().getId(), request.getStartTime(), endTime, appointment.getId())) {
+            throw new ValidationException("Član već ima termin u ovom vremenskom periodu");
+        }
+        if (checkLocation && scheduleConflictGuard.hasLocationConflict(
+                appointment.getLocation().getId(), request.getStartTime(), endTime, appointment.getId())) {
+            throw new ValidationException("Lokacija je zauzeta u ovom terminu");
+        }
+
+        LocalDateTime oldStartTime = appointment.getStartTime();
+        boolean copiesChanged = !request.getStartTime().equals(oldStartTime)
+                || !service.getId().equals(appointment.getService().getId());
         appointment.setService(service);
         appointment.setStartTime(request.getStartTime());
-        appointment.setEndTime(request.getStartTime().plusMinutes(service.getDurationMinutes()));
+        appointment.setEndTime(endTime);
         appointment.setNotes(request.getNotes());
 
         Appointment updatedAppointment = appointmentRepository.save(appointment);
+        if (copiesChanged) {
+            reservationRepository.syncAppointmentCopies(updatedAppointment.getId(), updatedAppointment.getStartTime(),
+                    updatedAppointment.getLocation().getId(), service.getId());
+            Object[] counts = reservationRepository.countWithCancelledByAppointmentId(updatedAppointment.getId()).get(0);
+            reportingService.recordAppointmentMoved(updatedAppointment.getLocation().getId(), oldStartTime,
+                    updatedAppointment.getStartTime(), ((Number) counts[0]).longValue(), ((Number) counts[1]).longValue());
+        }
+        appointmentIntervalIndex.recordSaved(updatedAppointment);
+        publishScheduleChange(updatedAppointment, ScheduleChangedEvent.Type.APPOINTMENT_UPDATED);
 
         return mapToResponse(updatedAppointment);
     }
@@ -399,11 +441,29 @@ public class AppointmentService {
             throw new RuntimeException("Ne možete obrisati termin koji ima rezervacije");
         }
 
+        // Preostale (otkazane) rezervacije se brišu sa terminom - particionisana tabela nema kaskadu stranog ključa
+        List<Reservation> reservations = reservationRepository.findByAppointmentId(id);
+        if (!reservations.isEmpty()) {
+            long cancelled = reservations.stream()
+                    .filter(reservation -> reservation.getStatus() == Reservation.Status.CANCELLED)
+                    .count();
+            reservationRepository.deleteAllInBatch(reservations);
+            reportingService.recordReservationsDeleted(appointment, reservations.size(), cancelled);
+            changeLogRepository.recordAll(reservations.stream()
+                    .map(reservation -> new ChangeLogRepository.Change(ChangeLogRepository.EntityType.RESERVATION,
+                            reservation.getId(), ChangeLogRepository.Operation.DELETE,
+                            appointment.getLocation().getId(), reservation.getMember().getId()))
+                    .toList());
+        }
+
         appointmentRepository.delete(appointment);
+        appointmentIntervalIndex.recordDeleted(id);
+        publishScheduleChange(appointment, ScheduleChangedEvent.Type.APPOINTMENT_DELETED);
     }
 
 
 
+    @Transactional(readOnly = true)
     public List<AppointmentResponseDTO> getTodayAppointmentsByLocation(Long locationId) {
         User currentUser = getCurrentUserWithLocation();
         validateLocationAccess(currentUser, locationId);
@@ -436,6 +496,10 @@ public class AppointmentService {
                 "Otkazano: " + cancellationReason);
 
         Appointment updatedAppointment = appointmentRepository.save(appointment);
+        appointmentIntervalIndex.recordSaved(updatedAppointment);
+        publishScheduleChange(updatedAppointment, ScheduleChangedEvent.Type.APPOINTMENT_CANCELLED);
+        notificationOutboxRepository.enqueueForAppointment(
+                NotificationOutboxRepository.Type.APPOINTMENT_CANCELLED, updatedAppointment.getId());
 
         return mapToResponse(updatedAppointment);
     }
@@ -455,6 +519,7 @@ public class AppointmentService {
 
         appointment.setStatus("CONFIRMED");
         Appointment updatedAppointment = appointmentRepository.save(appointment);
+        publishScheduleChange(updatedAppointment, ScheduleChangedEvent.Type.APPOINTMENT_UPDATED);
 
         return mapToResponse(updatedAppointment);
     }
@@ -474,12 +539,14 @@ public class AppointmentService {
 
         appointment.setStatus("COMPLETED");
         Appointment updatedAppointment = appointmentRepository.save(appointment);
+        publishScheduleChange(updatedAppointment, ScheduleChangedEvent.Type.APPOINTMENT_UPDATED);
 
         return mapToResponse(updatedAppointment);
     }
 
 
 
+    @Transactional(readOnly = true)
     public CapacityStatusDTO getLocationCapacityStatus(Long locationId, LocalDate date) {
         User currentUser = getCurrentUserWithLocation();
         validateLocationAccess(currentUser, locationId);
@@ -531,8 +598,7 @@ public class AppointmentService {
         }
 
         if (userRole.equals("MEMBER")) {
-            Member member = memberRepository.findByUserId(user.getId())
-                    .orElseThrow(() -> new ResourceNotFoundException("Član nije pronađen"));
+            Member member = currentMemberResolver.currentMember();
             if (!member.getLocation().getId().equals(locationId)) {
                 throw new UnauthorizedAccessException("Možete pristupiti samo podacima svoje lokacije");
             }
@@ -560,10 +626,7 @@ public class AppointmentService {
         }
 
         if (userRole.equals("MEMBER")) {
-            Member member = memberRepository.findByUserId(user.getId())
-                    .orElseThrow(() -> new ResourceNotFoundException("Član nije pronađen"));
-
-            if (!member.getId().equals(appointment.getMember().getId())) {
+            if (!currentMemberResolver.currentMemberId().equals(appointment.getMember().getId())) {
                 throw new UnauthorizedAccessException("Možete upravljati samo svojim terminima");
             }
             return;
@@ -600,7 +663,7 @@ public class AppointmentService {
 //                .updatedAt(appointment.getUpdatedAt())
 //                .build();
 //    }
-private AppointmentResponseDTO mapToResponse(Appointment appointment) {
+AppointmentResponseDTO mapToResponse(Appointment appointment) {
     return AppointmentResponseDTO.builder()
             .id(appointment.getId())
             .serviceId(appointment.getService().getId())
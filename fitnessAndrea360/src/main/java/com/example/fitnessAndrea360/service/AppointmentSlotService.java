@@ -0,0 +1,193 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.dto.AvailableSlotDTO;
+import com.example.fitnessAndrea360.exception.ResourceNotFoundException;
+import com.example.fitnessAndrea360.exception.UnauthorizedAccessException;
+import com.example.fitnessAndrea360.exception.ValidationException;
+import com.example.fitnessAndrea360.model.Member;
+import com.example.fitnessAndrea360.model.User;
+import com.example.fitnessAndrea360.repository.ServiceRepository;
+import com.example.fitnessAndrea360.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Pretraga slobodnih termina za uslugu na lokaciji.
+ * Kandidati se generišu po koraku unutar radnog vremena (plus krajevi postojećih termina),
+ * proveravaju se ista pravila kao createAppointment i preklapanja iz AppointmentIntervalIndex-a,
+ * a rezultat se rangira tako da predlozi koji se nadovezuju na postojeće termine idu prvi.
+ */
+@Service
+@RequiredArgsConstructor
+public class AppointmentSlotService {
+
+    // Isto radno vreme i najava kao AppointmentService.validateSchedulingWindow
+    private static final int FIRST_START_HOUR = 8;
+    private static final int LAST_START_HOUR = 22;
+    private static final int MIN_LEAD_HOURS = 2;
+    private static final int MAX_RANGE_DAYS = 31;
+    private static final int MAX_LIMIT = 200;
+
+    private final ServiceRepository serviceRepository;
+    private final CurrentMemberResolver currentMemberResolver;
+    private final UserRepository userRepository;
+    private final AppointmentIntervalIndex appointmentIntervalIndex;
+
+    private User getCurrentUserWithLocation() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String email = authentication.getName();
+        return userRepository.findByEmailWithLocation(email)
+                .orElseThrow(() -> new RuntimeException("Trenutni korisnik nije pronađen u bazi"));
+    }
+
+    @Transactional(readOnly = true)
+    public List<AvailableSlotDTO> findAvailableSlots(Long locationId, Long serviceId, LocalDate from, LocalDate to,
+                                                     Long memberId, Integer stepMinutes, Integer limit) {
+        User currentUser = getCurrentUserWithLocation();
+        Long targetMemberId = resolveAccess(currentUser, locationId, memberId);
+
+        if (to.isBefore(from)) {
+            throw new ValidationException("Datum kraja mora biti nakon datuma početka");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= MAX_RANGE_DAYS) {
+            throw new ValidationException("Period pretrage može biti najviše " + MAX_RANGE_DAYS + " dana");
+        }
+        int step = stepMinutes != null ? stepMinutes : 30;
+        if (step < 5 || step > 240) {
+            throw new ValidationException("Korak mora biti između 5 i 240 minuta");
+        }
+        int maxResults = limit != null ? Math.min(limit, MAX_LIMIT) : 50;
+
+        com.example.fitnessAndrea360.model.Service service = serviceRepository.findById(Math.toIntExact(serviceId))
+                .orElseThrow(() -> new ResourceNotFoundException("Usluga nije pronađena"));
+        boolean availableAtLocation = service.getLocations().stream()
+                .anyMatch(location -> location.getId().equals(locationId));
+        if (!availableAtLocation) {
+            throw new ValidationException("Usluga '" + service.getName() + "' nije dostupna na izabranoj lokaciji");
+        }
+
+        int duration = service.getDurationMinutes();
+        boolean checkLocation = service.getMaxCapacity() > 1;
+        LocalDateTime earliest = LocalDateTime.now().plusHours(MIN_LEAD_HOURS);
+        LocalDateTime rangeStart = from.atStartOfDay();
+        LocalDateTime rangeEnd = to.plusDays(1).atTime(LocalTime.MIN).plusMinutes(duration);
+
+        // Zauzeti intervali za ceo period - jedan upit u indeks, dalje sve u memoriji
+        AppointmentIntervalSet locationBusy = new AppointmentIntervalSet();
+        appointmentIntervalIndex.findLocationOverlaps(locationId, rangeStart, rangeEnd).forEach(locationBusy::add);
+
+        AppointmentIntervalSet memberBusy = new AppointmentIntervalSet();
+        if (targetMemberId != null) {
+            appointmentIntervalIndex.findMemberOverlaps(targetMemberId,
+                    rangeStart.minusMinutes(ScheduleConflictGuard.MEMBER_BUFFER_MINUTES),
+                    rangeEnd.plusMinutes(ScheduleConflictGuard.MEMBER_BUFFER_MINUTES)).forEach(memberBusy::add);
+        }
+
+        // Krajevi i počeci postojećih termina - kandidati koji se nadovezuju bez praznine
+        TreeSet<LocalDateTime> bookingEdges = new TreeSet<>();
+        for (AppointmentInterval interval : locationBusy.overlapping(rangeStart, rangeEnd)) {
+            bookingEdges.add(interval.start());
+            bookingEdges.add(interval.end());
+        }
+
+        List<AvailableSlotDTO> slots = new ArrayList<>();
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            TreeSet<LocalDateTime> candidates = new TreeSet<>();
+            LocalDateTime dayFirst = date.atTime(FIRST_START_HOUR, 0);
+            LocalDateTime dayLast = date.atTime(LAST_START_HOUR, 59);
+            for (LocalDateTime start = dayFirst; !start.isAfter(dayLast); start = start.plusMinutes(step)) {
+                candidates.add(start);
+            }
+            candidates.addAll(bookingEdges.subSet(dayFirst, true, dayLast, true));
+
+            for (LocalDateTime start : candidates) {
+                if (start.isBefore(earliest)) {
+                    continue;
+                }
+                LocalDateTime end = start.plusMinutes(duration);
+                if (checkLocation && locationBusy.overlaps(start, end)) {
+                    continue;
+                }
+                if (targetMemberId != null && memberBusy.overlaps(
+                        start.minusMinutes(ScheduleConflictGuard.MEMBER_BUFFER_MINUTES),
+                        end.plusMinutes(ScheduleConflictGuard.MEMBER_BUFFER_MINUTES))) {
+                    continue;
+                }
+                boolean adjacent = bookingEdges.contains(start) || bookingEdges.contains(end);
+                slots.add(AvailableSlotDTO.builder()
+                        .serviceId(service.getId())
+                        .locationId(locationId)
+                        .startTime(start)
+                        .endTime(end)
+                        .score(score(start, end, adjacent, bookingEdges))
+                        .adjacentToBooking(adjacent)
+                        .build());
+            }
+        }
+
+        return slots.stream()
+                .sorted(Comparator.comparing(AvailableSlotDTO::getScore).reversed()
+                        .thenComparing(AvailableSlotDTO::getStartTime))
+                .limit(maxResults)
+                .toList();
+    }
+
+    // Nadovezivanje na postojeći termin je najbolje, zatim što manja praznina do najbližeg termina
+    private int score(LocalDateTime start, LocalDateTime end, boolean adjacent, TreeSet<LocalDateTime> bookingEdges) {
+        if (adjacent) {
+            return 100;
+        }
+        LocalDateTime before = bookingEdges.floor(start);
+        LocalDateTime after = bookingEdges.ceiling(end);
+        long gap = Long.MAX_VALUE;
+        if (before != null && before.toLocalDate().equals(start.toLocalDate())) {
+            gap = Math.min(gap, ChronoUnit.MINUTES.between(before, start));
+        }
+        if (after != null && after.toLocalDate().equals(end.toLocalDate())) {
+            gap = Math.min(gap, ChronoUnit.MINUTES.between(end, after));
+        }
+        if (gap == Long.MAX_VALUE) {
+            return 0;
+        }
+        // Svakih 15 minuta praznine umanjuje skor, najmanje 1 ako dan ima bar jedan termin
+        return (int) Math.max(1, 90 - gap / 15 * 5);
+    }
+
+    // Admin bira bilo koju lokaciju, zaposleni svoju, član svoju i uvek traži za sebe
+    private Long resolveAccess(User user, Long locationId, Long requestedMemberId) {
+        String userRole = user.getRole().getName();
+
+        if (userRole.equals("ADMIN")) {
+            return requestedMemberId;
+        }
+
+        if (userRole.equals("EMPLOYEE")) {
+            if (user.getLocation() == null || !user.getLocation().getId().equals(locationId)) {
+                throw new UnauthorizedAccessException("Možete pretraživati termine samo za svoju lokaciju");
+            }
+            return requestedMemberId;
+        }
+
+        if (userRole.equals("MEMBER")) {
+            Member member = currentMemberResolver.currentMember();
+            if (!member.getLocation().getId().equals(locationId)) {
+                throw new UnauthorizedAccessException("Možete pretraživati termine samo svoje lokacije");
+            }
+            return member.getId();
+        }
+
+        throw new UnauthorizedAccessException("Nemaš pravo pristupa");
+    }
+}
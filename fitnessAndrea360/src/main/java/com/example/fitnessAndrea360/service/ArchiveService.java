@@ -0,0 +1,197 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.config.ShardContext;
+import com.example.fitnessAndrea360.config.ShardRouter;
+import com.example.fitnessAndrea360.dto.AppointmentResponseDTO;
+import com.example.fitnessAndrea360.dto.ArchiveRunResultDTO;
+import com.example.fitnessAndrea360.dto.ArchiveStatusDTO;
+import com.example.fitnessAndrea360.dto.ReservationResponseDTO;
+import com.example.fitnessAndrea360.repository.ArchiveJdbcRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hladni sloj za termine i rezervacije: završeni termini (COMPLETED, CANCELLED, NO_SHOW) stariji
+ * od retention-days se noću premeštaju u appointments_archive/reservations_archive, u delovima od
+ * batch-size termina (INSERT ... SELECT pa DELETE, jedna kratka transakcija po delu).
+ *
+ * Istorijski upiti (rezervacije člana, opsezi datuma, mesečna statistika) spajaju oba sloja;
+ * arhiva se čita samo kada opseg seže pre granice zadržavanja.
+ * Metrike: archive.run, archive.moved{table}, archive.rows{tier,table}, archive.upcoming.query.
+ * Arhiviranje ne upisuje change_log - zapisi nisu obrisani, samo su u drugom sloju.
+ */
+@Service
+@Slf4j
+public class ArchiveService {
+
+    private final ArchiveJdbcRepository archiveRepository;
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate chunkTemplate;
+    private final MeterRegistry meterRegistry;
+    private final Timer runTimer;
+    private final Timer upcomingQueryTimer;
+
+    // Veličine slojeva posle poslednjeg merenja (gauge-i)
+    private final AtomicLong hotAppointments = new AtomicLong();
+    private final AtomicLong hotReservations = new AtomicLong();
+    private final AtomicLong archivedAppointments = new AtomicLong();
+    private final AtomicLong archivedReservations = new AtomicLong();
+
+    private volatile ArchiveRunResultDTO lastRun;
+
+    @Value("${app.archive.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.archive.retention-days:365}")
+    private int retentionDays;
+
+    @Value("${app.archive.batch-size:500}")
+    private int batchSize;
+
+    public ArchiveService(ArchiveJdbcRepository archiveRepository,
+                          ShardRouter shardRouter,
+                          PlatformTransactionManager transactionManager,
+                          MeterRegistry meterRegistry) {
+        this.archiveRepository = archiveRepository;
+        this.shardRouter = shardRouter;
+        this.chunkTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        this.runTimer = Timer.builder("archive.run")
+                .description("Trajanje jednog prolaza arhiviranja")
+                .register(meterRegistry);
+        this.upcomingQueryTimer = Timer.builder("archive.upcoming.query")
+                .description("Trajanje upcoming upita nad vrućom tabelom termina")
+                .register(meterRegistry);
+        Gauge.builder("archive.rows", hotAppointments, AtomicLong::get).tags("tier", "hot", "table", "appointments").register(meterRegistry);
+        Gauge.builder("archive.rows", hotReservations, AtomicLong::get).tags("tier", "hot", "table", "reservations").register(meterRegistry);
+        Gauge.builder("archive.rows", archivedAppointments, AtomicLong::get).tags("tier", "archive", "table", "appointments").register(meterRegistry);
+        Gauge.builder("archive.rows", archivedReservations, AtomicLong::get).tags("tier", "archive", "table", "reservations").register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${app.archive.cron:0 0 4 * * *}")
+    public void scheduledRun() {
+        if (enabled) {
+            runArchive();
+            getStatus();
+        }
+    }
+
+    /**
+     * Jedan prolaz arhiviranja preko svih šardova.
+     */
+    public ArchiveRunResultDTO runArchive() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        LocalDateTime cutoff = startedAt.minusDays(retentionDays);
+        long startNanos = System.nanoTime();
+        long appointments = 0;
+        long reservations = 0;
+        int chunks = 0;
+
+        for (String shard : shardRouter.shards()) {
+            ShardContext.set(shard);
+            try {
+                List<Long> chunk;
+                while (!(chunk = archiveRepository.findArchivable(cutoff, batchSize)).isEmpty()) {
+                    List<Long> ids = chunk;
+                    int[] moved = chunkTemplate.execute(status -> archiveRepository.moveToArchive(ids, startedAt));
+                    chunks++;
+                    appointments += moved[0];
+                    reservations += moved[1];
+                    if (moved[0] == 0) {
+                        break;
+                    }
+                }
+            } finally {
+                ShardContext.clear();
+            }
+        }
+
+        long durationNanos = System.nanoTime() - startNanos;
+        runTimer.record(durationNanos, TimeUnit.NANOSECONDS);
+        meterRegistry.counter("archive.moved", "table", "appointments").increment(appointments);
+        meterRegistry.counter("archive.moved", "table", "reservations").increment(reservations);
+
+        ArchiveRunResultDTO result = ArchiveRunResultDTO.builder()
+                .startedAt(startedAt)
+                .cutoff(cutoff)
+                .archivedAppointments(appointments)
+                .archivedReservations(reservations)
+                .chunks(chunks)
+                .durationMillis(TimeUnit.NANOSECONDS.toMillis(durationNanos))
+                .build();
+        lastRun = result;
+        log.info("Arhiviranje: {} termina i {} rezervacija (kraj pre {}) u {} delova za {} ms",
+                appointments, reservations, cutoff, chunks, result.getDurationMillis());
+        return result;
+    }
+
+    /**
+     * Veličine slojeva i trajanje upcoming upita; osvežava i gauge-e.
+     */
+    public ArchiveStatusDTO getStatus() {
+        LocalDateTime now = LocalDateTime.now();
+        List<ArchiveJdbcRepository.TierSizes> sizes = shardRouter.scatterGather(() -> List.of(archiveRepository.countTiers()));
+        List<LocalDateTime> oldest = shardRouter.scatterGather(() -> archiveRepository.findOldestHotStart().stream().toList());
+        List<Long> upcomingNanos = shardRouter.scatterGather(() -> {
+            long start = System.nanoTime();
+            archiveRepository.countUpcoming(now);
+            long elapsed = System.nanoTime() - start;
+            upcomingQueryTimer.record(elapsed, TimeUnit.NANOSECONDS);
+            return List.of(elapsed);
+        });
+
+        hotAppointments.set(sizes.stream().mapToLong(ArchiveJdbcRepository.TierSizes::hotAppointments).sum());
+        hotReservations.set(sizes.stream().mapToLong(ArchiveJdbcRepository.TierSizes::hotReservations).sum());
+        archivedAppointments.set(sizes.stream().mapToLong(ArchiveJdbcRepository.TierSizes::archivedAppointments).sum());
+        archivedReservations.set(sizes.stream().mapToLong(ArchiveJdbcRepository.TierSizes::archivedReservations).sum());
+
+        return ArchiveStatusDTO.builder()
+                .retentionDays(retentionDays)
+                .hotAppointments(hotAppointments.get())
+                .hotReservations(hotReservations.get())
+                .oldestHotStartTime(oldest.stream().filter(Objects::nonNull).min(Comparator.naturalOrder()).orElse(null))
+                .archivedAppointments(archivedAppointments.get())
+                .archivedReservations(archivedReservations.get())
+                .upcomingQueryMillis(TimeUnit.NANOSECONDS.toMillis(upcomingNanos.stream().mapToLong(Long::longValue).max().orElse(0)))
+                .lastRun(lastRun)
+                .build();
+    }
+
+    // ========== ČITANJE ISTORIJE (spaja se sa vrućim slojem u servisima) ==========
+
+    // U arhivi su samo termini završeni pre granice zadržavanja - mlađi opseg je ne dotiče
+    boolean reachesArchive(LocalDateTime from) {
+        return from.isBefore(LocalDateTime.now().minusDays(retentionDays));
+    }
+
+    public List<ReservationResponseDTO> archivedReservationsByMember(Long memberId) {
+        return archiveRepository.findReservationsByMember(memberId);
+    }
+
+    public List<ReservationResponseDTO> archivedReservationsBetween(LocalDateTime from, LocalDateTime to,
+                                                                    Long locationId, Long memberId) {
+        return reachesArchive(from) ? archiveRepository.findReservationsBetween(from, to, locationId, memberId) : List.of();
+    }
+
+    public List<AppointmentResponseDTO> archivedAppointmentsBetween(LocalDateTime from, LocalDateTime to) {
+        return reachesArchive(from) ? archiveRepository.findAppointmentsBetween(from, to) : List.of();
+    }
+
+    public List<AppointmentResponseDTO> archivedAppointmentsByMember(Long memberId) {
+        return archiveRepository.findAppointmentsByMember(memberId);
+    }
+}
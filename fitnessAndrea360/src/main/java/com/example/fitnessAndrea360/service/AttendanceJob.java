@@ -0,0 +1,174 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.config.ShardContext;
+import com.example.fitnessAndrea360.config.ShardRouter;
+import com.example.fitnessAndrea360.event.ScheduleChangedEvent;
+import com.example.fitnessAndrea360.repository.AttendanceJdbcRepository;
+import com.example.fitnessAndrea360.repository.ChangeLogRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Automatsko napredovanje statusa termina kako vreme prolazi:
+ * SCHEDULED/CONFIRMED -> IN_PROGRESS kada termin počne, a posle kraja i vremena za ručno
+ * evidentiranje dolazaka (no-show-grace-minutes) rezervacije koje su ostale CONFIRMED postaju
+ * NO_SHOW, a termin COMPLETED (ili NO_SHOW ako niko nije došao).
+ *
+ * Radi u delovima od chunk-size termina, svaki deo u svojoj kratkoj transakciji i grupnim
+ * UPDATE-ima; izmene idu u change_log i kao ScheduleChangedEvent, kao i ručne izmene statusa.
+ * Metrike po prolazu: attendance.run (trajanje), attendance.appointments{status},
+ * attendance.reservations.no_show.
+ */
+@Component
+@Slf4j
+public class AttendanceJob {
+
+    private final AttendanceJdbcRepository attendanceRepository;
+    private final ChangeLogRepository changeLogRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate chunkTemplate;
+    private final MeterRegistry meterRegistry;
+    private final Timer runTimer;
+
+    @Value("${app.attendance.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.attendance.no-show-grace-minutes:60}")
+    private int noShowGraceMinutes;
+
+    @Value("${app.attendance.chunk-size:500}")
+    private int chunkSize;
+
+    public record RunResult(int started, int completed, int noShowAppointments, int noShowReservations) {
+    }
+
+    public AttendanceJob(AttendanceJdbcRepository attendanceRepository,
+                         ChangeLogRepository changeLogRepository,
+                         ApplicationEventPublisher eventPublisher,
+                         ShardRouter shardRouter,
+                         PlatformTransactionManager transactionManager,
+                         MeterRegistry meterRegistry) {
+        this.attendanceRepository = attendanceRepository;
+        this.changeLogRepository = changeLogRepository;
+        this.eventPublisher = eventPublisher;
+        this.shardRouter = shardRouter;
+        this.chunkTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        this.runTimer = Timer.builder("attendance.run")
+                .description("Trajanje jednog prolaza automatske obrade dolazaka")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${app.attendance.cron:0 */5 * * * *}")
+    public void run() {
+        if (!enabled) {
+            return;
+        }
+        for (String shard : shardRouter.shards()) {
+            ShardContext.set(shard);
+            try {
+                RunResult result = runTimer.record(() -> process(LocalDateTime.now()));
+                meterRegistry.counter("attendance.appointments", "status", "IN_PROGRESS").increment(result.started());
+                meterRegistry.counter("attendance.appointments", "status", "COMPLETED").increment(result.completed());
+                meterRegistry.counter("attendance.appointments", "status", "NO_SHOW").increment(result.noShowAppointments());
+                meterRegistry.counter("attendance.reservations.no_show").increment(result.noShowReservations());
+                if (result.started() + result.completed() + result.noShowAppointments() > 0) {
+                    log.info("Dolasci (šard {}): započeto {}, završeno {}, bez dolazaka {} termina; {} rezervacija -> NO_SHOW",
+                            shard, result.started(), result.completed(), result.noShowAppointments(), result.noShowReservations());
+                }
+            } catch (RuntimeException e) {
+                log.error("Automatska obrada dolazaka (šard {}) nije uspela: {}", shard, e.getMessage(), e);
+            } finally {
+                ShardContext.clear();
+            }
+        }
+    }
+
+    RunResult process(LocalDateTime now) {
+        LocalDateTime closeBefore = now.minusMinutes(noShowGraceMinutes);
+        int started = 0;
+        int completed = 0;
+        int noShowAppointments = 0;
+        int noShowReservations = 0;
+
+        // Svaki deo menja status pročitanih termina, pa sledeći upit vraća sledeći deo
+        List<AttendanceJdbcRepository.AppointmentRef> chunk;
+        while (!(chunk = attendanceRepository.findToStart(now, closeBefore, chunkSize)).isEmpty()) {
+            List<AttendanceJdbcRepository.AppointmentRef> toStart = chunk;
+            int updated = chunkTemplate.execute(status -> startChunk(toStart));
+            started += updated;
+            if (updated == 0) {
+                break;
+            }
+        }
+
+        while (!(chunk = attendanceRepository.findToClose(closeBefore, chunkSize)).isEmpty()) {
+            List<AttendanceJdbcRepository.AppointmentRef> toClose = chunk;
+            int[] closed = chunkTemplate.execute(status -> closeChunk(toClose, now));
+            completed += closed[0];
+            noShowAppointments += closed[1];
+            noShowReservations += closed[2];
+            if (closed[0] + closed[1] == 0) {
+                break;
+            }
+        }
+
+        return new RunResult(started, completed, noShowAppointments, noShowReservations);
+    }
+
+    private int startChunk(List<AttendanceJdbcRepository.AppointmentRef> appointments) {
+        int updated = attendanceRepository.markInProgress(ids(appointments));
+        recordAppointmentChanges(appointments, new ArrayList<>());
+        return updated;
+    }
+
+    // [završeno, bez dolazaka, rezervacija -> NO_SHOW]
+    private int[] closeChunk(List<AttendanceJdbcRepository.AppointmentRef> appointments, LocalDateTime now) {
+        List<Long> appointmentIds = ids(appointments);
+        Map<Long, Long> locations = new HashMap<>();
+        appointments.forEach(appointment -> locations.put(appointment.id(), appointment.locationId()));
+
+        List<AttendanceJdbcRepository.ReservationRef> noShows = attendanceRepository.findConfirmedReservations(appointmentIds);
+        int noShowReservations = attendanceRepository.markNoShow(
+                noShows.stream().map(AttendanceJdbcRepository.ReservationRef::id).toList(), now);
+        Map<String, Integer> closed = attendanceRepository.close(appointmentIds);
+
+        List<ChangeLogRepository.Change> changes = new ArrayList<>();
+        for (AttendanceJdbcRepository.ReservationRef reservation : noShows) {
+            changes.add(new ChangeLogRepository.Change(ChangeLogRepository.EntityType.RESERVATION, reservation.id(),
+                    ChangeLogRepository.Operation.UPDATE, locations.get(reservation.appointmentId()), reservation.memberId()));
+        }
+        recordAppointmentChanges(appointments, changes);
+
+        return new int[]{closed.getOrDefault("COMPLETED", 0), closed.getOrDefault("NO_SHOW", 0), noShowReservations};
+    }
+
+    private void recordAppointmentChanges(List<AttendanceJdbcRepository.AppointmentRef> appointments,
+                                          List<ChangeLogRepository.Change> changes) {
+        for (AttendanceJdbcRepository.AppointmentRef appointment : appointments) {
+            changes.add(new ChangeLogRepository.Change(ChangeLogRepository.EntityType.APPOINTMENT, appointment.id(),
+                    ChangeLogRepository.Operation.UPDATE, appointment.locationId(), null));
+            eventPublisher.publishEvent(new ScheduleChangedEvent(appointment.locationId(), appointment.id(),
+                    ScheduleChangedEvent.Type.APPOINTMENT_UPDATED));
+        }
+        changeLogRepository.recordAll(changes);
+    }
+
+    private static List<Long> ids(List<AttendanceJdbcRepository.AppointmentRef> appointments) {
+        return appointments.stream().map(AttendanceJdbcRepository.AppointmentRef::id).toList();
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.config.StompAuthorizationInterceptor;
+import com.example.fitnessAndrea360.dto.AppointmentCapacityDTO;
+import com.example.fitnessAndrea360.event.ScheduleChangedEvent;
+import com.example.fitnessAndrea360.repository.ReservationJdbcRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Posle commit-a šalje novu zauzetost termina na /topic/capacity/location/{id}. Sa broker
+ * relay-om poruka ide kroz eksterni broker do klijenata svih instanci.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CapacityBroadcaster {
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ReservationJdbcRepository reservationJdbcRepository;
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onScheduleChanged(ScheduleChangedEvent event) {
+        // [current_capacity, max_capacity, status] - obrisan termin nema šta da javi
+        reservationJdbcRepository.findAppointmentState(event.appointmentId()).ifPresent(state -> {
+            int current = (Integer) state[0];
+            int max = (Integer) state[1];
+            AppointmentCapacityDTO capacity = AppointmentCapacityDTO.builder()
+                    .appointmentId(event.appointmentId())
+                    .currentCapacity(current)
+                    .maxCapacity(max)
+                    .availableSpaces(Math.max(0, max - current))
+                    .build();
+            try {
+                messagingTemplate.convertAndSend(
+                        StompAuthorizationInterceptor.LOCATION_CAPACITY_TOPIC + event.locationId(), capacity);
+            } catch (MessagingException e) {
+                // Broker nedostupan (relay) - upis je već commit-ovan, klijenti dobijaju stanje pri sledećem učitavanju
+                log.warn("Slanje kapaciteta termina {} nije uspelo: {}", event.appointmentId(), e.getMessage());
+            }
+        });
+    }
+}
@@ -0,0 +1,292 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.config.NotificationProperties;
+import com.example.fitnessAndrea360.config.ShardContext;
+import com.example.fitnessAndrea360.config.ShardRouter;
+import com.example.fitnessAndrea360.event.ScheduleChangedEvent;
+import com.example.fitnessAndrea360.repository.NotificationOutboxRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Podsetnici pred termin kroz vremenski točak (timing wheel) sa korpom po minutu.
+ *
+ * Korpa je minut slanja (početak termina - lead-hours) po modulu veličine točka (horizon-hours
+ * u minutima); u njoj su termini čije potvrđene rezervacije dobijaju podsetnik. Svakog minuta se
+ * prazne dospele korpe i sve njihove rezervacije idu u outbox jednim upitom po šardu.
+ *
+ * Točak se puni iz baze pri pokretanju i jednom na sat (reload), a između toga se ažurira po
+ * ScheduleChangedEvent-u - ponovo se učita samo taj termin. Posle restarta se šalju i podsetnici
+ * čiji je minut prošao dok aplikacija nije radila (termin još nije počeo); dedup_key u outbox-u
+ * sprečava duplikate, i kada isti podsetnik pošalje više instanci.
+ */
+@Component
+@Slf4j
+public class ClassReminderScheduler {
+
+    private static final int ENQUEUE_CHUNK = 500;
+
+    private final NotificationOutboxRepository outboxRepository;
+    private final ShardRouter shardRouter;
+    private final NotificationProperties.Reminders properties;
+
+    private record Slot(String shard, Long appointmentId) {
+    }
+
+    private record Planned(long fireMinute, List<Long> reservationIds) {
+    }
+
+    // Sve ispod se menja samo pod lock-om
+    private final Object lock = new Object();
+    private final List<Set<Slot>> wheel;
+    private final Map<Slot, Planned> planned = new HashMap<>();
+    // Poslednji obrađen minut; korpe pokrivaju minute (cursor, cursor + wheel.size()]
+    private long cursor;
+    // Prvi reload posle pokretanja nadoknađuje podsetnike propuštene dok aplikacija nije radila
+    private boolean reloaded;
+    // Termini promenjeni dok reload čita bazu - njihov snimak iz reload-a je možda zastareo
+    private Set<Slot> changedDuringReload;
+    // Izvađeni iz točka, upis u outbox još traje - neuspeh ih vraća, osim ako ih je događaj u međuvremenu izmenio
+    private final Set<Slot> dispatching = new HashSet<>();
+
+    public ClassReminderScheduler(NotificationOutboxRepository outboxRepository,
+                                  ShardRouter shardRouter,
+                                  NotificationProperties notificationProperties) {
+        this.outboxRepository = outboxRepository;
+        this.shardRouter = shardRouter;
+        this.properties = notificationProperties.getReminders();
+        int size = properties.getHorizonHours() * 60;
+        this.wheel = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            wheel.add(new HashSet<>());
+        }
+        this.cursor = minuteOf(LocalDateTime.now()) - 1;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        if (properties.isEnabled()) {
+            reload(LocalDateTime.now());
+        }
+    }
+
+    @Scheduled(cron = "${app.notifications.reminders.reload-cron:0 30 * * * *}")
+    public void scheduledReload() {
+        if (properties.isEnabled()) {
+            reload(LocalDateTime.now());
+        }
+    }
+
+    @Scheduled(cron = "0 * * * * *")
+    public void scheduledTick() {
+        if (properties.isEnabled()) {
+            tick(LocalDateTime.now());
+        }
+    }
+
+    /**
+     * Posle commit-a ponovo učitava jedan termin: nova rezervacija ulazi u korpu, otkazana izlazi,
+     * pomeren termin prelazi u drugu korpu, a otkazan ili obrisan nestaje iz točka.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onScheduleChanged(ScheduleChangedEvent event) {
+        if (!properties.isEnabled() || event.appointmentId() == null) {
+            return;
+        }
+        Slot slot = new Slot(shardRouter.shardFor(event.locationId()), event.appointmentId());
+        String previousShard = ShardContext.current();
+        ShardContext.set(slot.shard());
+        Optional<NotificationOutboxRepository.ReminderCandidate> candidate;
+        try {
+            candidate = outboxRepository.findReminderCandidate(event.appointmentId());
+        } finally {
+            ShardContext.set(previousShard);
+        }
+
+        synchronized (lock) {
+            if (changedDuringReload != null) {
+                changedDuringReload.add(slot);
+            }
+            dispatching.remove(slot);
+            // Podsetnik čiji je minut prošao se ne šalje naknadno - rezervacija u poslednjim satima
+            // pred termin dobija samo potvrdu
+            place(slot, candidate.orElse(null), null);
+        }
+    }
+
+    /**
+     * Zamenjuje sadržaj točka terminima koji počinju u narednih lead + horizon sati.
+     */
+    void reload(LocalDateTime now) {
+        synchronized (lock) {
+            changedDuringReload = new HashSet<>();
+        }
+
+        LocalDateTime until = now.plusHours(properties.getLeadHours() + properties.getHorizonHours());
+        Map<Slot, NotificationOutboxRepository.ReminderCandidate> loaded = new LinkedHashMap<>();
+        try {
+            for (String shard : shardRouter.shards()) {
+                ShardContext.set(shard);
+                try {
+                    outboxRepository.findReminderCandidates(now, until)
+                            .forEach(candidate -> loaded.put(new Slot(shard, candidate.appointmentId()), candidate));
+                } finally {
+                    ShardContext.clear();
+                }
+            }
+        } catch (RuntimeException e) {
+            synchronized (lock) {
+                changedDuringReload = null;
+            }
+            throw e;
+        }
+
+        synchronized (lock) {
+            long nowMinute = minuteOf(now);
+            // Pokretanje ili točak koji je stajao - dospelo se šalje u prvom sledećem tick-u. Redovan reload ne
+            // nadoknađuje: podsetnik čiji je minut prošao dok je točak radio je poslat ili namerno preskočen
+            LocalDateTime catchUpAt = reloaded ? null : now;
+            if (cursor < nowMinute - 1) {
+                wheel.forEach(Set::clear);
+                planned.clear();
+                cursor = nowMinute - 1;
+                catchUpAt = now;
+            }
+            reloaded = true;
+            LocalDateTime catchUp = catchUpAt;
+            for (Slot slot : new ArrayList<>(planned.keySet())) {
+                if (!loaded.containsKey(slot) && !changedDuringReload.contains(slot)) {
+                    unschedule(slot);
+                }
+            }
+            loaded.forEach((slot, candidate) -> {
+                if (!changedDuringReload.contains(slot)) {
+                    place(slot, candidate, catchUp);
+                }
+            });
+            changedDuringReload = null;
+            log.info("Podsetnici: u točku {} termina ({} rezervacija), do {}", planned.size(),
+                    planned.values().stream().mapToInt(p -> p.reservationIds().size()).sum(), until);
+        }
+    }
+
+    /**
+     * Prazni korpe do tekućeg minuta. Vraća broj upisanih podsetnika.
+     * Ako upis na šardu ne uspe, njegovi termini se vraćaju u korpu sledećeg minuta (kursor je već pomeren);
+     * deo koji je već upisan dedup_key ne duplira.
+     */
+    int tick(LocalDateTime now) {
+        long nowMinute = minuteOf(now);
+        Map<String, Map<Slot, Planned>> dueByShard = new LinkedHashMap<>();
+        synchronized (lock) {
+            long from = Math.max(cursor + 1, nowMinute - wheel.size() + 1);
+            for (long minute = from; minute <= nowMinute; minute++) {
+                Set<Slot> bucket = wheel.get(index(minute));
+                for (Slot slot : bucket) {
+                    dueByShard.computeIfAbsent(slot.shard(), shard -> new LinkedHashMap<>())
+                            .put(slot, planned.remove(slot));
+                    dispatching.add(slot);
+                }
+                bucket.clear();
+            }
+            cursor = Math.max(cursor, nowMinute);
+        }
+
+        int enqueued = 0;
+        for (Map.Entry<String, Map<Slot, Planned>> entry : dueByShard.entrySet()) {
+            List<Long> reservationIds = entry.getValue().values().stream()
+                    .flatMap(due -> due.reservationIds().stream())
+                    .toList();
+            ShardContext.set(entry.getKey());
+            try {
+                for (int i = 0; i < reservationIds.size(); i += ENQUEUE_CHUNK) {
+                    enqueued += outboxRepository.enqueueReminders(
+                            reservationIds.subList(i, Math.min(i + ENQUEUE_CHUNK, reservationIds.size())), now);
+                }
+            } catch (DataAccessException e) {
+                log.error("Podsetnici nisu upisani u outbox (šard {}), ponovo u sledećem minutu: {}",
+                        entry.getKey(), e.getMessage());
+                restore(entry.getValue());
+            } finally {
+                ShardContext.clear();
+            }
+        }
+        synchronized (lock) {
+            dueByShard.values().forEach(due -> dispatching.removeAll(due.keySet()));
+        }
+        if (enqueued > 0) {
+            log.info("Podsetnici: upisano {} u outbox", enqueued);
+        }
+        return enqueued;
+    }
+
+    int plannedReservationCount() {
+        synchronized (lock) {
+            return planned.values().stream().mapToInt(p -> p.reservationIds().size()).sum();
+        }
+    }
+
+    // Neuspeo upis: termini idu u korpu prvog sledećeg minuta, osim onih koje je događaj u međuvremenu ponovo smestio ili uklonio
+    private void restore(Map<Slot, Planned> due) {
+        synchronized (lock) {
+            long fireMinute = cursor + 1;
+            due.forEach((slot, previous) -> {
+                if (dispatching.remove(slot) && !planned.containsKey(slot)) {
+                    wheel.get(index(fireMinute)).add(slot);
+                    planned.put(slot, new Planned(fireMinute, previous.reservationIds()));
+                }
+            });
+        }
+    }
+
+    // catchUpAt != null: podsetnik čiji je minut prošao šalje se odmah ako termin do tada nije počeo
+    private void place(Slot slot, NotificationOutboxRepository.ReminderCandidate candidate, LocalDateTime catchUpAt) {
+        unschedule(slot);
+        if (candidate == null || candidate.reservationIds().isEmpty()) {
+            return;
+        }
+        long fireMinute = minuteOf(candidate.startTime().minusHours(properties.getLeadHours()));
+        if (fireMinute <= cursor) {
+            if (catchUpAt == null || !candidate.startTime().isAfter(catchUpAt)) {
+                return;
+            }
+            fireMinute = cursor + 1;
+        }
+        if (fireMinute > cursor + wheel.size()) {
+            return; // van horizonta - ulazi u točak pri sledećem reload-u
+        }
+        wheel.get(index(fireMinute)).add(slot);
+        planned.put(slot, new Planned(fireMinute, List.copyOf(candidate.reservationIds())));
+    }
+
+    private void unschedule(Slot slot) {
+        Planned previous = planned.remove(slot);
+        if (previous != null) {
+            wheel.get(index(previous.fireMinute())).remove(slot);
+        }
+    }
+
+    private int index(long minute) {
+        return (int) Math.floorMod(minute, (long) wheel.size());
+    }
+
+    private static long minuteOf(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) / 60;
+    }
+}
@@ -0,0 +1,384 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.config.ShardContext;
+import com.example.fitnessAndrea360.config.ShardRouter;
+import com.example.fitnessAndrea360.dto.CreditBalanceDTO;
+import com.example.fitnessAndrea360.dto.CreditLedgerEntryDTO;
+import com.example.fitnessAndrea360.dto.LedgerVerificationResultDTO;
+import com.example.fitnessAndrea360.event.EntitlementChangedEvent;
+import com.example.fitnessAndrea360.exception.ValidationException;
+import com.example.fitnessAndrea360.model.Purchase;
+import com.example.fitnessAndrea360.repository.CreditLedgerRepository;
+import com.example.fitnessAndrea360.repository.CreditLedgerRepository.EntryType;
+import com.example.fitnessAndrea360.repository.CreditLedgerRepository.PurchaseEntry;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Dnevnik sesija člana: svaka promena stanja kupovine je unos GRANT (kupovina), CONSUME (rezervacija),
+ * REFUND (otkazivanje/brisanje), EXPIRE (istek) ili CANCEL (refundirana kupovina). Stanje po članu i usluzi je zbir unosa.
+ *
+ * purchases.remaining_uses ostaje kao projekcija dnevnika (brza putanja rezervacije i izbor kupovine
+ * je čitaju) i menja se samo uslovnim UPDATE-om u istoj transakciji kao unos - nema više
+ * čitanja pa upisa preko entiteta. Noću posao otpisuje istekle kupovine, a provera u jednom
+ * prolazu poredi projekciju i EntitlementCache sa dnevnikom. Svaka promena objavljuje
+ * EntitlementChangedEvent, pa keš člana važi do sledeće promene.
+ * Metrike: ledger.entries{type}, ledger.verify.run, ledger.verify.drift{kind}.
+ */
+@Service
+@Slf4j
+public class CreditLedgerService {
+
+    public static final String NO_CREDITS_MESSAGE = "Nemate preostalih sesija u paketu";
+
+    // Koliko kupovina sa razlikom se vraća u rezultatu provere
+    private static final int DRIFT_SAMPLE_SIZE = 20;
+
+    // Potrošnja kada je kupovina već umanjena uslovnim UPDATE-om (brza i grupna putanja)
+    public record Consumption(Long memberId, Long purchaseId, Long reservationId) {
+    }
+
+    private final CreditLedgerRepository ledgerRepository;
+    private final EntitlementCache entitlementCache;
+    private final ShardRouter shardRouter;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate chunkTemplate;
+    private final MeterRegistry meterRegistry;
+    private final Timer verifyTimer;
+
+    private final AtomicLong projectionDrift = new AtomicLong();
+    private final AtomicLong cacheDrift = new AtomicLong();
+
+    @Value("${app.ledger.expire-batch-size:500}")
+    private int expireBatchSize;
+
+    public CreditLedgerService(CreditLedgerRepository ledgerRepository,
+                               EntitlementCache entitlementCache,
+                               ShardRouter shardRouter,
+                               ApplicationEventPublisher eventPublisher,
+                               PlatformTransactionManager transactionManager,
+                               MeterRegistry meterRegistry) {
+        this.ledgerRepository = ledgerRepository;
+        this.entitlementCache = entitlementCache;
+        this.shardRouter = shardRouter;
+        this.eventPublisher = eventPublisher;
+        this.chunkTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        this.verifyTimer = Timer.builder("ledger.verify.run")
+                .description("Trajanje provere dnevnika sesija")
+                .register(meterRegistry);
+        Gauge.builder("ledger.verify.drift", projectionDrift, AtomicLong::get).tags("kind", "projection").register(meterRegistry);
+        Gauge.builder("ledger.verify.drift", cacheDrift, AtomicLong::get).tags("kind", "cache").register(meterRegistry);
+    }
+
+    // Kupovine napravljene pre dnevnika dobijaju početni GRANT (jednom - dedup_key)
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        for (String shard : shardRouter.shards()) {
+            ShardContext.set(shard);
+            try {
+                int granted = ledgerRepository.appendOpeningGrants();
+                if (granted > 0) {
+                    log.info("Početno stanje dnevnika sesija za {} kupovina (šard {})", granted, shard);
+                }
+            } catch (DataAccessException e) {
+                log.error("Početno stanje dnevnika sesija nije upisano (šard {}): {}", shard, e.getMessage());
+            } finally {
+                ShardContext.clear();
+            }
+        }
+    }
+
+    // ========== UNOSI (pozivaju se u transakciji upisa) ==========
+
+    // Nova kupovina - mora već biti upisana (IDENTITY)
+    public void grant(Purchase purchase) {
+        int quantity = purchase.getRemainingUses();
+        if (ledgerRepository.appendOnce(new PurchaseEntry(purchase.getId(), null, EntryType.GRANT, quantity,
+                "GRANT:p" + purchase.getId(), null))) {
+            count(EntryType.GRANT, 1);
+            publish(purchase.getMember().getId(), EntitlementChangedEvent.Type.PURCHASE_GRANTED);
+        }
+    }
+
+    /**
+     * Troši jednu sesiju sa kupovine. EntitlementCache odbija bez upisa kada član za uslugu nema sesija
+     * (i posle ponovnog učitavanja); odluku donosi uslovni UPDATE. Vraća preostale sesije kupovine.
+     * Entitet kupovine se ne menja - Purchase je @DynamicUpdate, pa ga kasniji save ne vraća unazad.
+     */
+    public int consume(Purchase purchase, Long reservationId) {
+        Long memberId = purchase.getMember().getId();
+        Long serviceId = purchase.getService().getId();
+        LocalDate today = LocalDate.now();
+        if (!entitlementCache.forMember(memberId).canBook(serviceId, today)
+                && !entitlementCache.reload(memberId).canBook(serviceId, today)) {
+            throw new ValidationException(NO_CREDITS_MESSAGE);
+        }
+        if (ledgerRepository.decrementRemaining(purchase.getId(), 1) == 0) {
+            throw new ValidationException(NO_CREDITS_MESSAGE);
+        }
+        ledgerRepository.append(List.of(new PurchaseEntry(purchase.getId(), reservationId, EntryType.CONSUME, -1, null, null)));
+        ledgerRepository.markUsedIfEmpty(purchase.getId());
+        count(EntryType.CONSUME, 1);
+        publish(memberId, EntitlementChangedEvent.Type.RESERVATION_CONSUMED);
+        return ledgerRepository.findRemainingUses(purchase.getId());
+    }
+
+    /**
+     * Brza putanja rezervacije: uslovno troši sesiju sa kupovine člana za uslugu termina i zatvara praznu
+     * kupovinu (USED). CONSUME unos sa ID-em rezervacije upisuje recordConsumed posle INSERT-a, u istoj transakciji.
+     */
+    public boolean tryConsumeForAppointment(Long purchaseId, Long memberId, Long appointmentId) {
+        if (ledgerRepository.decrementForAppointment(purchaseId, memberId, appointmentId) == 0) {
+            return false;
+        }
+        ledgerRepository.markUsedIfEmpty(purchaseId);
+        return true;
+    }
+
+    /**
+     * Grupna rezervacija: kupovine su zaključane i proverene, pa svaki uslovni UPDATE mora proći -
+     * inače se cela grupa poništava umesto da remaining_uses ode ispod nule. Unose upisuje recordConsumed.
+     */
+    public void consumeLocked(Map<Long, Integer> counts) {
+        if (counts.isEmpty()) {
+            return;
+        }
+        for (int updated : ledgerRepository.decrementRemaining(counts)) {
+            if (updated == 0) {
+                throw new ValidationException(NO_CREDITS_MESSAGE);
+            }
+        }
+        ledgerRepository.markUsedIfEmpty(counts.keySet());
+    }
+
+    public void recordConsumed(List<Consumption> consumptions) {
+        if (consumptions.isEmpty()) {
+            return;
+        }
+        List<PurchaseEntry> entries = new ArrayList<>();
+        Set<Long> memberIds = new LinkedHashSet<>();
+        for (Consumption consumption : consumptions) {
+            entries.add(new PurchaseEntry(consumption.purchaseId(), consumption.reservationId(), EntryType.CONSUME, -1, null, null));
+            memberIds.add(consumption.memberId());
+        }
+        ledgerRepository.append(entries);
+        count(EntryType.CONSUME, entries.size());
+        memberIds.forEach(memberId -> publish(memberId, EntitlementChangedEvent.Type.RESERVATION_CONSUMED));
+    }
+
+    /**
+     * Vraća sesiju sa otkazane/obrisane rezervacije; istekla kupovina je ne dobija nazad.
+     * Unos nosi dedup_key refund:<rezervacija>:<n> (n = redni broj povraćaja, npr. posle promene kupovine) -
+     * dva povraćaja sa istim brojem iz paralelnih transakcija ruše drugu na unique_ledger_dedup.
+     */
+    public void refund(Purchase purchase, Long reservationId) {
+        if (ledgerRepository.incrementRemaining(purchase.getId(), 1) == 0) {
+            log.info("Sesija nije vraćena na kupovinu {} (istekla) za rezervaciju {}", purchase.getId(), reservationId);
+            return;
+        }
+        String dedupKey = "refund:" + reservationId + ":" + (ledgerRepository.countRefunds(reservationId) + 1);
+        ledgerRepository.append(List.of(new PurchaseEntry(purchase.getId(), reservationId, EntryType.REFUND, 1, dedupKey, null)));
+        count(EntryType.REFUND, 1);
+        publish(purchase.getMember().getId(), EntitlementChangedEvent.Type.RESERVATION_REFUNDED);
+    }
+
+    /**
+     * Refundirana kupovina: otpisuje sve sesije (CANCEL unos, status CANCELLED). Vraća false ako je
+     * neka sesija već potrošena ili kupovina nije aktivna - takva kupovina se ne otkazuje.
+     */
+    public boolean cancelUnused(Purchase purchase) {
+        int quantity = purchase.getQuantity();
+        if (ledgerRepository.cancelUnused(purchase.getId(), quantity) == 0) {
+            return false;
+        }
+        ledgerRepository.appendOnce(new PurchaseEntry(purchase.getId(), null, EntryType.CANCEL, -quantity,
+                "CANCEL:p" + purchase.getId(), null));
+        count(EntryType.CANCEL, 1);
+        publish(purchase.getMember().getId(), EntitlementChangedEvent.Type.PURCHASE_CANCELLED);
+        return true;
+    }
+
+    // ========== ISTEK ==========
+
+    @Scheduled(cron = "${app.ledger.expire-cron:0 15 0 * * *}")
+    public void scheduledExpire() {
+        expirePurchases();
+    }
+
+    /**
+     * Otpisuje preostale sesije kupovina kojima je prošao expiry_date (EXPIRE unos, status EXPIRED).
+     */
+    public long expirePurchases() {
+        LocalDate today = LocalDate.now();
+        long expired = 0;
+        for (String shard : shardRouter.shards()) {
+            ShardContext.set(shard);
+            try {
+                List<CreditLedgerRepository.ExpiringPurchase> chunk;
+                while (!(chunk = ledgerRepository.findExpiring(today, expireBatchSize)).isEmpty()) {
+                    List<CreditLedgerRepository.ExpiringPurchase> purchases = chunk;
+                    Integer done = chunkTemplate.execute(status -> {
+                        int count = 0;
+                        for (CreditLedgerRepository.ExpiringPurchase purchase : purchases) {
+                            if (ledgerRepository.expire(purchase.purchaseId(), purchase.remainingUses()) == 0) {
+                                continue;
+                            }
+                            ledgerRepository.appendOnce(new PurchaseEntry(purchase.purchaseId(), null, EntryType.EXPIRE,
+                                    -purchase.remainingUses(), "EXPIRE:p" + purchase.purchaseId(), null));
+                            publish(purchase.memberId(), EntitlementChangedEvent.Type.PURCHASE_EXPIRED);
+                            count++;
+                        }
+                        return count;
+                    });
+                    expired += done;
+                    // Sve kupovine iz dela su se u međuvremenu promenile - sledeći prolaz
+                    if (done == 0) {
+                        break;
+                    }
+                }
+            } finally {
+                ShardContext.clear();
+            }
+        }
+        count(EntryType.EXPIRE, expired);
+        if (expired > 0) {
+            log.info("Istek sesija: otpisano {} kupovina", expired);
+        }
+        return expired;
+    }
+
+    // ========== PROVERA ==========
+
+    @Scheduled(cron = "${app.ledger.verify-cron:0 45 3 * * *}")
+    public void scheduledVerify() {
+        verify();
+    }
+
+    /**
+     * Ponovo računa stanja iz dnevnika u jednom prolazu (red po red, sortirano po kupovini) i poredi ih
+     * sa remaining_uses i sa EntitlementCache-om. Keširani član sa razlikom se uklanja iz keša;
+     * projekcija se samo prijavljuje - dnevnik je izvor istine, a razlika traži istragu.
+     */
+    public LedgerVerificationResultDTO verify() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        long startNanos = System.nanoTime();
+        long[] checked = new long[1];
+        long projection = 0;
+        long cache = 0;
+        List<Long> driftedPurchaseIds = new ArrayList<>();
+
+        for (String shard : shardRouter.shards()) {
+            ShardContext.set(shard);
+            try {
+                // Snimci keširanih članova: purchaseId -> sesije; kupovine viđene u prolazu se uklanjaju
+                Map<Long, Map<Long, Integer>> cached = new HashMap<>();
+                for (Long memberId : entitlementCache.cachedMembers(shard)) {
+                    EntitlementCache.MemberEntitlements entitlements = entitlementCache.cached(shard, memberId);
+                    if (entitlements != null) {
+                        cached.put(memberId, new HashMap<>(entitlements.remainingByPurchase()));
+                    }
+                }
+                Set<Long> staleMembers = new LinkedHashSet<>();
+                List<Long> drifted = new ArrayList<>();
+                ledgerRepository.streamPurchaseBalances(balance -> {
+                    checked[0]++;
+                    if (balance.remainingUses() != balance.ledgerBalance()) {
+                        drifted.add(balance.purchaseId());
+                    }
+                    Map<Long, Integer> member = cached.get(balance.memberId());
+                    if (member != null) {
+                        // Keš drži samo aktivne kupovine sa sesijama
+                        Integer expected = Purchase.Status.ACTIVE.name().equals(balance.status()) && balance.ledgerBalance() > 0
+                                ? (int) balance.ledgerBalance() : null;
+                        if (!Objects.equals(member.remove(balance.purchaseId()), expected)) {
+                            staleMembers.add(balance.memberId());
+                        }
+                    }
+                });
+                projection += drifted.size();
+                drifted.stream().limit(DRIFT_SAMPLE_SIZE - driftedPurchaseIds.size()).forEach(driftedPurchaseIds::add);
+
+                // Kupovina u kešu koje više nema u bazi
+                cached.forEach((memberId, remaining) -> {
+                    if (!remaining.isEmpty()) {
+                        staleMembers.add(memberId);
+                    }
+                });
+                staleMembers.forEach(memberId -> entitlementCache.invalidate(shard, memberId));
+                cache += staleMembers.size();
+            } finally {
+                ShardContext.clear();
+            }
+        }
+
+        long durationNanos = System.nanoTime() - startNanos;
+        verifyTimer.record(durationNanos, TimeUnit.NANOSECONDS);
+        projectionDrift.set(projection);
+        cacheDrift.set(cache);
+        if (projection > 0 || cache > 0) {
+            log.warn("Provera dnevnika sesija: {} kupovina sa razlikom u remaining_uses (npr. {}), {} članova sa razlikom u kešu",
+                    projection, driftedPurchaseIds, cache);
+        }
+
+        return LedgerVerificationResultDTO.builder()
+                .startedAt(startedAt)
+                .purchasesChecked(checked[0])
+                .projectionDrift(projection)
+                .cacheDrift(cache)
+                .driftedPurchaseIds(driftedPurchaseIds)
+                .durationMillis(TimeUnit.NANOSECONDS.toMillis(durationNanos))
+                .build();
+    }
+
+    // ========== ČITANJE ==========
+
+    public List<CreditBalanceDTO> getBalances(Long memberId) {
+        return ledgerRepository.findBalancesByMember(memberId).entrySet().stream()
+                .sorted(Map.Entry.comparingByKey(Comparator.naturalOrder()))
+                .map(entry -> CreditBalanceDTO.builder()
+                        .memberId(memberId)
+                        .serviceId(entry.getKey())
+                        .balance(entry.getValue())
+                        .build())
+                .toList();
+    }
+
+    public List<CreditLedgerEntryDTO> getEntries(Long memberId, int limit) {
+        return ledgerRepository.findEntriesByMember(memberId, limit);
+    }
+
+    private void publish(Long memberId, EntitlementChangedEvent.Type type) {
+        eventPublisher.publishEvent(new EntitlementChangedEvent(EntitlementCache.currentShard(), memberId, type));
+    }
+
+    private void count(EntryType type, long amount) {
+        if (amount > 0) {
+            meterRegistry.counter("ledger.entries", "type", type.name()).increment(amount);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.config.TokenDetails;
+import com.example.fitnessAndrea360.exception.ResourceNotFoundException;
+import com.example.fitnessAndrea360.model.Member;
+import com.example.fitnessAndrea360.repository.MemberRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Član trenutno prijavljenog korisnika - jedno mesto umesto findByUserUsername/findByUserEmail/findByUserId po servisima.
+ *
+ * Redosled: memberId iz tokena (bez upita), zatim keš zahteva pa keš procesa (šard + korisničko ime -> memberId),
+ * i tek onda jedan upit po indeksiranom members.user_id. Tokeni izdati pre userId/memberId claim-ova
+ * traže člana po email-u (jedan JOIN upit) dok ne isteknu.
+ */
+@Slf4j
+@Component
+public class CurrentMemberResolver {
+
+    private static final String REQUEST_ATTRIBUTE = CurrentMemberResolver.class.getName() + ".memberId";
+
+    private final MemberRepository memberRepository;
+    private final int maxEntries;
+
+    private final Map<Key, Long> memberIds;
+
+    public CurrentMemberResolver(MemberRepository memberRepository,
+                                 @Value("${app.members.current-cache-size:10000}") int maxEntries) {
+        this.memberRepository = memberRepository;
+        this.maxEntries = maxEntries;
+        // LRU - kao EntitlementCache; veza korisnik -> član se ne menja, pa nema TTL-a
+        this.memberIds = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Long> eldest) {
+                return size() > CurrentMemberResolver.this.maxEntries;
+            }
+        });
+    }
+
+    // ID člana ili prazno ako prijavljeni korisnik nije član (zaposleni, admin)
+    public Optional<Long> findCurrentMemberId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()) {
+            return Optional.empty();
+        }
+        Long memberId = TokenDetails.memberId(authentication);
+        if (memberId != null) {
+            return Optional.of(memberId);
+        }
+
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        if (request != null && request.getAttribute(REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) instanceof Long cached) {
+            return Optional.of(cached);
+        }
+
+        Key key = new Key(EntitlementCache.currentShard(), authentication.getName());
+        memberId = memberIds.get(key);
+        if (memberId == null) {
+            memberId = load(authentication).orElse(null);
+            if (memberId == null) {
+                return Optional.empty();
+            }
+            memberIds.put(key, memberId);
+        }
+        if (request != null) {
+            request.setAttribute(REQUEST_ATTRIBUTE, memberId, RequestAttributes.SCOPE_REQUEST);
+        }
+        return Optional.of(memberId);
+    }
+
+    public Long currentMemberId() {
+        return findCurrentMemberId()
+                .orElseThrow(() -> new ResourceNotFoundException("Član nije pronađen"));
+    }
+
+    // Entitet člana po primarnom ključu (u transakciji ga drži persistence context)
+    public Member currentMember() {
+        return memberRepository.findById(currentMemberId())
+                .orElseThrow(() -> new ResourceNotFoundException("Član nije pronađen"));
+    }
+
+    private Optional<Long> load(Authentication authentication) {
+        Long userId = TokenDetails.userId(authentication);
+        if (userId != null) {
+            return memberRepository.findIdByUserId(userId);
+        }
+        log.debug("Token bez userId claim-a za {} - član se traži po email-u", authentication.getName());
+        return memberRepository.findIdByUserEmail(authentication.getName());
+    }
+
+    private record Key(String shard, String username) {
+    }
+}
@@ -1,8 +1,10 @@
 package com.example.fitnessAndrea360.service;
 
+import com.example.fitnessAndrea360.config.ShardRouter;
 import com.example.fitnessAndrea360.dto.CreateEmployeeRequest;
 import com.example.fitnessAndrea360.dto.EmployeeResponse;
 import com.example.fitnessAndrea360.exception.ResourceNotFoundException;
+import com.example.fitnessAndrea360.exception.ValidationException;
 import com.example.fitnessAndrea360.model.*;
 import com.example.fitnessAndrea360.repository.*;
 import lombok.RequiredArgsConstructor;
@@ -22,6 +24,8 @@ public class EmployeeService {
     private final LocationRepository locationRepository;
     private final RoleRepository roleRepository;
     private final PasswordEncoder passwordEncoder;
+    private final ShardRouter shardRouter;
+    private final GlobalUserWriter globalUserWriter;
 
     @Transactional
     public EmployeeResponse createEmployee(CreateEmployeeRequest request) {
@@ -30,7 +34,8 @@ public class EmployeeService {
             throw new RuntimeException("Email already exists");
         }
 
-        // 2. Pronađi lokaciju
+        // 2. Pronađi lokaciju (zaposleni se upisuje na njen šard)
+        shardRouter.requireLocationShard(request.getLocationId());
         Location location = locationRepository.findById(request.getLocationId())
                 .orElseThrow(() -> new ResourceNotFoundException(
                         "Location", "id", request.getLocationId()
@@ -49,7 +54,7 @@ public class EmployeeService {
         user.setFirstName(request.getFirstName()); // DODAJTE
         user.setLastName(request.getLastName()); // DODAJTE
         user.setLocation(location); // DODAJTE
-        User savedUser = userRepository.save(user);
+        User savedUser = globalUserWriter.save(user);
 
         // 5. Kreiraj Employee-a
         Employee employee = new Employee();
@@ -100,6 +105,9 @@ public class EmployeeService {
 
         Location location = locationRepository.findById(locationId)
                 .orElseThrow(() -> new ResourceNotFoundException("Location", "id", locationId));
+        if (!shardRouter.shardFor(locationId).equals(shardRouter.shardFor(employee.getLocation().getId()))) {
+            throw new ValidationException("Premeštanje zaposlenog na lokaciju drugog šarda nije podržano");
+        }
 
         employee.setLocation(location);
         Employee updatedEmployee = employeeRepository.save(employee);
@@ -113,7 +121,7 @@ public class EmployeeService {
                 .orElseThrow(() -> new ResourceNotFoundException("Employee", "id", employeeId));
 
         employee.getUser().setIsActive(false);
-        userRepository.save(employee.getUser());
+        globalUserWriter.save(employee.getUser());
     }
 
     @Transactional
@@ -122,7 +130,7 @@ public class EmployeeService {
                 .orElseThrow(() -> new ResourceNotFoundException("Employee", "id", employeeId));
 
         employee.getUser().setIsActive(true);
-        userRepository.save(employee.getUser());
+        globalUserWriter.save(employee.getUser());
     }
 
     private EmployeeResponse mapToResponse(Employee employee) {
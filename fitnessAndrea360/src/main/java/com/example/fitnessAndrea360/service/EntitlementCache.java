@@ -0,0 +1,174 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.config.ShardContext;
+import com.example.fitnessAndrea360.config.ShardingProperties;
+import com.example.fitnessAndrea360.event.EntitlementChangedEvent;
+import com.example.fitnessAndrea360.repository.CreditLedgerRepository;
+import com.example.fitnessAndrea360.repository.CreditLedgerRepository.Credit;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Pravo na rezervaciju po članu: usluga -> aktivne kupovine sa preostalim sesijama i datumom isteka.
+ *
+ * Član se učitava jednim upitom nad purchases pri prvoj proveri (bez entiteta i lazy učitavanja usluge),
+ * najduže neaktivni članovi ispadaju (LRU), a EntitlementChangedEvent poništava člana posle commit-a.
+ * TTL pokriva izmene sa drugih instanci. Snimak člana je nepromenljiv, pa provera "može li da rezerviše"
+ * ne zaključava ništa osim kratkog get-a iz mape.
+ *
+ * Mapa je brza provera i izbor kupovine - sesiju i dalje troši uslovni UPDATE u CreditLedgerService.
+ */
+@Component
+public class EntitlementCache {
+
+    private final CreditLedgerRepository ledgerRepository;
+    private final Duration ttl;
+    private final int maxMembers;
+
+    private final Map<Key, MemberEntitlements> members;
+
+    public EntitlementCache(CreditLedgerRepository ledgerRepository,
+                            @Value("${app.entitlements.cache-ttl-minutes:10}") int ttlMinutes,
+                            @Value("${app.entitlements.cache-max-members:20000}") int maxMembers) {
+        this.ledgerRepository = ledgerRepository;
+        this.ttl = Duration.ofMinutes(ttlMinutes);
+        this.maxMembers = maxMembers;
+        // LRU - kao indeks članova u AppointmentIntervalIndex
+        this.members = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, MemberEntitlements> eldest) {
+                return size() > EntitlementCache.this.maxMembers;
+            }
+        });
+    }
+
+    public MemberEntitlements forMember(Long memberId) {
+        Key key = key(memberId);
+        LocalDateTime now = LocalDateTime.now();
+        MemberEntitlements cached = members.get(key);
+        if (cached == null || cached.loadedAt.plus(ttl).isBefore(now)) {
+            cached = new MemberEntitlements(ledgerRepository.findCredits(memberId), now);
+            members.put(key, cached);
+        }
+        return cached;
+    }
+
+    // Ponovno učitavanje (npr. kada mapa kaže da sesija nema, a izmena je možda sa druge instance)
+    public MemberEntitlements reload(Long memberId) {
+        members.remove(key(memberId));
+        return forMember(memberId);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEntitlementChanged(EntitlementChangedEvent event) {
+        members.remove(new Key(event.shard(), event.memberId()));
+    }
+
+    // ========== PROVERA (CreditLedgerService.verify) ==========
+
+    Set<Long> cachedMembers(String shard) {
+        synchronized (members) {
+            return members.keySet().stream()
+                    .filter(key -> key.shard().equals(shard))
+                    .map(Key::memberId)
+                    .collect(Collectors.toSet());
+        }
+    }
+
+    MemberEntitlements cached(String shard, Long memberId) {
+        return members.get(new Key(shard, memberId));
+    }
+
+    void invalidate(String shard, Long memberId) {
+        members.remove(new Key(shard, memberId));
+    }
+
+    static String currentShard() {
+        String shard = ShardContext.current();
+        return shard != null ? shard : ShardingProperties.DEFAULT_SHARD;
+    }
+
+    private static Key key(Long memberId) {
+        return new Key(currentShard(), memberId);
+    }
+
+    private record Key(String shard, Long memberId) {
+    }
+
+    /**
+     * Nepromenljiv snimak jednog člana. Kupovine usluge su poređane po isteku (prvo one koje ističu
+     * najranije, bez isteka na kraju); istekle se preskaču pri čitanju, do noćnog otpisa.
+     */
+    public static final class MemberEntitlements {
+
+        private static final Comparator<Credit> EARLIEST_EXPIRY_FIRST = Comparator
+                .comparing(Credit::expiryDate, Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparing(Credit::purchaseId);
+
+        private final Map<Long, List<Credit>> byService;
+        private final Map<Long, Credit> byPurchase;
+        private final LocalDateTime loadedAt;
+
+        MemberEntitlements(List<Credit> credits, LocalDateTime loadedAt) {
+            Map<Long, List<Credit>> services = new HashMap<>();
+            Map<Long, Credit> purchases = new HashMap<>();
+            for (Credit credit : credits) {
+                services.computeIfAbsent(credit.serviceId(), id -> new ArrayList<>()).add(credit);
+                purchases.put(credit.purchaseId(), credit);
+            }
+            services.replaceAll((serviceId, list) -> list.stream().sorted(EARLIEST_EXPIRY_FIRST).toList());
+            this.byService = Map.copyOf(services);
+            this.byPurchase = Map.copyOf(purchases);
+            this.loadedAt = loadedAt;
+        }
+
+        public boolean canBook(Long serviceId, LocalDate day) {
+            return earliestExpiring(serviceId, day).isPresent();
+        }
+
+        // Preostale sesije za uslugu na kupovinama koje važe tog dana
+        public int remaining(Long serviceId, LocalDate day) {
+            int remaining = 0;
+            for (Credit credit : byService.getOrDefault(serviceId, List.of())) {
+                if (isValidOn(credit, day)) {
+                    remaining += credit.remainingUses();
+                }
+            }
+            return remaining;
+        }
+
+        // Kupovina koja ističe prva - sa nje se troši sesija kada član ne izabere kupovinu
+        public Optional<Credit> earliestExpiring(Long serviceId, LocalDate day) {
+            return bookable(serviceId, day).stream().findFirst();
+        }
+
+        // Sve kupovine usluge koje važe tog dana, redom kojim se troše
+        public List<Credit> bookable(Long serviceId, LocalDate day) {
+            return byService.getOrDefault(serviceId, List.of()).stream()
+                    .filter(credit -> isValidOn(credit, day))
+                    .toList();
+        }
+
+        // Aktivna kupovina sa preostalim sesijama koja važi tog dana
+        public Optional<Credit> credit(Long purchaseId, LocalDate day) {
+            Credit credit = byPurchase.get(purchaseId);
+            return credit != null && isValidOn(credit, day) ? Optional.of(credit) : Optional.empty();
+        }
+
+        // purchaseId -> preostale sesije, bez provere isteka (poređenje sa dnevnikom)
+        Map<Long, Integer> remainingByPurchase() {
+            return byPurchase.values().stream().collect(Collectors.toMap(Credit::purchaseId, Credit::remainingUses));
+        }
+
+        private static boolean isValidOn(Credit credit, LocalDate day) {
+            return credit.remainingUses() > 0 && (credit.expiryDate() == null || !credit.expiryDate().isBefore(day));
+        }
+    }
+}
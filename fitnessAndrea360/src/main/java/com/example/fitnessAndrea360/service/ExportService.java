@@ -0,0 +1,310 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.config.ShardContext;
+import com.example.fitnessAndrea360.config.ShardRouter;
+import com.example.fitnessAndrea360.exception.UnauthorizedAccessException;
+import com.example.fitnessAndrea360.exception.ValidationException;
+import com.example.fitnessAndrea360.model.User;
+import com.example.fitnessAndrea360.repository.UserRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSetMetaData;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Strimovani izvoz članova, rezervacija i transakcija u CSV ili NDJSON.
+ * Redovi se čitaju JDBC kursorom (Stream sa fetch size-om) i odmah upisuju u odgovor,
+ * tako da memorija ne raste sa brojem redova - bez entiteta, DTO liste i JSON niza u heap-u.
+ */
+@Slf4j
+@Service
+public class ExportService {
+
+    private static final int FLUSH_EVERY_ROWS = 1000;
+
+    private static final String MEMBERS_SQL =
+            "SELECT m.id, m.first_name, m.last_name, m.email, m.phone, m.date_of_birth, m.gender, " +
+            "m.membership_status, m.membership_start_date, m.membership_end_date, " +
+            "m.location_id, l.name AS location_name, m.created_at " +
+            "FROM members m JOIN locations l ON l.id = m.location_id";
+
+    private static final String RESERVATIONS_SQL =
+            "SELECT r.id, r.status, r.member_id, m.first_name AS member_first_name, m.last_name AS member_last_name, " +
+            "r.appointment_id, a.start_time, a.end_time, s.name AS service_name, " +
+            "a.location_id, l.name AS location_name, r.purchase_id, r.created_at " +
+            "FROM reservations r " +
+            "JOIN appointments a ON a.id = r.appointment_id " +
+            "JOIN members m ON m.id = r.member_id " +
+            "JOIN services s ON s.id = a.service_id " +
+            "JOIN locations l ON l.id = a.location_id";
+
+    private static final String TRANSACTIONS_SQL =
+            "SELECT t.id, t.status, t.amount_eur, t.currency, t.payment_date, t.payment_method, " +
+            "t.purchase_id, p.member_id, p.service_id, s.name AS service_name, m.location_id, t.created_at " +
+            "FROM transactions t " +
+            "LEFT JOIN purchases p ON p.id = t.purchase_id " +
+            "LEFT JOIN members m ON m.id = p.member_id " +
+            "LEFT JOIN services s ON s.id = p.service_id";
+
+    public enum ExportFormat {
+        CSV("csv", new MediaType("text", "csv", StandardCharsets.UTF_8)),
+        NDJSON("ndjson", new MediaType("application", "x-ndjson", StandardCharsets.UTF_8));
+
+        private final String extension;
+        private final MediaType mediaType;
+
+        ExportFormat(String extension, MediaType mediaType) {
+            this.extension = extension;
+            this.mediaType = mediaType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public MediaType getMediaType() {
+            return mediaType;
+        }
+
+        public static ExportFormat from(String value) {
+            for (ExportFormat format : values()) {
+                if (format.extension.equalsIgnoreCase(value)) {
+                    return format;
+                }
+            }
+            throw new ValidationException("Nepodržan format izvoza: " + value + " (dozvoljeno: csv, ndjson)");
+        }
+    }
+
+    private final UserRepository userRepository;
+    private final ObjectMapper objectMapper;
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final ShardRouter shardRouter;
+
+    public ExportService(UserRepository userRepository,
+                         ObjectMapper objectMapper,
+                         DataSource dataSource,
+                         ShardRouter shardRouter,
+                         @Value("${app.export.fetch-size:-2147483648}") int fetchSize) {
+        this.userRepository = userRepository;
+        this.objectMapper = objectMapper;
+        this.shardRouter = shardRouter;
+        // Zaseban JdbcTemplate da fetch size (za MySQL: Integer.MIN_VALUE = red po red) ne utiče na ostale upite
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(fetchSize);
+    }
+
+    private User getCurrentUserWithLocation() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String email = authentication.getName();
+        return userRepository.findByEmailWithLocation(email)
+                .orElseThrow(() -> new RuntimeException("Trenutni korisnik nije pronađen u bazi"));
+    }
+
+    // Prava pristupa se proveravaju odmah (u request thread-u), a telo odgovora se strimuje kasnije
+
+    public StreamingResponseBody exportMembers(ExportFormat format, Long locationId) {
+        Long scopedLocationId = resolveLocationScope(locationId);
+
+        StringBuilder sql = new StringBuilder(MEMBERS_SQL);
+        List<Object> args = new ArrayList<>();
+        if (scopedLocationId != null) {
+            sql.append(" WHERE m.location_id = ?");
+            args.add(scopedLocationId);
+        }
+        sql.append(" ORDER BY m.id");
+
+        return stream("members", format, sql.toString(), args, scopedLocationId);
+    }
+
+    public StreamingResponseBody exportReservations(ExportFormat format, Long locationId, LocalDate from, LocalDate to) {
+        Long scopedLocationId = resolveLocationScope(locationId);
+
+        StringBuilder sql = new StringBuilder(RESERVATIONS_SQL);
+        List<String> conditions = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+        if (scopedLocationId != null) {
+            conditions.add("r.location_id = ?");
+            args.add(scopedLocationId);
+        }
+        // Filteri nad kopijama u reservations - opseg ide preko idx_reservations_location_time
+        if (from != null) {
+            conditions.add("r.start_time >= ?");
+            args.add(Timestamp.valueOf(from.atStartOfDay()));
+        }
+        if (to != null) {
+            conditions.add("r.start_time < ?");
+            args.add(Timestamp.valueOf(to.plusDays(1).atStartOfDay()));
+        }
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        sql.append(" ORDER BY r.id");
+
+        return stream("reservations", format, sql.toString(), args, scopedLocationId);
+    }
+
+    public StreamingResponseBody exportTransactions(ExportFormat format, Long locationId) {
+        Long scopedLocationId = resolveLocationScope(locationId);
+
+        StringBuilder sql = new StringBuilder(TRANSACTIONS_SQL);
+        List<Object> args = new ArrayList<>();
+        if (scopedLocationId != null) {
+            sql.append(" WHERE m.location_id = ?");
+            args.add(scopedLocationId);
+        }
+        sql.append(" ORDER BY t.id");
+
+        return stream("transactions", format, sql.toString(), args, scopedLocationId);
+    }
+
+    // ========== STRIMOVANJE ==========
+
+    // Telo se izvršava u async niti - šard se bira ovde: šard lokacije ili redom svi šardovi (admin bez lokacije)
+    private StreamingResponseBody stream(String name, ExportFormat format, String sql, List<Object> args,
+                                         Long scopedLocationId) {
+        Collection<String> shards = scopedLocationId != null
+                ? List.of(shardRouter.shardFor(scopedLocationId))
+                : shardRouter.shards();
+
+        return outputStream -> {
+            long started = System.currentTimeMillis();
+            long[] rows = {0};
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+
+            for (String shard : shards) {
+                ShardContext.set(shard);
+                try {
+                    streamShard(name, format, sql, args, writer, rows);
+                } finally {
+                    ShardContext.clear();
+                }
+            }
+
+            writer.flush();
+            log.info("Izvoz {} ({}) završen: {} redova za {} ms",
+                    name, format.getExtension(), rows[0], System.currentTimeMillis() - started);
+        };
+    }
+
+    private void streamShard(String name, ExportFormat format, String sql, List<Object> args,
+                             Writer writer, long[] rows) throws IOException {
+        List<String> columns = new ArrayList<>();
+
+        try (Stream<Map<String, Object>> stream = streamingJdbcTemplate.queryForStream(sql, (rs, rowNum) -> {
+            if (columns.isEmpty()) {
+                ResultSetMetaData metaData = rs.getMetaData();
+                for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                    columns.add(metaData.getColumnLabel(i));
+                }
+            }
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (int i = 0; i < columns.size(); i++) {
+                row.put(columns.get(i), toExportValue(rs.getObject(i + 1)));
+            }
+            return row;
+        }, args.toArray())) {
+
+            stream.forEach(row -> {
+                try {
+                    if (rows[0] == 0 && format == ExportFormat.CSV) {
+                        writeCsvLine(writer, new ArrayList<>(row.keySet()));
+                    }
+                    if (format == ExportFormat.CSV) {
+                        writeCsvLine(writer, new ArrayList<>(row.values()));
+                    } else {
+                        writer.write(objectMapper.writeValueAsString(row));
+                        writer.write('\n');
+                    }
+                    if (++rows[0] % FLUSH_EVERY_ROWS == 0) {
+                        writer.flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            // Klijent je prekinuo preuzimanje - kursor se zatvara kroz try-with-resources
+            log.warn("Izvoz {} prekinut nakon {} redova: {}", name, rows[0], e.getMessage());
+            throw e.getCause();
+        }
+    }
+
+    private Object toExportValue(Object value) {
+        if (value instanceof Timestamp timestamp) {
+            return timestamp.toLocalDateTime().toString();
+        }
+        if (value instanceof java.sql.Date date) {
+            return date.toLocalDate().toString();
+        }
+        return value;
+    }
+
+    private void writeCsvLine(Writer writer, List<Object> values) throws IOException {
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(escapeCsv(values.get(i)));
+        }
+        writer.write("\r\n");
+    }
+
+    private String escapeCsv(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+            return '"' + text.replace("\"", "\"\"") + '"';
+        }
+        return text;
+    }
+
+    // ========== POMOĆNE METODE ==========
+
+    // Isto pravilo kao validateMemberAccess: admin vidi sve, zaposleni samo svoju lokaciju
+    private Long resolveLocationScope(Long requestedLocationId) {
+        User user = getCurrentUserWithLocation();
+        String userRole = user.getRole().getName();
+
+        if (userRole.equals("ADMIN")) {
+            return requestedLocationId;
+        }
+
+        if (userRole.equals("EMPLOYEE")) {
+            if (user.getLocation() == null) {
+                throw new UnauthorizedAccessException("Zaposleni nema dodeljenu lokaciju");
+            }
+            Long employeeLocationId = user.getLocation().getId();
+            if (requestedLocationId != null && !requestedLocationId.equals(employeeLocationId)) {
+                throw new UnauthorizedAccessException("Možete izvoziti samo podatke svoje lokacije");
+            }
+            return employeeLocationId;
+        }
+
+        throw new UnauthorizedAccessException("Nemaš pravo pristupa");
+    }
+}
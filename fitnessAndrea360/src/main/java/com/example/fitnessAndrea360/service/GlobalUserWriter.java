@@ -0,0 +1,64 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.config.ShardRouter;
+import com.example.fitnessAndrea360.model.User;
+import com.example.fitnessAndrea360.repository.UserCopyJdbcRepository;
+import com.example.fitnessAndrea360.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Upis korisnika na globalni šard (login ga čita samo odatle) i kopija reda na šardu tekuće lokacije,
+ * da bi members/employees na tom šardu mogli odmah da ga referenciraju.
+ *
+ * Korisnik se upisuje u posebnoj transakciji globalnog šarda, pa se novi korisnik briše ako se
+ * transakcija na šardu lokacije (član, zaposleni) poništi. Bez šardovanja je ovo običan save.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class GlobalUserWriter {
+
+    private final UserRepository userRepository;
+    private final UserCopyJdbcRepository userCopyRepository;
+    private final ShardRouter shardRouter;
+
+    public User save(User user) {
+        if (shardRouter.isOnGlobalShard()) {
+            return userRepository.save(user);
+        }
+        boolean created = user.getId() == null;
+        User saved = shardRouter.writeGlobal(() -> userRepository.save(user));
+        userCopyRepository.upsert(saved);
+        if (created) {
+            deleteIfRolledBack(List.of(saved.getId()));
+        }
+        return saved;
+    }
+
+    // Korisnici upisani na globalni šard za transakciju šarda lokacije koja se još nije završila
+    public void deleteIfRolledBack(Collection<Long> userIds) {
+        if (shardRouter.isOnGlobalShard() || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        List<Long> ids = List.copyOf(userIds);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    shardRouter.writeGlobal(() -> {
+                        userRepository.deleteAllByIdInBatch(ids);
+                        return null;
+                    });
+                    log.info("Upis na šardu lokacije poništen - obrisano {} korisnika sa globalnog šarda", ids.size());
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,290 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.dto.LocationActivityDTO;
+import com.example.fitnessAndrea360.event.ScheduleChangedEvent;
+import com.example.fitnessAndrea360.repository.ReservationJdbcRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SSE strim aktivnosti lokacije (status termina, rezervacije, zauzetost) za klijente bez STOMP-a.
+ *
+ * Konekcije su async servlet zahtevi (SseEmitter) - ne drže nit. Događaj se posle commit-a jednom
+ * serijalizuje i stavlja u ograničen bafer svakog pretplatnika lokacije; mali zajednički pool niti
+ * prazni bafere. Spor pretplatnik ne usporava ostale: kada mu se bafer napuni, najstariji događaj
+ * se odbacuje, a pretplatnik pre sledećeg događaja dobija "dropped" sa brojem propuštenih
+ * (znak da osveži stanje preko /sync ili punog učitavanja).
+ *
+ * SseEmitter.send je blokirajući upis u socket, pa klijent koji ne čita može zadržati nit pool-a.
+ * Slanje koje traje duže od app.sse.send-timeout-ms se prekida izbacivanjem pretplatnika: više ne
+ * prima događaje, a pool dobija zamensku nit dok se zaglavljeni upis ne završi (kontejner ga
+ * okonča po svom write timeout-u), tako da ostali pretplatnici nastavljaju da primaju događaje.
+ */
+@Slf4j
+@Component
+public class LocationActivityHub {
+
+    private static final String ACTIVITY_EVENT = "activity";
+    private static final String DROPPED_EVENT = "dropped";
+    private static final long NOT_SENDING = 0L;
+    private static final long EVICTED = Long.MIN_VALUE;
+
+    private final Map<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final ReservationJdbcRepository reservationJdbcRepository;
+    private final ObjectMapper objectMapper;
+    private final ThreadPoolExecutor sendExecutor;
+    private final int bufferSize;
+    private final long timeoutMillis;
+    private final long sendTimeoutNanos;
+
+    public LocationActivityHub(ReservationJdbcRepository reservationJdbcRepository,
+                               ObjectMapper objectMapper,
+                               @Value("${app.sse.buffer-size:64}") int bufferSize,
+                               @Value("${app.sse.timeout-minutes:30}") long timeoutMinutes,
+                               @Value("${app.sse.send-threads:4}") int sendThreads,
+                               @Value("${app.sse.send-timeout-ms:5000}") long sendTimeoutMillis) {
+        this.reservationJdbcRepository = reservationJdbcRepository;
+        this.objectMapper = objectMapper;
+        this.bufferSize = Math.max(1, bufferSize);
+        this.timeoutMillis = TimeUnit.MINUTES.toMillis(timeoutMinutes);
+        this.sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMillis);
+
+        // Fiksna veličina kao newFixedThreadPool; zamenske niti (vidi evictStalledSubscribers) ističu posle minut
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.sendExecutor = new ThreadPoolExecutor(sendThreads, sendThreads, 1, TimeUnit.MINUTES,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "sse-send-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Po isteku timeout-a klijent (EventSource) se sam ponovo povezuje
+    public SseEmitter subscribe(Long locationId) {
+        return subscribe(locationId, new SseEmitter(timeoutMillis));
+    }
+
+    SseEmitter subscribe(Long locationId, SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(locationId, emitter);
+
+        subscribers.compute(locationId, (id, locationSubscribers) -> {
+            Set<Subscriber> target = locationSubscribers != null ? locationSubscribers : ConcurrentHashMap.newKeySet();
+            target.add(subscriber);
+            return target;
+        });
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(error -> subscriber.close());
+
+        log.debug("SSE pretplata na lokaciju {} (ukupno na lokaciji: {})", locationId, subscriberCount(locationId));
+        return emitter;
+    }
+
+    public int subscriberCount(Long locationId) {
+        Set<Subscriber> locationSubscribers = subscribers.get(locationId);
+        return locationSubscribers != null ? locationSubscribers.size() : 0;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onScheduleChanged(ScheduleChangedEvent event) {
+        Set<Subscriber> locationSubscribers = subscribers.get(event.locationId());
+        if (locationSubscribers == null || locationSubscribers.isEmpty()) {
+            return;
+        }
+
+        // Stanje termina se čita jednom po događaju, ne po pretplatniku - [current_capacity, max_capacity, status]
+        LocationActivityDTO.LocationActivityDTOBuilder activity = LocationActivityDTO.builder()
+                .type(event.type().name())
+                .locationId(event.locationId())
+                .appointmentId(event.appointmentId())
+                .occurredAt(LocalDateTime.now());
+        reservationJdbcRepository.findAppointmentState(event.appointmentId()).ifPresent(state -> activity
+                .currentCapacity((Integer) state[0])
+                .maxCapacity((Integer) state[1])
+                .appointmentStatus((String) state[2]));
+
+        Set<ResponseBodyEmitter.DataWithMediaType> frame;
+        try {
+            frame = SseEmitter.event()
+                    .name(ACTIVITY_EVENT)
+                    .data(objectMapper.writeValueAsString(activity.build()), MediaType.APPLICATION_JSON)
+                    .build();
+        } catch (JsonProcessingException e) {
+            log.error("Serijalizacija SSE događaja nije uspela: {}", e.getMessage());
+            return;
+        }
+
+        for (Subscriber subscriber : locationSubscribers) {
+            subscriber.offer(frame);
+        }
+    }
+
+    // Komentar-linija drži konekciju otvorenom kroz proxy-je i otkriva prekinute klijente
+    @Scheduled(fixedRateString = "${app.sse.heartbeat-seconds:20}", timeUnit = TimeUnit.SECONDS)
+    public void heartbeat() {
+        Set<ResponseBodyEmitter.DataWithMediaType> frame = SseEmitter.event().comment("ping").build();
+        subscribers.values().forEach(locationSubscribers -> locationSubscribers.forEach(subscriber -> subscriber.offer(frame)));
+    }
+
+    // Pretplatnik čije slanje predugo traje se izbacuje; njegovu nit pool nadoknađuje dok je upis ne pusti
+    @Scheduled(fixedDelayString = "${app.sse.send-timeout-check-ms:1000}")
+    public void evictStalledSubscribers() {
+        long now = System.nanoTime();
+        subscribers.values().forEach(locationSubscribers -> locationSubscribers.forEach(subscriber -> {
+            if (subscriber.evictIfStalled(now)) {
+                log.warn("SSE pretplatnik lokacije {} ne prima događaje duže od {} ms - izbačen",
+                        subscriber.locationId, TimeUnit.NANOSECONDS.toMillis(sendTimeoutNanos));
+            }
+        }));
+    }
+
+    // Redosled setMaximumPoolSize/setCorePoolSize mora držati core <= max
+    private synchronized void resizeSendPool(int delta) {
+        if (delta > 0) {
+            sendExecutor.setMaximumPoolSize(sendExecutor.getMaximumPoolSize() + delta);
+            sendExecutor.setCorePoolSize(sendExecutor.getCorePoolSize() + delta);
+        } else {
+            sendExecutor.setCorePoolSize(sendExecutor.getCorePoolSize() + delta);
+            sendExecutor.setMaximumPoolSize(sendExecutor.getMaximumPoolSize() + delta);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sendExecutor.shutdownNow();
+        subscribers.values().forEach(locationSubscribers -> locationSubscribers.forEach(subscriber -> subscriber.emitter.complete()));
+    }
+
+    private final class Subscriber {
+
+        private final Long locationId;
+        private final SseEmitter emitter;
+        private final ArrayDeque<Set<ResponseBodyEmitter.DataWithMediaType>> buffer = new ArrayDeque<>();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        // Početak slanja u toku (System.nanoTime), NOT_SENDING ili EVICTED
+        private final AtomicLong sendStartedAt = new AtomicLong(NOT_SENDING);
+        private int dropped;
+        private volatile boolean closed;
+
+        private Subscriber(Long locationId, SseEmitter emitter) {
+            this.locationId = locationId;
+            this.emitter = emitter;
+        }
+
+        void offer(Set<ResponseBodyEmitter.DataWithMediaType> frame) {
+            if (closed) {
+                return;
+            }
+            synchronized (buffer) {
+                if (buffer.size() >= bufferSize) {
+                    buffer.pollFirst();
+                    dropped++;
+                }
+                buffer.addLast(frame);
+            }
+            scheduleDrain();
+        }
+
+        // Najviše jedno pražnjenje po pretplatniku u isto vreme - redosled događaja ostaje očuvan
+        private void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    sendExecutor.execute(this::drain);
+                } catch (RuntimeException e) {
+                    draining.set(false);
+                }
+            }
+        }
+
+        private void drain() {
+            try {
+                while (!closed) {
+                    Set<ResponseBodyEmitter.DataWithMediaType> next;
+                    int droppedCount;
+                    synchronized (buffer) {
+                        next = buffer.pollFirst();
+                        droppedCount = dropped;
+                        dropped = 0;
+                    }
+                    if (droppedCount > 0) {
+                        send(SseEmitter.event().name(DROPPED_EVENT).data(droppedCount).build());
+                    }
+                    if (next == null) {
+                        break;
+                    }
+                    send(next);
+                }
+            } catch (IOException | IllegalStateException e) {
+                // Klijent je prekinuo vezu ili je emitter već završen - kontejner sam zatvara zahtev
+                close();
+            } finally {
+                draining.set(false);
+            }
+
+            // Događaj stigao posle poslednjeg pollFirst, a pre oslobađanja draining
+            boolean pending;
+            synchronized (buffer) {
+                pending = !buffer.isEmpty();
+            }
+            if (pending && !closed) {
+                scheduleDrain();
+            }
+        }
+
+        private void send(Set<ResponseBodyEmitter.DataWithMediaType> frame) throws IOException {
+            sendStartedAt.set(System.nanoTime());
+            try {
+                emitter.send(frame);
+            } finally {
+                // Izbačen tokom slanja - zamenska nit više nije potrebna
+                if (sendStartedAt.getAndSet(NOT_SENDING) == EVICTED) {
+                    resizeSendPool(-1);
+                }
+            }
+        }
+
+        boolean evictIfStalled(long now) {
+            long startedAt = sendStartedAt.get();
+            if (startedAt == NOT_SENDING || startedAt == EVICTED || now - startedAt < sendTimeoutNanos
+                    || !sendStartedAt.compareAndSet(startedAt, EVICTED)) {
+                return false;
+            }
+            close();
+            resizeSendPool(1);
+            return true;
+        }
+
+        void close() {
+            closed = true;
+            subscribers.computeIfPresent(locationId, (id, locationSubscribers) -> {
+                locationSubscribers.remove(this);
+                return locationSubscribers.isEmpty() ? null : locationSubscribers;
+            });
+            synchronized (buffer) {
+                buffer.clear();
+            }
+        }
+    }
+}
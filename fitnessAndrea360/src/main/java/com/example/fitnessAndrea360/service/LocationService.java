@@ -2,14 +2,17 @@ package com.example.fitnessAndrea360.service;
 
 import com.example.fitnessAndrea360.dto.CreateLocationRequest;
 import com.example.fitnessAndrea360.dto.LocationResponse;
+import com.example.fitnessAndrea360.event.CatalogChangedEvent;
 import com.example.fitnessAndrea360.exception.ResourceNotFoundException;
 import com.example.fitnessAndrea360.model.Location;
 import com.example.fitnessAndrea360.repository.LocationRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -17,6 +20,7 @@ import java.util.stream.Collectors;
 public class LocationService {
 
     private final LocationRepository locationRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Transactional
     public LocationResponse createLocation(CreateLocationRequest request) {
@@ -25,6 +29,7 @@ public class LocationService {
         location.setAddress(request.getAddress());
 
         Location saved = locationRepository.save(location);
+        publishLocationChange(saved.getId());
         return mapToResponse(saved);
     }
 
@@ -50,6 +55,7 @@ public class LocationService {
         location.setAddress(request.getAddress());
 
         Location updated = locationRepository.save(location);
+        publishLocationChange(id);
         return mapToResponse(updated);
     }
 
@@ -59,6 +65,12 @@ public class LocationService {
             throw new ResourceNotFoundException("Location not found with id: " + id);
         }
         locationRepository.deleteById(id);
+        publishLocationChange(id);
+    }
+
+    private void publishLocationChange(Long locationId) {
+        eventPublisher.publishEvent(new CatalogChangedEvent(
+                CatalogChangedEvent.Catalog.LOCATIONS, locationId, Set.of(locationId)));
     }
 
     private LocationResponse mapToResponse(Location location) {
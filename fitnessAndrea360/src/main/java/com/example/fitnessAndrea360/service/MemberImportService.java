@@ -0,0 +1,530 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.config.ShardRouter;
+import com.example.fitnessAndrea360.dto.MemberImportResultDTO;
+import com.example.fitnessAndrea360.dto.MemberImportRowErrorDTO;
+import com.example.fitnessAndrea360.dto.MemberRequestDTO;
+import com.example.fitnessAndrea360.exception.ResourceNotFoundException;
+import com.example.fitnessAndrea360.exception.UnauthorizedAccessException;
+import com.example.fitnessAndrea360.exception.ValidationException;
+import com.example.fitnessAndrea360.model.Location;
+import com.example.fitnessAndrea360.model.Member;
+import com.example.fitnessAndrea360.model.Role;
+import com.example.fitnessAndrea360.model.User;
+import com.example.fitnessAndrea360.repository.LocationRepository;
+import com.example.fitnessAndrea360.repository.RoleRepository;
+import com.example.fitnessAndrea360.repository.UserCopyJdbcRepository;
+import com.example.fitnessAndrea360.repository.UserRepository;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Masovni uvoz članova iz CSV fajla.
+ * Svi redovi se validiraju u memoriji (isti DTO i poslovna pravila kao createMember), duplikati
+ * se otkrivaju preko hash setova nad unapred učitanim email/username indeksom, a upis ide
+ * JDBC batch insert-ima u blokovima - jedna transakcija po bloku.
+ */
+@Slf4j
+@Service
+public class MemberImportService {
+
+    // Kolone koje CSV mora da ima (ostale iz MemberRequestDTO su opcione)
+    private static final List<String> REQUIRED_COLUMNS = List.of(
+            "firstname", "lastname", "email", "phone", "dateofbirth", "gender", "address",
+            "membershipstartdate", "membershipenddate", "username", "password");
+
+    private static final String INSERT_USER_SQL =
+            "INSERT INTO users (email, password, role_id, first_name, last_name, username, phone, " +
+            "is_active, location_id, created_at, updated_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, TRUE, ?, ?, ?)";
+
+    private static final String INSERT_MEMBER_SQL =
+            "INSERT INTO members (first_name, last_name, user_id, location_id, email, phone, date_of_birth, " +
+            "gender, address, emergency_contact, emergency_phone, membership_start_date, membership_end_date, " +
+            "membership_status, medical_notes, notes, created_by, created_at, updated_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final UserRepository userRepository;
+    private final LocationRepository locationRepository;
+    private final RoleRepository roleRepository;
+    private final MemberService memberService;
+    private final PasswordEncoder passwordEncoder;
+    private final Validator validator;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardRouter shardRouter;
+    private final GlobalUserWriter globalUserWriter;
+    private final UserCopyJdbcRepository userCopyRepository;
+    private final int batchSize;
+
+    public MemberImportService(UserRepository userRepository,
+                               LocationRepository locationRepository,
+                               RoleRepository roleRepository,
+                               MemberService memberService,
+                               PasswordEncoder passwordEncoder,
+                               Validator validator,
+                               JdbcTemplate jdbcTemplate,
+                               PlatformTransactionManager transactionManager,
+                               ShardRouter shardRouter,
+                               GlobalUserWriter globalUserWriter,
+                               UserCopyJdbcRepository userCopyRepository,
+                               @Value("${app.import.batch-size:500}") int batchSize) {
+        this.userRepository = userRepository;
+        this.locationRepository = locationRepository;
+        this.roleRepository = roleRepository;
+        this.memberService = memberService;
+        this.passwordEncoder = passwordEncoder;
+        this.validator = validator;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.shardRouter = shardRouter;
+        this.globalUserWriter = globalUserWriter;
+        this.userCopyRepository = userCopyRepository;
+        this.batchSize = batchSize;
+    }
+
+    private User getCurrentUserWithLocation() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String email = authentication.getName();
+        return userRepository.findByEmailWithLocation(email)
+                .orElseThrow(() -> new RuntimeException("Trenutni korisnik nije pronađen u bazi"));
+    }
+
+    public MemberImportResultDTO importMembers(MultipartFile file, Long locationId, boolean dryRun) {
+        long started = System.currentTimeMillis();
+
+        if (file == null || file.isEmpty()) {
+            throw new ValidationException("CSV fajl je obavezan");
+        }
+
+        // 1. Lokacija - ista pravila kao createMember (zaposleni uvek na svoju lokaciju)
+        User currentUser = getCurrentUserWithLocation();
+        Long targetLocationId = resolveTargetLocation(currentUser, locationId);
+        shardRouter.requireLocationShard(targetLocationId);
+        Location location = locationRepository.findById(targetLocationId)
+                .orElseThrow(() -> new ResourceNotFoundException("Lokacija nije pronađena"));
+
+        Role memberRole = roleRepository.findByName("MEMBER")
+                .orElseThrow(() -> new ResourceNotFoundException("MEMBER role nije pronađena"));
+
+        // 2. Parsiranje i validacija u memoriji
+        List<ImportRow> rows = parse(file, targetLocationId);
+        Set<String> knownEmails = loadExisting("SELECT email FROM users UNION SELECT email FROM members");
+        Set<String> knownUsernames = loadExisting("SELECT username FROM users WHERE username IS NOT NULL");
+
+        Map<Integer, MemberImportRowErrorDTO> errors = new TreeMap<>();
+        List<ImportRow> valid = new ArrayList<>();
+        for (ImportRow row : rows) {
+            List<String> messages = validate(row, knownEmails, knownUsernames);
+            if (messages.isEmpty()) {
+                valid.add(row);
+            } else {
+                errors.put(row.line, toError(row, messages));
+            }
+        }
+
+        // 3. Upis u blokovima - greška u bloku ne poništava prethodno uvezene blokove
+        int imported = 0;
+        if (!dryRun) {
+            for (int from = 0; from < valid.size(); from += batchSize) {
+                List<ImportRow> chunk = valid.subList(from, Math.min(from + batchSize, valid.size()));
+                // BCrypt je namerno spor - heširanje van transakcije ne drži konekciju ni brave dok traje
+                List<User> users = toUsers(chunk, memberRole, location);
+                try {
+                    transactionTemplate.executeWithoutResult(status ->
+                            insertChunk(chunk, users, location.getId(), currentUser.getId()));
+                    imported += chunk.size();
+                } catch (DataAccessException | IllegalStateException e) {
+                    String reason = e instanceof DataAccessException dae
+                            ? dae.getMostSpecificCause().getMessage() : e.getMessage();
+                    log.warn("Uvoz bloka od {} redova nije uspeo: {}", chunk.size(), reason);
+                    for (ImportRow row : chunk) {
+                        errors.put(row.line, toError(row, List.of("Upis bloka nije uspeo: " + reason)));
+                    }
+                }
+            }
+        }
+
+        long elapsed = System.currentTimeMillis() - started;
+        log.info("Uvoz članova za lokaciju {}: {} redova, {} uvezeno, {} grešaka za {} ms{}",
+                targetLocationId, rows.size(), imported, errors.size(), elapsed, dryRun ? " (dry run)" : "");
+
+        return MemberImportResultDTO.builder()
+                .locationId(targetLocationId)
+                .totalRows(rows.size())
+                .importedCount(imported)
+                .failedCount(errors.size())
+                .dryRun(dryRun)
+                .errors(new ArrayList<>(errors.values()))
+                .elapsedMs(elapsed)
+                .build();
+    }
+
+    // ========== UPIS ==========
+
+    private List<User> toUsers(List<ImportRow> chunk, Role role, Location location) {
+        LocalDateTime createdAt = LocalDateTime.now();
+        List<User> users = new ArrayList<>(chunk.size());
+        for (ImportRow row : chunk) {
+            MemberRequestDTO request = row.request;
+            User user = new User();
+            user.setEmail(request.getEmail());
+            user.setPassword(passwordEncoder.encode(request.getPassword()));
+            user.setRole(role);
+            user.setFirstName(request.getFirstName());
+            user.setLastName(request.getLastName());
+            user.setUsername(request.getUsername());
+            user.setPhone(request.getPhone());
+            user.setIsActive(true);
+            user.setLocation(location);
+            user.setCreatedAt(createdAt);
+            user.setUpdatedAt(createdAt);
+            users.add(user);
+        }
+        return users;
+    }
+
+    private void insertChunk(List<ImportRow> chunk, List<User> users, Long locationId, Long createdBy) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+        // Users na globalnom šardu, kopije na šardu lokacije - members.user_id ih referencira odmah
+        long[] userIds = shardRouter.writeGlobal(() -> insertUsers(users, now));
+        for (int i = 0; i < users.size(); i++) {
+            users.get(i).setId(userIds[i]);
+        }
+        if (!shardRouter.isOnGlobalShard()) {
+            globalUserWriter.deleteIfRolledBack(users.stream().map(User::getId).toList());
+            userCopyRepository.upsertAll(users);
+        }
+
+        // Members - drugi batch, vezan za user_id iz prvog
+        jdbcTemplate.batchUpdate(INSERT_MEMBER_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                MemberRequestDTO request = chunk.get(i).request;
+                ps.setString(1, request.getFirstName());
+                ps.setString(2, request.getLastName());
+                ps.setLong(3, userIds[i]);
+                ps.setLong(4, locationId);
+                ps.setString(5, request.getEmail());
+                ps.setString(6, request.getPhone());
+                ps.setDate(7, Date.valueOf(request.getDateOfBirth()));
+                ps.setString(8, request.getGender().name());
+                ps.setString(9, request.getAddress());
+                ps.setString(10, request.getEmergencyContact());
+                ps.setString(11, request.getEmergencyPhone());
+                ps.setDate(12, Date.valueOf(request.getMembershipStartDate()));
+                ps.setDate(13, Date.valueOf(request.getMembershipEndDate()));
+                ps.setString(14, Member.MembershipStatus.ACTIVE.name());
+                ps.setString(15, request.getMedicalNotes());
+                ps.setString(16, request.getNotes());
+                if (createdBy != null) {
+                    ps.setLong(17, createdBy);
+                } else {
+                    ps.setNull(17, Types.BIGINT);
+                }
+                ps.setTimestamp(18, now);
+                ps.setTimestamp(19, now);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return chunk.size();
+            }
+        });
+    }
+
+    // Jedan batch, generisani ključevi se vraćaju istim redosledom kao redovi
+    private long[] insertUsers(List<User> users, Timestamp now) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                con -> con.prepareStatement(INSERT_USER_SQL, Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        User user = users.get(i);
+                        ps.setString(1, user.getEmail());
+                        ps.setString(2, user.getPassword());
+                        ps.setLong(3, user.getRole().getId());
+                        ps.setString(4, user.getFirstName());
+                        ps.setString(5, user.getLastName());
+                        ps.setString(6, user.getUsername());
+                        ps.setString(7, user.getPhone());
+                        ps.setLong(8, user.getLocation().getId());
+                        ps.setTimestamp(9, now);
+                        ps.setTimestamp(10, now);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return users.size();
+                    }
+                },
+                keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        if (keys.size() != users.size()) {
+            throw new IllegalStateException("Broj generisanih ključeva (" + keys.size() +
+                    ") ne odgovara broju redova (" + users.size() + ")");
+        }
+        return keys.stream()
+                .mapToLong(key -> ((Number) key.values().iterator().next()).longValue())
+                .toArray();
+    }
+
+    // ========== VALIDACIJA ==========
+
+    private List<String> validate(ImportRow row, Set<String> knownEmails, Set<String> knownUsernames) {
+        List<String> messages = new ArrayList<>(row.parseErrors);
+        if (!messages.isEmpty()) {
+            return messages;
+        }
+
+        MemberRequestDTO request = row.request;
+        for (ConstraintViolation<MemberRequestDTO> violation : validator.validate(request)) {
+            // Postojeći članovi iz druge teretane mogu imati članstvo koje je već počelo
+            if (violation.getPropertyPath().toString().equals("membershipStartDate") &&
+                    violation.getConstraintDescriptor().getAnnotation() instanceof jakarta.validation.constraints.FutureOrPresent) {
+                continue;
+            }
+            messages.add(violation.getMessage());
+        }
+        if (!messages.isEmpty()) {
+            return messages;
+        }
+
+        try {
+            memberService.validateMemberRequest(request);
+        } catch (ValidationException e) {
+            messages.add(e.getMessage());
+            return messages;
+        }
+
+        // Set.add vraća false i za postojeće u bazi i za duplikate unutar istog fajla
+        String email = request.getEmail().toLowerCase(Locale.ROOT);
+        String username = request.getUsername().toLowerCase(Locale.ROOT);
+        if (knownEmails.contains(email)) {
+            messages.add("Email već postoji u sistemu");
+        }
+        if (knownUsernames.contains(username)) {
+            messages.add("Korisničko ime već postoji");
+        }
+        if (messages.isEmpty()) {
+            knownEmails.add(email);
+            knownUsernames.add(username);
+        }
+        return messages;
+    }
+
+    private Set<String> loadExisting(String sql) {
+        Set<String> values = new HashSet<>();
+        try (Stream<String> stream = jdbcTemplate.queryForStream(sql, (rs, rowNum) -> rs.getString(1))) {
+            stream.filter(Objects::nonNull).forEach(value -> values.add(value.toLowerCase(Locale.ROOT)));
+        }
+        return values;
+    }
+
+    private Long resolveTargetLocation(User currentUser, Long requestedLocationId) {
+        String userRole = currentUser.getRole().getName();
+        if (userRole.equals("EMPLOYEE")) {
+            if (currentUser.getLocation() == null) {
+                throw new UnauthorizedAccessException("Zaposleni nema dodeljenu lokaciju");
+            }
+            return currentUser.getLocation().getId();
+        }
+        if (userRole.equals("ADMIN")) {
+            if (requestedLocationId == null) {
+                throw new ValidationException("ID lokacije je obavezan");
+            }
+            return requestedLocationId;
+        }
+        throw new UnauthorizedAccessException("Nemaš pravo da kreiraš članove");
+    }
+
+    private MemberImportRowErrorDTO toError(ImportRow row, List<String> messages) {
+        return MemberImportRowErrorDTO.builder()
+                .line(row.line)
+                .email(row.request != null ? row.request.getEmail() : null)
+                .messages(messages)
+                .build();
+    }
+
+    // ========== CSV ==========
+
+    private List<ImportRow> parse(MultipartFile file, Long locationId) {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8))) {
+
+            List<List<String>> records = readRecords(reader);
+            if (records.isEmpty()) {
+                throw new ValidationException("CSV fajl je prazan");
+            }
+
+            Map<String, Integer> header = new HashMap<>();
+            List<String> headerRecord = records.get(0);
+            for (int i = 0; i < headerRecord.size(); i++) {
+                header.put(normalizeColumn(headerRecord.get(i)), i);
+            }
+            List<String> missing = REQUIRED_COLUMNS.stream().filter(c -> !header.containsKey(c)).toList();
+            if (!missing.isEmpty()) {
+                throw new ValidationException("CSV nema obavezne kolone: " + String.join(", ", missing));
+            }
+
+            List<ImportRow> rows = new ArrayList<>(records.size() - 1);
+            for (int r = 1; r < records.size(); r++) {
+                List<String> record = records.get(r);
+                if (record.size() == 1 && record.get(0).isBlank()) {
+                    continue;
+                }
+                rows.add(toRow(r + 1, record, header, locationId));
+            }
+            return rows;
+        } catch (IOException e) {
+            throw new ValidationException("CSV fajl nije moguće pročitati: " + e.getMessage());
+        }
+    }
+
+    private ImportRow toRow(int line, List<String> record, Map<String, Integer> header, Long locationId) {
+        ImportRow row = new ImportRow(line);
+        MemberRequestDTO request = new MemberRequestDTO();
+        row.request = request;
+
+        request.setFirstName(value(record, header, "firstname"));
+        request.setLastName(value(record, header, "lastname"));
+        request.setEmail(value(record, header, "email"));
+        request.setPhone(value(record, header, "phone"));
+        request.setAddress(value(record, header, "address"));
+        request.setEmergencyContact(value(record, header, "emergencycontact"));
+        request.setEmergencyPhone(value(record, header, "emergencyphone"));
+        request.setMedicalNotes(value(record, header, "medicalnotes"));
+        request.setNotes(value(record, header, "notes"));
+        request.setUsername(value(record, header, "username"));
+        request.setPassword(value(record, header, "password"));
+        // Lokacija se određuje na nivou uvoza, ne po redu
+        request.setLocationId(locationId);
+
+        request.setDateOfBirth(parseDate(row, value(record, header, "dateofbirth"), "dateOfBirth"));
+        request.setMembershipStartDate(parseDate(row, value(record, header, "membershipstartdate"), "membershipStartDate"));
+        request.setMembershipEndDate(parseDate(row, value(record, header, "membershipenddate"), "membershipEndDate"));
+
+        String gender = value(record, header, "gender");
+        if (gender != null) {
+            try {
+                request.setGender(Member.Gender.valueOf(gender.toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                row.parseErrors.add("Nepoznat pol: " + gender + " (dozvoljeno: MALE, FEMALE, OTHER)");
+            }
+        }
+        return row;
+    }
+
+    private LocalDate parseDate(ImportRow row, String value, String column) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            row.parseErrors.add("Neispravan datum u koloni " + column + ": " + value + " (format yyyy-MM-dd)");
+            return null;
+        }
+    }
+
+    private String value(List<String> record, Map<String, Integer> header, String column) {
+        Integer index = header.get(column);
+        if (index == null || index >= record.size()) {
+            return null;
+        }
+        String value = record.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private String normalizeColumn(String column) {
+        return column.replace("\uFEFF", "").replace("_", "").trim().toLowerCase(Locale.ROOT);
+    }
+
+    // RFC 4180: polja pod navodnicima mogu sadržati zarez, novi red i "" kao navodnik
+    private List<List<String>> readRecords(BufferedReader reader) throws IOException {
+        List<List<String>> records = new ArrayList<>();
+        List<String> record = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        int c;
+        while ((c = reader.read()) != -1) {
+            char ch = (char) c;
+            if (quoted) {
+                if (ch == '"') {
+                    reader.mark(1);
+                    int next = reader.read();
+                    if (next == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        if (next != -1) {
+                            reader.reset();
+                        }
+                    }
+                } else {
+                    field.append(ch);
+                }
+            } else if (ch == '"') {
+                quoted = true;
+            } else if (ch == ',') {
+                record.add(field.toString());
+                field.setLength(0);
+            } else if (ch == '\n') {
+                record.add(field.toString());
+                field.setLength(0);
+                records.add(record);
+                record = new ArrayList<>();
+            } else if (ch != '\r') {
+                field.append(ch);
+            }
+        }
+        if (field.length() > 0 || !record.isEmpty()) {
+            record.add(field.toString());
+            records.add(record);
+        }
+        return records;
+    }
+
+    private static class ImportRow {
+        private final int line;
+        private final List<String> parseErrors = new ArrayList<>();
+        private MemberRequestDTO request;
+
+        private ImportRow(int line) {
+            this.line = line;
+        }
+    }
+}
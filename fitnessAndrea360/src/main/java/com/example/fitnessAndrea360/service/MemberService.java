@@ -1,5 +1,6 @@
 package com.example.fitnessAndrea360.service;
 
+import com.example.fitnessAndrea360.config.ShardRouter;
 import com.example.fitnessAndrea360.dto.MemberRequestDTO;
 import com.example.fitnessAndrea360.dto.MemberResponseDTO;
 import com.example.fitnessAndrea360.exception.ResourceNotFoundException;
@@ -27,6 +28,9 @@ public class MemberService {
     private final LocationRepository locationRepository;
     private final RoleRepository roleRepository;
     private final PasswordEncoder passwordEncoder;
+    private final ShardRouter shardRouter;
+    private final CurrentMemberResolver currentMemberResolver;
+    private final GlobalUserWriter globalUserWriter;
 
     //  pomoćna metoda za dobijanje trenutnog User entiteta SA LOKACIJOM
     private User getCurrentUserWithLocation() {
@@ -63,6 +67,7 @@ public class MemberService {
         } else {
             throw new UnauthorizedAccessException("Nemaš pravo da kreiraš članove");
         }
+        shardRouter.requireLocationShard(targetLocationId);
 
         // 4. Provera da li email već postoji
         if (memberRepository.existsByEmail(request.getEmail())) {
@@ -106,7 +111,7 @@ public class MemberService {
         memberUser.setIsActive(true);
         memberUser.setLocation(location);
         memberUser.setPhone(request.getPhone());
-        memberUser = userRepository.save(memberUser);
+        memberUser = globalUserWriter.save(memberUser);
 
         // 10. Kreiranje Member entiteta
         Member member = new Member();
@@ -133,7 +138,8 @@ public class MemberService {
         return mapToResponse(member);
     }
 
-    private void validateMemberRequest(MemberRequestDTO request) {
+    // Koristi se i iz MemberImportService - ista poslovna pravila za pojedinačni i masovni unos
+    void validateMemberRequest(MemberRequestDTO request) {
         // Provera da li je datum isteka nakon datuma početka
         if (request.getMembershipEndDate().isBefore(request.getMembershipStartDate())) {
             throw new ValidationException("Datum isteka članstva mora biti nakon datuma početka");
@@ -151,14 +157,17 @@ public class MemberService {
         }
     }
 
+    @Transactional(readOnly = true)
     public List<MemberResponseDTO> getAllMembers() {
         User currentUser = getCurrentUserWithLocation();
 
         List<Member> members;
 
         if (currentUser.getRole().getName().equals("ADMIN")) {
-            // Admin vidi sve članove
-            members = memberRepository.findAll();
+            // Admin vidi sve članove - sa šardovanjem po lokacijama paralelno sa svih šardova
+            return shardRouter.scatterGather(() -> memberRepository.findAll().stream()
+                    .map(this::mapToResponse)
+                    .collect(Collectors.toList()));
         } else if (currentUser.getRole().getName().equals("EMPLOYEE")) {
             // Employee vidi članove samo sa svoje lokacije
             if (currentUser.getLocation() == null) {
@@ -174,6 +183,7 @@ public class MemberService {
                 .collect(Collectors.toList());
     }
 
+    @Transactional(readOnly = true)
     public MemberResponseDTO getMemberById(Long id) {
         User currentUser = getCurrentUserWithLocation();
 
@@ -186,6 +196,7 @@ public class MemberService {
         return mapToResponse(member);
     }
 
+    @Transactional(readOnly = true)
     public List<MemberResponseDTO> getMembersByLocation(Long locationId) {
         User currentUser = getCurrentUserWithLocation();
 
@@ -197,10 +208,9 @@ public class MemberService {
             throw new UnauthorizedAccessException("Nemaš pravo da vidiš članove ove lokacije");
         }
 
-        List<Member> members = memberRepository.findByLocationId(locationId);
-        return members.stream()
+        return shardRouter.readOnLocation(locationId, () -> memberRepository.findByLocationId(locationId).stream()
                 .map(this::mapToResponse)
-                .collect(Collectors.toList());
+                .collect(Collectors.toList()));
     }
 
     @Transactional
@@ -239,6 +249,10 @@ public class MemberService {
         } else if (currentUser.getRole().getName().equals("ADMIN")) {
             // Admin može da menja lokaciju
             if (request.getLocationId() != null && !request.getLocationId().equals(member.getLocation().getId())) {
+                // Član, kupovine i rezervacije su na šardu lokacije - premeštanje između šardova nije upis jednog reda
+                if (!shardRouter.shardFor(request.getLocationId()).equals(shardRouter.shardFor(member.getLocation().getId()))) {
+                    throw new ValidationException("Premeštanje člana na lokaciju drugog šarda nije podržano");
+                }
                 Location newLocation = locationRepository.findById(request.getLocationId())
                         .orElseThrow(() -> new ResourceNotFoundException("Lokacija nije pronađena"));
                 member.setLocation(newLocation);
@@ -284,7 +298,7 @@ public class MemberService {
             }
         }
 
-        userRepository.save(memberUser);
+        globalUserWriter.save(memberUser);
         member = memberRepository.save(member);
 
         return mapToResponse(member);
@@ -301,7 +315,7 @@ public class MemberService {
 
         // Deaktivacija User naloga
         member.getUser().setIsActive(false);
-        userRepository.save(member.getUser());
+        globalUserWriter.save(member.getUser());
 
         // Ažuriranje statusa članstva
         member.setMembershipStatus(Member.MembershipStatus.INACTIVE);
@@ -338,7 +352,7 @@ public class MemberService {
         }
 
         if (userRole.equals("MEMBER")) {
-            if (!user.getId().equals(member.getUser().getId())) {
+            if (!member.getId().equals(currentMemberResolver.currentMemberId())) {
                 throw new UnauthorizedAccessException("Možete pristupiti samo svom profilu");
             }
             return;
@@ -383,6 +397,7 @@ public class MemberService {
     /**
      * Pronalazi Member-a po User ID-u
      */
+    @Transactional(readOnly = true)
     public Member getMemberByUserId(Long userId) {
         return memberRepository.findByUserId(userId)
                 .orElseThrow(() -> new ResourceNotFoundException("Član nije pronađen za user ID: " + userId));
@@ -391,18 +406,17 @@ public class MemberService {
     /**
      * Pronalazi Member-a po username-u
      */
+    @Transactional(readOnly = true)
     public Member getMemberByUsername(String username) {
         return memberRepository.findByUserUsername(username)
                 .orElseThrow(() -> new ResourceNotFoundException("Član nije pronađen za username: " + username));
     }
 
     /**
-     * Pronalazi Member-a za trenutno ulogovanog korisnika
+     * Pronalazi Member-a za trenutno ulogovanog korisnika (CurrentMemberResolver - memberId iz tokena)
      */
+    @Transactional(readOnly = true)
     public Member getCurrentMember() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String currentUsername = authentication.getName();
-
-        return getMemberByUsername(currentUsername);
+        return currentMemberResolver.currentMember();
     }
 }
\ No newline at end of file
@@ -0,0 +1,230 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.config.NotificationProperties;
+import com.example.fitnessAndrea360.config.ShardContext;
+import com.example.fitnessAndrea360.config.ShardRouter;
+import com.example.fitnessAndrea360.repository.NotificationOutboxRepository;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Šalje obaveštenja iz notification_outbox tabele.
+ *
+ * Jedan prolaz preuzima do batch-size redova, grupiše ih po (tip, termin) i grupe šalje na
+ * pool niti: termin se učitava i šablon renderuje jednom po grupi, a poruke grupe idu kroz
+ * jednu SMTP konekciju (JavaMailSender.send(MimeMessage...)). Neuspele poruke se ponovo
+ * pokušavaju sa eksponencijalnim backoff-om, do max-attempts.
+ */
+@Component
+@Slf4j
+public class NotificationOutboxWorker {
+
+    private final NotificationOutboxRepository outboxRepository;
+    private final NotificationTemplates templates;
+    private final ObjectProvider<JavaMailSender> mailSenderProvider;
+    private final ShardRouter shardRouter;
+    private final NotificationProperties properties;
+    private final ExecutorService sendExecutor;
+
+    private record GroupKey(NotificationOutboxRepository.Type type, Long appointmentId) {
+    }
+
+    public NotificationOutboxWorker(NotificationOutboxRepository outboxRepository,
+                                    NotificationTemplates templates,
+                                    ObjectProvider<JavaMailSender> mailSenderProvider,
+                                    ShardRouter shardRouter,
+                                    NotificationProperties properties) {
+        this.outboxRepository = outboxRepository;
+        this.templates = templates;
+        this.mailSenderProvider = mailSenderProvider;
+        this.shardRouter = shardRouter;
+        this.properties = properties;
+        AtomicInteger threadIds = new AtomicInteger();
+        this.sendExecutor = Executors.newFixedThreadPool(properties.getWorkerThreads(), runnable -> {
+            Thread thread = new Thread(runnable, "mail-send-" + threadIds.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${app.notifications.poll-interval-ms:2000}")
+    public void poll() {
+        if (!properties.isEnabled() || mailSenderProvider.getIfAvailable() == null) {
+            return;
+        }
+        for (String shard : shardRouter.shards()) {
+            ShardContext.set(shard);
+            try {
+                // Pun prolaz znači da verovatno ima još - prazni red bez čekanja sledećeg intervala
+                int drained;
+                do {
+                    drained = drainOnce();
+                } while (drained == properties.getBatchSize());
+            } catch (RuntimeException e) {
+                log.error("Slanje obaveštenja (šard {}) nije uspelo: {}", shard, e.getMessage(), e);
+            } finally {
+                ShardContext.clear();
+            }
+        }
+    }
+
+    /**
+     * Jedan prolaz kroz outbox tekućeg šarda. Vraća broj preuzetih obaveštenja.
+     */
+    public int drainOnce() {
+        JavaMailSender mailSender = mailSenderProvider.getIfAvailable();
+        if (mailSender == null) {
+            return 0;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        int released = outboxRepository.releaseExpiredLeases(now);
+        if (released > 0) {
+            log.warn("Vraćeno u red {} obaveštenja čije je slanje prekinuto", released);
+        }
+
+        List<Long> due = outboxRepository.findDue(now, properties.getBatchSize());
+        if (due.isEmpty()) {
+            return 0;
+        }
+        String claimToken = UUID.randomUUID().toString();
+        outboxRepository.claim(due, claimToken, now.plusSeconds(properties.getLeaseSeconds()));
+        List<NotificationOutboxRepository.OutboxEntry> claimed = outboxRepository.findClaimed(claimToken);
+
+        Map<GroupKey, List<NotificationOutboxRepository.OutboxEntry>> groups = new LinkedHashMap<>();
+        for (NotificationOutboxRepository.OutboxEntry entry : claimed) {
+            groups.computeIfAbsent(new GroupKey(entry.type(), entry.appointmentId()), key -> new ArrayList<>()).add(entry);
+        }
+
+        String shard = ShardContext.current();
+        List<CompletableFuture<Void>> sends = new ArrayList<>();
+        groups.forEach((key, entries) -> sends.add(CompletableFuture.runAsync(() -> {
+            ShardContext.set(shard);
+            try {
+                sendGroup(mailSender, key, entries, claimToken);
+            } finally {
+                ShardContext.clear();
+            }
+        }, sendExecutor)));
+        CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new)).join();
+
+        return due.size();
+    }
+
+    private void sendGroup(JavaMailSender mailSender, GroupKey key, List<NotificationOutboxRepository.OutboxEntry> entries,
+                           String claimToken) {
+        NotificationOutboxRepository.ClassInfo info = key.appointmentId() != null
+                ? outboxRepository.findClassInfo(key.appointmentId()).orElse(null)
+                : null;
+        if (info == null) {
+            // Termin je obrisan - nema šta da se pošalje, ponovni pokušaji ne bi pomogli
+            List<NotificationOutboxRepository.Retry> failed = entries.stream()
+                    .map(entry -> new NotificationOutboxRepository.Retry(entry.id(), true, LocalDateTime.now(),
+                            "Termin ne postoji"))
+                    .toList();
+            warnIfLeaseLost(key, failed.size(), outboxRepository.reschedule(failed, claimToken));
+            return;
+        }
+        NotificationTemplates.ClassTemplate template = templates.renderClass(key.type(), info);
+
+        Map<MimeMessage, NotificationOutboxRepository.OutboxEntry> messages = new IdentityHashMap<>();
+        Map<Long, String> errors = new LinkedHashMap<>();
+        for (NotificationOutboxRepository.OutboxEntry entry : entries) {
+            try {
+                MimeMessage message = mailSender.createMimeMessage();
+                MimeMessageHelper helper = new MimeMessageHelper(message, "UTF-8");
+                helper.setFrom(properties.getFrom());
+                helper.setTo(entry.recipientEmail());
+                helper.setSubject(template.subjectFor(entry.recipientName()));
+                helper.setText(template.bodyFor(entry.recipientName()));
+                messages.put(message, entry);
+            } catch (MessagingException e) {
+                errors.put(entry.id(), e.getMessage());
+            }
+        }
+
+        if (!messages.isEmpty()) {
+            try {
+                mailSender.send(messages.keySet().toArray(MimeMessage[]::new));
+            } catch (MailSendException e) {
+                if (e.getFailedMessages().isEmpty()) {
+                    messages.values().forEach(entry -> errors.put(entry.id(), e.getMessage()));
+                } else {
+                    e.getFailedMessages().forEach((message, cause) -> {
+                        NotificationOutboxRepository.OutboxEntry entry = messages.get(message);
+                        if (entry != null) {
+                            errors.put(entry.id(), cause.getMessage());
+                        }
+                    });
+                }
+            } catch (MailException e) {
+                messages.values().forEach(entry -> errors.put(entry.id(), e.getMessage()));
+            }
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> sentIds = entries.stream()
+                .map(NotificationOutboxRepository.OutboxEntry::id)
+                .filter(id -> !errors.containsKey(id))
+                .toList();
+        warnIfLeaseLost(key, sentIds.size(), outboxRepository.markSent(sentIds, claimToken, now));
+
+        List<NotificationOutboxRepository.Retry> retries = new ArrayList<>();
+        for (NotificationOutboxRepository.OutboxEntry entry : entries) {
+            String error = errors.get(entry.id());
+            if (error == null) {
+                continue;
+            }
+            int attempt = entry.attempts() + 1;
+            retries.add(new NotificationOutboxRepository.Retry(entry.id(), attempt >= properties.getMaxAttempts(),
+                    now.plusSeconds(backoffSeconds(attempt)), error));
+        }
+        warnIfLeaseLost(key, retries.size(), outboxRepository.reschedule(retries, claimToken));
+
+        if (!retries.isEmpty()) {
+            log.warn("Obaveštenja {} za termin {}: {} poslato, {} neuspelo ({})", key.type(), key.appointmentId(),
+                    entries.size() - retries.size(), retries.size(), retries.get(0).error());
+        } else {
+            log.debug("Obaveštenja {} za termin {}: poslato {}", key.type(), key.appointmentId(), entries.size());
+        }
+    }
+
+    // Zakup je istekao usred slanja i red je vraćen u red ili preuzet - ishod ove instance se ne upisuje
+    private void warnIfLeaseLost(GroupKey key, int expected, int updated) {
+        if (updated < expected) {
+            log.warn("Obaveštenja {} za termin {}: ishod nije upisan za {} od {} redova - zakup je istekao " +
+                    "(povećati app.notifications.lease-seconds?)", key.type(), key.appointmentId(), expected - updated, expected);
+        }
+    }
+
+    long backoffSeconds(int attempt) {
+        long delay = properties.getBackoffBaseSeconds() << Math.min(attempt - 1, 20);
+        return Math.min(delay, properties.getBackoffMaxSeconds());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sendExecutor.shutdownNow();
+    }
+}
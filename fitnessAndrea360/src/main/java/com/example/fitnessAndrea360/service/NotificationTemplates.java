@@ -0,0 +1,72 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.repository.NotificationOutboxRepository;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Šabloni email obaveštenja iz classpath:mail/{tip}.txt - prvi red je naslov, ostatak telo.
+ *
+ * Renderovanje je u dva koraka: podaci o terminu ({{serviceName}}, {{date}}, ...) zamenjuju se
+ * jednom po terminu, a za svakog primaoca samo {{recipientName}}.
+ */
+@Component
+public class NotificationTemplates {
+
+    private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("dd.MM.yyyy.");
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm");
+    private static final String RECIPIENT = "{{recipientName}}";
+
+    private final Map<NotificationOutboxRepository.Type, ClassTemplate> templates =
+            new EnumMap<>(NotificationOutboxRepository.Type.class);
+
+    public record ClassTemplate(String subject, String body) {
+
+        public String subjectFor(String recipientName) {
+            return subject.replace(RECIPIENT, recipientName != null ? recipientName : "");
+        }
+
+        public String bodyFor(String recipientName) {
+            return body.replace(RECIPIENT, recipientName != null ? recipientName : "");
+        }
+    }
+
+    public NotificationTemplates() {
+        for (NotificationOutboxRepository.Type type : NotificationOutboxRepository.Type.values()) {
+            templates.put(type, load("mail/" + type.name().toLowerCase() + ".txt"));
+        }
+    }
+
+    public ClassTemplate renderClass(NotificationOutboxRepository.Type type, NotificationOutboxRepository.ClassInfo info) {
+        ClassTemplate template = templates.get(type);
+        return new ClassTemplate(fill(template.subject(), info), fill(template.body(), info));
+    }
+
+    private static String fill(String text, NotificationOutboxRepository.ClassInfo info) {
+        return text
+                .replace("{{serviceName}}", info.serviceName())
+                .replace("{{date}}", info.startTime().format(DATE))
+                .replace("{{startTime}}", info.startTime().format(TIME))
+                .replace("{{endTime}}", info.endTime().format(TIME))
+                .replace("{{locationName}}", info.locationName())
+                .replace("{{locationAddress}}", info.locationAddress());
+    }
+
+    private static ClassTemplate load(String path) {
+        try (InputStream in = new ClassPathResource(path).getInputStream()) {
+            String content = new String(in.readAllBytes(), StandardCharsets.UTF_8).replace("\r\n", "\n");
+            int newline = content.indexOf('\n');
+            return new ClassTemplate(content.substring(0, newline).trim(), content.substring(newline + 1).strip() + "\n");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Šablon obaveštenja nije pronađen: " + path, e);
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.config.ShardContext;
+import com.example.fitnessAndrea360.config.ShardRouter;
+import com.example.fitnessAndrea360.dto.PartitionPruningDTO;
+import com.example.fitnessAndrea360.dto.PartitionStatusDTO;
+import com.example.fitnessAndrea360.exception.ValidationException;
+import com.example.fitnessAndrea360.repository.ArchiveJdbcRepository;
+import com.example.fitnessAndrea360.repository.PartitionJdbcRepository;
+import com.example.fitnessAndrea360.repository.PartitionJdbcRepository.Partition;
+import com.example.fitnessAndrea360.repository.ReservationJdbcRepository;
+import com.example.fitnessAndrea360.repository.SchemaMigrationJdbcRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Mesečne particije tabela appointments i reservations (RANGE COLUMNS po start_time).
+ *
+ * Uključuje se sa app.partitioning.enabled: tabele se jednom migriraju (uklanjanje stranih ključeva,
+ * start_time u jedinstvenim ključevima, PARTITION BY), a posao zatim noću dodaje mesece unapred
+ * (months-ahead), a particije starije od retention-months kopira u arhivu i uklanja sa DROP PARTITION
+ * umesto brisanja red po red. Particija se uklanja samo kada svaki njen red ima kopiju u arhivi.
+ * Posle prolaza proverava preko EXPLAIN da upiti po opsegu datuma čitaju samo svoje particije.
+ *
+ * Kopije polja termina u rezervacijama (start_time, location_id, service_id, i u arhivi) se dopunjuju
+ * jednom po šardu, i bez particionisanja. Oba jednokratna koraka beleže oznaku u schema_migrations.
+ */
+@Service
+@Slf4j
+public class PartitionMaintenanceService {
+
+    private static final String APPOINTMENTS = "appointments";
+    private static final String RESERVATIONS = "reservations";
+
+    // Oznake u schema_migrations
+    static final String APPOINTMENT_COPIES_MIGRATION = "reservations-appointment-copies";
+    static final String PARTITIONING_MIGRATION = "appointments-reservations-monthly-partitions";
+
+    // Reprezentativni upiti po opsegu datuma (oblik upita iz AppointmentRepository i ReservationRepository)
+    private record PruningQuery(String name, String table, String sql, boolean keyed) {
+    }
+
+    private static final List<PruningQuery> PRUNING_QUERIES = List.of(
+            new PruningQuery("appointmentsByDateRange", APPOINTMENTS,
+                    "SELECT id FROM appointments WHERE start_time BETWEEN ? AND ?", false),
+            new PruningQuery("appointmentsByLocationAndDateRange", APPOINTMENTS,
+                    "SELECT id FROM appointments WHERE location_id = ? AND start_time BETWEEN ? AND ?", true),
+            new PruningQuery("reservationsByDateRange", RESERVATIONS,
+                    "SELECT id FROM reservations WHERE start_time BETWEEN ? AND ?", false),
+            new PruningQuery("reservationsByLocationAndDateRange", RESERVATIONS,
+                    "SELECT id FROM reservations WHERE location_id = ? AND start_time BETWEEN ? AND ?", true),
+            new PruningQuery("reservationsByMemberAndDateRange", RESERVATIONS,
+                    "SELECT id FROM reservations WHERE member_id = ? AND start_time BETWEEN ? AND ?", true));
+
+    private final PartitionJdbcRepository partitionRepository;
+    private final ArchiveJdbcRepository archiveRepository;
+    private final ReservationJdbcRepository reservationJdbcRepository;
+    private final SchemaMigrationJdbcRepository migrationRepository;
+    private final ShardRouter shardRouter;
+
+    @Value("${app.partitioning.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.partitioning.months-ahead:3}")
+    private int monthsAhead;
+
+    // 0 = particije se nikad ne uklanjaju
+    @Value("${app.partitioning.retention-months:24}")
+    private int retentionMonths;
+
+    // false = istekle particije se ne kopiraju u *_archive tabele; uklanjaju se samo ako su prazne
+    // ili ih je ArchiveService već premestio
+    @Value("${app.partitioning.archive-expired:true}")
+    private boolean archiveExpired;
+
+    public PartitionMaintenanceService(PartitionJdbcRepository partitionRepository,
+                                       ArchiveJdbcRepository archiveRepository,
+                                       ReservationJdbcRepository reservationJdbcRepository,
+                                       SchemaMigrationJdbcRepository migrationRepository,
+                                       ShardRouter shardRouter) {
+        this.partitionRepository = partitionRepository;
+        this.archiveRepository = archiveRepository;
+        this.reservationJdbcRepository = reservationJdbcRepository;
+        this.migrationRepository = migrationRepository;
+        this.shardRouter = shardRouter;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        for (String shard : shardRouter.shards()) {
+            ShardContext.set(shard);
+            try {
+                backfillAppointmentCopies(shard);
+            } catch (DataAccessException e) {
+                log.error("Dopuna kopija polja termina u rezervacijama nije uspela (šard {}): {}", shard, e.getMessage());
+            } finally {
+                ShardContext.clear();
+            }
+        }
+        if (enabled) {
+            maintain();
+        }
+    }
+
+    @Scheduled(cron = "${app.partitioning.cron:0 30 4 * * *}")
+    public void scheduledRun() {
+        if (enabled) {
+            maintain();
+        }
+    }
+
+    /**
+     * Migracija (ako tabele još nisu particionisane), novi meseci, istekle particije i provera odsecanja,
+     * redom po šardovima. Greška na jednom šardu ne zaustavlja ostale.
+     */
+    public List<PartitionStatusDTO> maintain() {
+        YearMonth current = YearMonth.now();
+        for (String shard : shardRouter.shards()) {
+            ShardContext.set(shard);
+            try {
+                if (!migrationRepository.isApplied(PARTITIONING_MIGRATION)) {
+                    migrate(current);
+                    migrationRepository.markApplied(PARTITIONING_MIGRATION);
+                } else {
+                    addFutureMonths(current);
+                }
+                expireOldPartitions(current);
+                verifyPruning(current);
+            } catch (DataAccessException e) {
+                log.error("Održavanje particija nije uspelo (šard {}): {}", shard, e.getMessage());
+            } finally {
+                ShardContext.clear();
+            }
+        }
+        return getStatus();
+    }
+
+    public List<PartitionStatusDTO> getStatus() {
+        return shardRouter.scatterGather(() -> List.of(status(APPOINTMENTS), status(RESERVATIONS)));
+    }
+
+    /**
+     * EXPLAIN reprezentativnih upita za opseg [from, to] - koje particije bi svaki upit pročitao.
+     */
+    public List<PartitionPruningDTO> checkPruning(LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            throw new ValidationException("Kraj opsega ne može biti pre početka");
+        }
+        LocalDateTime start = from.atStartOfDay();
+        LocalDateTime end = to.atTime(23, 59, 59);
+        return shardRouter.scatterGather(() -> explainAll(start, end));
+    }
+
+    // ========== KORACI ==========
+
+    private void backfillAppointmentCopies(String shard) {
+        if (migrationRepository.isApplied(APPOINTMENT_COPIES_MIGRATION)) {
+            return;
+        }
+        int filled = reservationJdbcRepository.backfillAppointmentCopies();
+        int archived = archiveRepository.backfillAppointmentCopies();
+        migrationRepository.markApplied(APPOINTMENT_COPIES_MIGRATION);
+        log.info("Dopunjene kopije polja termina za {} rezervacija i {} arhiviranih rezervacija (šard {})",
+                filled, archived, shard);
+    }
+
+    // Tabela koja je već particionisana (prekinuta migracija, ručna izmena) se preskače
+    private void migrate(YearMonth current) {
+        int filled = reservationJdbcRepository.backfillAppointmentCopies();
+        // reservations -> appointments se vidi sa obe strane, zato skup
+        Set<PartitionJdbcRepository.ForeignKey> foreignKeys = new LinkedHashSet<>();
+        for (String table : List.of(APPOINTMENTS, RESERVATIONS)) {
+            foreignKeys.addAll(partitionRepository.findForeignKeys(table));
+        }
+        for (PartitionJdbcRepository.ForeignKey foreignKey : foreignKeys) {
+            partitionRepository.dropForeignKey(foreignKey);
+            log.info("Uklonjen strani ključ {}.{} (particionisane tabele ih ne podržavaju)",
+                    foreignKey.table(), foreignKey.name());
+        }
+        // Obe tabele dobijaju iste mesece, pa se istekle particije uklanjaju u paru
+        YearMonth oldest = partitionRepository.findOldestStartTime(APPOINTMENTS)
+                .map(YearMonth::from)
+                .orElse(current);
+        List<YearMonth> months = initialMonths(oldest, current, monthsAhead);
+        for (String table : List.of(APPOINTMENTS, RESERVATIONS)) {
+            if (!partitionRepository.isPartitioned(table)) {
+                partitionRepository.partitionByMonth(table, months);
+            }
+        }
+        log.info("Tabele termina i rezervacija particionisane po mesecima {} - {} (dopunjeno {} rezervacija)",
+                months.get(0), months.get(months.size() - 1), filled);
+    }
+
+    private void addFutureMonths(YearMonth current) {
+        for (String table : List.of(APPOINTMENTS, RESERVATIONS)) {
+            List<YearMonth> months = monthsToAdd(partitionRepository.findPartitions(table), current, monthsAhead);
+            if (!months.isEmpty()) {
+                partitionRepository.addMonths(table, months);
+                log.info("Dodate particije za {}: {} - {}", table, months.get(0), months.get(months.size() - 1));
+            }
+        }
+    }
+
+    // Rezervacije pre termina - particija termina se ne uklanja dok particija njenih rezervacija još postoji
+    private void expireOldPartitions(YearMonth current) {
+        LocalDateTime archivedAt = LocalDateTime.now();
+        Set<String> keptMonths = new HashSet<>();
+        for (String table : List.of(RESERVATIONS, APPOINTMENTS)) {
+            for (String partition : expiredPartitions(partitionRepository.findPartitions(table), current, retentionMonths)) {
+                if (APPOINTMENTS.equals(table) && keptMonths.contains(partition)) {
+                    continue;
+                }
+                int archived = 0;
+                if (archiveExpired) {
+                    archived = RESERVATIONS.equals(table)
+                            ? archiveRepository.copyReservationPartition(partition, archivedAt)
+                            : archiveRepository.copyAppointmentPartition(partition, archivedAt);
+                }
+                long unarchived = archiveRepository.countUnarchivedInPartition(table, partition);
+                if (unarchived > 0) {
+                    keptMonths.add(partition);
+                    log.warn("Particija {}.{} nije uklonjena - {} redova nema kopiju u arhivi", table, partition, unarchived);
+                    continue;
+                }
+                partitionRepository.dropPartition(table, partition);
+                log.info("Uklonjena particija {}.{} ({} redova kopirano u arhivu)", table, partition, archived);
+            }
+        }
+    }
+
+    // Upiti za tekući mesec moraju da čitaju samo njegovu particiju
+    private void verifyPruning(YearMonth current) {
+        for (PartitionPruningDTO check : explainAll(current.atDay(1).atStartOfDay(), current.atEndOfMonth().atTime(23, 59, 59))) {
+            if (!check.isPruned()) {
+                log.warn("Upit {} čita sve particije tabele {} ({}) - odsecanje ne radi",
+                        check.getQuery(), check.getTableName(), check.getPartitionsScanned());
+            }
+        }
+    }
+
+    private List<PartitionPruningDTO> explainAll(LocalDateTime start, LocalDateTime end) {
+        String shard = Objects.requireNonNullElse(ShardContext.current(), "default");
+        List<PartitionPruningDTO> result = new ArrayList<>();
+        for (PruningQuery query : PRUNING_QUERIES) {
+            Object[] params = query.keyed()
+                    ? new Object[]{1L, Timestamp.valueOf(start), Timestamp.valueOf(end)}
+                    : new Object[]{Timestamp.valueOf(start), Timestamp.valueOf(end)};
+            List<String> scanned = partitionRepository.explainPartitions(query.sql(), params);
+            int total = partitionRepository.findPartitions(query.table()).size();
+            result.add(PartitionPruningDTO.builder()
+                    .shard(shard)
+                    .query(query.name())
+                    .tableName(query.table())
+                    .partitionsScanned(scanned)
+                    .totalPartitions(total)
+                    .pruned(total > 0 && scanned.size() < total)
+                    .build());
+        }
+        return result;
+    }
+
+    private PartitionStatusDTO status(String table) {
+        List<Partition> partitions = partitionRepository.findPartitions(table);
+        List<Partition> monthly = partitions.stream().filter(p -> p.lessThan() != null).toList();
+        return PartitionStatusDTO.builder()
+                .shard(Objects.requireNonNullElse(ShardContext.current(), "default"))
+                .tableName(table)
+                .partitioned(!partitions.isEmpty())
+                .partitions(partitions.stream().map(Partition::name).toList())
+                .coveredFrom(monthly.isEmpty() ? null : monthly.get(0).lessThan().minusMonths(1))
+                .coveredUntil(monthly.isEmpty() ? null : monthly.get(monthly.size() - 1).lessThan())
+                .estimatedRows(partitions.stream().mapToLong(Partition::estimatedRows).sum())
+                .build();
+    }
+
+    // ========== PLANIRANJE (bez baze) ==========
+
+    // Od meseca najstarijeg reda do tekućeg + monthsAhead
+    static List<YearMonth> initialMonths(YearMonth oldest, YearMonth current, int monthsAhead) {
+        List<YearMonth> months = new ArrayList<>();
+        YearMonth last = current.plusMonths(monthsAhead);
+        for (YearMonth month = oldest.isAfter(current) ? current : oldest; !month.isAfter(last); month = month.plusMonths(1)) {
+            months.add(month);
+        }
+        return months;
+    }
+
+    // Meseci posle poslednje mesečne particije, do tekućeg + monthsAhead
+    static List<YearMonth> monthsToAdd(List<Partition> existing, YearMonth current, int monthsAhead) {
+        LocalDate lastBound = existing.stream()
+                .map(Partition::lessThan)
+                .filter(Objects::nonNull)
+                .max(LocalDate::compareTo)
+                .orElse(null);
+        if (lastBound == null) {
+            return List.of();
+        }
+        List<YearMonth> months = new ArrayList<>();
+        YearMonth last = current.plusMonths(monthsAhead);
+        for (YearMonth month = YearMonth.from(lastBound); !month.isAfter(last); month = month.plusMonths(1)) {
+            months.add(month);
+        }
+        return months;
+    }
+
+    // Mesečne particije čiji je ceo opseg pre (tekući - retentionMonths); p_future se nikad ne uklanja
+    static List<String> expiredPartitions(List<Partition> existing, YearMonth current, int retentionMonths) {
+        if (retentionMonths <= 0) {
+            return List.of();
+        }
+        LocalDate cutoff = current.minusMonths(retentionMonths).atDay(1);
+        return existing.stream()
+                .filter(p -> p.lessThan() != null && !p.lessThan().isAfter(cutoff))
+                .map(Partition::name)
+                .toList();
+    }
+}
@@ -4,14 +4,11 @@ import com.example.fitnessAndrea360.dto.PurchaseResponseDTO;
 import com.example.fitnessAndrea360.model.Member;
 import com.example.fitnessAndrea360.model.Purchase;
 import com.example.fitnessAndrea360.model.Service;
-import com.example.fitnessAndrea360.model.User;
+import com.example.fitnessAndrea360.repository.ChangeLogRepository;
 import com.example.fitnessAndrea360.repository.MemberRepository;
 import com.example.fitnessAndrea360.repository.PurchaseRepository;
 import com.example.fitnessAndrea360.repository.ServiceRepository;
-import com.example.fitnessAndrea360.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 
 import org.springframework.transaction.annotation.Transactional;
 
@@ -30,62 +27,26 @@ public class PurchaseService {
     private final PurchaseRepository purchaseRepository;
     private final MemberRepository memberRepository;
     private final ServiceRepository serviceRepository;
-    private final UserRepository userRepository;
+    private final ChangeLogRepository changeLogRepository;
+    private final CreditLedgerService creditLedgerService;
+    private final CurrentMemberResolver currentMemberResolver;
 
     /**
      * Vrati sve kupovine trenutno ulogovanog člana
      */
     public List<PurchaseResponseDTO> getCurrentMemberPurchases() {
         try {
-            // 1. Dobavi trenutnog korisnika
-            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-            String currentUsername = authentication.getName();
-
-            System.out.println("🔍 Current username: " + currentUsername);
-
-            // 2. Pokušaj da pronađeš Member-a na različite načine
-            Member member = null;
-
-            // Prvo pokušaj po username-u
-            Optional<Member> memberByUsername = memberRepository.findByUserUsername(currentUsername);
-            if (memberByUsername.isPresent()) {
-                member = memberByUsername.get();
-                System.out.println("✅ Found member by username: " + member.getFirstName());
-            }
-            // Ako ne radi, pokušaj po email-u
-            else if (currentUsername.contains("@")) {
-                Optional<Member> memberByEmail = memberRepository.findByUserEmail(currentUsername);
-                if (memberByEmail.isPresent()) {
-                    member = memberByEmail.get();
-                    System.out.println("✅ Found member by email: " + member.getFirstName());
-                }
-            }
-            // Ako ni to ne radi, pokušaj pronaći User pa onda Member
-            else {
-                Optional<User> user = userRepository.findByUsername(currentUsername);
-                if (user.isPresent()) {
-                    Optional<Member> memberByUserId = memberRepository.findByUserId(user.get().getId());
-                    if (memberByUserId.isPresent()) {
-                        member = memberByUserId.get();
-                        System.out.println("✅ Found member by user ID: " + member.getFirstName());
-                    }
-                }
-            }
-
-            if (member == null) {
-                System.out.println("⚠️ Member not found for username: " + currentUsername);
+            // 1. Član trenutnog korisnika (memberId iz tokena, inače jedan upit po user_id)
+            Optional<Long> memberId = currentMemberResolver.findCurrentMemberId();
+            if (memberId.isEmpty()) {
                 // Vrati praznu listu umesto da baci exception
                 return Collections.emptyList();
             }
 
-            System.out.println("👤 Member ID: " + member.getId() + ", Name: " + member.getFirstName());
+            // 2. Dobavi sve purchase-e za ovog member-a
+            List<Purchase> purchases = purchaseRepository.findByMemberId(memberId.get());
 
-            // 3. Dobavi sve purchase-e za ovog member-a
-            List<Purchase> purchases = purchaseRepository.findByMemberId(member.getId());
-
-            System.out.println("📦 Found " + purchases.size() + " purchases");
-
-            // 4. Konvertuj u DTO
+            // 3. Konvertuj u DTO
             return purchases.stream()
                     .map(this::convertToDTO)
                     .collect(Collectors.toList());
@@ -128,25 +89,22 @@ public class PurchaseService {
      */
     public List<PurchaseResponseDTO> getPurchasesByServiceId(Long serviceId) {
         try {
-            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-            String currentUsername = authentication.getName();
-
             // Pronađi member-a
-            Member member = findMemberByUsername(currentUsername);
-            if (member == null) {
+            Long memberId = currentMemberResolver.findCurrentMemberId().orElse(null);
+            if (memberId == null) {
                 return Collections.emptyList();
             }
 
             // Prvo pokušaj sa repository metodom ako postoji
             try {
-                List<Purchase> purchases = purchaseRepository.findByMemberIdAndServiceId(member.getId(), serviceId);
+                List<Purchase> purchases = purchaseRepository.findByMemberIdAndServiceId(memberId, serviceId);
                 return purchases.stream()
                         .map(this::convertToDTO)
                         .collect(Collectors.toList());
             } catch (Exception e) {
                 // Ako metoda ne postoji, filtriraj ručno
                 System.out.println("⚠️ Using manual filter for purchases");
-                List<Purchase> allPurchases = purchaseRepository.findByMemberId(member.getId());
+                List<Purchase> allPurchases = purchaseRepository.findByMemberId(memberId);
 
                 return allPurchases.stream()
                         .filter(p -> p.getService().getId().equals(serviceId))
@@ -160,7 +118,7 @@ public class PurchaseService {
     }
 
     /**
-     * Smanji remainingUses za 1 (kada se napravi rezervacija)
+     * Potroši jednu sesiju (kada se napravi rezervacija) - CONSUME unos u dnevnik sesija
      */
     @Transactional
     public PurchaseResponseDTO useOneSession(Long purchaseId) {
@@ -168,24 +126,19 @@ public class PurchaseService {
             Purchase purchase = purchaseRepository.findById(purchaseId)
                     .orElseThrow(() -> new RuntimeException("Purchase not found with id: " + purchaseId));
 
-            if (purchase.getRemainingUses() <= 0) {
-                throw new RuntimeException("No remaining uses for purchase ID: " + purchaseId);
-            }
-
-            // Smanji remainingUses za 1
-            purchase.setRemainingUses(purchase.getRemainingUses() - 1);
-
-            // Ako je iskorišćeno sve, promeni status
-            if (purchase.getRemainingUses() == 0) {
-                purchase.setStatus(Purchase.Status.USED);
-            }
-
-            Purchase savedPurchase = purchaseRepository.save(purchase);
+            // Uslovni UPDATE u dnevniku; kada se iskoristi sve, status postaje USED
+            int remaining = creditLedgerService.consume(purchase, null);
+            logPurchaseChange(purchase, ChangeLogRepository.Operation.UPDATE);
 
             System.out.println("➖ Used one session from purchase ID: " + purchaseId +
-                    ", Remaining: " + savedPurchase.getRemainingUses());
+                    ", Remaining: " + remaining);
 
-            return convertToDTO(savedPurchase);
+            PurchaseResponseDTO response = convertToDTO(purchase);
+            response.setRemainingUses(remaining);
+            if (remaining == 0) {
+                response.setStatus(Purchase.Status.USED.name());
+            }
+            return response;
         } catch (Exception e) {
             System.err.println("❌ Error in useOneSession: " + e.getMessage());
             throw e;
@@ -219,6 +172,8 @@ public class PurchaseService {
             purchase.setExpiryDate(LocalDate.now().plusDays(30));
 
             Purchase savedPurchase = purchaseRepository.save(purchase);
+            creditLedgerService.grant(savedPurchase);
+            logPurchaseChange(savedPurchase, ChangeLogRepository.Operation.INSERT);
 
             System.out.println("➕ Created new purchase ID: " + savedPurchase.getId() +
                     " for member: " + member.getFirstName() + " " + member.getLastName() +
@@ -233,36 +188,18 @@ public class PurchaseService {
     }
 
     /**
-     * Pomocna metoda za pronalaženje member-a po username-u
+     * Upis u dnevnik izmena za delta sinhronizaciju (lokacija = matična lokacija člana)
      */
-    private Member findMemberByUsername(String username) {
-        Optional<Member> memberByUsername = memberRepository.findByUserUsername(username);
-        if (memberByUsername.isPresent()) {
-            return memberByUsername.get();
-        }
-
-        if (username.contains("@")) {
-            Optional<Member> memberByEmail = memberRepository.findByUserEmail(username);
-            if (memberByEmail.isPresent()) {
-                return memberByEmail.get();
-            }
-        }
-
-        Optional<User> user = userRepository.findByUsername(username);
-        if (user.isPresent()) {
-            Optional<Member> memberByUserId = memberRepository.findByUserId(user.get().getId());
-            if (memberByUserId.isPresent()) {
-                return memberByUserId.get();
-            }
-        }
-
-        return null;
+    void logPurchaseChange(Purchase purchase, ChangeLogRepository.Operation operation) {
+        Member member = purchase.getMember();
+        changeLogRepository.record(ChangeLogRepository.EntityType.PURCHASE, purchase.getId(), operation,
+                member.getLocation() != null ? member.getLocation().getId() : null, member.getId());
     }
 
     /**
      * Konvertuj Purchase entitet u DTO
      */
-    private PurchaseResponseDTO convertToDTO(Purchase purchase) {
+    PurchaseResponseDTO convertToDTO(Purchase purchase) {
         return PurchaseResponseDTO.builder()
                 .id(purchase.getId())
                 .memberId(purchase.getMember().getId())
@@ -0,0 +1,210 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.config.ShardRouter;
+import com.example.fitnessAndrea360.dto.MonthlyReservationStatsDTO;
+import com.example.fitnessAndrea360.exception.UnauthorizedAccessException;
+import com.example.fitnessAndrea360.exception.ValidationException;
+import com.example.fitnessAndrea360.model.Appointment;
+import com.example.fitnessAndrea360.model.Reservation;
+import com.example.fitnessAndrea360.model.ReservationMonthlyStat;
+import com.example.fitnessAndrea360.model.User;
+import com.example.fitnessAndrea360.repository.ReservationMonthlyStatRepository;
+import com.example.fitnessAndrea360.repository.ReservationRepository;
+import com.example.fitnessAndrea360.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Mesečna statistika rezervacija po lokaciji.
+ * Dashboard čita rollup tabelu (jedan red po lokaciji i mesecu), a rollup se
+ * održava inkrementalno iz ReservationService pri kreiranju, otkazivanju i brisanju rezervacije,
+ * i iz AppointmentService kada se termin pomeri u drugi mesec ili obriše zajedno sa rezervacijama.
+ * Rollup broji obe tabele (vruću i arhivu), pa arhiviranje ne menja zbirove.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ReportingService {
+
+    private static final int MAX_MONTHS = 240;
+
+    private final ReservationMonthlyStatRepository monthlyStatRepository;
+    private final ReservationRepository reservationRepository;
+    private final UserRepository userRepository;
+    private final ShardRouter shardRouter;
+
+    private User getCurrentUserWithLocation() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String email = authentication.getName();
+        return userRepository.findByEmailWithLocation(email)
+                .orElseThrow(() -> new RuntimeException("Trenutni korisnik nije pronađen u bazi"));
+    }
+
+    /**
+     * Vrati mesečnu statistiku za lokaciju u opsegu [from, to] (oba meseca uključena).
+     * Meseci bez rezervacija se vraćaju sa nulama.
+     */
+    @Transactional(readOnly = true)
+    public List<MonthlyReservationStatsDTO> getMonthlyReservationStats(Long locationId, YearMonth from, YearMonth to) {
+        validateReportAccess(getCurrentUserWithLocation(), locationId);
+        validatePeriod(from, to);
+
+        // Rollup lokacije je na njenom šardu - admin bez zaglavlja lokacije ga čita odande
+        Map<LocalDate, ReservationMonthlyStat> byPeriod = shardRouter.readOnLocation(locationId, () -> monthlyStatRepository
+                .findByLocationIdAndPeriod(locationId, from.atDay(1), to.plusMonths(1).atDay(1))
+                .stream()
+                .collect(Collectors.toMap(ReservationMonthlyStat::getPeriodStart, Function.identity())));
+
+        List<MonthlyReservationStatsDTO> result = new ArrayList<>();
+        for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+            ReservationMonthlyStat stat = byPeriod.get(month.atDay(1));
+            long reservations = stat != null ? stat.getReservationCount() : 0L;
+            long cancelled = stat != null ? stat.getCancelledCount() : 0L;
+
+            result.add(MonthlyReservationStatsDTO.builder()
+                    .locationId(locationId)
+                    .year(month.getYear())
+                    .month(month.getMonthValue())
+                    .reservationCount(reservations)
+                    .cancelledCount(cancelled)
+                    .activeCount(reservations - cancelled)
+                    .build());
+        }
+        return result;
+    }
+
+    /**
+     * Živo prebrojavanje rezervacija za jedan mesec (polu-otvoren opseg nad start_time).
+     */
+    @Transactional(readOnly = true)
+    public long countReservationsInMonth(Long locationId, YearMonth month) {
+        validateReportAccess(getCurrentUserWithLocation(), locationId);
+        return reservationRepository.countByLocationIdAndYearAndMonth(
+                locationId, month.getYear(), month.getMonthValue());
+    }
+
+    /**
+     * Ponovo izgradi rollup redove za lokaciju iz tabele rezervacija (npr. nakon migracije).
+     */
+    @Transactional
+    public List<MonthlyReservationStatsDTO> rebuildMonthlyStats(Long locationId, YearMonth from, YearMonth to) {
+        User currentUser = getCurrentUserWithLocation();
+        if (!currentUser.getRole().getName().equals("ADMIN")) {
+            throw new UnauthorizedAccessException("Samo admin može ponovo izgraditi statistiku");
+        }
+        validatePeriod(from, to);
+        // Upis u rollup lokacije - zahtev mora biti na njenom šardu (zaglavlje X-Location-Id)
+        shardRouter.requireLocationShard(locationId);
+
+        LocalDate fromDate = from.atDay(1);
+        LocalDate toDate = to.plusMonths(1).atDay(1);
+
+        monthlyStatRepository.deleteByLocationIdAndPeriod(locationId, fromDate, toDate);
+
+        List<Object[]> rows = reservationRepository.aggregateMonthlyByLocationId(
+                locationId, fromDate.atStartOfDay(), toDate.atStartOfDay());
+
+        for (Object[] row : rows) {
+            LocalDate periodStart = ((Date) row[0]).toLocalDate();
+            long reservations = ((Number) row[1]).longValue();
+            long cancelled = row[2] != null ? ((Number) row[2]).longValue() : 0L;
+            monthlyStatRepository.increment(locationId, periodStart, reservations, cancelled);
+        }
+
+        log.info("Statistika rezervacija ponovo izgrađena: location_id={}, {} - {}, meseci={}",
+                locationId, from, to, rows.size());
+
+        return getMonthlyReservationStats(locationId, from, to);
+    }
+
+    // ========== INKREMENTALNO AŽURIRANJE (poziva ReservationService) ==========
+
+    public void recordReservationCreated(Appointment appointment, Reservation.Status status) {
+        applyDelta(appointment, 1, status == Reservation.Status.CANCELLED ? 1 : 0);
+    }
+
+    // Varijanta bez entiteta - za JDBC putanju rezervacije
+    public void recordReservationCreated(Long locationId, LocalDateTime startTime, Reservation.Status status) {
+        applyDelta(locationId, startTime, 1, status == Reservation.Status.CANCELLED ? 1 : 0);
+    }
+
+    public void recordStatusChange(Appointment appointment, Reservation.Status oldStatus, Reservation.Status newStatus) {
+        boolean wasCancelled = oldStatus == Reservation.Status.CANCELLED;
+        boolean isCancelled = newStatus == Reservation.Status.CANCELLED;
+        if (wasCancelled != isCancelled) {
+            applyDelta(appointment, 0, isCancelled ? 1 : -1);
+        }
+    }
+
+    public void recordReservationDeleted(Appointment appointment, Reservation.Status status) {
+        applyDelta(appointment, -1, status == Reservation.Status.CANCELLED ? -1 : 0);
+    }
+
+    // Rezervacije obrisane zajedno sa terminom
+    public void recordReservationsDeleted(Appointment appointment, long reservations, long cancelled) {
+        if (reservations > 0) {
+            applyDelta(appointment, -reservations, -cancelled);
+        }
+    }
+
+    // Termin pomeren u drugi mesec - njegove rezervacije prelaze u red novog meseca
+    public void recordAppointmentMoved(Long locationId, LocalDateTime oldStartTime, LocalDateTime newStartTime,
+                                       long reservations, long cancelled) {
+        if (reservations == 0 || YearMonth.from(oldStartTime).equals(YearMonth.from(newStartTime))) {
+            return;
+        }
+        applyDelta(locationId, oldStartTime, -reservations, -cancelled);
+        applyDelta(locationId, newStartTime, reservations, cancelled);
+    }
+
+    private void applyDelta(Appointment appointment, long reservationDelta, long cancelledDelta) {
+        applyDelta(appointment.getLocation().getId(), appointment.getStartTime(), reservationDelta, cancelledDelta);
+    }
+
+    private void applyDelta(Long locationId, LocalDateTime startTime, long reservationDelta, long cancelledDelta) {
+        LocalDate periodStart = YearMonth.from(startTime).atDay(1);
+        monthlyStatRepository.increment(locationId, periodStart, reservationDelta, cancelledDelta);
+    }
+
+    // ========== POMOĆNE METODE ==========
+
+    private void validateReportAccess(User user, Long locationId) {
+        String userRole = user.getRole().getName();
+
+        if (userRole.equals("ADMIN")) {
+            return;
+        }
+
+        if (userRole.equals("EMPLOYEE")) {
+            if (user.getLocation() == null || !user.getLocation().getId().equals(locationId)) {
+                throw new UnauthorizedAccessException("Možete videti samo statistiku svoje lokacije");
+            }
+            return;
+        }
+
+        throw new UnauthorizedAccessException("Samo admin i zaposleni mogu videti statistiku");
+    }
+
+    private void validatePeriod(YearMonth from, YearMonth to) {
+        if (to.isBefore(from)) {
+            throw new ValidationException("Kraj perioda mora biti nakon početka");
+        }
+        if (from.plusMonths(MAX_MONTHS).isBefore(to)) {
+            throw new ValidationException("Period može obuhvatiti najviše " + MAX_MONTHS + " meseci");
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.dto.ReservationBatchItemResultDTO;
+import com.example.fitnessAndrea360.dto.ReservationBatchRequestDTO;
+import com.example.fitnessAndrea360.dto.ReservationBatchResultDTO;
+import com.example.fitnessAndrea360.dto.ReservationRequestDTO;
+import com.example.fitnessAndrea360.event.ScheduleChangedEvent;
+import com.example.fitnessAndrea360.model.*;
+import com.example.fitnessAndrea360.repository.*;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Grupna rezervacija više termina odjednom (npr. cela nedelja treninga).
+ *
+ * U jednoj transakciji: zaključaju se svi termini, sve kupovine pa postojeće rezervacije člana za te termine,
+ * uvek rastućim redosledom ID-a (isti redosled u svakoj transakciji = nema deadlock-a), stavke se validiraju u memoriji nad
+ * zaključanim stanjem, a kapaciteti, preostale sesije i nove rezervacije upisuju se JDBC batch-om.
+ * Neispravne stavke ne obaraju ostale - svaka dobija svoj rezultat.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ReservationBatchService {
+
+    private final AppointmentRepository appointmentRepository;
+    private final PurchaseRepository purchaseRepository;
+    private final ReservationRepository reservationRepository;
+    private final ReservationJdbcRepository reservationJdbcRepository;
+    private final ReportingService reportingService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ChangeLogRepository changeLogRepository;
+    private final NotificationOutboxRepository notificationOutboxRepository;
+    private final CreditLedgerService creditLedgerService;
+    private final EntitlementCache entitlementCache;
+    private final CurrentMemberResolver currentMemberResolver;
+
+    @Transactional
+    public ReservationBatchResultDTO createReservations(ReservationBatchRequestDTO request) {
+        Member member = currentMemberResolver.currentMember();
+
+        List<ReservationRequestDTO> items = request.getReservations();
+
+        // 1. Zaključavanje - termini pa kupovine, svaki skup sortiran po ID-u
+        Set<Long> appointmentIds = items.stream().map(ReservationRequestDTO::getAppointmentId).collect(Collectors.toCollection(TreeSet::new));
+        Set<Long> purchaseIds = items.stream().map(ReservationRequestDTO::getPurchaseId).filter(Objects::nonNull)
+                .collect(Collectors.toCollection(TreeSet::new));
+
+        Map<Long, Appointment> appointments = appointmentRepository.findAllByIdForUpdate(appointmentIds).stream()
+                .collect(Collectors.toMap(Appointment::getId, Function.identity()));
+        // Stavke bez kupovine: kandidati (ID-evi iz EntitlementCache-a) se zaključavaju zajedno sa izabranim kupovinama
+        purchaseIds.addAll(bookableCandidates(items, appointments, member.getId()));
+        Map<Long, Purchase> purchases = purchaseRepository.findAllByIdForUpdate(purchaseIds).stream()
+                .collect(Collectors.toMap(Purchase::getId, Function.identity()));
+        // Postojeće rezervacije člana - zaključavajuće čitanje, poslednje na redu (termini, kupovine, rezervacije)
+        Set<Long> alreadyReserved = reservationRepository.findByMemberAndAppointmentsForUpdate(member.getId(), appointmentIds)
+                .stream()
+                .map(reservation -> reservation.getAppointment().getId())
+                .collect(Collectors.toCollection(HashSet::new));
+
+        // 2. Validacija u memoriji - zauzeta mesta i sesije iz ove grupe se odmah uračunavaju
+        Map<Long, Integer> capacityDeltas = new TreeMap<>();
+        Map<Long, Integer> usesDeltas = new TreeMap<>();
+        List<ReservationJdbcRepository.NewReservation> toInsert = new ArrayList<>();
+        List<Integer> insertPositions = new ArrayList<>();
+        ReservationBatchItemResultDTO[] results = new ReservationBatchItemResultDTO[items.size()];
+
+        for (int i = 0; i < items.size(); i++) {
+            ReservationRequestDTO item = items.get(i);
+            Appointment appointment = appointments.get(item.getAppointmentId());
+            Purchase purchase = item.getPurchaseId() != null
+                    ? purchases.get(item.getPurchaseId())
+                    : chooseBookable(appointment, purchases, member, usesDeltas);
+
+            String error = item.getPurchaseId() == null && appointment != null && purchase == null
+                    ? CreditLedgerService.NO_CREDITS_MESSAGE
+                    : validateItem(item, appointment, purchase, member, alreadyReserved, capacityDeltas, usesDeltas);
+            if (error != null) {
+                results[i] = toResult(item, false, null, null, error);
+                continue;
+            }
+
+            alreadyReserved.add(appointment.getId());
+            capacityDeltas.merge(appointment.getId(), 1, Integer::sum);
+            usesDeltas.merge(purchase.getId(), 1, Integer::sum);
+            toInsert.add(new ReservationJdbcRepository.NewReservation(member.getId(), appointment.getId(),
+                    purchase.getId(), Reservation.Status.CONFIRMED.name(), item.getNotes()));
+            insertPositions.add(i);
+        }
+
+        // 3. Batch upis - redosled ažuriranja prati redosled zaključavanja
+        if (!toInsert.isEmpty()) {
+            reservationJdbcRepository.incrementAppointmentCapacities(capacityDeltas);
+            creditLedgerService.consumeLocked(usesDeltas);
+            List<Long> reservationIds = reservationJdbcRepository.insertReservations(toInsert);
+
+            List<CreditLedgerService.Consumption> consumptions = new ArrayList<>();
+            for (int k = 0; k < toInsert.size(); k++) {
+                consumptions.add(new CreditLedgerService.Consumption(member.getId(),
+                        toInsert.get(k).purchaseId(), reservationIds.get(k)));
+            }
+            creditLedgerService.recordConsumed(consumptions);
+
+            List<ChangeLogRepository.Change> changes = new ArrayList<>();
+            for (int k = 0; k < toInsert.size(); k++) {
+                int position = insertPositions.get(k);
+                Appointment appointment = appointments.get(toInsert.get(k).appointmentId());
+                results[position] = toResult(items.get(position), true, toInsert.get(k).purchaseId(), reservationIds.get(k), null);
+                reportingService.recordReservationCreated(appointment, Reservation.Status.CONFIRMED);
+                changes.add(new ChangeLogRepository.Change(ChangeLogRepository.EntityType.RESERVATION, reservationIds.get(k),
+                        ChangeLogRepository.Operation.INSERT, appointment.getLocation().getId(), member.getId()));
+            }
+            for (Long appointmentId : capacityDeltas.keySet()) {
+                Long locationId = appointments.get(appointmentId).getLocation().getId();
+                eventPublisher.publishEvent(new ScheduleChangedEvent(locationId,
+                        appointmentId, ScheduleChangedEvent.Type.RESERVATION_CREATED));
+                changes.add(new ChangeLogRepository.Change(ChangeLogRepository.EntityType.APPOINTMENT, appointmentId,
+                        ChangeLogRepository.Operation.UPDATE, locationId, null));
+            }
+            // Kupovina se beleži na lokaciji termina na kome je potrošena sesija (kao i pojedinačna rezervacija)
+            Map<Long, Long> purchaseLocations = new TreeMap<>();
+            for (ReservationJdbcRepository.NewReservation inserted : toInsert) {
+                purchaseLocations.putIfAbsent(inserted.purchaseId(),
+                        appointments.get(inserted.appointmentId()).getLocation().getId());
+            }
+            purchaseLocations.forEach((purchaseId, locationId) -> changes.add(new ChangeLogRepository.Change(
+                    ChangeLogRepository.EntityType.PURCHASE, purchaseId, ChangeLogRepository.Operation.UPDATE,
+                    locationId, member.getId())));
+            changeLogRepository.recordAll(changes);
+            notificationOutboxRepository.enqueueForReservations(
+                    NotificationOutboxRepository.Type.BOOKING_CONFIRMED, reservationIds);
+        }
+
+        log.info("Grupna rezervacija člana {}: {} traženo, {} rezervisano", member.getId(), items.size(), toInsert.size());
+
+        return ReservationBatchResultDTO.builder()
+                .requestedCount(items.size())
+                .reservedCount(toInsert.size())
+                .failedCount(items.size() - toInsert.size())
+                .items(Arrays.asList(results))
+                .build();
+    }
+
+    // ID-evi aktivnih kupovina za usluge termina iz stavki bez kupovine; ako keš nema nijednu, član se učitava ponovo
+    private Set<Long> bookableCandidates(List<ReservationRequestDTO> items, Map<Long, Appointment> appointments, Long memberId) {
+        Set<Long> serviceIds = items.stream()
+                .filter(item -> item.getPurchaseId() == null)
+                .map(item -> appointments.get(item.getAppointmentId()))
+                .filter(Objects::nonNull)
+                .map(appointment -> appointment.getService().getId())
+                .collect(Collectors.toSet());
+        if (serviceIds.isEmpty()) {
+            return Set.of();
+        }
+        LocalDate today = LocalDate.now();
+        EntitlementCache.MemberEntitlements cached = entitlementCache.forMember(memberId);
+        EntitlementCache.MemberEntitlements entitlements = serviceIds.stream().allMatch(serviceId -> cached.canBook(serviceId, today))
+                ? cached
+                : entitlementCache.reload(memberId);
+        Set<Long> candidates = new TreeSet<>();
+        for (Long serviceId : serviceIds) {
+            entitlements.bookable(serviceId, today).forEach(credit -> candidates.add(credit.purchaseId()));
+        }
+        return candidates;
+    }
+
+    // Zaključana kupovina usluge termina koja ističe najranije, a ima sesiju i posle izmena iz ove grupe
+    private Purchase chooseBookable(Appointment appointment, Map<Long, Purchase> purchases, Member member,
+                                    Map<Long, Integer> usesDeltas) {
+        if (appointment == null) {
+            return null;
+        }
+        LocalDate today = LocalDate.now();
+        return purchases.values().stream()
+                .filter(purchase -> purchase.getMember().getId().equals(member.getId()))
+                .filter(purchase -> purchase.getService().getId().equals(appointment.getService().getId()))
+                .filter(purchase -> purchase.getStatus() == Purchase.Status.ACTIVE)
+                .filter(purchase -> purchase.getExpiryDate() == null || !purchase.getExpiryDate().isBefore(today))
+                .filter(purchase -> purchase.getRemainingUses() - usesDeltas.getOrDefault(purchase.getId(), 0) > 0)
+                .min(Comparator.comparing(Purchase::getExpiryDate, Comparator.nullsLast(Comparator.naturalOrder()))
+                        .thenComparing(Purchase::getId))
+                .orElse(null);
+    }
+
+    // Ista pravila kao ReservationService.validateReservation, ali nad zaključanim stanjem + izmenama iz ove grupe
+    private String validateItem(ReservationRequestDTO item, Appointment appointment, Purchase purchase, Member member,
+                                Set<Long> alreadyReserved, Map<Long, Integer> capacityDeltas, Map<Long, Integer> usesDeltas) {
+        if (appointment == null) {
+            return "Termin nije pronađen";
+        }
+        if (purchase == null) {
+            return "Kupovina nije pronađena";
+        }
+        if (!purchase.getMember().getId().equals(member.getId())) {
+            return "Kupovina ne pripada trenutnom članu";
+        }
+
+        int reservedInBatch = capacityDeltas.getOrDefault(appointment.getId(), 0);
+        if (appointment.getCurrentCapacity() + reservedInBatch >= appointment.getMaxCapacity()) {
+            return "Termin je popunjen. Nema slobodnih mesta.";
+        }
+        if (alreadyReserved.contains(appointment.getId())) {
+            return "Već imate rezervaciju za ovaj termin";
+        }
+        if (!purchase.getStatus().equals(Purchase.Status.ACTIVE)) {
+            return "Kupovina nije aktivna. Status: " + purchase.getStatus();
+        }
+        int usedInBatch = usesDeltas.getOrDefault(purchase.getId(), 0);
+        if (purchase.getRemainingUses() - usedInBatch <= 0) {
+            return "Nemate preostalih sesija u paketu";
+        }
+        if (purchase.getExpiryDate() != null && purchase.getExpiryDate().isBefore(LocalDate.now())) {
+            return "Kupovina je istekla " + purchase.getExpiryDate();
+        }
+        if (!purchase.getService().getId().equals(appointment.getService().getId())) {
+            return "Kupovina nije za ovu vrstu usluge";
+        }
+        if ("CANCELLED".equals(appointment.getStatus())) {
+            return "Termin je otkazan";
+        }
+        return null;
+    }
+
+    // purchaseId je kupovina sa koje je sesija potrošena (izabrana ili automatski određena)
+    private ReservationBatchItemResultDTO toResult(ReservationRequestDTO item, boolean success, Long purchaseId,
+                                                   Long reservationId, String error) {
+        return ReservationBatchItemResultDTO.builder()
+                .appointmentId(item.getAppointmentId())
+                .purchaseId(purchaseId != null ? purchaseId : item.getPurchaseId())
+                .success(success)
+                .reservationId(reservationId)
+                .error(error)
+                .build();
+    }
+}
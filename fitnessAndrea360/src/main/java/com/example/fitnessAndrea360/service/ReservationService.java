@@ -1,12 +1,19 @@
 package com.example.fitnessAndrea360.service;
 
+import com.example.fitnessAndrea360.config.ShardContext;
+import com.example.fitnessAndrea360.config.ShardRouter;
+import com.example.fitnessAndrea360.config.ShardingProperties;
 import com.example.fitnessAndrea360.dto.AppointmentCapacityDTO;
 import com.example.fitnessAndrea360.dto.ReservationRequestDTO;
 import com.example.fitnessAndrea360.dto.ReservationResponseDTO;
+import com.example.fitnessAndrea360.event.ScheduleChangedEvent;
 import com.example.fitnessAndrea360.exception.*;
 import com.example.fitnessAndrea360.model.*;
 import com.example.fitnessAndrea360.repository.*;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
@@ -14,19 +21,33 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class ReservationService {
 
     private final ReservationRepository reservationRepository;
     private final AppointmentRepository appointmentRepository;
-    private final MemberRepository memberRepository;
     private final PurchaseRepository purchaseRepository;
     private final UserRepository userRepository;
+    private final ReportingService reportingService;
+    private final ReservationJdbcRepository reservationJdbcRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ChangeLogRepository changeLogRepository;
+    private final NotificationOutboxRepository notificationOutboxRepository;
+    private final ArchiveService archiveService;
+    private final CreditLedgerService creditLedgerService;
+    private final EntitlementCache entitlementCache;
+    private final CurrentMemberResolver currentMemberResolver;
+    private final ShardRouter shardRouter;
 
     private User getCurrentUser() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
@@ -64,51 +85,117 @@ public class ReservationService {
 
         throw new UnauthorizedAccessException("Nema dodeljene lokacije");
     }
+    /**
+     * Dva uslovna UPDATE-a (slobodno mesto, preostala sesija) i INSERT koji se oslanja na
+     * unique_member_appointment - bez učitavanja entiteta. Stanje se čita samo kada uslov ne prođe,
+     * da bi poruka bila ista kao kod provera nad entitetima. Merenje: ReservationBookingBenchmarkTest.
+     */
     @Transactional
     public ReservationResponseDTO createReservation(ReservationRequestDTO request) {
-        User currentUser = getCurrentUserWithLocation();
-
-        // 1. Dobijanje entiteta
-        Appointment appointment = appointmentRepository.findById(request.getAppointmentId())
-                .orElseThrow(() -> new ResourceNotFoundException("Termin nije pronađen"));
+        Long memberId = currentMemberResolver.currentMemberId();
 
-        // 2. Pronađi trenutnog člana (onaj koji je ulogovan)
-        Member currentMember = memberRepository.findByUserId(currentUser.getId())
-                .orElseThrow(() -> new ResourceNotFoundException("Član nije pronađen"));
+        // 1. Zauzmi mesto (red termina ostaje zaključan do kraja transakcije)
+        if (reservationJdbcRepository.reserveSeat(request.getAppointmentId()) == 0) {
+            throw explainSeatFailure(request.getAppointmentId());
+        }
 
-        Purchase purchase = purchaseRepository.findById(request.getPurchaseId())
-                .orElseThrow(() -> new ResourceNotFoundException("Kupovina nije pronađena"));
+        // 2. Potroši sesiju - neuspeh poništava i zauzeto mesto (rollback)
+        Long purchaseId = request.getPurchaseId();
+        if (purchaseId == null) {
+            purchaseId = consumeBestPurchase(memberId, request.getAppointmentId());
+        } else if (!creditLedgerService.tryConsumeForAppointment(purchaseId, memberId, request.getAppointmentId())) {
+            throw explainPurchaseFailure(purchaseId, memberId, request.getAppointmentId());
+        }
 
-        // 3. Provera da li kupovina pripada TRENUTNOM članu
-        if (!purchase.getMember().getId().equals(currentMember.getId())) {
-            throw new UnauthorizedAccessException("Kupovina ne pripada trenutnom članu");
+        // 3. Upis rezervacije - duplikat odbija unique_member_appointment
+        Long reservationId;
+        try {
+            reservationId = reservationJdbcRepository.insertReservation(new ReservationJdbcRepository.NewReservation(
+                    memberId, request.getAppointmentId(), purchaseId,
+                    Reservation.Status.CONFIRMED.name(), request.getNotes()));
+        } catch (DuplicateKeyException e) {
+            throw new ValidationException("Već imate rezervaciju za ovaj termin");
         }
+        creditLedgerService.recordConsumed(List.of(new CreditLedgerService.Consumption(
+                memberId, purchaseId, reservationId)));
 
-        // 4. Validacija rezervacije sa TRENUTNIM članom
-        validateReservation(appointment, currentMember, purchase);
+        ReservationResponseDTO response = reservationJdbcRepository.findReservationView(reservationId)
+                .orElseThrow(() -> new ResourceNotFoundException("Rezervacija nije pronađena"));
 
-        // 5. Kreiranje rezervacije sa TRENUTNIM članom
-        Reservation reservation = new Reservation();
-        reservation.setAppointment(appointment);
-        reservation.setMember(currentMember); //  koristi currentMember, ne appointment.getMember()
-        reservation.setPurchase(purchase);
-        reservation.setStatus(Reservation.Status.CONFIRMED);
-        reservation.setNotes(request.getNotes());
+        // 4. Ažuriraj mesečnu statistiku
+        reportingService.recordReservationCreated(
+                response.getLocationId(), response.getAppointmentStartTime(), Reservation.Status.CONFIRMED);
+        eventPublisher.publishEvent(new ScheduleChangedEvent(
+                response.getLocationId(), response.getAppointmentId(), ScheduleChangedEvent.Type.RESERVATION_CREATED));
+        logReservationChange(reservationId, ChangeLogRepository.Operation.INSERT, response.getLocationId(),
+                memberId, response.getAppointmentId(), purchaseId);
+        notificationOutboxRepository.enqueueForReservation(NotificationOutboxRepository.Type.BOOKING_CONFIRMED, reservationId);
 
-        // 6. Smanji remainingUses u purchase
-        purchase.setRemainingUses(purchase.getRemainingUses() - 1);
-        purchaseRepository.save(purchase);
+        return response;
+    }
 
-        // 7. Povećaj currentCapacity u appointment
-        appointment.setCurrentCapacity(appointment.getCurrentCapacity() + 1);
-        appointmentRepository.save(appointment);
+    /**
+     * Član nije izabrao kupovinu: sesija se troši sa aktivne kupovine usluge termina koja ističe najranije.
+     * Redosled daje EntitlementCache, a uslovni UPDATE odlučuje - kupovina potrošena u međuvremenu se preskače.
+     * Ako nijedna ne prođe, član se učitava ponovo (izmena sa druge instance) pre nego što se rezervacija odbije.
+     */
+    private Long consumeBestPurchase(Long memberId, Long appointmentId) {
+        Long serviceId = reservationJdbcRepository.findAppointmentServiceId(appointmentId)
+                .orElseThrow(() -> new ResourceNotFoundException("Termin nije pronađen"));
+        LocalDate today = LocalDate.now();
 
-        Reservation savedReservation = reservationRepository.save(reservation);
+        Set<Long> tried = new HashSet<>();
+        Long purchaseId = consumeFirst(entitlementCache.forMember(memberId), serviceId, today, memberId, appointmentId, tried);
+        if (purchaseId == null) {
+            purchaseId = consumeFirst(entitlementCache.reload(memberId), serviceId, today, memberId, appointmentId, tried);
+        }
+        if (purchaseId == null) {
+            throw new ValidationException(CreditLedgerService.NO_CREDITS_MESSAGE);
+        }
+        return purchaseId;
+    }
 
-        return mapToResponse(savedReservation);
+    private Long consumeFirst(EntitlementCache.MemberEntitlements entitlements, Long serviceId, LocalDate day,
+                              Long memberId, Long appointmentId, Set<Long> tried) {
+        for (CreditLedgerRepository.Credit credit : entitlements.bookable(serviceId, day)) {
+            if (tried.add(credit.purchaseId())
+                    && creditLedgerService.tryConsumeForAppointment(credit.purchaseId(), memberId, appointmentId)) {
+                return credit.purchaseId();
+            }
+        }
+        return null;
     }
 
+    private RuntimeException explainSeatFailure(Long appointmentId) {
+        Object[] state = reservationJdbcRepository.findAppointmentState(appointmentId).orElse(null);
+        if (state == null) {
+            return new ResourceNotFoundException("Termin nije pronađen");
+        }
+        if ("CANCELLED".equals(state[2])) {
+            return new ValidationException("Termin je otkazan");
+        }
+        return new ValidationException("Termin je popunjen. Nema slobodnih mesta.");
+    }
 
+    private RuntimeException explainPurchaseFailure(Long purchaseId, Long memberId, Long appointmentId) {
+        Object[] state = reservationJdbcRepository.findPurchaseState(purchaseId, appointmentId).orElse(null);
+        if (state == null) {
+            return new ResourceNotFoundException("Kupovina nije pronađena");
+        }
+        if (!memberId.equals(state[0])) {
+            return new UnauthorizedAccessException("Kupovina ne pripada trenutnom članu");
+        }
+        if (!Purchase.Status.ACTIVE.name().equals(state[2])) {
+            return new ValidationException("Kupovina nije aktivna. Status: " + state[2]);
+        }
+        if ((Integer) state[3] <= 0) {
+            return new ValidationException("Nemate preostalih sesija u paketu");
+        }
+        if (state[4] != null && ((LocalDate) state[4]).isBefore(LocalDate.now())) {
+            return new ValidationException("Kupovina je istekla " + state[4]);
+        }
+        return new ValidationException("Kupovina nije za ovu vrstu usluge");
+    }
 
     @Transactional(readOnly = true)
     public AppointmentCapacityDTO getAppointmentCapacity(Long appointmentId) {
@@ -172,14 +259,15 @@ public class ReservationService {
         List<Reservation> reservations;
 
         if (userRole.equals("ADMIN")) {
-            reservations = reservationRepository.findAll();
+            // Admin vidi sve lokacije - sa šardovanjem upit ide paralelno na sve šardove
+            return shardRouter.scatterGather(() -> tagShard(reservationRepository.findAll().stream()
+                    .map(this::mapToResponse)
+                    .collect(Collectors.toList())));
         } else if (userRole.equals("EMPLOYEE")) {
             Long locationId = getLocationIdFromToken();
             reservations = reservationRepository.findByAppointmentLocationId(locationId);
         } else if (userRole.equals("MEMBER")) {
-            Member member = memberRepository.findByUserId(currentUser.getId())
-                    .orElseThrow(() -> new ResourceNotFoundException("Član nije pronađen"));
-            reservations = reservationRepository.findByMemberId(member.getId());
+            reservations = reservationRepository.findByMemberId(currentMemberResolver.currentMemberId());
         } else {
             throw new UnauthorizedAccessException("Nemaš pravo pristupa");
         }
@@ -196,17 +284,17 @@ public class ReservationService {
 
         // Provera prava pristupa
         if (userRole.equals("MEMBER")) {
-            Member currentMember = memberRepository.findByUserId(currentUser.getId())
-                    .orElseThrow(() -> new ResourceNotFoundException("Član nije pronađen"));
-            if (!currentMember.getId().equals(memberId)) {
+            if (!currentMemberResolver.currentMemberId().equals(memberId)) {
                 throw new UnauthorizedAccessException("Možete videti samo svoje rezervacije");
             }
         }
 
-        List<Reservation> reservations = reservationRepository.findByMemberId(memberId);
-        return reservations.stream()
+        // Stare rezervacije su u arhivi - istorija člana spaja oba sloja
+        List<ReservationResponseDTO> result = new ArrayList<>(archiveService.archivedReservationsByMember(memberId));
+        reservationRepository.findByMemberId(memberId).stream()
                 .map(this::mapToResponse)
-                .collect(Collectors.toList());
+                .forEach(result::add);
+        return result;
     }
 
     @Transactional(readOnly = true)
@@ -229,17 +317,25 @@ public class ReservationService {
         User currentUser = getCurrentUserWithLocation();
         String userRole = currentUser.getRole().getName();
 
+        // Hibernate 6 ne poredi enum kolonu sa String parametrom - status se parsira jednom
+        Reservation.Status reservationStatus;
+        try {
+            reservationStatus = Reservation.Status.valueOf(status.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("Nevalidan status: " + status);
+        }
+
         List<Reservation> reservations;
 
         if (userRole.equals("ADMIN")) {
-            reservations = reservationRepository.findByStatus(status);
+            return shardRouter.scatterGather(() -> tagShard(reservationRepository.findByStatus(reservationStatus).stream()
+                    .map(this::mapToResponse)
+                    .collect(Collectors.toList())));
         } else if (userRole.equals("EMPLOYEE")) {
             Long locationId = getLocationIdFromToken();
-            reservations = reservationRepository.findByStatusAndLocationId(status, locationId);
+            reservations = reservationRepository.findByStatusAndAppointmentLocationId(reservationStatus, locationId);
         } else if (userRole.equals("MEMBER")) {
-            Member member = memberRepository.findByUserId(currentUser.getId())
-                    .orElseThrow(() -> new ResourceNotFoundException("Član nije pronađen"));
-            reservations = reservationRepository.findByMemberIdAndStatus(member.getId(), status);
+            reservations = reservationRepository.findByMemberIdAndStatus(currentMemberResolver.currentMemberId(), reservationStatus);
         } else {
             throw new UnauthorizedAccessException("Nemaš pravo pristupa");
         }
@@ -259,31 +355,46 @@ public class ReservationService {
         // Provera prava pristupa
         validateReservationAccess(currentUser, reservation.getAppointment());
 
-        // Ako se menja purchase, proveri novi purchase
-        if (!reservation.getPurchase().getId().equals(request.getPurchaseId())) {
+        // Ako se menja purchase, proveri novi purchase (bez purchaseId-a ostaje postojeći)
+        Long oldPurchaseId = reservation.getPurchase().getId();
+        boolean purchaseChanged = request.getPurchaseId() != null && !oldPurchaseId.equals(request.getPurchaseId());
+        if (purchaseChanged) {
+            // Otkazana rezervacija nema potrošenu sesiju - refund/consume bi napravili sesiju ni iz čega
+            if (reservation.getStatus() == Reservation.Status.CANCELLED) {
+                throw new ValidationException("Nije moguće promeniti kupovinu otkazane rezervacije");
+            }
             Purchase newPurchase = purchaseRepository.findById(request.getPurchaseId())
                     .orElseThrow(() -> new ResourceNotFoundException("Kupovina nije pronađena"));
 
-            // Vrati prethodni remainingUses
-            Purchase oldPurchase = reservation.getPurchase();
-            oldPurchase.setRemainingUses(oldPurchase.getRemainingUses() + 1);
-            purchaseRepository.save(oldPurchase);
-
             // Validacija novog purchase-a
             validatePurchaseForReservation(newPurchase, reservation.getAppointment(), reservation.getMember());
 
-            // Postavi novi purchase i smanji remainingUses
+            // Sesija se vraća na stari purchase i troši sa novog
+            creditLedgerService.refund(reservation.getPurchase(), reservation.getId());
+            creditLedgerService.consume(newPurchase, reservation.getId());
             reservation.setPurchase(newPurchase);
-            newPurchase.setRemainingUses(newPurchase.getRemainingUses() - 1);
-            purchaseRepository.save(newPurchase);
         }
 
         reservation.setNotes(request.getNotes());
         Reservation updatedReservation = reservationRepository.save(reservation);
+        publishScheduleChange(reservation.getAppointment(), ScheduleChangedEvent.Type.RESERVATION_UPDATED);
+        if (purchaseChanged) {
+            logReservationChange(reservation.getId(), ChangeLogRepository.Operation.UPDATE,
+                    reservation.getAppointment().getLocation().getId(), reservation.getMember().getId(),
+                    null, oldPurchaseId, request.getPurchaseId());
+        } else {
+            logReservationChange(reservation.getId(), ChangeLogRepository.Operation.UPDATE,
+                    reservation.getAppointment().getLocation().getId(), reservation.getMember().getId(), null);
+        }
 
         return mapToResponse(updatedReservation);
     }
 
+    /**
+     * Status se menja uslovnim UPDATE-om (samo neotkazana rezervacija): od dva paralelna otkazivanja
+     * samo jedno oslobađa mesto i vraća sesiju. Otkazana rezervacija se ne vraća u drugi status -
+     * mesto i sesija su već vraćeni, pa se pravi nova rezervacija.
+     */
     @Transactional
     public ReservationResponseDTO updateReservationStatus(Long id, String status) {
         User currentUser = getCurrentUserWithLocation();
@@ -295,31 +406,48 @@ public class ReservationService {
         validateReservationAccess(currentUser, reservation.getAppointment());
 
         // Validacija statusa
+        Reservation.Status newStatus;
         try {
-            Reservation.Status newStatus = Reservation.Status.valueOf(status.toUpperCase());
-            reservation.setStatus(newStatus);
-
-            // Ako se otkazuje rezervacija, vrati remainingUses
-            if (newStatus == Reservation.Status.CANCELLED) {
-                Purchase purchase = reservation.getPurchase();
-                purchase.setRemainingUses(purchase.getRemainingUses() + 1);
-                purchaseRepository.save(purchase);
-                // Smanji currentCapacity u appointment
-                Appointment appointment = reservation.getAppointment();
-                appointment.setCurrentCapacity(appointment.getCurrentCapacity() - 1);
-                appointmentRepository.save(appointment);
-            }
+            newStatus = Reservation.Status.valueOf(status.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("Nevalidan status: " + status);
+        }
+        Reservation.Status oldStatus = reservation.getStatus();
 
-            // Ako se označava kao prisutan ili no-show, ne menjaj kapacitet
-            if (newStatus == Reservation.Status.ATTENDED || newStatus == Reservation.Status.NO_SHOW) {
-                // Samo promeni status, kapacitet ostaje isti
+        if (reservationJdbcRepository.updateStatusUnlessCancelled(id, newStatus.name()) == 0) {
+            // Već otkazana (i možda baš sada, u drugoj transakciji) - ponovljeno otkazivanje ne vraća još jednu sesiju
+            if (newStatus != Reservation.Status.CANCELLED) {
+                throw new ValidationException("Otkazana rezervacija se ne može ponovo aktivirati. Napravite novu rezervaciju.");
             }
+            return reservationJdbcRepository.findReservationView(id)
+                    .orElseThrow(() -> new ResourceNotFoundException("Rezervacija nije pronađena"));
+        }
+        reservation.setStatus(newStatus);
 
-            Reservation updatedReservation = reservationRepository.save(reservation);
-            return mapToResponse(updatedReservation);
-        } catch (IllegalArgumentException e) {
-            throw new ValidationException("Nevalidan status: " + status);
+        // Otkazivanje: oslobodi mesto pa vrati sesiju - termin pa kupovina, redosled zaključavanja kao pri rezervaciji
+        Appointment appointment = reservation.getAppointment();
+        if (newStatus == Reservation.Status.CANCELLED) {
+            reservationJdbcRepository.releaseSeat(appointment.getId());
+            creditLedgerService.refund(reservation.getPurchase(), reservation.getId());
         }
+
+        // Prisutan ili no-show ne menja kapacitet
+        Reservation updatedReservation = reservationRepository.save(reservation);
+        reportingService.recordStatusChange(appointment, oldStatus, newStatus);
+        publishScheduleChange(appointment, newStatus == Reservation.Status.CANCELLED
+                ? ScheduleChangedEvent.Type.RESERVATION_CANCELLED
+                : ScheduleChangedEvent.Type.RESERVATION_UPDATED);
+        if (newStatus == Reservation.Status.CANCELLED) {
+            logReservationChange(reservation.getId(), ChangeLogRepository.Operation.UPDATE,
+                    appointment.getLocation().getId(), reservation.getMember().getId(),
+                    appointment.getId(), reservation.getPurchase().getId());
+            notificationOutboxRepository.enqueueForReservation(
+                    NotificationOutboxRepository.Type.RESERVATION_CANCELLED, reservation.getId());
+        } else {
+            logReservationChange(reservation.getId(), ChangeLogRepository.Operation.UPDATE,
+                    appointment.getLocation().getId(), reservation.getMember().getId(), null);
+        }
+        return mapToResponse(updatedReservation);
     }
 
     @Transactional
@@ -332,17 +460,55 @@ public class ReservationService {
         // Provera prava pristupa
         validateReservationAccess(currentUser, reservation.getAppointment());
 
-        // Smanji currentCapacity u appointment
+        // Otkazana rezervacija je već oslobodila mesto i vratila sesiju. Uslovni UPDATE zaključava red i
+        // odlučuje - rezervacija otkazana u paralelnoj transakciji posle učitavanja se ne refundira ponovo.
         Appointment appointment = reservation.getAppointment();
-        appointment.setCurrentCapacity(appointment.getCurrentCapacity() - 1);
-        appointmentRepository.save(appointment);
-
-        // Vrati remainingUses
         Purchase purchase = reservation.getPurchase();
-        purchase.setRemainingUses(purchase.getRemainingUses() + 1);
-        purchaseRepository.save(purchase);
+        Reservation.Status status = reservation.getStatus();
+        if (reservationJdbcRepository.updateStatusUnlessCancelled(id, Reservation.Status.CANCELLED.name()) == 1) {
+            reservationJdbcRepository.releaseSeat(appointment.getId());
+            creditLedgerService.refund(purchase, reservation.getId());
+        } else {
+            status = Reservation.Status.CANCELLED;
+        }
 
         reservationRepository.delete(reservation);
+
+        reportingService.recordReservationDeleted(appointment, status);
+        publishScheduleChange(appointment, ScheduleChangedEvent.Type.RESERVATION_DELETED);
+        logReservationChange(reservation.getId(), ChangeLogRepository.Operation.DELETE,
+                appointment.getLocation().getId(), reservation.getMember().getId(), appointment.getId(), purchase.getId());
+    }
+
+    // Šard niti koja je čitala (scatterGather/readOnLocation); bez šardovanja rezultat ostaje bez oznake
+    private List<ReservationResponseDTO> tagShard(List<ReservationResponseDTO> reservations) {
+        if (shardRouter.isEnabled()) {
+            String shard = Objects.requireNonNullElse(ShardContext.current(), ShardingProperties.DEFAULT_SHARD);
+            reservations.forEach(reservation -> reservation.setShard(shard));
+        }
+        return reservations;
+    }
+
+    private void publishScheduleChange(Appointment appointment, ScheduleChangedEvent.Type type) {
+        eventPublisher.publishEvent(new ScheduleChangedEvent(
+                appointment.getLocation().getId(), appointment.getId(), type));
+    }
+
+    // Rezervacija + termin kome se promenila zauzetost (null = nije) + kupovine kojima su se promenile sesije
+    private void logReservationChange(Long reservationId, ChangeLogRepository.Operation operation, Long locationId,
+                                      Long memberId, Long appointmentId, Long... purchaseIds) {
+        List<ChangeLogRepository.Change> changes = new ArrayList<>();
+        changes.add(new ChangeLogRepository.Change(ChangeLogRepository.EntityType.RESERVATION, reservationId,
+                operation, locationId, memberId));
+        if (appointmentId != null) {
+            changes.add(new ChangeLogRepository.Change(ChangeLogRepository.EntityType.APPOINTMENT, appointmentId,
+                    ChangeLogRepository.Operation.UPDATE, locationId, null));
+        }
+        for (Long purchaseId : purchaseIds) {
+            changes.add(new ChangeLogRepository.Change(ChangeLogRepository.EntityType.PURCHASE, purchaseId,
+                    ChangeLogRepository.Operation.UPDATE, locationId, memberId));
+        }
+        changeLogRepository.recordAll(changes);
     }
 
     @Transactional(readOnly = true)
@@ -354,25 +520,37 @@ public class ReservationService {
         LocalDateTime endDateTime = endDate.atTime(23, 59, 59);
 
         List<Reservation> reservations;
+        List<ReservationResponseDTO> archived;
 
         if (userRole.equals("ADMIN")) {
-            reservations = reservationRepository.findByAppointmentStartTimeBetween(startDateTime, endDateTime);
+            // Arhiva je na istom šardu kao vruće rezervacije - oba sloja se čitaju na svakom šardu
+            return shardRouter.scatterGather(() -> {
+                List<ReservationResponseDTO> result = new ArrayList<>(
+                        archiveService.archivedReservationsBetween(startDateTime, endDateTime, null, null));
+                reservationRepository.findByAppointmentStartTimeBetween(startDateTime, endDateTime).stream()
+                        .map(this::mapToResponse)
+                        .forEach(result::add);
+                return tagShard(result);
+            });
         } else if (userRole.equals("EMPLOYEE")) {
             Long locationId = getLocationIdFromToken();
             reservations = reservationRepository.findByAppointmentStartTimeBetweenAndLocationId(
                     startDateTime, endDateTime, locationId);
+            archived = archiveService.archivedReservationsBetween(startDateTime, endDateTime, locationId, null);
         } else if (userRole.equals("MEMBER")) {
-            Member member = memberRepository.findByUserId(currentUser.getId())
-                    .orElseThrow(() -> new ResourceNotFoundException("Član nije pronađen"));
+            Long memberId = currentMemberResolver.currentMemberId();
             reservations = reservationRepository.findByMemberIdAndAppointmentStartTimeBetween(
-                    member.getId(), startDateTime, endDateTime);
+                    memberId, startDateTime, endDateTime);
+            archived = archiveService.archivedReservationsBetween(startDateTime, endDateTime, null, memberId);
         } else {
             throw new UnauthorizedAccessException("Nemaš pravo pristupa");
         }
 
-        return reservations.stream()
+        List<ReservationResponseDTO> result = new ArrayList<>(archived);
+        reservations.stream()
                 .map(this::mapToResponse)
-                .collect(Collectors.toList());
+                .forEach(result::add);
+        return result;
     }
 
     @Transactional(readOnly = true)
@@ -393,10 +571,11 @@ public class ReservationService {
             }
         }
 
-        List<Reservation> reservations = reservationRepository.findByAppointmentLocationId(locationId);
-        return reservations.stream()
+        // Admin bez zaglavlja lokacije je na podrazumevanom šardu - čita se sa šarda lokacije
+        return shardRouter.readOnLocation(locationId, () -> tagShard(reservationRepository.findByAppointmentLocationId(locationId)
+                .stream()
                 .map(this::mapToResponse)
-                .collect(Collectors.toList());
+                .collect(Collectors.toList())));
     }
 
     @Transactional(readOnly = true)
@@ -442,15 +621,14 @@ public class ReservationService {
             throw new UnauthorizedAccessException("Samo članovi mogu pristupiti svojim rezervacijama");
         }
 
-        // Pronađi member-a za trenutnog user-a
-        Member member = memberRepository.findByUserId(currentUser.getId())
-                .orElseThrow(() -> new ResourceNotFoundException("Član nije pronađen"));
+        // Član trenutnog user-a (memberId iz tokena)
+        Long memberId = currentMemberResolver.currentMemberId();
 
-        List<Reservation> reservations = reservationRepository.findByMemberId(member.getId());
-
-        return reservations.stream()
+        List<ReservationResponseDTO> result = new ArrayList<>(archiveService.archivedReservationsByMember(memberId));
+        reservationRepository.findByMemberId(memberId).stream()
                 .map(this::mapToResponse)
-                .collect(Collectors.toList());
+                .forEach(result::add);
+        return result;
     }
 
 
@@ -486,56 +664,24 @@ private void validateReservationAccess(User user, Appointment appointment) {
 
     throw new UnauthorizedAccessException("Nemaš pravo pristupa");
 }
-    private void validateReservation(Appointment appointment, Member member, Purchase purchase) {
-        // 1. Provera kapaciteta
-        if (appointment.getCurrentCapacity() >= appointment.getMaxCapacity()) {
-            throw new ValidationException("Termin je popunjen. Nema slobodnih mesta.");
-        }
-
-        // 2. Provera da li ČLAN već ima rezervaciju za ovaj appointment
-        boolean alreadyReservedByMember = reservationRepository.existsByMemberIdAndAppointmentId(
-                member.getId(), appointment.getId());
-
-        if (alreadyReservedByMember) {
-            throw new ValidationException("Već imate rezervaciju za ovaj termin");
-        }
-
-        // 3. Provera da li je kupovina validna
-        validatePurchaseForReservation(purchase, appointment, member);
-
-        // 4. Provera da li je appointment još uvek aktivan
-        if ("CANCELLED".equals(appointment.getStatus())) {
-            throw new ValidationException("Termin je otkazan");
-        }
-
-//        // 5. Dodatna provera: da li appointment ima member-a? (možda je za grupe)
-//        // Ako appointment ima member-a, to znači da je privatni termin za tog člana
-//        // Ako nema member-a, to je grupni termin
-//        if (appointment.getMember() != null && !appointment.getMember().getId().equals(member.getId())) {
-//            throw new ValidationException("Ovaj termin je rezervisan za drugog člana");
-//        }
-    }
-
-
     private void validatePurchaseForReservation(Purchase purchase, Appointment appointment, Member member) {
         // 1. Provera da li kupovina pripada članu
         if (!purchase.getMember().getId().equals(member.getId())) {
             throw new ValidationException("Kupovina ne pripada ovom članu");
         }
 
-        // 2. Provera da li je kupovina aktivna
-        if (!purchase.getStatus().equals(Purchase.Status.ACTIVE)) {
-            throw new ValidationException("Kupovina nije aktivna. Status: " + purchase.getStatus());
-        }
-
-        // 3. Provera da li kupovina ima preostale upotrebe
-        if (purchase.getRemainingUses() <= 0) {
-            throw new ValidationException("Nemate preostalih sesija u paketu");
-        }
-
-        // 4. Provera da li je kupovina istekla
-        if (purchase.getExpiryDate() != null && purchase.getExpiryDate().isBefore(LocalDate.now())) {
-            throw new ValidationException("Kupovina je istekla " + purchase.getExpiryDate());
+        // 2-4. Aktivna, sa preostalim sesijama i neistekla - iz mape prava člana (ponovo se učitava pre odbijanja,
+        // jer je kupovina možda napravljena na drugoj instanci); razlog odbijanja se čita iz entiteta
+        LocalDate today = LocalDate.now();
+        if (entitlementCache.forMember(member.getId()).credit(purchase.getId(), today).isEmpty()
+                && entitlementCache.reload(member.getId()).credit(purchase.getId(), today).isEmpty()) {
+            if (!purchase.getStatus().equals(Purchase.Status.ACTIVE)) {
+                throw new ValidationException("Kupovina nije aktivna. Status: " + purchase.getStatus());
+            }
+            if (purchase.getExpiryDate() != null && purchase.getExpiryDate().isBefore(today)) {
+                throw new ValidationException("Kupovina je istekla " + purchase.getExpiryDate());
+            }
+            throw new ValidationException(CreditLedgerService.NO_CREDITS_MESSAGE);
         }
 
         // 5. Provera da li kupovina važi za ovu uslugu
@@ -544,7 +690,7 @@ private void validateReservationAccess(User user, Appointment appointment) {
         }
     }
 
-    private ReservationResponseDTO mapToResponse(Reservation reservation) {
+    ReservationResponseDTO mapToResponse(Reservation reservation) {
         ReservationResponseDTO.ReservationResponseDTOBuilder builder = ReservationResponseDTO.builder()
                 .id(reservation.getId())
                 .notes(reservation.getNotes())
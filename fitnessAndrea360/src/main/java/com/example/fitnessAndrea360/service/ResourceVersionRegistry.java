@@ -0,0 +1,121 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.event.CatalogChangedEvent;
+import com.example.fitnessAndrea360.event.ScheduleChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Brojači verzija za uslovne GET zahteve (ETag / If-None-Match).
+ *
+ * Raspored i usluge imaju brojač po lokaciji i ukupan brojač; lokacije jedan brojač. Brojači rastu
+ * posle commit-a upisa, pa kontroler poredi ETag pre ikakvog upita i za nepromenjene podatke vraća 304.
+ * Verzija se čita pre upita - ako upis stigne između, odgovor nosi stariju verziju i sledeći zahtev
+ * dobija pun odgovor, nikad obrnuto.
+ *
+ * Brojači su u memoriji instance: ETag sadrži oznaku pokretanja (posle restarta se ne poklapa) i
+ * vremenski prozor, tako da upis na drugoj instanci postaje vidljiv najkasnije po isteku prozora.
+ */
+@Component
+public class ResourceVersionRegistry {
+
+    // Raspored (zauzetost) se uvek proverava, katalog se može držati kratko bez provere
+    public static final CacheControl SCHEDULE_CACHE = CacheControl.noCache().cachePrivate();
+    public static final CacheControl CATALOG_CACHE = CacheControl.maxAge(Duration.ofSeconds(60)).cachePrivate().mustRevalidate();
+
+    private final String instanceTag = Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36);
+    private final long stalenessWindowSeconds;
+
+    private final AtomicLong scheduleVersion = new AtomicLong();
+    private final Map<Long, AtomicLong> scheduleByLocation = new ConcurrentHashMap<>();
+    private final AtomicLong servicesVersion = new AtomicLong();
+    private final Map<Long, AtomicLong> servicesByLocation = new ConcurrentHashMap<>();
+    private final AtomicLong locationsVersion = new AtomicLong();
+
+    public ResourceVersionRegistry(@Value("${app.http.etag-max-staleness-seconds:60}") long stalenessWindowSeconds) {
+        this.stalenessWindowSeconds = Math.max(1, stalenessWindowSeconds);
+    }
+
+    // ========== AŽURIRANJE (posle commit-a) ==========
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onScheduleChanged(ScheduleChangedEvent event) {
+        bump(scheduleByLocation, event.locationId());
+        scheduleVersion.incrementAndGet();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        if (event.catalog() == CatalogChangedEvent.Catalog.SERVICES) {
+            if (event.locationIds() != null) {
+                event.locationIds().forEach(locationId -> bump(servicesByLocation, locationId));
+            }
+            servicesVersion.incrementAndGet();
+        } else {
+            locationsVersion.incrementAndGet();
+        }
+    }
+
+    // ========== ETAG-OVI ==========
+
+    // Termini u odgovoru nose i nazive usluga i lokacija, pa ETag rasporeda uključuje i verziju kataloga
+
+    // Termini svih lokacija (GET /appointments/upcoming)
+    public String scheduleEtag(Object... scope) {
+        return etag("schedule", scheduleVersion.get() + "." + catalogVersion(), scope);
+    }
+
+    public String locationScheduleEtag(Long locationId, Object... scope) {
+        return etag("schedule-" + locationId, version(scheduleByLocation, locationId) + "." + catalogVersion(), scope);
+    }
+
+    // locationId = null - sve usluge (admin)
+    public String servicesEtag(Long locationId) {
+        return locationId == null
+                ? etag("services", servicesVersion.get() + "." + locationsVersion.get())
+                : etag("services-" + locationId, version(servicesByLocation, locationId) + "." + locationsVersion.get());
+    }
+
+    public String locationsEtag(Object... scope) {
+        return etag("locations", String.valueOf(locationsVersion.get()), scope);
+    }
+
+    // ========== INTERNO ==========
+
+    private String etag(String resource, String version, Object... scope) {
+        long window = Instant.now().getEpochSecond() / stalenessWindowSeconds;
+        StringBuilder etag = new StringBuilder("\"")
+                .append(resource).append('-')
+                .append(instanceTag).append('-')
+                .append(window).append('-')
+                .append(version);
+        for (Object part : scope) {
+            etag.append('-').append(part);
+        }
+        return etag.append('"').toString();
+    }
+
+    private String catalogVersion() {
+        return servicesVersion.get() + "." + locationsVersion.get();
+    }
+
+    private void bump(Map<Long, AtomicLong> versions, Long locationId) {
+        if (locationId != null) {
+            versions.computeIfAbsent(locationId, id -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    private long version(Map<Long, AtomicLong> versions, Long locationId) {
+        AtomicLong version = versions.get(locationId);
+        return version != null ? version.get() : 0L;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.exception.ResourceNotFoundException;
+import com.example.fitnessAndrea360.repository.AppointmentRepository;
+import com.example.fitnessAndrea360.repository.LocationRepository;
+import com.example.fitnessAndrea360.repository.MemberRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+/**
+ * Autoritativna provera preklapanja termina na putanjama upisa.
+ *
+ * Pozivalac u svojoj transakciji prvo zaključa redove (lokacija pa član - isti redosled svuda), a zatim
+ * proverava preklapanja upitom nad bazom. Dve paralelne transakcije za istog člana/lokaciju se tako
+ * serijalizuju, a upis sa druge instance je vidljiv čim se brava dobije. AppointmentIntervalIndex
+ * je samo keš za pretragu slobodnih termina i ovde se ne koristi.
+ */
+@Component
+@RequiredArgsConstructor
+public class ScheduleConflictGuard {
+
+    // Razmak između termina istog člana (i pre i posle termina)
+    public static final int MEMBER_BUFFER_MINUTES = 30;
+
+    private final AppointmentRepository appointmentRepository;
+    private final MemberRepository memberRepository;
+    private final LocationRepository locationRepository;
+
+    // locationId je null kada se lokacija ne proverava (individualni treninzi)
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void lock(Long memberId, Long locationId) {
+        if (locationId != null) {
+            locationRepository.findByIdForUpdate(locationId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Lokacija nije pronađena"));
+        }
+        memberRepository.findByIdForUpdate(memberId)
+                .orElseThrow(() -> new ResourceNotFoundException("Član nije pronađen"));
+    }
+
+    // Član ne sme imati drugi termin koji se preklapa sa [start, end] proširenim za razmak
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean hasMemberConflict(Long memberId, LocalDateTime start, LocalDateTime end, Long excludeAppointmentId) {
+        return !memberBusy(memberId,
+                start.minusMinutes(MEMBER_BUFFER_MINUTES),
+                end.plusMinutes(MEMBER_BUFFER_MINUTES), excludeAppointmentId).isEmpty();
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean hasLocationConflict(Long locationId, LocalDateTime start, LocalDateTime end, Long excludeAppointmentId) {
+        return !locationBusy(locationId, start, end, excludeAppointmentId).isEmpty();
+    }
+
+    // Zauzeti intervali iz baze za ceo prozor (serije termina proveravaju pojave u memoriji nad ovim skupom)
+    @Transactional(propagation = Propagation.MANDATORY)
+    public AppointmentIntervalSet memberBusy(Long memberId, LocalDateTime from, LocalDateTime to,
+                                                           Long excludeAppointmentId) {
+        return toSet(appointmentRepository.findIntervalsByMember(memberId, from, to), excludeAppointmentId);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public AppointmentIntervalSet locationBusy(Long locationId, LocalDateTime from, LocalDateTime to,
+                                                             Long excludeAppointmentId) {
+        return toSet(appointmentRepository.findIntervalsByLocation(locationId, from, to), excludeAppointmentId);
+    }
+
+    private static AppointmentIntervalSet toSet(Iterable<Object[]> rows, Long excludeAppointmentId) {
+        AppointmentIntervalSet set = new AppointmentIntervalSet();
+        for (Object[] row : rows) {
+            AppointmentInterval interval = AppointmentInterval.of(row);
+            if (!interval.id().equals(excludeAppointmentId)) {
+                set.add(interval);
+            }
+        }
+        return set;
+    }
+}
@@ -2,6 +2,7 @@ package com.example.fitnessAndrea360.service;
 
 import com.example.fitnessAndrea360.dto.ServiceRequestDTO;
 import com.example.fitnessAndrea360.dto.ServiceResponseDTO;
+import com.example.fitnessAndrea360.event.CatalogChangedEvent;
 import com.example.fitnessAndrea360.exception.ResourceNotFoundException;
 import com.example.fitnessAndrea360.exception.UnauthorizedAccessException;
 import com.example.fitnessAndrea360.exception.ValidationException;
@@ -10,12 +11,14 @@ import com.example.fitnessAndrea360.model.Service;
 import com.example.fitnessAndrea360.model.User;
 import com.example.fitnessAndrea360.repository.*;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @org.springframework.stereotype.Service
@@ -25,6 +28,7 @@ public class ServiceService {
     private final ServiceRepository serviceRepository;
     private final LocationRepository locationRepository;
     private final UserRepository userRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     //pomoćna metoda za dobijanje trenutnog User entiteta SA LOKACIJOM
     private User getCurrentUserWithLocation() {
@@ -119,6 +123,8 @@ public class ServiceService {
         service.setCreatedBy(currentUser);
 
         Service savedService = serviceRepository.save(service);
+        eventPublisher.publishEvent(new CatalogChangedEvent(CatalogChangedEvent.Catalog.SERVICES,
+                savedService.getId(), Set.copyOf(targetLocationIds)));
 
         return mapToResponse(savedService);
     }
@@ -1,10 +1,14 @@
 package com.example.fitnessAndrea360.service;
 
 import com.stripe.exception.StripeException;
+import com.stripe.model.Refund;
 import com.stripe.model.checkout.Session;
+import com.stripe.param.RefundCreateParams;
 import com.stripe.param.checkout.SessionCreateParams;
 import com.example.fitnessAndrea360.dto.CheckoutRequest;
 import com.example.fitnessAndrea360.dto.CheckoutResponse;
+import com.example.fitnessAndrea360.exception.ResourceNotFoundException;
+import com.example.fitnessAndrea360.exception.ValidationException;
 import com.example.fitnessAndrea360.model.*;
 import com.example.fitnessAndrea360.repository.*;
 import lombok.RequiredArgsConstructor;
@@ -29,19 +33,19 @@ public class StripeService {
 
     private final ServiceRepository serviceRepository;
     private final MemberRepository memberRepository;
+    private final CurrentMemberResolver currentMemberResolver;
     private final TransactionRepository transactionRepository;
     private final PurchaseRepository purchaseRepository;
+    private final AnalyticsService analyticsService;
+    private final PurchaseService purchaseService;
+    private final CreditLedgerService creditLedgerService;
 
     @Transactional
-    public CheckoutResponse createCheckoutSession(CheckoutRequest request, Long userId) throws StripeException {
-        log.info("Kreiranje checkout sesije za user_id={}, service_id={}", userId, request.getServiceId());
+    public CheckoutResponse createCheckoutSession(CheckoutRequest request) throws StripeException {
+        log.info("Kreiranje checkout sesije za service_id={}", request.getServiceId());
 
-        // 1. Validacija - pronađi člana po user.id
-        Member member = memberRepository.findByUser_Id(userId)
-                .orElseThrow(() -> {
-                    log.error("Član nije pronađen za user_id={}", userId);
-                    return new RuntimeException("Član nije pronađen");
-                });
+        // 1. Validacija - trenutni član (memberId iz tokena)
+        Member member = currentMemberResolver.currentMember();
 
         log.info("Pronađen član: id={}, ime={} {}", member.getId(), member.getFirstName(), member.getLastName());
 
@@ -176,6 +180,45 @@ public class StripeService {
         purchaseRepository.save(purchase);
         transactionRepository.save(transaction);
 
+        // 7. Sesije u dnevnik, dnevna analitika prodaje i dnevnik izmena
+        creditLedgerService.grant(purchase);
+        analyticsService.recordSale(purchase, transaction);
+        purchaseService.logPurchaseChange(purchase, ChangeLogRepository.Operation.INSERT);
+
         log.info("Purchase kreiran: id={} za člana {}", purchase.getId(), member.getFirstName());
     }
+
+    /**
+     * Refund neiskorišćene kupovine: sesije se otpisuju (kupovina CANCELLED), transakcija postaje REFUNDED,
+     * a iznos se upisuje kao refund u dnevnu analitiku. Kupovina sa potrošenim sesijama se ne refundira.
+     */
+    @Transactional
+    public void refundPurchase(Long purchaseId) throws StripeException {
+        Purchase purchase = purchaseRepository.findById(purchaseId)
+                .orElseThrow(() -> new ResourceNotFoundException("Kupovina nije pronađena"));
+        Transaction transaction = transactionRepository.findByPurchaseId(purchaseId)
+                .orElseThrow(() -> new ResourceNotFoundException("Transakcija kupovine nije pronađena"));
+        if (transaction.getStatus() != Transaction.Status.SUCCESS) {
+            throw new ValidationException("Refundirati se može samo uspešno plaćena kupovina");
+        }
+
+        // Uslovni UPDATE pre poziva Stripe-a - rezervacija u međuvremenu ne može potrošiti sesiju
+        if (!creditLedgerService.cancelUnused(purchase)) {
+            throw new ValidationException("Kupovina sa iskorišćenim sesijama se ne može refundirati");
+        }
+
+        // stripePaymentIntentId čuva ID checkout sesije
+        Session session = Session.retrieve(transaction.getStripePaymentIntentId());
+        Refund refund = Refund.create(RefundCreateParams.builder()
+                .setPaymentIntent(session.getPaymentIntent())
+                .build());
+
+        transaction.setStatus(Transaction.Status.REFUNDED);
+        transactionRepository.save(transaction);
+
+        analyticsService.recordRefund(purchase, transaction);
+        purchaseService.logPurchaseChange(purchase, ChangeLogRepository.Operation.UPDATE);
+
+        log.info("Kupovina {} refundirana (Stripe refund {})", purchaseId, refund.getId());
+    }
 }
\ No newline at end of file
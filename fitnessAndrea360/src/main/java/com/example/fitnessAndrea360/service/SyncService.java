@@ -0,0 +1,275 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.config.ShardContext;
+import com.example.fitnessAndrea360.config.ShardRouter;
+import com.example.fitnessAndrea360.dto.AppointmentResponseDTO;
+import com.example.fitnessAndrea360.dto.PurchaseResponseDTO;
+import com.example.fitnessAndrea360.dto.ReservationResponseDTO;
+import com.example.fitnessAndrea360.dto.SyncResponseDTO;
+import com.example.fitnessAndrea360.exception.UnauthorizedAccessException;
+import com.example.fitnessAndrea360.exception.ValidationException;
+import com.example.fitnessAndrea360.model.Member;
+import com.example.fitnessAndrea360.model.User;
+import com.example.fitnessAndrea360.repository.*;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Delta sinhronizacija dashboard-a: umesto ponovnog učitavanja punih lista klijent šalje poslednji
+ * kursor i dobija samo termine, rezervacije i kupovine izmenjene posle njega (trenutno stanje)
+ * i ID-eve obrisanih.
+ *
+ * Tok klijenta: GET /sync bez since vraća početni kursor (resetRequired=true), zatim puno učitavanje
+ * lista, pa GET /sync?since=cursor u intervalima. Kursor se uzima PRE punog učitavanja, da se izmene
+ * iz međuvremena ne izgube (ponovo poslata izmena samo prepisuje isti zapis).
+ *
+ * Kursore dodeljuje sekvencer (sequenceChanges) redom kojim su izmene commit-ovane, pa izmena koja
+ * se commit-uje posle klijentovog čitanja uvek dolazi posle njegovog kursora.
+ */
+@Slf4j
+@Service
+public class SyncService {
+
+    private final ChangeLogRepository changeLogRepository;
+    private final AppointmentRepository appointmentRepository;
+    private final ReservationRepository reservationRepository;
+    private final PurchaseRepository purchaseRepository;
+    private final CurrentMemberResolver currentMemberResolver;
+    private final UserRepository userRepository;
+    private final AppointmentService appointmentService;
+    private final ReservationService reservationService;
+    private final PurchaseService purchaseService;
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate shardTemplate;
+
+    @Value("${app.sync.page-size:500}")
+    private int pageSize;
+
+    @Value("${app.sync.max-page-size:2000}")
+    private int maxPageSize;
+
+    @Value("${app.sync.sequence-batch-size:1000}")
+    private int sequenceBatchSize;
+
+    @Value("${app.sync.retention-days:7}")
+    private int retentionDays;
+
+    public SyncService(ChangeLogRepository changeLogRepository,
+                       AppointmentRepository appointmentRepository,
+                       ReservationRepository reservationRepository,
+                       PurchaseRepository purchaseRepository,
+                       CurrentMemberResolver currentMemberResolver,
+                       UserRepository userRepository,
+                       AppointmentService appointmentService,
+                       ReservationService reservationService,
+                       PurchaseService purchaseService,
+                       ShardRouter shardRouter,
+                       PlatformTransactionManager transactionManager) {
+        this.changeLogRepository = changeLogRepository;
+        this.appointmentRepository = appointmentRepository;
+        this.reservationRepository = reservationRepository;
+        this.purchaseRepository = purchaseRepository;
+        this.currentMemberResolver = currentMemberResolver;
+        this.userRepository = userRepository;
+        this.appointmentService = appointmentService;
+        this.reservationService = reservationService;
+        this.purchaseService = purchaseService;
+        this.shardRouter = shardRouter;
+        this.shardTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    private User getCurrentUserWithLocation() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String email = authentication.getName();
+        return userRepository.findByEmailWithLocation(email)
+                .orElseThrow(() -> new RuntimeException("Trenutni korisnik nije pronađen"));
+    }
+
+    /**
+     * Izmene posle kursora. Admin vidi sve (ili jednu lokaciju), zaposleni svoju lokaciju,
+     * član termine svoje lokacije i sopstvene rezervacije i kupovine.
+     * Kod šardovanja kursor važi za šard zahteva (lokacija iz tokena, admin bira X-Location-Id).
+     */
+    @Transactional(readOnly = true)
+    public SyncResponseDTO getChangesSince(Long since, Integer limit, Long requestedLocationId) {
+        User currentUser = getCurrentUserWithLocation();
+        String userRole = currentUser.getRole().getName();
+
+        Long locationId;
+        Long memberId = null;
+        if (userRole.equals("ADMIN")) {
+            locationId = requestedLocationId;
+        } else if (userRole.equals("EMPLOYEE")) {
+            if (currentUser.getLocation() == null) {
+                throw new UnauthorizedAccessException("Nema dodeljene lokacije");
+            }
+            locationId = currentUser.getLocation().getId();
+        } else if (userRole.equals("MEMBER")) {
+            Member member = currentMemberResolver.currentMember();
+            locationId = member.getLocation() != null ? member.getLocation().getId() : null;
+            memberId = member.getId();
+        } else {
+            throw new UnauthorizedAccessException("Nemaš pravo pristupa");
+        }
+
+        if (since != null && since < 0) {
+            throw new ValidationException("Kursor ne može biti negativan");
+        }
+
+        // Bez kursora ili sa kursorom starijim od najstarije sačuvane izmene - klijent učitava sve iznova
+        if (since == null || isExpired(since)) {
+            return reset(changeLogRepository.findHead());
+        }
+
+        int size = limit == null ? pageSize : Math.max(1, Math.min(limit, maxPageSize));
+        List<ChangeLogRepository.Entry> entries =
+                changeLogRepository.findAfter(since, locationId, memberId, size + 1);
+        boolean hasMore = entries.size() > size;
+        if (hasMore) {
+            entries = entries.subList(0, size);
+        }
+
+        // Više izmena istog zapisa u stranici - važi poslednja operacija
+        Map<Long, ChangeLogRepository.Operation> appointmentChanges = new LinkedHashMap<>();
+        Map<Long, ChangeLogRepository.Operation> reservationChanges = new LinkedHashMap<>();
+        Map<Long, ChangeLogRepository.Operation> purchaseChanges = new LinkedHashMap<>();
+        for (ChangeLogRepository.Entry entry : entries) {
+            Map<Long, ChangeLogRepository.Operation> target = switch (entry.entityType()) {
+                case APPOINTMENT -> appointmentChanges;
+                case RESERVATION -> reservationChanges;
+                case PURCHASE -> purchaseChanges;
+            };
+            target.put(entry.entityId(), entry.operation());
+        }
+
+        List<Long> deletedAppointmentIds = new ArrayList<>();
+        List<Long> deletedReservationIds = new ArrayList<>();
+        List<Long> deletedPurchaseIds = new ArrayList<>();
+
+        SyncResponseDTO response = SyncResponseDTO.builder()
+                .cursor(entries.isEmpty() ? since : entries.get(entries.size() - 1).cursor())
+                .hasMore(hasMore)
+                .resetRequired(false)
+                .appointments(appointmentRepository.findAllById(upsertIds(appointmentChanges, deletedAppointmentIds)).stream()
+                        .map(appointmentService::mapToResponse)
+                        .toList())
+                .reservations(reservationRepository.findAllById(upsertIds(reservationChanges, deletedReservationIds)).stream()
+                        .map(reservationService::mapToResponse)
+                        .toList())
+                .purchases(purchaseRepository.findAllById(upsertIds(purchaseChanges, deletedPurchaseIds)).stream()
+                        .map(purchaseService::convertToDTO)
+                        .toList())
+                .deletedAppointmentIds(deletedAppointmentIds)
+                .deletedReservationIds(deletedReservationIds)
+                .deletedPurchaseIds(deletedPurchaseIds)
+                .build();
+
+        // Zapis izmenjen pa obrisan posle čitanja dnevnika - javlja se kao obrisan
+        addMissing(appointmentChanges, response.getAppointments().stream().map(AppointmentResponseDTO::getId).toList(), deletedAppointmentIds);
+        addMissing(reservationChanges, response.getReservations().stream().map(ReservationResponseDTO::getId).toList(), deletedReservationIds);
+        addMissing(purchaseChanges, response.getPurchases().stream().map(PurchaseResponseDTO::getId).toList(), deletedPurchaseIds);
+
+        return response;
+    }
+
+    private boolean isExpired(long since) {
+        if (since == 0) {
+            return true;
+        }
+        return changeLogRepository.findOldestCursor()
+                .map(oldest -> since < oldest - 1)
+                .orElse(false);
+    }
+
+    private SyncResponseDTO reset(long cursor) {
+        return SyncResponseDTO.builder()
+                .cursor(cursor)
+                .hasMore(false)
+                .resetRequired(true)
+                .appointments(List.of())
+                .reservations(List.of())
+                .purchases(List.of())
+                .deletedAppointmentIds(List.of())
+                .deletedReservationIds(List.of())
+                .deletedPurchaseIds(List.of())
+                .build();
+    }
+
+    private List<Long> upsertIds(Map<Long, ChangeLogRepository.Operation> changes, List<Long> deletedIds) {
+        List<Long> upserts = new ArrayList<>();
+        changes.forEach((id, operation) -> {
+            if (operation == ChangeLogRepository.Operation.DELETE) {
+                deletedIds.add(id);
+            } else {
+                upserts.add(id);
+            }
+        });
+        return upserts;
+    }
+
+    private void addMissing(Map<Long, ChangeLogRepository.Operation> changes, List<Long> foundIds, List<Long> deletedIds) {
+        Set<Long> found = new HashSet<>(foundIds);
+        changes.forEach((id, operation) -> {
+            if (operation != ChangeLogRepository.Operation.DELETE && !found.contains(id)) {
+                deletedIds.add(id);
+            }
+        });
+    }
+
+    /**
+     * Brisanje izmena starijih od retention-days na svakom šardu. Najnoviji red ostaje,
+     * da bi se zastareo kursor prepoznao i kada dugo nije bilo izmena.
+     */
+    @Scheduled(cron = "${app.sync.purge-cron:0 30 3 * * *}")
+    public void purgeExpiredChanges() {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(retentionDays);
+        for (String shard : shardRouter.shards()) {
+            ShardContext.set(shard);
+            try {
+                Integer deleted = shardTemplate.execute(status -> changeLogRepository.findNewestCursor()
+                        .map(newest -> changeLogRepository.deleteOlderThan(cutoff, newest))
+                        .orElse(0));
+                log.info("Dnevnik izmena (šard {}): obrisano {} izmena starijih od {}", shard, deleted, cutoff);
+            } finally {
+                ShardContext.clear();
+            }
+        }
+    }
+
+    /**
+     * Dodeljuje kursore commit-ovanim izmenama na svakom šardu, dok ima redova bez kursora.
+     * Greška na jednom šardu (npr. istovremena inicijalizacija sa drugog čvora) čeka sledeći prolaz.
+     */
+    @Scheduled(fixedDelayString = "${app.sync.sequence-interval-ms:250}")
+    public void sequenceChanges() {
+        for (String shard : shardRouter.shards()) {
+            ShardContext.set(shard);
+            try {
+                Integer assigned;
+                do {
+                    assigned = shardTemplate.execute(status -> changeLogRepository.assignSequence(sequenceBatchSize));
+                } while (assigned != null && assigned >= sequenceBatchSize);
+            } catch (DataAccessException e) {
+                log.warn("Dodela kursora dnevnika izmena nije uspela (šard {}): {}", shard, e.getMessage());
+            } finally {
+                ShardContext.clear();
+            }
+        }
+    }
+}
@@ -138,4 +138,30 @@ INSERT IGNORE INTO transactions (id, purchase_id, stripe_payment_intent_id, amou
 INSERT IGNORE INTO reservations (id, member_id, appointment_id, purchase_id, status, created_at) VALUES
     (1, 1, 1, 1, 'CONFIRMED', NOW()),
     (2, 1, 2, 2, 'CONFIRMED', NOW()),
-    (3, 2, 3, 3, 'CONFIRMED', NOW());
\ No newline at end of file
+    (3, 2, 3, 3, 'CONFIRMED', NOW());
+
+-- 11. JEDANAESTO: MESEČNA STATISTIKA REZERVACIJA (popunjava samo mesece koji još nemaju rollup red)
+INSERT IGNORE INTO reservation_monthly_stats (location_id, period_start, reservation_count, cancelled_count)
+SELECT a.location_id,
+       CAST(DATE_FORMAT(a.start_time, '%Y-%m-01') AS DATE) AS period_start,
+       COUNT(*),
+       SUM(CASE WHEN r.status = 'CANCELLED' THEN 1 ELSE 0 END)
+FROM reservations r
+         JOIN appointments a ON a.id = r.appointment_id
+GROUP BY a.location_id, period_start;
+
+-- 12. DVANAESTO: DNEVNA ANALITIKA PRODAJE (popunjava samo dane koji još nemaju rollup red)
+INSERT IGNORE INTO sales_daily_stats (stat_date, location_id, service_id, revenue_eur, units_sold, transaction_count, refund_eur, refund_count)
+SELECT t.payment_date,
+       m.location_id,
+       p.service_id,
+       SUM(t.amount_eur),
+       SUM(p.quantity),
+       COUNT(*),
+       SUM(CASE WHEN t.status = 'REFUNDED' THEN t.amount_eur ELSE 0 END),
+       SUM(CASE WHEN t.status = 'REFUNDED' THEN 1 ELSE 0 END)
+FROM transactions t
+         JOIN purchases p ON p.id = t.purchase_id
+         JOIN members m ON m.id = p.member_id
+WHERE t.status IN ('SUCCESS', 'REFUNDED') AND t.payment_date IS NOT NULL
+GROUP BY t.payment_date, m.location_id, p.service_id;
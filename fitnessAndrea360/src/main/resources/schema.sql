@@ -177,6 +177,9 @@ CREATE TABLE IF NOT EXISTS reservations (
                                             purchase_id BIGINT NOT NULL,
                                             status VARCHAR(20) DEFAULT 'CONFIRMED',
     notes TEXT,
+    start_time DATETIME NULL,
+    location_id BIGINT NULL,
+    service_id BIGINT NULL,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
     FOREIGN KEY (member_id) REFERENCES members(id) ON DELETE CASCADE,
@@ -187,6 +190,163 @@ CREATE TABLE IF NOT EXISTS reservations (
     INDEX idx_reservations_appointment (appointment_id)
     );
 
+-- 11. RESERVATION_MONTHLY_STATS (mesečni rollup rezervacija po lokaciji)
+CREATE TABLE IF NOT EXISTS reservation_monthly_stats (
+                                                         id BIGINT AUTO_INCREMENT PRIMARY KEY,
+                                                         location_id BIGINT NOT NULL,
+                                                         period_start DATE NOT NULL,
+                                                         reservation_count BIGINT NOT NULL DEFAULT 0,
+                                                         cancelled_count BIGINT NOT NULL DEFAULT 0,
+                                                         updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    FOREIGN KEY (location_id) REFERENCES locations(id) ON DELETE CASCADE,
+    UNIQUE KEY unique_location_period (location_id, period_start)
+    );
+
+-- 12. SALES_DAILY_STATS (dnevni rollup prodaje po lokaciji i usluzi)
+CREATE TABLE IF NOT EXISTS sales_daily_stats (
+                                                 id BIGINT AUTO_INCREMENT PRIMARY KEY,
+                                                 stat_date DATE NOT NULL,
+                                                 location_id BIGINT NOT NULL,
+                                                 service_id BIGINT NOT NULL,
+                                                 revenue_eur DECIMAL(12,2) NOT NULL DEFAULT 0,
+    units_sold BIGINT NOT NULL DEFAULT 0,
+    transaction_count BIGINT NOT NULL DEFAULT 0,
+    refund_eur DECIMAL(12,2) NOT NULL DEFAULT 0,
+    refund_count BIGINT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    UNIQUE KEY unique_sales_day (stat_date, location_id, service_id),
+    INDEX idx_sales_location_date (location_id, stat_date)
+    );
+
+-- 13. CHANGE_LOG (dnevnik izmena termina, rezervacija i kupovina za delta sinhronizaciju, seq = kursor)
+-- seq dodeljuje sekvencer posle commit-a (redosled commit-a, ne redosled id-a); NULL = još bez kursora
+CREATE TABLE IF NOT EXISTS change_log (
+                                          id BIGINT AUTO_INCREMENT PRIMARY KEY,
+                                          entity_type VARCHAR(20) NOT NULL,
+    entity_id BIGINT NOT NULL,
+    operation VARCHAR(10) NOT NULL,
+    location_id BIGINT,
+    member_id BIGINT,
+    seq BIGINT NULL,
+    changed_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    UNIQUE KEY unique_change_log_seq (seq),
+    INDEX idx_change_log_location_seq (location_id, seq),
+    INDEX idx_change_log_member_seq (member_id, seq),
+    INDEX idx_change_log_changed (changed_at)
+    );
+
+-- Dnevnik napravljen pre seq kolone (na novoj bazi ove naredbe padaju i preskaču se).
+-- Postojeći redovi dobijaju seq = id pri prvom prolazu sekvencera
+ALTER TABLE change_log ADD COLUMN seq BIGINT NULL AFTER member_id;
+CREATE UNIQUE INDEX unique_change_log_seq ON change_log(seq);
+CREATE INDEX idx_change_log_location_seq ON change_log(location_id, seq);
+CREATE INDEX idx_change_log_member_seq ON change_log(member_id, seq);
+DROP INDEX idx_change_log_location ON change_log;
+DROP INDEX idx_change_log_member ON change_log;
+
+-- Poslednji dodeljen seq (jedan red, id = 1). Sekvencer ga zaključava, pa kursore dodeljuje jedan čvor u isto vreme;
+-- red upisuje prvi prolaz sekvencera
+CREATE TABLE IF NOT EXISTS change_log_sequence (
+                                                   id INT PRIMARY KEY,
+                                                   last_seq BIGINT NOT NULL
+);
+
+-- 14. NOTIFICATION_OUTBOX (email obaveštenja - upis u transakciji izmene, slanje iz NotificationOutboxWorker-a)
+CREATE TABLE IF NOT EXISTS notification_outbox (
+                                                   id BIGINT AUTO_INCREMENT PRIMARY KEY,
+                                                   type VARCHAR(30) NOT NULL,
+    dedup_key VARCHAR(150) NOT NULL,
+    member_id BIGINT,
+    appointment_id BIGINT,
+    reservation_id BIGINT,
+    recipient_email VARCHAR(255) NOT NULL,
+    recipient_name VARCHAR(255),
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDING', -- PENDING, SENDING, SENT, FAILED
+    attempts INT NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    claim_token VARCHAR(36),
+    locked_until TIMESTAMP(3) NULL,
+    last_error VARCHAR(500),
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    sent_at TIMESTAMP NULL,
+    UNIQUE KEY unique_notification_dedup (dedup_key),
+    INDEX idx_outbox_due (status, next_attempt_at),
+    INDEX idx_outbox_claim (claim_token)
+    );
+
+-- 15. ARHIVA (hladni sloj: završeni termini starije od app.archive.retention-days i njihove rezervacije)
+-- Iste kolone kao appointments/reservations + archived_at; bez stranih ključeva ka vrućim tabelama
+CREATE TABLE IF NOT EXISTS appointments_archive (
+                                                    id BIGINT PRIMARY KEY,
+                                                    service_id BIGINT NOT NULL,
+                                                    member_id BIGINT NOT NULL,
+                                                    location_id BIGINT NOT NULL,
+                                                    max_capacity INT NOT NULL,
+                                                    current_capacity INT NOT NULL,
+                                                    created_by BIGINT NULL,
+                                                    start_time DATETIME NOT NULL,
+                                                    end_time DATETIME NOT NULL,
+                                                    status VARCHAR(50),
+    notes TEXT,
+    created_at TIMESTAMP NULL,
+    updated_at TIMESTAMP NULL,
+    archived_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    INDEX idx_appointments_archive_location_time (location_id, start_time),
+    INDEX idx_appointments_archive_time (start_time),
+    INDEX idx_appointments_archive_member (member_id)
+    );
+
+CREATE TABLE IF NOT EXISTS reservations_archive (
+                                                    id BIGINT PRIMARY KEY,
+                                                    member_id BIGINT NOT NULL,
+                                                    appointment_id BIGINT NOT NULL,
+                                                    purchase_id BIGINT NOT NULL,
+                                                    status VARCHAR(20),
+    notes TEXT,
+    -- Kopije polja termina kao u reservations, da arhivski upiti ne moraju da spajaju appointments_archive
+    start_time DATETIME NULL,
+    location_id BIGINT NULL,
+    service_id BIGINT NULL,
+    created_at TIMESTAMP NULL,
+    updated_at TIMESTAMP NULL,
+    archived_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    INDEX idx_reservations_archive_member (member_id),
+    INDEX idx_reservations_archive_appointment (appointment_id),
+    INDEX idx_reservations_archive_location_time (location_id, start_time, status)
+    );
+
+-- Postojeća arhiva napravljena pre kopija polja termina (na novoj bazi ove naredbe padaju i preskaču se).
+-- Stari redovi se dopunjuju jednom, pri pokretanju (PartitionMaintenanceService, oznaka u schema_migrations)
+ALTER TABLE reservations_archive ADD COLUMN start_time DATETIME NULL AFTER notes;
+ALTER TABLE reservations_archive ADD COLUMN location_id BIGINT NULL AFTER start_time;
+ALTER TABLE reservations_archive ADD COLUMN service_id BIGINT NULL AFTER location_id;
+CREATE INDEX idx_reservations_archive_location_time ON reservations_archive(location_id, start_time, status);
+
+-- 16. CREDIT_LEDGER (dnevnik sesija: GRANT, CONSUME, REFUND, EXPIRE - samo dodavanje, bez izmena)
+-- Stanje kupovine = SUM(delta) po purchase_id; purchases.remaining_uses je projekcija koju piše samo CreditLedgerService.
+-- Bez stranog ključa ka reservations (tabela može biti particionisana)
+CREATE TABLE IF NOT EXISTS credit_ledger (
+                                             id BIGINT AUTO_INCREMENT PRIMARY KEY,
+                                             member_id BIGINT NOT NULL,
+                                             service_id BIGINT NOT NULL,
+                                             purchase_id BIGINT NOT NULL,
+                                             reservation_id BIGINT NULL,
+                                             entry_type VARCHAR(20) NOT NULL,
+    delta INT NOT NULL,
+    dedup_key VARCHAR(100) NULL,
+    note VARCHAR(255),
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    UNIQUE KEY unique_ledger_dedup (dedup_key),
+    INDEX idx_ledger_member_service (member_id, service_id),
+    INDEX idx_ledger_purchase (purchase_id)
+    );
+
+-- 17. SCHEMA_MIGRATIONS (oznake jednokratnih migracija i dopuna podataka, po šardu)
+CREATE TABLE IF NOT EXISTS schema_migrations (
+                                                 name VARCHAR(100) PRIMARY KEY,
+    applied_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+    );
+
 -- ============================================
 -- KREIRANJE INDEKSA ZA BRŽE PRETRAGE
 -- ============================================
@@ -209,6 +369,10 @@ CREATE INDEX idx_appointments_status ON appointments(status);
 -- Reservations indeksi
 CREATE INDEX idx_reservations_status ON reservations(status);
 CREATE INDEX idx_reservations_created ON reservations(created_at);
+CREATE INDEX idx_reservations_start_time ON reservations(start_time);
+-- Kopije polja termina: opsezi po lokaciji/članu bez join-a sa appointments (status pokriva mesečne zbirove)
+CREATE INDEX idx_reservations_location_time ON reservations(location_id, start_time, status);
+CREATE INDEX idx_reservations_member_time ON reservations(member_id, start_time);
 
 -- ============================================
 -- KOMENTARI ZA KOLONE (OPTIONALNO)
@@ -0,0 +1,157 @@
+package com.example.fitnessAndrea360.config;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.tcp.ReconnectStrategy;
+import org.springframework.messaging.tcp.TcpConnection;
+import org.springframework.messaging.tcp.TcpConnectionHandler;
+import org.springframework.messaging.tcp.TcpOperations;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * STOMP broker u procesu za testove broker relay-a - zamenjuje TCP transport (TcpOperations),
+ * pa više StompBrokerRelayMessageHandler-a ("instanci") deli isti broker bez mreže.
+ *
+ * Podržava CONNECT, SUBSCRIBE, UNSUBSCRIBE, SEND i DISCONNECT; sve frame-ove obrađuje jedna nit,
+ * redom kojim su stigli, kao i pravi broker za jednu konekciju.
+ */
+class InMemoryStompBroker implements TcpOperations<byte[]> {
+
+	private final ExecutorService dispatcher = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "in-memory-stomp-broker");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	// Menja se samo na niti dispatcher-a
+	private final Map<String, Set<Subscription>> subscriptions = new HashMap<>();
+	private final AtomicLong messageIds = new AtomicLong();
+	private final AtomicLong delivered = new AtomicLong();
+
+	private record Subscription(Connection connection, String id) {
+	}
+
+	@Override
+	public CompletableFuture<Void> connectAsync(TcpConnectionHandler<byte[]> handler) {
+		Connection connection = new Connection(handler);
+		dispatcher.execute(() -> handler.afterConnected(connection));
+		return CompletableFuture.completedFuture(null);
+	}
+
+	@Override
+	public CompletableFuture<Void> connectAsync(TcpConnectionHandler<byte[]> handler, ReconnectStrategy reconnectStrategy) {
+		return connectAsync(handler);
+	}
+
+	// Broker deli više relay-a (instanci) - gašenje jednog relay-a ne gasi broker; nit je daemon
+	@Override
+	public CompletableFuture<Void> shutdownAsync() {
+		return CompletableFuture.completedFuture(null);
+	}
+
+	long deliveredCount() {
+		return delivered.get();
+	}
+
+	private void receive(Connection connection, Message<byte[]> message) {
+		StompHeaderAccessor frame = StompHeaderAccessor.wrap(message);
+		StompCommand command = frame.getCommand();
+		if (command == null) {
+			return; // heartbeat
+		}
+
+		switch (command) {
+			case CONNECT, STOMP -> {
+				StompHeaderAccessor connected = StompHeaderAccessor.create(StompCommand.CONNECTED);
+				connected.setNativeHeader("version", "1.2");
+				connection.deliver(connected, new byte[0]);
+			}
+			case SUBSCRIBE -> subscriptions.computeIfAbsent(frame.getDestination(), destination -> new LinkedHashSet<>())
+					.add(new Subscription(connection, frame.getSubscriptionId()));
+			case UNSUBSCRIBE -> subscriptions.values()
+					.forEach(set -> set.remove(new Subscription(connection, frame.getSubscriptionId())));
+			case SEND -> {
+				Set<Subscription> targets = subscriptions.getOrDefault(frame.getDestination(), Set.of());
+				for (Subscription subscription : targets) {
+					StompHeaderAccessor out = StompHeaderAccessor.create(StompCommand.MESSAGE);
+					out.setDestination(frame.getDestination());
+					out.setSubscriptionId(subscription.id());
+					out.setMessageId(Long.toString(messageIds.incrementAndGet()));
+					if (frame.getContentType() != null) {
+						out.setContentType(frame.getContentType());
+					}
+					subscription.connection().deliver(out, message.getPayload());
+					delivered.incrementAndGet();
+				}
+			}
+			case DISCONNECT -> connection.closeNow();
+			default -> {
+			}
+		}
+
+		// Frame-ovi se obrađuju redom, pa RECEIPT znači da je i pretplata već aktivna
+		if (frame.getReceipt() != null && command != StompCommand.DISCONNECT) {
+			StompHeaderAccessor receipt = StompHeaderAccessor.create(StompCommand.RECEIPT);
+			receipt.setReceiptId(frame.getReceipt());
+			connection.deliver(receipt, new byte[0]);
+		}
+	}
+
+	private final class Connection implements TcpConnection<byte[]> {
+
+		private final TcpConnectionHandler<byte[]> handler;
+		private boolean closed;
+
+		private Connection(TcpConnectionHandler<byte[]> handler) {
+			this.handler = handler;
+		}
+
+		@Override
+		public CompletableFuture<Void> sendAsync(Message<byte[]> message) {
+			dispatcher.execute(() -> {
+				if (!closed) {
+					receive(this, message);
+				}
+			});
+			return CompletableFuture.completedFuture(null);
+		}
+
+		// Relay čita komandu preko accessor-a poruke, kao kod dekodiranog TCP frame-a
+		void deliver(StompHeaderAccessor accessor, byte[] payload) {
+			accessor.setLeaveMutable(true);
+			handler.handleMessage(MessageBuilder.createMessage(payload, accessor.getMessageHeaders()));
+		}
+
+		@Override
+		public void onReadInactivity(Runnable runnable, long duration) {
+		}
+
+		@Override
+		public void onWriteInactivity(Runnable runnable, long duration) {
+		}
+
+		@Override
+		public void close() {
+			dispatcher.execute(this::closeNow);
+		}
+
+		void closeNow() {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			subscriptions.values().forEach(set -> set.removeIf(subscription -> subscription.connection() == this));
+			handler.afterConnectionClosed();
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package com.example.fitnessAndrea360.config;
+
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JwtAuthenticationFilterTest {
+
+	private final JwtService jwtService = jwtService();
+	private final ShardRouter shardRouter = shardRouter();
+	private final JwtAuthenticationFilter filter = new JwtAuthenticationFilter(jwtService,
+			username -> User.withUsername(username).password("hash").roles("ADMIN").build(), shardRouter);
+	private final AtomicReference<String> shardInChain = new AtomicReference<>();
+	private final FilterChain chain = (request, response) -> shardInChain.set(ShardContext.current());
+
+	@AfterEach
+	void tearDown() {
+		SecurityContextHolder.clearContext();
+		shardRouter.shutdown();
+	}
+
+	@Test
+	void adminReadUsesLocationHeaderAndClearsShardAfterwards() throws Exception {
+		MockHttpServletRequest request = request("GET", "/api/reservations", token("ADMIN", null));
+		request.addHeader("X-Location-Id", " 2 ");
+
+		filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+		assertThat(shardInChain.get()).isEqualTo("novi-sad");
+		assertThat(ShardContext.current()).isNull();
+	}
+
+	@Test
+	void adminReadWithoutHeaderStaysOnDefaultShard() throws Exception {
+		MockHttpServletRequest request = request("GET", "/api/reservations", token("ADMIN", null));
+		request.addHeader("X-Location-Id", "sve");
+
+		filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+		assertThat(shardInChain.get()).isEqualTo(ShardingProperties.DEFAULT_SHARD);
+	}
+
+	@Test
+	void adminWriteWithoutHeaderIsRejected() throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		filter.doFilter(request("PUT", "/api/reservations/5/status", token("ADMIN", null)), response, chain);
+
+		assertThat(response.getStatus()).isEqualTo(400);
+		assertThat(response.getErrorMessage()).isEqualTo("Izmena podataka lokacije zahteva zaglavlje X-Location-Id");
+		assertThat(shardInChain.get()).isNull();
+		assertThat(ShardContext.current()).isNull();
+	}
+
+	@Test
+	void tokenLocationWinsOverHeaderAndReferenceWritesGoToDefaultShard() throws Exception {
+		MockHttpServletRequest employee = request("GET", "/api/reservations", token("EMPLOYEE", 2L));
+		employee.addHeader("X-Location-Id", "1");
+		filter.doFilter(employee, new MockHttpServletResponse(), chain);
+		assertThat(shardInChain.get()).isEqualTo("novi-sad");
+
+		SecurityContextHolder.clearContext();
+		filter.doFilter(request("POST", "/api/locations", token("ADMIN", null)), new MockHttpServletResponse(), chain);
+		assertThat(shardInChain.get()).isEqualTo(ShardingProperties.DEFAULT_SHARD);
+	}
+
+	private MockHttpServletRequest request(String method, String path, String token) {
+		MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+		request.setServletPath(path);
+		request.addHeader("Authorization", "Bearer " + token);
+		return request;
+	}
+
+	private String token(String role, Long locationId) {
+		Map<String, Object> claims = new HashMap<>();
+		if (locationId != null) {
+			claims.put("locationId", locationId);
+		}
+		return jwtService.generateToken(claims, User.withUsername(role.toLowerCase() + "@fitness.rs")
+				.password("hash").roles(role).build(), role);
+	}
+
+	private static JwtService jwtService() {
+		JwtService jwtService = new JwtService();
+		ReflectionTestUtils.setField(jwtService, "secretKey", "test-tajni-kljuc-od-najmanje-32-bajta-za-hs256");
+		ReflectionTestUtils.setField(jwtService, "jwtExpiration", 60_000L);
+		return jwtService;
+	}
+
+	// Lokacija 2 je na šardu "novi-sad", ostale na podrazumevanom
+	private static ShardRouter shardRouter() {
+		ShardingProperties properties = new ShardingProperties();
+		properties.setEnabled(true);
+		properties.setLocations(Map.of(2L, "novi-sad"));
+		properties.getShards().put("novi-sad", new ShardingProperties.Node());
+		return new ShardRouter(properties, new DataSourceTransactionManager());
+	}
+}
@@ -0,0 +1,176 @@
+package com.example.fitnessAndrea360.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Dva "čvora" kao dve embedded H2 baze - svaka u tabeli node ima svoje ime,
+ * pa se iz rezultata upita vidi na koju je bazu transakcija usmerena.
+ */
+class ReadWriteRoutingDataSourceTest {
+
+	private EmbeddedDatabase primary;
+	private EmbeddedDatabase replica;
+	private MutableClock clock;
+	private JdbcTemplate jdbcTemplate;
+	private TransactionTemplate readWrite;
+	private TransactionTemplate readOnly;
+
+	@BeforeEach
+	void setUp() {
+		primary = node("primary");
+		replica = node("replica");
+		clock = new MutableClock(Instant.parse("2026-01-01T10:00:00Z"));
+
+		ReadYourWritesTracker tracker = new ReadYourWritesTracker(Duration.ofSeconds(5), clock);
+		LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(
+				new ReadWriteRoutingDataSource(primary, replica, tracker));
+		DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		readWrite = new TransactionTemplate(transactionManager);
+		readOnly = new TransactionTemplate(transactionManager);
+		readOnly.setReadOnly(true);
+	}
+
+	@AfterEach
+	void tearDown() {
+		SecurityContextHolder.clearContext();
+		ReadWriteRoutingDataSource.setStaleReadsAllowed(false);
+		primary.shutdown();
+		replica.shutdown();
+	}
+
+	@Test
+	void readOnlyTransactionGoesToReplica() {
+		assertThat(readOnlyNode()).isEqualTo("replica");
+	}
+
+	@Test
+	void writeTransactionAndNonTransactionalAccessGoToPrimary() {
+		assertThat(readWriteNode()).isEqualTo("primary");
+		assertThat(currentNode()).isEqualTo("primary");
+	}
+
+	@Test
+	void userReadsOwnWritesFromPrimaryUntilPinExpires() {
+		login("clan@fitness.rs");
+		readWrite.executeWithoutResult(status ->
+				jdbcTemplate.update("INSERT INTO bookings (note) VALUES ('rezervacija')"));
+
+		assertThat(readOnlyNode()).isEqualTo("primary");
+		assertThat(readOnlyBookingCount()).isEqualTo(1);
+
+		login("drugi@fitness.rs");
+		assertThat(readOnlyNode()).isEqualTo("replica");
+
+		login("clan@fitness.rs");
+		clock.advance(Duration.ofSeconds(6));
+		assertThat(readOnlyNode()).isEqualTo("replica");
+	}
+
+	@Test
+	void rolledBackWriteDoesNotPin() {
+		login("clan@fitness.rs");
+		readWrite.executeWithoutResult(status -> {
+			jdbcTemplate.update("INSERT INTO bookings (note) VALUES ('rezervacija')");
+			status.setRollbackOnly();
+		});
+
+		assertThat(readOnlyNode()).isEqualTo("replica");
+	}
+
+	@Test
+	void staleReadsIgnorePinning() {
+		login("clan@fitness.rs");
+		readWrite.executeWithoutResult(status ->
+				jdbcTemplate.update("INSERT INTO bookings (note) VALUES ('rezervacija')"));
+
+		ReadWriteRoutingDataSource.setStaleReadsAllowed(true);
+		assertThat(readOnlyNode()).isEqualTo("replica");
+		assertThat(readOnlyBookingCount()).isZero();
+	}
+
+	private String readOnlyNode() {
+		return readOnly.execute(status -> currentNode());
+	}
+
+	private String readWriteNode() {
+		return readWrite.execute(status -> currentNode());
+	}
+
+	private Integer readOnlyBookingCount() {
+		return readOnly.execute(status -> countBookings());
+	}
+
+	private String currentNode() {
+		return jdbcTemplate.queryForObject("SELECT name FROM node", String.class);
+	}
+
+	private Integer countBookings() {
+		return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM bookings", Integer.class);
+	}
+
+	private void login(String email) {
+		SecurityContextHolder.getContext().setAuthentication(
+				new UsernamePasswordAuthenticationToken(email, null, List.of()));
+	}
+
+	private static EmbeddedDatabase node(String name) {
+		EmbeddedDatabase database = new EmbeddedDatabaseBuilder()
+				.setType(EmbeddedDatabaseType.H2)
+				.generateUniqueName(true)
+				.build();
+		JdbcTemplate template = new JdbcTemplate(database);
+		template.execute("CREATE TABLE node (name VARCHAR(20))");
+		template.execute("CREATE TABLE bookings (id BIGINT AUTO_INCREMENT PRIMARY KEY, note VARCHAR(50))");
+		template.update("INSERT INTO node (name) VALUES (?)", name);
+		return database;
+	}
+
+	private static final class MutableClock extends Clock {
+		private Instant now;
+
+		private MutableClock(Instant now) {
+			this.now = now;
+		}
+
+		void advance(Duration duration) {
+			now = now.plus(duration);
+		}
+
+		@Override
+		public ZoneId getZone() {
+			return ZoneOffset.UTC;
+		}
+
+		@Override
+		public Clock withZone(ZoneId zone) {
+			return this;
+		}
+
+		@Override
+		public Instant instant() {
+			return now;
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package com.example.fitnessAndrea360.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StompAuthorizationInterceptorTest {
+
+	// JwtService i UserDetailsService trebaju samo za CONNECT sa tokenom
+	private final StompAuthorizationInterceptor interceptor = new StompAuthorizationInterceptor(null, null);
+
+	@Test
+	void adminMaySubscribeToAnyLocation() {
+		assertThatCode(() -> interceptor.checkSubscription(user("ADMIN", null), "/topic/capacity/location/3"))
+				.doesNotThrowAnyException();
+	}
+
+	@Test
+	void employeeMaySubscribeOnlyToOwnLocation() {
+		assertThatCode(() -> interceptor.checkSubscription(user("EMPLOYEE", 1L), "/topic/capacity/location/1"))
+				.doesNotThrowAnyException();
+		assertThatThrownBy(() -> interceptor.checkSubscription(user("EMPLOYEE", 1L), "/topic/capacity/location/2"))
+				.isInstanceOf(AccessDeniedException.class);
+	}
+
+	@Test
+	void unknownDestinationAndAnonymousSubscriptionAreRejected() {
+		assertThatThrownBy(() -> interceptor.checkSubscription(user("MEMBER", 1L), "/topic/reservations"))
+				.isInstanceOf(AccessDeniedException.class);
+		assertThatThrownBy(() -> interceptor.checkSubscription(null, "/topic/capacity"))
+				.isInstanceOf(AccessDeniedException.class);
+		assertThatCode(() -> interceptor.checkSubscription(user("MEMBER", 1L), "/topic/capacity"))
+				.doesNotThrowAnyException();
+	}
+
+	@Test
+	void connectWithoutTokenIsRejected() {
+		StompHeaderAccessor connect = StompHeaderAccessor.create(StompCommand.CONNECT);
+		connect.setLeaveMutable(true);
+		Message<byte[]> message = MessageBuilder.createMessage(new byte[0], connect.getMessageHeaders());
+
+		assertThatThrownBy(() -> interceptor.preSend(message, null))
+				.isInstanceOf(AccessDeniedException.class);
+	}
+
+	private static UsernamePasswordAuthenticationToken user(String role, Long locationId) {
+		UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+				"korisnik@fitness.rs", null, List.of(new SimpleGrantedAuthority("ROLE_" + role)));
+		Map<String, Object> details = new HashMap<>();
+		if (locationId != null) {
+			details.put("locationId", locationId);
+		}
+		authentication.setDetails(details);
+		return authentication;
+	}
+}
@@ -0,0 +1,75 @@
+package com.example.fitnessAndrea360.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Dve instance sa broker relay-om dele InMemoryStompBroker - poruka objavljena na jednoj
+ * instanci mora stići do pretplatnika povezanih na drugu.
+ */
+class StompBrokerRelayTest {
+
+	private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+	private InMemoryStompBroker broker;
+	private StompRelayNode nodeA;
+	private StompRelayNode nodeB;
+
+	@BeforeEach
+	void setUp() throws InterruptedException {
+		broker = new InMemoryStompBroker();
+		nodeA = new StompRelayNode(broker);
+		nodeB = new StompRelayNode(broker);
+		nodeA.start(TIMEOUT);
+		nodeB.start(TIMEOUT);
+	}
+
+	@AfterEach
+	void tearDown() {
+		nodeA.stop();
+		nodeB.stop();
+	}
+
+	@Test
+	void capacityUpdateReachesSubscribersOnOtherInstance() throws InterruptedException {
+		nodeB.connect("tablet-1", TIMEOUT);
+		nodeB.subscribe("tablet-1", "sub-1", "/topic/capacity/location/1");
+		nodeB.awaitReceipt("tablet-1", TIMEOUT);
+
+		nodeA.publish("/topic/capacity/location/1", "{\"appointmentId\":7}".getBytes(StandardCharsets.UTF_8));
+
+		Message<?> message = nodeB.poll("tablet-1", TIMEOUT);
+		assertThat(message).isNotNull();
+		StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+		assertThat(accessor.getCommand()).isEqualTo(StompCommand.MESSAGE);
+		assertThat(accessor.getSubscriptionId()).isEqualTo("sub-1");
+		assertThat(new String((byte[]) message.getPayload(), StandardCharsets.UTF_8)).isEqualTo("{\"appointmentId\":7}");
+	}
+
+	@Test
+	void messageGoesOnlyToSubscribersOfThatLocation() throws InterruptedException {
+		nodeA.connect("tablet-1", TIMEOUT);
+		nodeA.subscribe("tablet-1", "sub-1", "/topic/capacity/location/1");
+		nodeA.awaitReceipt("tablet-1", TIMEOUT);
+		nodeB.connect("tablet-2", TIMEOUT);
+		nodeB.subscribe("tablet-2", "sub-2", "/topic/capacity/location/2");
+		nodeB.awaitReceipt("tablet-2", TIMEOUT);
+
+		nodeB.publish("/topic/capacity/location/1", "1".getBytes(StandardCharsets.UTF_8));
+		nodeB.publish("/topic/capacity/location/2", "2".getBytes(StandardCharsets.UTF_8));
+
+		assertThat(new String((byte[]) nodeA.poll("tablet-1", TIMEOUT).getPayload(), StandardCharsets.UTF_8)).isEqualTo("1");
+		assertThat(new String((byte[]) nodeB.poll("tablet-2", TIMEOUT).getPayload(), StandardCharsets.UTF_8)).isEqualTo("2");
+		assertThat(nodeA.poll("tablet-1", Duration.ofMillis(200))).isNull();
+		assertThat(nodeB.pending("tablet-2")).isZero();
+	}
+}
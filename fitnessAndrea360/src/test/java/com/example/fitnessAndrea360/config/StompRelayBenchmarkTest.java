@@ -0,0 +1,73 @@
+package com.example.fitnessAndrea360.config;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Merenje relay putanje (bez mreže): koliko sesija jedna instanca poveže i pretplati i koliko
+ * isporuka poruka u sekundi prođe od objave na jednoj instanci do klijenata na drugoj.
+ * Pokreće se ručno: mvn test -Dtest=StompRelayBenchmarkTest -Dbenchmark=true
+ * (opciono -Dbenchmark.sessions=5000 -Dbenchmark.messages=2000).
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class StompRelayBenchmarkTest {
+
+	private static final Duration TIMEOUT = Duration.ofSeconds(30);
+	private static final int LOCATIONS = 10;
+
+	@Test
+	void sessionsPerNodeAndMessagesPerSecond() throws InterruptedException {
+		int sessions = Integer.getInteger("benchmark.sessions", 2000);
+		int messages = Integer.getInteger("benchmark.messages", 1000);
+
+		InMemoryStompBroker broker = new InMemoryStompBroker();
+		StompRelayNode publisher = new StompRelayNode(broker);
+		StompRelayNode subscriberNode = new StompRelayNode(broker);
+		publisher.start(TIMEOUT);
+		subscriberNode.start(TIMEOUT);
+
+		try {
+			Runtime runtime = Runtime.getRuntime();
+			System.gc();
+			long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+			long connectStart = System.nanoTime();
+			for (int i = 0; i < sessions; i++) {
+				String sessionId = "s" + i;
+				subscriberNode.connect(sessionId, TIMEOUT);
+				subscriberNode.subscribe(sessionId, "sub-" + i, "/topic/capacity/location/" + (i % LOCATIONS));
+				subscriberNode.awaitReceipt(sessionId, TIMEOUT);
+			}
+			double connectSeconds = (System.nanoTime() - connectStart) / 1e9;
+			System.gc();
+			long heapPerSession = (runtime.totalMemory() - runtime.freeMemory() - heapBefore) / sessions;
+
+			byte[] payload = "{\"appointmentId\":1,\"currentCapacity\":5,\"maxCapacity\":20,\"availableSpaces\":15}"
+					.getBytes(StandardCharsets.UTF_8);
+			long expected = (long) messages * sessions / LOCATIONS;
+			long publishStart = System.nanoTime();
+			for (int i = 0; i < messages; i++) {
+				publisher.publish("/topic/capacity/location/" + (i % LOCATIONS), payload);
+			}
+			long deadline = System.nanoTime() + TIMEOUT.toNanos();
+			while (broker.deliveredCount() < expected && System.nanoTime() < deadline) {
+				Thread.sleep(1);
+			}
+			double publishSeconds = (System.nanoTime() - publishStart) / 1e9;
+
+			System.out.printf("STOMP relay benchmark: %d sesija povezano i pretplaćeno za %.2f s (%.0f sesija/s, ~%d B heap po sesiji)%n",
+					sessions, connectSeconds, sessions / connectSeconds, heapPerSession);
+			System.out.printf("STOMP relay benchmark: %d objava -> %d isporuka za %.2f s (%.0f isporuka/s)%n",
+					messages, broker.deliveredCount(), publishSeconds, broker.deliveredCount() / publishSeconds);
+
+			assertThat(broker.deliveredCount()).isEqualTo(expected);
+		} finally {
+			publisher.stop();
+			subscriberNode.stop();
+		}
+	}
+}
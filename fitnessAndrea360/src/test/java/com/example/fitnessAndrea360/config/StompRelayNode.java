@@ -0,0 +1,109 @@
+package com.example.fitnessAndrea360.config;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompBrokerRelayMessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.tcp.TcpOperations;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jedna "instanca" aplikacije: broker relay kao u WebSocketConfig sa zadatim transportom.
+ * Klijentske sesije se simuliraju porukama na clientInbound kanalu, a ono što bi otišlo
+ * preko WebSocket-a skuplja se po sesiji.
+ */
+class StompRelayNode {
+
+	private final ExecutorSubscribableChannel clientInbound = new ExecutorSubscribableChannel();
+	private final ExecutorSubscribableChannel clientOutbound = new ExecutorSubscribableChannel();
+	private final ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+	private final StompBrokerRelayMessageHandler relay;
+	private final SimpMessagingTemplate messagingTemplate = new SimpMessagingTemplate(brokerChannel);
+	private final Map<String, BlockingQueue<Message<?>>> outbound = new ConcurrentHashMap<>();
+
+	StompRelayNode(TcpOperations<byte[]> transport) {
+		relay = new StompBrokerRelayMessageHandler(clientInbound, clientOutbound, brokerChannel, List.of("/topic"));
+		relay.setTcpClient(transport);
+		relay.setSystemHeartbeatSendInterval(0);
+		relay.setSystemHeartbeatReceiveInterval(0);
+		clientOutbound.subscribe(message -> outbound
+				.computeIfAbsent(SimpMessageHeaderAccessor.getSessionId(message.getHeaders()), id -> new LinkedBlockingQueue<>())
+				.add(message));
+	}
+
+	void start(Duration timeout) throws InterruptedException {
+		relay.start();
+		long deadline = System.nanoTime() + timeout.toNanos();
+		while (!relay.isBrokerAvailable()) {
+			if (System.nanoTime() > deadline) {
+				throw new IllegalStateException("Broker nije dostupan");
+			}
+			Thread.sleep(5);
+		}
+	}
+
+	void stop() {
+		relay.stop();
+	}
+
+	// Šalje CONNECT i čeka CONNECTED za sesiju
+	void connect(String sessionId, Duration timeout) throws InterruptedException {
+		StompHeaderAccessor connect = StompHeaderAccessor.create(StompCommand.CONNECT);
+		connect.setSessionId(sessionId);
+		connect.setAcceptVersion("1.2");
+		connect.setHeartbeat(0, 0);
+		send(connect);
+
+		Message<?> reply = poll(sessionId, timeout);
+		if (reply == null || StompHeaderAccessor.wrap(reply).getCommand() != StompCommand.CONNECTED) {
+			throw new IllegalStateException("Sesija " + sessionId + " nije povezana: " + reply);
+		}
+	}
+
+	void subscribe(String sessionId, String subscriptionId, String destination) {
+		StompHeaderAccessor subscribe = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+		subscribe.setSessionId(sessionId);
+		subscribe.setSubscriptionId(subscriptionId);
+		subscribe.setDestination(destination);
+		subscribe.setReceipt("r-" + subscriptionId);
+		send(subscribe);
+	}
+
+	// Čeka RECEIPT pretplate - posle njega broker sigurno ima pretplatu
+	void awaitReceipt(String sessionId, Duration timeout) throws InterruptedException {
+		Message<?> reply = poll(sessionId, timeout);
+		if (reply == null || StompHeaderAccessor.wrap(reply).getCommand() != StompCommand.RECEIPT) {
+			throw new IllegalStateException("Nema potvrde pretplate za sesiju " + sessionId + ": " + reply);
+		}
+	}
+
+	// Kao SimpMessagingTemplate u aplikaciji (CapacityBroadcaster) - relay šalje preko sistemske sesije
+	void publish(String destination, byte[] payload) {
+		messagingTemplate.convertAndSend(destination, payload);
+	}
+
+	Message<?> poll(String sessionId, Duration timeout) throws InterruptedException {
+		return outbound.computeIfAbsent(sessionId, id -> new LinkedBlockingQueue<>())
+				.poll(timeout.toMillis(), TimeUnit.MILLISECONDS);
+	}
+
+	int pending(String sessionId) {
+		BlockingQueue<Message<?>> queue = outbound.get(sessionId);
+		return queue != null ? queue.size() : 0;
+	}
+
+	private void send(StompHeaderAccessor accessor) {
+		clientInbound.send(MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()));
+	}
+}
@@ -0,0 +1,92 @@
+package com.example.fitnessAndrea360.controller;
+
+import com.example.fitnessAndrea360.dto.LocationResponse;
+import com.example.fitnessAndrea360.event.CatalogChangedEvent;
+import com.example.fitnessAndrea360.service.LocationService;
+import com.example.fitnessAndrea360.service.ResourceVersionRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LocationControllerTest {
+
+	private final CountingLocations locationService = new CountingLocations();
+	private final ResourceVersionRegistry registry = new ResourceVersionRegistry(Long.MAX_VALUE);
+	private final LocationController controller = new LocationController(locationService, registry, null);
+
+	@Test
+	void matchingEtagReturnsNotModifiedWithoutReadingLocations() {
+		ResponseEntity<List<LocationResponse>> first = controller.getAllLocations(request(null).webRequest);
+		String etag = first.getHeaders().getETag();
+		assertThat(first.getStatusCode().value()).isEqualTo(200);
+		assertThat(first.getHeaders().getCacheControl()).contains("max-age=60");
+
+		Conditional revalidation = request(etag);
+		assertThat(controller.getAllLocations(revalidation.webRequest)).isNull();
+		assertThat(revalidation.response.getStatus()).isEqualTo(304);
+		assertThat(revalidation.response.getHeader(HttpHeaders.ETAG)).isEqualTo(etag);
+		assertThat(locationService.reads).isEqualTo(1);
+	}
+
+	@Test
+	void changedLocationsReturnFullResponseForOldEtag() {
+		String etag = controller.getLocationById(3L, request(null).webRequest).getHeaders().getETag();
+
+		registry.onCatalogChanged(new CatalogChangedEvent(CatalogChangedEvent.Catalog.LOCATIONS, 3L, null));
+
+		Conditional revalidation = request(etag);
+		ResponseEntity<LocationResponse> response = controller.getLocationById(3L, revalidation.webRequest);
+		assertThat(response.getStatusCode().value()).isEqualTo(200);
+		assertThat(response.getHeaders().getETag()).isNotEqualTo(etag);
+		assertThat(response.getBody().getId()).isEqualTo(3L);
+		assertThat(locationService.reads).isEqualTo(2);
+	}
+
+	private static Conditional request(String ifNoneMatch) {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/locations");
+		if (ifNoneMatch != null) {
+			request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+		}
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		return new Conditional(new ServletWebRequest(request, response), response);
+	}
+
+	private record Conditional(ServletWebRequest webRequest, MockHttpServletResponse response) {
+	}
+
+	// Broji čitanja - 304 ne sme doći do servisa
+	private static final class CountingLocations extends LocationService {
+
+		int reads;
+
+		CountingLocations() {
+			super(null, event -> { });
+		}
+
+		@Override
+		public List<LocationResponse> getAllLocations() {
+			reads++;
+			return List.of(location(1L));
+		}
+
+		@Override
+		public LocationResponse getLocationById(Long id) {
+			reads++;
+			return location(id);
+		}
+
+		private static LocationResponse location(Long id) {
+			LocationResponse location = new LocationResponse();
+			location.setId(id);
+			location.setName("Centar");
+			return location;
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.config.ShardContext;
+import com.example.fitnessAndrea360.repository.AppointmentRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AppointmentIntervalIndexTest {
+
+	private TestDatabase db;
+	private long locationId;
+	private long serviceId;
+	private long memberId;
+	private AppointmentIntervalIndex index;
+
+	@BeforeEach
+	void setUp() {
+		db = TestDatabase.open();
+		locationId = db.location("Centar");
+		serviceId = db.service("Joga", locationId);
+		memberId = db.member(locationId, "Ana");
+		index = new AppointmentIntervalIndex(db.repository(AppointmentRepository.class), 90, 5, 100);
+	}
+
+	@AfterEach
+	void tearDown() {
+		db.close();
+	}
+
+	@Test
+	void overlapsWithinHorizonAreServedFromOneLoad() {
+		LocalDateTime start = LocalDateTime.now().plusDays(1).withHour(9).withMinute(0).withSecond(0).withNano(0);
+		long appointmentId = db.appointment(serviceId, memberId, locationId, start, 10);
+
+		assertThat(index.findLocationOverlaps(locationId, start.plusMinutes(30), start.plusMinutes(90)))
+				.extracting(AppointmentInterval::id).containsExactly(appointmentId);
+		assertThat(index.findLocationOverlaps(locationId, start.plusHours(1), start.plusHours(2))).isEmpty();
+		assertThat(loads()).isEqualTo(1);
+	}
+
+	@Test
+	void snapshotLoadedDuringCommitIsNotCached() {
+		LocalDateTime start = LocalDateTime.now().plusDays(2).withHour(18).withMinute(0).withSecond(0).withNano(0);
+		// Commit druge transakcije stiže dok se bucket učitava - snimak ga ne sadrži
+		db.onStatement(sql -> index.recordCreated(List.of(
+				new AppointmentInterval(1000L, memberId, locationId, start, start.plusHours(1)))));
+
+		assertThat(index.findLocationOverlaps(locationId, start, start.plusHours(1))).isEmpty();
+
+		// Sledeći upit ponovo učitava iz baze umesto da veruje zastarelom snimku
+		db.onStatement(null);
+		long appointmentId = db.appointment(serviceId, memberId, locationId, start, 10);
+		assertThat(index.findLocationOverlaps(locationId, start, start.plusHours(1)))
+				.extracting(AppointmentInterval::id).containsExactly(appointmentId);
+		assertThat(loads()).isEqualTo(2);
+	}
+
+	@Test
+	void bucketsAndChangesAreKeptPerShard() {
+		LocalDateTime start = LocalDateTime.now().plusDays(3).withHour(10).withMinute(0).withSecond(0).withNano(0);
+		long appointmentId = db.appointment(serviceId, memberId, locationId, start, 10);
+		assertThat(index.findLocationOverlaps(locationId, start, start.plusHours(1))).hasSize(1);
+
+		// Isti ID termina na drugom šardu je drugi termin - ne uklanja se iz bucket-a podrazumevanog šarda
+		ShardContext.set("novi-sad");
+		try {
+			index.recordDeleted(appointmentId);
+			assertThat(index.findLocationOverlaps(locationId, start, start.plusHours(1))).hasSize(1);
+		} finally {
+			ShardContext.clear();
+		}
+		assertThat(index.findLocationOverlaps(locationId, start, start.plusHours(1)))
+				.extracting(AppointmentInterval::id).containsExactly(appointmentId);
+		assertThat(loads()).isEqualTo(2);
+	}
+
+	private long loads() {
+		return db.statements().stream().filter(sql -> sql.contains(" from appointments ")).count();
+	}
+}
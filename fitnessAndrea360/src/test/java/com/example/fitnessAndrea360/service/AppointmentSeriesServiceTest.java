@@ -0,0 +1,140 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.dto.AppointmentSeriesOccurrenceDTO;
+import com.example.fitnessAndrea360.dto.AppointmentSeriesRequestDTO;
+import com.example.fitnessAndrea360.dto.AppointmentSeriesResultDTO;
+import com.example.fitnessAndrea360.exception.ValidationException;
+import com.example.fitnessAndrea360.repository.LocationRepository;
+import com.example.fitnessAndrea360.repository.MemberRepository;
+import com.example.fitnessAndrea360.repository.ServiceRepository;
+import com.example.fitnessAndrea360.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AppointmentSeriesServiceTest {
+
+	private static final LocalTime SIX_PM = LocalTime.of(18, 0);
+	// Prvi ponedeljak bar nedelju dana unapred - svi termini su van minimalne najave
+	private static final LocalDate MONDAY = LocalDate.now().plusWeeks(1).with(TemporalAdjusters.next(DayOfWeek.MONDAY));
+
+	private TestDatabase db;
+	private JdbcTemplate jdbcTemplate;
+	private long locationId;
+	private long serviceId;
+	private long memberId;
+	private AppointmentSeriesService seriesService;
+
+	@BeforeEach
+	void setUp() {
+		db = TestDatabase.open();
+		jdbcTemplate = db.jdbcTemplate;
+		locationId = db.location("Centar");
+		serviceId = db.service("Joga", locationId);
+		memberId = db.member(locationId, "Ana");
+		db.user("admin@example.com", "ADMIN", null);
+
+		TestServices services = new TestServices(db);
+		seriesService = db.transactional(new AppointmentSeriesService(
+				db.repository(ServiceRepository.class),
+				db.repository(MemberRepository.class),
+				db.repository(LocationRepository.class),
+				db.repository(UserRepository.class),
+				services.appointmentService,
+				services.appointmentIntervalIndex,
+				services.scheduleConflictGuard,
+				jdbcTemplate,
+				services.eventPublisher,
+				services.changeLogRepository,
+				db.shardRouter));
+
+		TestDatabase.signIn("admin@example.com", "ADMIN", Map.of());
+	}
+
+	@AfterEach
+	void tearDown() {
+		db.close();
+	}
+
+	@Test
+	void weeklyRuleSkipsExceptionsAndConflictsAndInsertsTheRest() {
+		// Član već ima termin u 17:00 druge srede - razmak od 30 minuta pokriva 18:00
+		LocalDateTime busyStart = MONDAY.plusDays(9).atTime(17, 0);
+		long busyId = db.appointment(serviceId, memberId, locationId, busyStart, 10);
+		jdbcTemplate.update("UPDATE appointments SET end_time = ? WHERE id = ?", busyStart.plusMinutes(45), busyId);
+
+		AppointmentSeriesRequestDTO request = request(MONDAY, MONDAY.plusWeeks(4).minusDays(1));
+		request.setExceptDates(Set.of(MONDAY.plusDays(14)));
+
+		AppointmentSeriesResultDTO result = seriesService.createSeries(request);
+
+		// Ponedeljak i sreda kroz 4 nedelje = 8 pojava, jedan praznik ne ulazi u pojave
+		assertThat(result.getOccurrenceCount()).isEqualTo(7);
+		assertThat(result.getCreatedCount()).isEqualTo(6);
+		assertThat(result.getSkipped()).singleElement().satisfies(skipped -> {
+			assertThat(skipped.getStartTime()).isEqualTo(MONDAY.plusDays(9).atTime(SIX_PM));
+			assertThat(skipped.getConflict()).isEqualTo("Član već ima termin u ovom vremenskom periodu");
+		});
+
+		List<Long> ids = result.getCreated().stream().map(AppointmentSeriesOccurrenceDTO::getAppointmentId).toList();
+		assertThat(jdbcTemplate.queryForList("SELECT id FROM appointments WHERE id <> ? ORDER BY start_time", Long.class, busyId))
+				.containsExactlyElementsOf(ids);
+		assertThat(jdbcTemplate.queryForList("SELECT DISTINCT end_time FROM appointments WHERE id <> ?", LocalDateTime.class, busyId))
+				.allSatisfy(end -> assertThat(end.toLocalTime()).isEqualTo(LocalTime.of(19, 0)));
+		assertThat(jdbcTemplate.queryForList("SELECT entity_id FROM change_log ORDER BY id", Long.class))
+				.containsExactlyElementsOf(ids);
+	}
+
+	@Test
+	void intervalWeeksSkipsOddWeeks() {
+		AppointmentSeriesRequestDTO request = request(MONDAY, MONDAY.plusWeeks(6).minusDays(1));
+		request.setDaysOfWeek(Set.of(DayOfWeek.MONDAY));
+		request.setIntervalWeeks(2);
+
+		AppointmentSeriesResultDTO result = seriesService.createSeries(request);
+
+		assertThat(result.getCreated()).extracting(AppointmentSeriesOccurrenceDTO::getStartTime).containsExactly(
+				MONDAY.atTime(SIX_PM), MONDAY.plusWeeks(2).atTime(SIX_PM), MONDAY.plusWeeks(4).atTime(SIX_PM));
+	}
+
+	@Test
+	void conflictRejectsWholeSeriesWhenSkippingIsOff() {
+		// Druga grupa na istoj lokaciji u isto vreme - lokacija nema razmak, ali preklapanje jeste konflikt
+		LocalDateTime taken = MONDAY.plusDays(7).atTime(SIX_PM).plusMinutes(30);
+		db.appointment(serviceId, db.member(locationId, "Marko"), locationId, taken, 10);
+
+		AppointmentSeriesRequestDTO request = request(MONDAY, MONDAY.plusWeeks(2).minusDays(1));
+		request.setSkipConflicts(false);
+
+		assertThatThrownBy(() -> seriesService.createSeries(request))
+				.isInstanceOf(ValidationException.class)
+				.hasMessageContaining("1 termina u konfliktu")
+				.hasMessageContaining("Lokacija je zauzeta u ovom terminu");
+		assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM appointments", Integer.class)).isEqualTo(1);
+	}
+
+	private AppointmentSeriesRequestDTO request(LocalDate from, LocalDate to) {
+		AppointmentSeriesRequestDTO request = new AppointmentSeriesRequestDTO();
+		request.setServiceId(serviceId);
+		request.setMemberId(memberId);
+		request.setLocationId(locationId);
+		request.setStartDate(from);
+		request.setEndDate(to);
+		request.setDaysOfWeek(Set.of(DayOfWeek.MONDAY, DayOfWeek.WEDNESDAY));
+		request.setStartTime(SIX_PM);
+		return request;
+	}
+}
@@ -0,0 +1,123 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.dto.AppointmentRequestDTO;
+import com.example.fitnessAndrea360.dto.ReservationResponseDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AppointmentServiceTest {
+
+	private static final LocalDateTime START = LocalDateTime.now().plusDays(2).withHour(18).withMinute(0).withSecond(0).withNano(0);
+	// Pet nedelja kasnije - uvek drugi mesec
+	private static final LocalDateTime MOVED = START.plusWeeks(5).withHour(10);
+
+	private TestDatabase db;
+	private JdbcTemplate jdbcTemplate;
+	private TestServices services;
+	private long locationId;
+	private long serviceId;
+	private long trainerId;
+	private long appointmentId;
+
+	@BeforeEach
+	void setUp() {
+		db = TestDatabase.open();
+		jdbcTemplate = db.jdbcTemplate;
+		services = new TestServices(db);
+		locationId = db.location("Centar");
+		serviceId = db.service("Joga", locationId);
+		trainerId = db.member(locationId, "Trener");
+		appointmentId = db.appointment(serviceId, trainerId, locationId, START, 10);
+		db.user("admin@example.com", "ADMIN", null);
+		TestDatabase.signIn("admin@example.com", "ADMIN", Map.of());
+	}
+
+	@AfterEach
+	void tearDown() {
+		db.close();
+	}
+
+	@Test
+	void movingClassUpdatesReservationCopiesAndMonthlyStats() {
+		long confirmed = reservation("Ana", "CONFIRMED");
+		long cancelled = reservation("Marko", "CANCELLED");
+		long otherAppointment = db.appointment(serviceId, trainerId, locationId, START.minusHours(3), 10);
+		long untouched = db.reservation(db.member(locationId, "Jelena"), otherAppointment,
+				db.purchase(trainerId, serviceId, 1, null), "CONFIRMED");
+		jdbcTemplate.update("INSERT INTO reservation_monthly_stats (location_id, period_start, reservation_count, cancelled_count) " +
+				"VALUES (?, ?, 3, 1)", locationId, Date.valueOf(YearMonth.from(START).atDay(1)));
+		long pilatesId = db.service("Pilates", locationId);
+		db.clearStatements();
+
+		services.appointmentService.updateAppointment(appointmentId, request(pilatesId, MOVED));
+
+		// Jedan grupni UPDATE kopija, ne po rezervaciji
+		assertThat(db.statements()).filteredOn(sql -> sql.startsWith("update reservations")).hasSize(1);
+
+		List<Map<String, Object>> copies = jdbcTemplate.queryForList(
+				"SELECT start_time, location_id, service_id FROM reservations WHERE appointment_id = ? ORDER BY id", appointmentId);
+		assertThat(copies).hasSize(2).allSatisfy(copy -> {
+			assertThat(((Timestamp) copy.get("START_TIME")).toLocalDateTime()).isEqualTo(MOVED);
+			assertThat(copy.get("LOCATION_ID")).isEqualTo(locationId);
+			assertThat(copy.get("SERVICE_ID")).isEqualTo(pilatesId);
+		});
+		assertThat(jdbcTemplate.queryForObject("SELECT service_id FROM reservations WHERE id = ?", Long.class, untouched))
+				.isEqualTo(serviceId);
+
+		// Obe rezervacije (i otkazana) prelaze u mesec novog vremena
+		assertThat(stats(START)).containsExactly(1L, 0L);
+		assertThat(stats(MOVED)).containsExactly(2L, 1L);
+
+		// Opseg datuma čita kopiju vremena iz rezervacije
+		assertThat(services.reservationService.getReservationsByDateRange(MOVED.toLocalDate(), MOVED.toLocalDate()))
+				.extracting(ReservationResponseDTO::getId).containsExactlyInAnyOrder(confirmed, cancelled);
+		assertThat(services.reservationService.getReservationsByDateRange(START.toLocalDate(), START.toLocalDate()))
+				.extracting(ReservationResponseDTO::getId).containsExactly(untouched);
+	}
+
+	@Test
+	void notesOnlyChangeLeavesCopiesAlone() {
+		reservation("Ana", "CONFIRMED");
+		db.clearStatements();
+
+		AppointmentRequestDTO request = request(serviceId, START);
+		request.setNotes("Ponesite prostirku");
+		services.appointmentService.updateAppointment(appointmentId, request);
+
+		assertThat(db.statements()).noneMatch(sql -> sql.startsWith("update reservations"));
+		assertThat(jdbcTemplate.queryForObject("SELECT notes FROM appointments WHERE id = ?", String.class, appointmentId))
+				.isEqualTo("Ponesite prostirku");
+	}
+
+	private long reservation(String firstName, String status) {
+		long memberId = db.member(locationId, firstName);
+		return db.reservation(memberId, appointmentId, db.purchase(memberId, serviceId, 1, null), status);
+	}
+
+	private AppointmentRequestDTO request(long serviceId, LocalDateTime startTime) {
+		AppointmentRequestDTO request = new AppointmentRequestDTO();
+		request.setServiceId(serviceId);
+		request.setMemberId(trainerId);
+		request.setLocationId(locationId);
+		request.setStartTime(startTime);
+		return request;
+	}
+
+	private List<Long> stats(LocalDateTime month) {
+		return jdbcTemplate.query("SELECT reservation_count, cancelled_count FROM reservation_monthly_stats " +
+						"WHERE location_id = ? AND period_start = ?",
+				(rs, rowNum) -> List.of(rs.getLong(1), rs.getLong(2)),
+				locationId, Date.valueOf(YearMonth.from(month).atDay(1))).get(0);
+	}
+}
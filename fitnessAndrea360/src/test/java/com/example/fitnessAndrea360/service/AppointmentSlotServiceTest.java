@@ -0,0 +1,92 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.dto.AvailableSlotDTO;
+import com.example.fitnessAndrea360.repository.ServiceRepository;
+import com.example.fitnessAndrea360.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AppointmentSlotServiceTest {
+
+	private static final LocalDate DAY = LocalDate.now().plusDays(3);
+
+	private TestDatabase db;
+	private long locationId;
+	private long serviceId;
+	private long memberId;
+	private AppointmentSlotService slotService;
+
+	@BeforeEach
+	void setUp() {
+		db = TestDatabase.open();
+		locationId = db.location("Centar");
+		serviceId = db.service("Joga", locationId);
+		memberId = db.member(locationId, "Ana");
+		db.user("admin@example.com", "ADMIN", null);
+
+		TestServices services = new TestServices(db);
+		slotService = db.transactional(new AppointmentSlotService(db.repository(ServiceRepository.class),
+				services.currentMemberResolver, db.repository(UserRepository.class), services.appointmentIntervalIndex));
+
+		TestDatabase.signIn("admin@example.com", "ADMIN", Map.of());
+	}
+
+	@AfterEach
+	void tearDown() {
+		db.close();
+	}
+
+	@Test
+	void slotsAdjacentToBookingsRankFirstAndOverlapsAreSkipped() {
+		db.appointment(serviceId, db.member(locationId, "Marko"), locationId, DAY.atTime(10, 0), 10);
+
+		List<AvailableSlotDTO> slots = slotService.findAvailableSlots(locationId, serviceId, DAY, DAY, null, 60, 200);
+
+		assertThat(slots).extracting(AvailableSlotDTO::getStartTime).doesNotContain(DAY.atTime(10, 0));
+		// Nadovezani (9:00 i 11:00) pa praznina od sat vremena (8:00 i 12:00), jednak skor po vremenu početka
+		assertThat(slots.subList(0, 4)).extracting(AvailableSlotDTO::getStartTime).containsExactly(
+				DAY.atTime(9, 0), DAY.atTime(11, 0), DAY.atTime(8, 0), DAY.atTime(12, 0));
+		assertThat(slots.subList(0, 4)).extracting(AvailableSlotDTO::getScore).containsExactly(100, 100, 70, 70);
+		assertThat(slots.subList(0, 4)).extracting(AvailableSlotDTO::getAdjacentToBooking)
+				.containsExactly(true, true, false, false);
+		assertThat(slots).last().satisfies(slot -> assertThat(slot.getStartTime()).isEqualTo(DAY.atTime(22, 0)));
+	}
+
+	@Test
+	void slotsStartAtLeastTwoHoursFromNow() {
+		LocalDateTime earliest = LocalDateTime.now().plusHours(2);
+
+		List<AvailableSlotDTO> slots = slotService.findAvailableSlots(locationId, serviceId,
+				LocalDate.now(), LocalDate.now().plusDays(1), null, 15, 200);
+
+		assertThat(slots).isNotEmpty().allSatisfy(slot -> assertThat(slot.getStartTime()).isAfterOrEqualTo(earliest));
+		assertThat(slots).extracting(AvailableSlotDTO::getStartTime)
+				.contains(LocalDate.now().plusDays(1).atTime(LocalTime.of(22, 0)));
+	}
+
+	@Test
+	void memberBusyElsewhereExcludesSlotsWithinTheBuffer() {
+		// Član ima termin 14:00-15:00 na drugoj lokaciji - lokacija pretrage je slobodna
+		long otherLocationId = db.location("Novi Beograd");
+		db.appointment(serviceId, memberId, otherLocationId, DAY.atTime(14, 0), 10);
+
+		List<LocalDateTime> starts = slotService.findAvailableSlots(locationId, serviceId, DAY, DAY, memberId, 30, 200)
+				.stream().map(AvailableSlotDTO::getStartTime).toList();
+
+		// Razmak od 30 minuta: poslednji početak pre termina je 12:30 (kraj 13:30), prvi posle 15:30
+		assertThat(starts).contains(DAY.atTime(12, 30), DAY.atTime(15, 30))
+				.doesNotContain(DAY.atTime(13, 0), DAY.atTime(13, 30), DAY.atTime(14, 0), DAY.atTime(14, 30),
+						DAY.atTime(15, 0));
+		assertThat(slotService.findAvailableSlots(locationId, serviceId, DAY, DAY, null, 30, 200))
+				.extracting(AvailableSlotDTO::getStartTime).contains(DAY.atTime(14, 0));
+	}
+}
@@ -0,0 +1,139 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.dto.AppointmentResponseDTO;
+import com.example.fitnessAndrea360.dto.ArchiveRunResultDTO;
+import com.example.fitnessAndrea360.dto.ArchiveStatusDTO;
+import com.example.fitnessAndrea360.dto.ReservationResponseDTO;
+import com.example.fitnessAndrea360.repository.ArchiveJdbcRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ArchiveServiceTest {
+
+	// Dve godine unazad - van granice zadržavanja od 365 dana
+	private static final LocalDateTime OLD = LocalDateTime.now().minusYears(2).withHour(18).withMinute(0).withSecond(0).withNano(0);
+	private static final LocalDateTime RECENT = LocalDateTime.now().minusDays(10).withHour(18).withMinute(0).withSecond(0).withNano(0);
+
+	private TestDatabase db;
+	private JdbcTemplate jdbcTemplate;
+	private TestServices services;
+	private ArchiveService archiveService;
+	private long locationId;
+	private long serviceId;
+	private long trainerId;
+	private long memberId;
+	private long purchaseId;
+
+	@BeforeEach
+	void setUp() {
+		db = TestDatabase.open();
+		jdbcTemplate = db.jdbcTemplate;
+		services = new TestServices(db);
+		locationId = db.location("Centar");
+		serviceId = db.service("Joga", locationId);
+		trainerId = db.member(locationId, "Trener");
+		memberId = db.member(locationId, "Ana");
+		purchaseId = db.purchase(memberId, serviceId, 10, null);
+
+		archiveService = new ArchiveService(new ArchiveJdbcRepository(jdbcTemplate), db.shardRouter,
+				db.transactionManager, new SimpleMeterRegistry());
+		ReflectionTestUtils.setField(archiveService, "retentionDays", 365);
+		// Tri završena termina u dva dela
+		ReflectionTestUtils.setField(archiveService, "batchSize", 2);
+
+		db.user("admin@example.com", "ADMIN", null);
+		TestDatabase.signIn("admin@example.com", "ADMIN", Map.of());
+	}
+
+	@AfterEach
+	void tearDown() {
+		db.close();
+	}
+
+	@Test
+	void runArchiveMovesFinishedClassesWithTheirReservationsInChunks() {
+		long completed = appointment(OLD, "COMPLETED");
+		long completedReservation = reservation(completed, "ATTENDED");
+		long otherReservation = db.reservation(db.member(locationId, "Marko"), completed, purchaseId, "NO_SHOW");
+		long cancelled = appointment(OLD.plusDays(1), "CANCELLED");
+		long cancelledReservation = reservation(cancelled, "CANCELLED");
+		long noShow = appointment(OLD.plusDays(2), "NO_SHOW");
+		// Nije završen (status) ili je mlađi od granice - ostaje u vrućem sloju
+		long stillScheduled = appointment(OLD.plusDays(3), "SCHEDULED");
+		long recent = appointment(RECENT, "COMPLETED");
+		long recentReservation = reservation(recent, "ATTENDED");
+
+		ArchiveRunResultDTO result = archiveService.runArchive();
+
+		assertThat(result.getArchivedAppointments()).isEqualTo(3);
+		assertThat(result.getArchivedReservations()).isEqualTo(3);
+		assertThat(result.getChunks()).isEqualTo(2);
+		assertThat(jdbcTemplate.queryForList("SELECT id FROM appointments ORDER BY id", Long.class))
+				.containsExactly(stillScheduled, recent);
+		assertThat(jdbcTemplate.queryForList("SELECT id FROM appointments_archive ORDER BY id", Long.class))
+				.containsExactly(completed, cancelled, noShow);
+		assertThat(jdbcTemplate.queryForList("SELECT id FROM reservations", Long.class)).containsExactly(recentReservation);
+		assertThat(jdbcTemplate.queryForList("SELECT status FROM reservations_archive ORDER BY id", String.class))
+				.containsExactly("ATTENDED", "NO_SHOW", "CANCELLED");
+		assertThat(jdbcTemplate.queryForList("SELECT id FROM reservations_archive ORDER BY id", Long.class))
+				.containsExactly(completedReservation, otherReservation, cancelledReservation);
+
+		ArchiveStatusDTO status = archiveService.getStatus();
+		assertThat(status.getHotAppointments()).isEqualTo(2);
+		assertThat(status.getArchivedAppointments()).isEqualTo(3);
+		assertThat(status.getArchivedReservations()).isEqualTo(3);
+		assertThat(status.getOldestHotStartTime()).isEqualTo(OLD.plusDays(3));
+		assertThat(status.getLastRun()).isSameAs(result);
+
+		// Drugi prolaz nema šta da premesti
+		assertThat(archiveService.runArchive().getArchivedAppointments()).isZero();
+	}
+
+	@Test
+	void historyReadsUnionArchiveAndHotTiers() {
+		long archived = appointment(OLD, "COMPLETED");
+		long archivedReservation = reservation(archived, "ATTENDED");
+		long hot = db.appointment(serviceId, memberId, locationId, RECENT, 10);
+		long hotReservation = reservation(hot, "ATTENDED");
+		archiveService.runArchive();
+
+		assertThat(services.reservationService.getReservationsByMember(memberId))
+				.extracting(ReservationResponseDTO::getId).containsExactly(archivedReservation, hotReservation);
+		assertThat(services.reservationService.getReservationsByDateRange(OLD.toLocalDate().minusDays(1), LocalDate.now()))
+				.extracting(ReservationResponseDTO::getId).containsExactlyInAnyOrder(archivedReservation, hotReservation);
+
+		// Opseg posle granice zadržavanja ne čita arhivu
+		db.clearStatements();
+		assertThat(services.reservationService.getReservationsByDateRange(RECENT.toLocalDate(), LocalDate.now()))
+				.extracting(ReservationResponseDTO::getId).containsExactly(hotReservation);
+		assertThat(db.statements()).noneMatch(sql -> sql.contains("_archive"));
+
+		// Termini člana (Ana vodi termin "hot", arhivirani termin vodi trener) i svi termini u opsegu
+		TestDatabase.signIn(jdbcTemplate.queryForObject("SELECT email FROM members WHERE id = ?", String.class, memberId),
+				"MEMBER", Map.of("memberId", memberId));
+		assertThat(services.appointmentService.getCurrentMemberAppointments())
+				.extracting(AppointmentResponseDTO::getId).containsExactly(hot);
+		assertThat(services.appointmentService.getAppointmentsByDateRange(OLD.toLocalDate(), LocalDate.now()))
+				.extracting(AppointmentResponseDTO::getId).containsExactly(archived, hot);
+	}
+
+	private long appointment(LocalDateTime start, String status) {
+		long appointmentId = db.appointment(serviceId, trainerId, locationId, start, 10);
+		jdbcTemplate.update("UPDATE appointments SET status = ? WHERE id = ?", status, appointmentId);
+		return appointmentId;
+	}
+
+	private long reservation(long appointmentId, String status) {
+		return db.reservation(memberId, appointmentId, purchaseId, status);
+	}
+}
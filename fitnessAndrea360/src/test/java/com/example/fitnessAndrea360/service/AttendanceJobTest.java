@@ -0,0 +1,131 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.event.ScheduleChangedEvent;
+import com.example.fitnessAndrea360.repository.AttendanceJdbcRepository;
+import com.example.fitnessAndrea360.repository.ChangeLogRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AttendanceJobTest {
+
+	private static final LocalDateTime NOW = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES);
+
+	private TestDatabase db;
+	private JdbcTemplate jdbcTemplate;
+	private long locationId;
+	private long serviceId;
+	private long trainerId;
+	private AttendanceJdbcRepository attendanceRepository;
+	private final List<Object> events = new CopyOnWriteArrayList<>();
+	private AttendanceJob job;
+
+	@BeforeEach
+	void setUp() {
+		db = TestDatabase.open();
+		jdbcTemplate = db.jdbcTemplate;
+		locationId = db.location("Centar");
+		serviceId = db.service("Joga", locationId);
+		trainerId = db.member(locationId, "Trener");
+
+		attendanceRepository = new AttendanceJdbcRepository(jdbcTemplate);
+		job = new AttendanceJob(attendanceRepository, new ChangeLogRepository(jdbcTemplate), events::add,
+				db.shardRouter, db.transactionManager, new SimpleMeterRegistry());
+		ReflectionTestUtils.setField(job, "enabled", true);
+		ReflectionTestUtils.setField(job, "noShowGraceMinutes", 60);
+		// Mali delovi - zatvaranje ide kroz više transakcija
+		ReflectionTestUtils.setField(job, "chunkSize", 2);
+	}
+
+	@AfterEach
+	void tearDown() {
+		db.close();
+	}
+
+	@Test
+	void processStartsRunningClassesAndClosesThoseAfterTheGracePeriod() {
+		long running = appointment(NOW.minusMinutes(30));
+		// Završen pre pola sata - još traje vreme za ručno evidentiranje, samo počinje
+		long inGrace = appointment(NOW.minusMinutes(90));
+		long attended = appointment(NOW.minusHours(3));
+		long attendedNoShow = reservation(attended, "CONFIRMED");
+		reservation(attended, "ATTENDED");
+		long nobodyCame = appointment(NOW.minusHours(3));
+		long nobodyCameNoShow = reservation(nobodyCame, "CONFIRMED");
+		long empty = appointment(NOW.minusHours(3));
+		long cancelled = appointment(NOW.minusHours(3));
+		jdbcTemplate.update("UPDATE appointments SET status = 'CANCELLED' WHERE id = ?", cancelled);
+		long future = appointment(NOW.plusHours(2));
+
+		AttendanceJob.RunResult result = job.process(NOW);
+
+		assertThat(result).isEqualTo(new AttendanceJob.RunResult(2, 2, 1, 2));
+		assertThat(status(running)).isEqualTo("IN_PROGRESS");
+		assertThat(status(inGrace)).isEqualTo("IN_PROGRESS");
+		assertThat(status(attended)).isEqualTo("COMPLETED");
+		assertThat(status(nobodyCame)).isEqualTo("NO_SHOW");
+		assertThat(status(empty)).isEqualTo("COMPLETED");
+		assertThat(status(cancelled)).isEqualTo("CANCELLED");
+		assertThat(status(future)).isEqualTo("SCHEDULED");
+		assertThat(jdbcTemplate.queryForList("SELECT id FROM reservations WHERE status = 'NO_SHOW' ORDER BY id", Long.class))
+				.containsExactly(attendedNoShow, nobodyCameNoShow);
+
+		assertThat(jdbcTemplate.queryForList("SELECT entity_id FROM change_log WHERE entity_type = 'RESERVATION' ORDER BY id",
+				Long.class)).containsExactly(attendedNoShow, nobodyCameNoShow);
+		assertThat(jdbcTemplate.queryForList("SELECT entity_id FROM change_log WHERE entity_type = 'APPOINTMENT'", Long.class))
+				.containsExactlyInAnyOrder(running, inGrace, attended, nobodyCame, empty);
+		assertThat(events).hasSize(5).allSatisfy(event -> assertThat(event).isInstanceOfSatisfying(ScheduleChangedEvent.class,
+				changed -> assertThat(changed.type()).isEqualTo(ScheduleChangedEvent.Type.APPOINTMENT_UPDATED)));
+
+		// Drugi prolaz nema šta da radi
+		assertThat(job.process(NOW)).isEqualTo(new AttendanceJob.RunResult(0, 0, 0, 0));
+	}
+
+	@Test
+	void closeMarksNoShowOnlyWhenNobodyAttended() {
+		long onlyNoShows = appointment(NOW.minusHours(3));
+		reservation(onlyNoShows, "NO_SHOW");
+		reservation(onlyNoShows, "CANCELLED");
+		long mixed = appointment(NOW.minusHours(3));
+		reservation(mixed, "NO_SHOW");
+		reservation(mixed, "ATTENDED");
+		long onlyCancelled = appointment(NOW.minusHours(3));
+		reservation(onlyCancelled, "CANCELLED");
+		long alreadyClosed = appointment(NOW.minusHours(3));
+		reservation(alreadyClosed, "NO_SHOW");
+		jdbcTemplate.update("UPDATE appointments SET status = 'CANCELLED' WHERE id = ?", alreadyClosed);
+
+		Map<String, Integer> closed = attendanceRepository.close(List.of(onlyNoShows, mixed, onlyCancelled, alreadyClosed));
+
+		assertThat(closed).containsOnly(Map.entry("NO_SHOW", 1), Map.entry("COMPLETED", 2));
+		assertThat(status(onlyNoShows)).isEqualTo("NO_SHOW");
+		assertThat(status(mixed)).isEqualTo("COMPLETED");
+		assertThat(status(onlyCancelled)).isEqualTo("COMPLETED");
+		assertThat(status(alreadyClosed)).isEqualTo("CANCELLED");
+	}
+
+	private long appointment(LocalDateTime start) {
+		return db.appointment(serviceId, trainerId, locationId, start, 10);
+	}
+
+	private long reservation(long appointmentId, String status) {
+		long memberId = db.member(locationId, "Ana");
+		return db.reservation(memberId, appointmentId, db.purchase(memberId, serviceId, 1, LocalDate.now().plusDays(30)), status);
+	}
+
+	private String status(long appointmentId) {
+		return jdbcTemplate.queryForObject("SELECT status FROM appointments WHERE id = ?", String.class, appointmentId);
+	}
+}
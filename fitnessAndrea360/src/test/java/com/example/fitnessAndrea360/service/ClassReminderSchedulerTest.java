@@ -0,0 +1,160 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.config.NotificationProperties;
+import com.example.fitnessAndrea360.event.ScheduleChangedEvent;
+import com.example.fitnessAndrea360.repository.NotificationOutboxRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Vremenski točak podsetnika: korpa po minutu slanja, izmene rezervacija kroz događaje i
+ * ponovno punjenje posle restarta (nova instanca šedulera nad istom bazom).
+ */
+class ClassReminderSchedulerTest {
+
+	private static final NotificationOutboxRepository.Type REMINDER = NotificationOutboxRepository.Type.CLASS_REMINDER;
+
+	private NotificationTestDatabase db;
+	private NotificationProperties properties;
+	private LocalDateTime now;
+
+	@BeforeEach
+	void setUp() {
+		db = new NotificationTestDatabase();
+		properties = new NotificationProperties();
+		properties.getReminders().setLeadHours(2);
+		properties.getReminders().setHorizonHours(24);
+		now = LocalDateTime.now().withSecond(0).withNano(0);
+	}
+
+	@AfterEach
+	void tearDown() {
+		db.close();
+	}
+
+	@Test
+	void reminderIsDispatchedInTheMinuteLeadHoursBeforeStart() {
+		long appointmentId = db.appointment(now.plusHours(3));
+		db.reservation(appointmentId, "Ana", "CONFIRMED");
+		db.reservation(appointmentId, "Marko", "CONFIRMED");
+
+		ClassReminderScheduler scheduler = db.reminderScheduler(properties);
+		scheduler.reload(now);
+		assertThat(scheduler.plannedReservationCount()).isEqualTo(2);
+
+		assertThat(scheduler.tick(now.plusMinutes(59))).isZero();
+		assertThat(scheduler.tick(now.plusMinutes(60))).isEqualTo(2);
+		assertThat(db.outboxCount(REMINDER)).isEqualTo(2);
+		assertThat(scheduler.plannedReservationCount()).isZero();
+	}
+
+	@Test
+	void reservationEventsUpdateTheWheelIncrementally() {
+		long appointmentId = db.appointment(now.plusHours(3));
+		long first = db.reservation(appointmentId, "Ana", "CONFIRMED");
+
+		ClassReminderScheduler scheduler = db.reminderScheduler(properties);
+		scheduler.reload(now);
+
+		db.reservation(appointmentId, "Marko", "CONFIRMED");
+		scheduler.onScheduleChanged(event(appointmentId, ScheduleChangedEvent.Type.RESERVATION_CREATED));
+		assertThat(scheduler.plannedReservationCount()).isEqualTo(2);
+
+		db.jdbcTemplate.update("UPDATE reservations SET status = 'CANCELLED' WHERE id = ?", first);
+		scheduler.onScheduleChanged(event(appointmentId, ScheduleChangedEvent.Type.RESERVATION_CANCELLED));
+		assertThat(scheduler.plannedReservationCount()).isEqualTo(1);
+
+		db.jdbcTemplate.update("UPDATE appointments SET status = 'CANCELLED' WHERE id = ?", appointmentId);
+		scheduler.onScheduleChanged(event(appointmentId, ScheduleChangedEvent.Type.APPOINTMENT_CANCELLED));
+		assertThat(scheduler.plannedReservationCount()).isZero();
+		assertThat(scheduler.tick(now.plusMinutes(60))).isZero();
+	}
+
+	@Test
+	void missedRemindersAreSentAfterRestartWithoutDuplicates() {
+		// Minut slanja je prošao dok aplikacija nije radila, termin počinje za sat vremena
+		long missed = db.appointment(now.plusHours(1));
+		db.reservation(missed, "Ana", "CONFIRMED");
+		// Termin koji je već počeo ne dobija podsetnik
+		long started = db.appointment(now.minusMinutes(10));
+		db.reservation(started, "Marko", "CONFIRMED");
+
+		ClassReminderScheduler afterRestart = db.reminderScheduler(properties);
+		afterRestart.reload(now);
+		assertThat(afterRestart.tick(now)).isEqualTo(1);
+
+		ClassReminderScheduler secondRestart = db.reminderScheduler(properties);
+		secondRestart.reload(now);
+		secondRestart.tick(now);
+		assertThat(db.outboxCount(REMINDER)).isEqualTo(1);
+	}
+
+	@Test
+	void bookingInsideLeadWindowGetsNoLateReminder() {
+		long appointmentId = db.appointment(now.plusHours(1));
+		ClassReminderScheduler scheduler = db.reminderScheduler(properties);
+		scheduler.reload(now);
+		scheduler.tick(now);
+
+		db.reservation(appointmentId, "Ana", "CONFIRMED");
+		scheduler.onScheduleChanged(event(appointmentId, ScheduleChangedEvent.Type.RESERVATION_CREATED));
+
+		assertThat(scheduler.plannedReservationCount()).isZero();
+		assertThat(scheduler.tick(now.plusMinutes(1))).isZero();
+
+		// Ni redovan reload dok točak radi ne nadoknađuje minut koji je prošao
+		scheduler.reload(now.plusMinutes(2));
+		assertThat(scheduler.plannedReservationCount()).isZero();
+		assertThat(scheduler.tick(now.plusMinutes(2))).isZero();
+		assertThat(db.outboxCount(REMINDER)).isZero();
+	}
+
+	@Test
+	void failedEnqueueReturnsRemindersToTheWheel() {
+		long appointmentId = db.appointment(now.plusHours(3));
+		db.reservation(appointmentId, "Ana", "CONFIRMED");
+		db.reservation(appointmentId, "Marko", "CONFIRMED");
+		FailingOnceOutbox outbox = new FailingOnceOutbox(db);
+		ClassReminderScheduler scheduler = new ClassReminderScheduler(outbox, db.db.shardRouter, properties);
+		scheduler.reload(now);
+
+		// Baza nedostupna u minutu slanja - kursor ide dalje, ali podsetnici ostaju u točku
+		assertThat(scheduler.tick(now.plusMinutes(60))).isZero();
+		assertThat(outbox.failures).isEqualTo(1);
+		assertThat(scheduler.plannedReservationCount()).isEqualTo(2);
+		assertThat(db.outboxCount(REMINDER)).isZero();
+
+		assertThat(scheduler.tick(now.plusMinutes(61))).isEqualTo(2);
+		assertThat(scheduler.plannedReservationCount()).isZero();
+		assertThat(db.outboxCount(REMINDER)).isEqualTo(2);
+	}
+
+	private static ScheduleChangedEvent event(long appointmentId, ScheduleChangedEvent.Type type) {
+		return new ScheduleChangedEvent(1L, appointmentId, type);
+	}
+
+	private static final class FailingOnceOutbox extends NotificationOutboxRepository {
+
+		private int failures;
+
+		FailingOnceOutbox(NotificationTestDatabase db) {
+			super(db.jdbcTemplate);
+		}
+
+		@Override
+		public int enqueueReminders(List<Long> reservationIds, LocalDateTime now) {
+			if (failures == 0) {
+				failures++;
+				throw new DataAccessResourceFailureException("Veza sa bazom je prekinuta");
+			}
+			return super.enqueueReminders(reservationIds, now);
+		}
+	}
+}
@@ -0,0 +1,202 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.dto.CreditBalanceDTO;
+import com.example.fitnessAndrea360.dto.LedgerVerificationResultDTO;
+import com.example.fitnessAndrea360.event.EntitlementChangedEvent;
+import com.example.fitnessAndrea360.exception.ValidationException;
+import com.example.fitnessAndrea360.model.Member;
+import com.example.fitnessAndrea360.model.Purchase;
+import com.example.fitnessAndrea360.model.Service;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CreditLedgerServiceTest {
+
+	private TestDatabase db;
+	private JdbcTemplate jdbcTemplate;
+	private long memberId;
+	private long serviceId;
+	// Termin usluge kupovine i termin druge usluge
+	private long appointmentId;
+	private long otherServiceAppointmentId;
+	private EntitlementCache entitlementCache;
+	private CreditLedgerService ledgerService;
+
+	@BeforeEach
+	void setUp() {
+		db = TestDatabase.open();
+		jdbcTemplate = db.jdbcTemplate;
+		long locationId = db.location("Centar");
+		serviceId = db.service("Pilates", locationId);
+		memberId = db.member(locationId, "Ana");
+		LocalDateTime start = LocalDateTime.now().plusDays(1).withNano(0);
+		appointmentId = db.appointment(serviceId, memberId, locationId, start, 10);
+		otherServiceAppointmentId = db.appointment(db.service("Joga", locationId), memberId, locationId, start, 10);
+
+		entitlementCache = new EntitlementCache(db.creditLedgerRepository(), 10, 100);
+		// Bez transakcije slušalac radi odmah (fallbackExecution)
+		ledgerService = db.ledgerService(entitlementCache,
+				event -> entitlementCache.onEntitlementChanged((EntitlementChangedEvent) event));
+	}
+
+	@AfterEach
+	void tearDown() {
+		db.close();
+	}
+
+	@Test
+	void consumeAndRefundKeepRemainingUsesEqualToLedger() {
+		Purchase purchase = purchase(insertPurchase(2, LocalDate.now().plusDays(30)), 2);
+		ledgerService.grant(purchase);
+
+		assertThat(ledgerService.consume(purchase, 100L)).isEqualTo(1);
+		assertThat(ledgerService.consume(purchase, 101L)).isZero();
+		assertThat(status(purchase)).isEqualTo("USED");
+		assertThatThrownBy(() -> ledgerService.consume(purchase, 102L))
+				.isInstanceOf(ValidationException.class)
+				.hasMessage(CreditLedgerService.NO_CREDITS_MESSAGE);
+
+		// Vraćena sesija ponovo otvara kupovinu
+		ledgerService.refund(purchase, 101L);
+		assertThat(remainingUses(purchase)).isEqualTo(1);
+		assertThat(status(purchase)).isEqualTo("ACTIVE");
+		assertThat(ledgerBalance()).isEqualTo(1);
+		assertThat(entitlementCache.forMember(memberId).remaining(serviceId, LocalDate.now())).isEqualTo(1);
+		assertThat(ledgerService.getEntries(memberId, 10)).extracting("entryType")
+				.containsExactly("REFUND", "CONSUME", "CONSUME", "GRANT");
+
+		LedgerVerificationResultDTO result = ledgerService.verify();
+		assertThat(result.getPurchasesChecked()).isEqualTo(1);
+		assertThat(result.getProjectionDrift()).isZero();
+		assertThat(result.getCacheDrift()).isZero();
+	}
+
+	@Test
+	void bookingPathsUseGuardedDecrementAndCloseEmptyPurchase() {
+		Purchase single = purchase(insertPurchase(1, LocalDate.now().plusDays(30)), 1);
+		Purchase batch = purchase(insertPurchase(2, null), 2);
+
+		// Brza putanja: pogrešan član ili usluga termina ne troše sesiju
+		assertThat(ledgerService.tryConsumeForAppointment(single.getId(), memberId + 1, appointmentId)).isFalse();
+		assertThat(ledgerService.tryConsumeForAppointment(single.getId(), memberId, otherServiceAppointmentId)).isFalse();
+		assertThat(ledgerService.tryConsumeForAppointment(single.getId(), memberId, appointmentId)).isTrue();
+		assertThat(ledgerService.tryConsumeForAppointment(single.getId(), memberId, appointmentId)).isFalse();
+		assertThat(remainingUses(single)).isZero();
+		assertThat(status(single)).isEqualTo("USED");
+
+		// Grupna putanja: prekoračenje se odbija umesto da ode ispod nule
+		assertThatThrownBy(() -> ledgerService.consumeLocked(Map.of(batch.getId(), 3)))
+				.isInstanceOf(ValidationException.class)
+				.hasMessage(CreditLedgerService.NO_CREDITS_MESSAGE);
+		assertThat(remainingUses(batch)).isEqualTo(2);
+		ledgerService.consumeLocked(Map.of(batch.getId(), 2));
+		assertThat(remainingUses(batch)).isZero();
+		assertThat(status(batch)).isEqualTo("USED");
+	}
+
+	@Test
+	void onlyUnusedPurchaseIsCancelled() {
+		Purchase unused = purchase(insertPurchase(3, LocalDate.now().plusDays(30)), 3);
+		Purchase started = purchase(insertPurchase(3, LocalDate.now().plusDays(30)), 3);
+		ledgerService.grant(unused);
+		ledgerService.grant(started);
+		ledgerService.consume(started, 100L);
+
+		// Refund je moguć samo dok nijedna sesija nije potrošena
+		assertThat(ledgerService.cancelUnused(started)).isFalse();
+		assertThat(ledgerService.cancelUnused(unused)).isTrue();
+		assertThat(ledgerService.cancelUnused(unused)).isFalse();
+
+		assertThat(status(unused)).isEqualTo("CANCELLED");
+		assertThat(remainingUses(unused)).isZero();
+		assertThat(status(started)).isEqualTo("ACTIVE");
+		assertThat(entitlementCache.forMember(memberId).remaining(serviceId, LocalDate.now())).isEqualTo(2);
+		assertThat(ledgerService.verify().getProjectionDrift()).isZero();
+	}
+
+	@Test
+	void openingGrantAndExpiryAreWrittenOnce() {
+		Purchase expired = purchase(insertPurchase(4, LocalDate.now().minusDays(1)), 4);
+		Purchase valid = purchase(insertPurchase(5, LocalDate.now().plusDays(10)), 5);
+
+		// Kupovine pre dnevnika dobijaju početno stanje - ponovljeno pokretanje ga ne duplira
+		ledgerService.onApplicationReady();
+		ledgerService.onApplicationReady();
+		assertThat(ledgerBalance()).isEqualTo(9);
+		// Istekla kupovina se ne računa u pravo na rezervaciju ni pre noćnog otpisa
+		assertThat(entitlementCache.forMember(memberId).remaining(serviceId, LocalDate.now())).isEqualTo(5);
+
+		assertThat(ledgerService.expirePurchases()).isEqualTo(1);
+		assertThat(ledgerService.expirePurchases()).isZero();
+		assertThat(remainingUses(expired)).isZero();
+		assertThat(status(expired)).isEqualTo("EXPIRED");
+		assertThat(ledgerBalance()).isEqualTo(5);
+
+		// Istekla kupovina ne dobija sesiju nazad
+		ledgerService.refund(expired, 200L);
+		assertThat(remainingUses(expired)).isZero();
+		assertThat(remainingUses(valid)).isEqualTo(5);
+		assertThat(ledgerService.verify().getProjectionDrift()).isZero();
+	}
+
+	@Test
+	void verificationReportsProjectionDriftAndEvictsStaleCache() {
+		Purchase drifted = purchase(insertPurchase(3, null), 3);
+		Purchase elsewhere = purchase(insertPurchase(3, null), 3);
+		ledgerService.grant(drifted);
+		ledgerService.grant(elsewhere);
+		assertThat(entitlementCache.forMember(memberId).remaining(serviceId, LocalDate.now())).isEqualTo(6);
+
+		// remaining_uses izmenjen mimo dnevnika i potrošnja na "drugoj instanci" koju keš ne vidi
+		jdbcTemplate.update("UPDATE purchases SET remaining_uses = 9 WHERE id = ?", drifted.getId());
+		jdbcTemplate.update("UPDATE purchases SET remaining_uses = 2 WHERE id = ?", elsewhere.getId());
+		jdbcTemplate.update("INSERT INTO credit_ledger (member_id, service_id, purchase_id, entry_type, delta) " +
+				"VALUES (?, ?, ?, 'CONSUME', -1)", memberId, serviceId, elsewhere.getId());
+
+		LedgerVerificationResultDTO result = ledgerService.verify();
+		assertThat(result.getProjectionDrift()).isEqualTo(1);
+		assertThat(result.getDriftedPurchaseIds()).containsExactly(drifted.getId());
+		assertThat(result.getCacheDrift()).isEqualTo(1);
+		assertThat(entitlementCache.forMember(memberId).credit(elsewhere.getId(), LocalDate.now()))
+				.hasValueSatisfying(credit -> assertThat(credit.remainingUses()).isEqualTo(2));
+	}
+
+	private int ledgerBalance() {
+		return ledgerService.getBalances(memberId).stream().mapToInt(CreditBalanceDTO::getBalance).sum();
+	}
+
+	private long insertPurchase(int remainingUses, LocalDate expiryDate) {
+		return db.purchase(memberId, serviceId, remainingUses, expiryDate);
+	}
+
+	private Purchase purchase(long id, int remainingUses) {
+		Member member = new Member();
+		member.setId(memberId);
+		Service service = new Service();
+		service.setId(serviceId);
+		Purchase purchase = new Purchase();
+		purchase.setId(id);
+		purchase.setMember(member);
+		purchase.setService(service);
+		purchase.setQuantity(remainingUses);
+		purchase.setRemainingUses(remainingUses);
+		return purchase;
+	}
+
+	private int remainingUses(Purchase purchase) {
+		return jdbcTemplate.queryForObject("SELECT remaining_uses FROM purchases WHERE id = ?", Integer.class, purchase.getId());
+	}
+
+	private String status(Purchase purchase) {
+		return jdbcTemplate.queryForObject("SELECT status FROM purchases WHERE id = ?", String.class, purchase.getId());
+	}
+}
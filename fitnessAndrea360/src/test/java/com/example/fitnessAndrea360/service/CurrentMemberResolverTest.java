@@ -0,0 +1,92 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.exception.ResourceNotFoundException;
+import com.example.fitnessAndrea360.repository.MemberRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CurrentMemberResolverTest {
+
+	private TestDatabase db;
+	private long locationId;
+	private CurrentMemberResolver resolver;
+
+	@BeforeEach
+	void setUp() {
+		db = TestDatabase.open();
+		locationId = db.location("Centar");
+		resolver = new CurrentMemberResolver(db.repository(MemberRepository.class), 100);
+	}
+
+	@AfterEach
+	void tearDown() {
+		RequestContextHolder.resetRequestAttributes();
+		db.close();
+	}
+
+	@Test
+	void memberIdClaimNeedsNoQuery() {
+		TestDatabase.signIn("ana@example.com", "MEMBER", Map.of("userId", 3L, "memberId", 30L));
+
+		assertThat(resolver.currentMemberId()).isEqualTo(30L);
+		assertThat(memberQueries()).isZero();
+	}
+
+	@Test
+	void userIdIsLookedUpOnceAndCached() {
+		long memberId = db.member(locationId, "Marko");
+		long userId = userOf(memberId);
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+		TestDatabase.signIn("marko@example.com", "MEMBER", Map.of("userId", userId));
+
+		assertThat(resolver.currentMemberId()).isEqualTo(memberId);
+		assertThat(request.getAttribute(CurrentMemberResolver.class.getName() + ".memberId")).isEqualTo(memberId);
+
+		// Novi zahtev istog korisnika - keš procesa, bez upita
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+		assertThat(resolver.currentMemberId()).isEqualTo(memberId);
+		assertThat(memberQueries()).isEqualTo(1);
+	}
+
+	@Test
+	void employeeHasNoMemberAndIsNotCached() {
+		long userId = db.user("zaposleni@example.com", "EMPLOYEE", locationId);
+		TestDatabase.signIn("zaposleni@example.com", "EMPLOYEE", Map.of("userId", userId, "locationId", locationId));
+
+		assertThat(resolver.findCurrentMemberId()).isEmpty();
+		assertThatThrownBy(resolver::currentMemberId)
+				.isInstanceOf(ResourceNotFoundException.class)
+				.hasMessage("Član nije pronađen");
+		// Prazan rezultat se ne pamti - korisnik može kasnije postati član
+		assertThat(memberQueries()).isEqualTo(2);
+	}
+
+	@Test
+	void tokenWithoutClaimsFallsBackToEmail() {
+		long memberId = db.member(locationId, "Stari");
+		String email = db.jdbcTemplate.queryForObject("SELECT email FROM members WHERE id = ?", String.class, memberId);
+		TestDatabase.signIn(email, "MEMBER", Map.of());
+
+		assertThat(resolver.currentMemberId()).isEqualTo(memberId);
+		assertThat(resolver.currentMemberId()).isEqualTo(memberId);
+		assertThat(db.statements()).singleElement().satisfies(sql -> assertThat(sql).contains("email"));
+	}
+
+	private long userOf(long memberId) {
+		return db.jdbcTemplate.queryForObject("SELECT user_id FROM members WHERE id = ?", Long.class, memberId);
+	}
+
+	private long memberQueries() {
+		return db.statements().stream().filter(sql -> sql.contains(" from members ")).count();
+	}
+}
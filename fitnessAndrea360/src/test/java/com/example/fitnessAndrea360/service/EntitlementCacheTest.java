@@ -0,0 +1,99 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.config.ShardingProperties;
+import com.example.fitnessAndrea360.event.EntitlementChangedEvent;
+import com.example.fitnessAndrea360.repository.CreditLedgerRepository;
+import com.example.fitnessAndrea360.repository.CreditLedgerRepository.Credit;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EntitlementCacheTest {
+
+	private static final LocalDate TODAY = LocalDate.of(2026, 10, 19);
+	private static final long PILATES = 1L;
+	private static final long YOGA = 2L;
+
+	private final StubRepository repository = new StubRepository();
+
+	@Test
+	void earliestExpiringValidPurchaseIsChosen() {
+		repository.credits.put(7L, List.of(
+				new Credit(10L, PILATES, 4, null),
+				new Credit(11L, PILATES, 2, TODAY.plusDays(5)),
+				new Credit(12L, PILATES, 3, TODAY.minusDays(1)),
+				new Credit(13L, YOGA, 1, TODAY)));
+		EntitlementCache.MemberEntitlements entitlements = new EntitlementCache(repository, 10, 100).forMember(7L);
+
+		// Istekla kupovina (12) se preskače, kupovina bez isteka je poslednja
+		assertThat(entitlements.earliestExpiring(PILATES, TODAY)).map(Credit::purchaseId).contains(11L);
+		// Redosled kojim se pokušava potrošnja kada član ne izabere kupovinu
+		assertThat(entitlements.bookable(PILATES, TODAY)).extracting(Credit::purchaseId).containsExactly(11L, 10L);
+		assertThat(entitlements.remaining(PILATES, TODAY)).isEqualTo(6);
+		assertThat(entitlements.credit(12L, TODAY)).isEmpty();
+		// Kupovina važi i na dan isteka
+		assertThat(entitlements.canBook(YOGA, TODAY)).isTrue();
+		assertThat(entitlements.canBook(YOGA, TODAY.plusDays(1))).isFalse();
+		assertThat(entitlements.canBook(3L, TODAY)).isFalse();
+	}
+
+	@Test
+	void memberIsLoadedOnceUntilEntitlementsChange() {
+		repository.credits.put(7L, List.of(new Credit(10L, PILATES, 1, null)));
+		EntitlementCache cache = new EntitlementCache(repository, 10, 100);
+
+		cache.forMember(7L);
+		cache.forMember(7L);
+		assertThat(repository.loads).containsExactly(7L);
+
+		// Događaj sa drugog šarda ne dira člana sa istim ID-em na ovom šardu
+		cache.onEntitlementChanged(new EntitlementChangedEvent("shard-2", 7L, EntitlementChangedEvent.Type.PURCHASE_GRANTED));
+		cache.forMember(7L);
+		assertThat(repository.loads).containsExactly(7L);
+
+		repository.credits.put(7L, List.of());
+		cache.onEntitlementChanged(new EntitlementChangedEvent(ShardingProperties.DEFAULT_SHARD, 7L,
+				EntitlementChangedEvent.Type.RESERVATION_CONSUMED));
+		assertThat(cache.forMember(7L).canBook(PILATES, TODAY)).isFalse();
+		assertThat(repository.loads).containsExactly(7L, 7L);
+	}
+
+	@Test
+	void leastRecentlyUsedMemberIsEvicted() {
+		EntitlementCache cache = new EntitlementCache(repository, 10, 2);
+
+		cache.forMember(1L);
+		cache.forMember(2L);
+		cache.forMember(1L);
+		cache.forMember(3L);
+		cache.forMember(1L);
+		cache.forMember(2L);
+
+		assertThat(repository.loads).containsExactly(1L, 2L, 3L, 2L);
+	}
+
+	// Repozitorijum bez baze - vraća zadate kupovine i beleži učitavanja
+	private static final class StubRepository extends CreditLedgerRepository {
+
+		private final Map<Long, List<Credit>> credits = new HashMap<>();
+		private final List<Long> loads = new ArrayList<>();
+
+		private StubRepository() {
+			super(new JdbcTemplate(), new DriverManagerDataSource(), 100);
+		}
+
+		@Override
+		public List<Credit> findCredits(Long memberId) {
+			loads.add(memberId);
+			return credits.getOrDefault(memberId, List.of());
+		}
+	}
+}
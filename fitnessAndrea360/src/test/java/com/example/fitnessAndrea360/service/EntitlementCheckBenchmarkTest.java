@@ -0,0 +1,90 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.repository.CreditLedgerRepository;
+import com.example.fitnessAndrea360.repository.CreditLedgerRepository.Credit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Propusnost provere "može li član da rezerviše" preko EntitlementCache-a (cilj: 10k provera u sekundi
+ * po čvoru). Učitavanje člana je simulirano kašnjenjem jednog upita. Pokreće se ručno:
+ * mvn test -Dtest=EntitlementCheckBenchmarkTest -Dbenchmark=true
+ * (opciono -Dbenchmark.checks=200000 -Dbenchmark.members=5000 -Dbenchmark.threads=8).
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class EntitlementCheckBenchmarkTest {
+
+	@Test
+	void checksPerSecond() throws Exception {
+		int checks = Integer.getInteger("benchmark.checks", 200_000);
+		int members = Integer.getInteger("benchmark.members", 5000);
+		int threads = Integer.getInteger("benchmark.threads", 8);
+		LocalDate today = LocalDate.now();
+
+		EntitlementCache cache = new EntitlementCache(new SlowRepository(), 10, members);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			long start = System.nanoTime();
+			List<Future<Integer>> futures = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				futures.add(executor.submit(() -> {
+					int allowed = 0;
+					ThreadLocalRandom random = ThreadLocalRandom.current();
+					for (int i = 0; i < checks / threads; i++) {
+						long memberId = random.nextLong(1, members + 1);
+						if (cache.forMember(memberId).canBook(random.nextLong(1, 6), today)) {
+							allowed++;
+						}
+					}
+					return allowed;
+				}));
+			}
+			int allowed = 0;
+			for (Future<Integer> future : futures) {
+				allowed += future.get();
+			}
+			double seconds = (System.nanoTime() - start) / 1e9;
+			double perSecond = checks / seconds;
+
+			System.out.printf("Entitlement benchmark: %d provera (%d članova, %d niti, %d dozvoljeno) za %.2f s (%.0f provera/s)%n",
+					checks, members, threads, allowed, seconds, perSecond);
+			assertThat(perSecond).isGreaterThan(10_000);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	// Član ima tri kupovine za tri od pet usluga; učitavanje traje kao jedan upit (~1 ms)
+	private static final class SlowRepository extends CreditLedgerRepository {
+
+		private SlowRepository() {
+			super(new JdbcTemplate(), new DriverManagerDataSource(), 100);
+		}
+
+		@Override
+		public List<Credit> findCredits(Long memberId) {
+			try {
+				Thread.sleep(1);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			long base = memberId * 10;
+			return List.of(
+					new Credit(base + 1, memberId % 5 + 1, 3, LocalDate.now().plusDays(20)),
+					new Credit(base + 2, (memberId + 1) % 5 + 1, 1, null),
+					new Credit(base + 3, (memberId + 2) % 5 + 1, 5, LocalDate.now().minusDays(1)));
+		}
+	}
+}
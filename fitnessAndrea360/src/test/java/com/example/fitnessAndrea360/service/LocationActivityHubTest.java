@@ -0,0 +1,149 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.event.ScheduleChangedEvent;
+import com.example.fitnessAndrea360.repository.ReservationJdbcRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LocationActivityHubTest {
+
+	private static final long LOCATION_ID = 1L;
+
+	private LocationActivityHub hub;
+	private BlockingEmitter blocked;
+
+	@AfterEach
+	void tearDown() {
+		if (blocked != null) {
+			blocked.release.countDown();
+		}
+		hub.shutdown();
+	}
+
+	@Test
+	void stalledSubscriberIsEvictedAndOthersKeepReceiving() throws Exception {
+		// Jedna nit slanja - bez izbacivanja bi zaglavljeni pretplatnik zadržao sve ostale
+		hub = hub(64, 1, 50);
+		blocked = new BlockingEmitter();
+		hub.subscribe(LOCATION_ID, blocked);
+		hub.onScheduleChanged(changed(10L));
+		assertThat(blocked.sending.await(5, TimeUnit.SECONDS)).isTrue();
+
+		RecordingEmitter other = new RecordingEmitter();
+		hub.subscribe(LOCATION_ID, other);
+		hub.onScheduleChanged(changed(11L));
+		assertThat(hub.subscriberCount(LOCATION_ID)).isEqualTo(2);
+
+		Thread.sleep(100);
+		hub.evictStalledSubscribers();
+
+		assertThat(hub.subscriberCount(LOCATION_ID)).isEqualTo(1);
+		assertThat(other.received.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(other.frames).singleElement().satisfies(frame -> assertThat(frame)
+				.startsWith("event:activity").contains("\"appointmentId\":11"));
+
+		// Izbačeni pretplatnik više ne dobija događaje ni kada se upis oslobodi
+		blocked.release.countDown();
+		hub.onScheduleChanged(changed(12L));
+		assertThat(other.awaitFrames(2)).isTrue();
+		assertThat(blocked.frames).singleElement().satisfies(frame -> assertThat(frame).contains("\"appointmentId\":10"));
+	}
+
+	@Test
+	void fullBufferDropsOldestAndReportsDroppedCount() throws Exception {
+		hub = hub(1, 1, 60_000);
+		blocked = new BlockingEmitter();
+		hub.subscribe(LOCATION_ID, blocked);
+		hub.onScheduleChanged(changed(10L));
+		assertThat(blocked.sending.await(5, TimeUnit.SECONDS)).isTrue();
+
+		// Bafer od jednog događaja: 11 i 12 se odbacuju, ostaje 13
+		hub.onScheduleChanged(changed(11L));
+		hub.onScheduleChanged(changed(12L));
+		hub.onScheduleChanged(changed(13L));
+		blocked.release.countDown();
+
+		assertThat(blocked.awaitFrames(3)).isTrue();
+		assertThat(blocked.frames).hasSize(3);
+		assertThat(blocked.frames.get(0)).contains("\"appointmentId\":10");
+		assertThat(blocked.frames.get(1)).isEqualTo("event:dropped\ndata:2\n\n");
+		assertThat(blocked.frames.get(2)).contains("\"appointmentId\":13");
+		assertThat(hub.subscriberCount(LOCATION_ID)).isEqualTo(1);
+	}
+
+	private static LocationActivityHub hub(int bufferSize, int sendThreads, long sendTimeoutMillis) {
+		return new LocationActivityHub(new NoAppointmentState(), new ObjectMapper().findAndRegisterModules(),
+				bufferSize, 30, sendThreads, sendTimeoutMillis);
+	}
+
+	private static ScheduleChangedEvent changed(Long appointmentId) {
+		return new ScheduleChangedEvent(LOCATION_ID, appointmentId, ScheduleChangedEvent.Type.RESERVATION_CREATED);
+	}
+
+	private static final class NoAppointmentState extends ReservationJdbcRepository {
+
+		NoAppointmentState() {
+			super(new JdbcTemplate());
+		}
+
+		@Override
+		public Optional<Object[]> findAppointmentState(Long appointmentId) {
+			return Optional.empty();
+		}
+	}
+
+	// Beleži poslate okvire kao tekst koji bi otišao klijentu
+	private static class RecordingEmitter extends SseEmitter {
+
+		final List<String> frames = new CopyOnWriteArrayList<>();
+		final CountDownLatch received = new CountDownLatch(1);
+
+		@Override
+		public void send(Set<ResponseBodyEmitter.DataWithMediaType> items) throws IOException {
+			frames.add(items.stream().map(item -> item.getData().toString()).collect(Collectors.joining()));
+			received.countDown();
+		}
+
+		boolean awaitFrames(int count) throws InterruptedException {
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+			while (frames.size() < count && System.nanoTime() < deadline) {
+				Thread.sleep(10);
+			}
+			return frames.size() >= count;
+		}
+	}
+
+	// Klijent koji ne čita: prvo slanje blokira dok test ne pusti upis
+	private static final class BlockingEmitter extends RecordingEmitter {
+
+		final CountDownLatch sending = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+
+		@Override
+		public void send(Set<ResponseBodyEmitter.DataWithMediaType> items) throws IOException {
+			sending.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException(e);
+			}
+			super.send(items);
+		}
+	}
+}
@@ -0,0 +1,136 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.dto.MemberImportResultDTO;
+import com.example.fitnessAndrea360.dto.MemberImportRowErrorDTO;
+import com.example.fitnessAndrea360.repository.LocationRepository;
+import com.example.fitnessAndrea360.repository.RoleRepository;
+import com.example.fitnessAndrea360.repository.UserCopyJdbcRepository;
+import com.example.fitnessAndrea360.repository.UserRepository;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MemberImportServiceTest {
+
+	private static final String HEADER = "firstName,lastName,email,phone,dateOfBirth,gender,address," +
+			"membershipStartDate,membershipEndDate,username,password\n";
+
+	private TestDatabase db;
+	private JdbcTemplate jdbcTemplate;
+	private long locationId;
+	private MemberImportService importService;
+	private int encodedInTransaction;
+
+	@BeforeEach
+	void setUp() {
+		db = TestDatabase.open();
+		jdbcTemplate = db.jdbcTemplate;
+		locationId = db.location("Centar");
+		db.role("MEMBER");
+		db.user("admin@example.com", "ADMIN", null);
+
+		UserCopyJdbcRepository userCopyRepository = new UserCopyJdbcRepository(jdbcTemplate);
+		importService = new MemberImportService(
+				db.repository(UserRepository.class),
+				db.repository(LocationRepository.class),
+				db.repository(RoleRepository.class),
+				new TestServices(db).memberService,
+				passwordEncoder(),
+				Validation.buildDefaultValidatorFactory().getValidator(),
+				jdbcTemplate,
+				db.transactionManager,
+				db.shardRouter,
+				new GlobalUserWriter(db.repository(UserRepository.class), userCopyRepository, db.shardRouter),
+				userCopyRepository,
+				2);
+
+		TestDatabase.signIn("admin@example.com", "ADMIN", Map.of());
+	}
+
+	@AfterEach
+	void tearDown() {
+		db.close();
+	}
+
+	@Test
+	void invalidRowsAreReportedAndFailedChunkDoesNotUndoOthers() {
+		String csv = HEADER +
+				row("ana@example.com", "ana", "0641234567", "1990-01-01") +
+				row("marko@example.com", "marko", "0641234568", "1990-01-01") +
+				// Blok 2: drugi red pada na upisu (format dozvoljava 21 znak, kolona phone ima 20) - ceo blok se poništava
+				row("jovan@example.com", "jovan", "0641234569", "1990-01-01") +
+				row("mila@example.com", "mila", "+381 64 123 4567 8901", "1990-01-01") +
+				row("ana@example.com", "ana2", "0641234570", "1990-01-01") +
+				row("neda@example.com", "neda", "0641234571", "1990-13-01") +
+				row("pera@example.com", "pera", "0641234572", "1990-01-01");
+
+		MemberImportResultDTO result = importService.importMembers(file(csv), locationId, false);
+
+		assertThat(result.getTotalRows()).isEqualTo(7);
+		assertThat(result.getImportedCount()).isEqualTo(3);
+		assertThat(result.getFailedCount()).isEqualTo(4);
+		assertThat(result.getErrors()).extracting(MemberImportRowErrorDTO::getLine).containsExactly(4, 5, 6, 7);
+		assertThat(result.getErrors().get(2).getMessages()).containsExactly("Email već postoji u sistemu");
+		assertThat(result.getErrors().get(3).getMessages().get(0)).startsWith("Neispravan datum u koloni dateOfBirth");
+
+		// Korisnici poništenog bloka nisu ostali bez člana
+		assertThat(jdbcTemplate.queryForList("SELECT username FROM users WHERE username IS NOT NULL ORDER BY id", String.class))
+				.containsExactly("ana", "marko", "pera");
+		assertThat(jdbcTemplate.queryForList("SELECT DISTINCT location_id FROM members", Long.class))
+				.containsExactly(locationId);
+		assertThat(encodedInTransaction).isZero();
+	}
+
+	@Test
+	void dryRunValidatesWithTheImportLocationAndWritesNothing() {
+		MemberImportResultDTO result = importService.importMembers(file(HEADER +
+				row("ana@example.com", "ana", "0641234567", "1990-01-01") +
+				row("mladi@example.com", "mladi", "0641234568", LocalDate.now().minusYears(10).toString())), locationId, true);
+
+		assertThat(result.getLocationId()).isEqualTo(locationId);
+		assertThat(result.getImportedCount()).isZero();
+		assertThat(result.getErrors()).singleElement()
+				.satisfies(error -> assertThat(error.getMessages()).containsExactly("Član mora biti punoletan (18+ godina)"));
+		assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM members", Integer.class)).isZero();
+		assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Integer.class)).isEqualTo(1);
+	}
+
+	private static String row(String email, String username, String phone, String dateOfBirth) {
+		LocalDate today = LocalDate.now();
+		return String.join(",", "Ime", "Prezime", email, phone, dateOfBirth, "FEMALE", "Bulevar 1",
+				today.toString(), today.plusMonths(3).toString(), username, "lozinka123") + "\n";
+	}
+
+	private static MockMultipartFile file(String csv) {
+		return new MockMultipartFile("file", "members.csv", "text/csv", csv.getBytes(StandardCharsets.UTF_8));
+	}
+
+	// Beleži heširanje unutar transakcije - BCrypt ne sme da drži konekciju bloka
+	private PasswordEncoder passwordEncoder() {
+		return new PasswordEncoder() {
+			@Override
+			public String encode(CharSequence rawPassword) {
+				if (TransactionSynchronizationManager.isActualTransactionActive()) {
+					encodedInTransaction++;
+				}
+				return "hash:" + rawPassword;
+			}
+
+			@Override
+			public boolean matches(CharSequence rawPassword, String encodedPassword) {
+				return encodedPassword.equals("hash:" + rawPassword);
+			}
+		};
+	}
+}
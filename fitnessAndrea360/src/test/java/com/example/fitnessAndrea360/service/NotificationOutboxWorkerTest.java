@@ -0,0 +1,160 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.config.NotificationProperties;
+import com.example.fitnessAndrea360.repository.NotificationOutboxRepository;
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.GreenMailUtil;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.net.ServerSocket;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Outbox -> worker -> lokalni SMTP (GreenMail): slanje, grupisanje po terminu i ponovni pokušaji.
+ */
+class NotificationOutboxWorkerTest {
+
+	@RegisterExtension
+	static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+	private NotificationTestDatabase db;
+	private NotificationProperties properties;
+
+	@BeforeEach
+	void setUp() {
+		db = new NotificationTestDatabase();
+		properties = new NotificationProperties();
+		properties.setWorkerThreads(2);
+	}
+
+	@AfterEach
+	void tearDown() {
+		db.close();
+	}
+
+	@Test
+	void bookingConfirmationIsSentOncePerReservation() throws Exception {
+		long reservationId = db.reservation(db.appointment(), "Ana", "CONFIRMED");
+
+		// Ponovljen upis istog obaveštenja (npr. ponovljena transakcija) ne pravi duplikat
+		db.outboxRepository.enqueueForReservation(NotificationOutboxRepository.Type.BOOKING_CONFIRMED, reservationId);
+		db.outboxRepository.enqueueForReservation(NotificationOutboxRepository.Type.BOOKING_CONFIRMED, reservationId);
+
+		NotificationOutboxWorker worker = db.worker(greenMail.getSmtp().getPort(), properties);
+		try {
+			assertThat(worker.drainOnce()).isEqualTo(1);
+			assertThat(worker.drainOnce()).isZero();
+		} finally {
+			worker.shutdown();
+		}
+
+		MimeMessage[] received = greenMail.getReceivedMessages();
+		assertThat(received).hasSize(1);
+		assertThat(received[0].getSubject()).startsWith("Potvrda rezervacije: Joga");
+		assertThat(GreenMailUtil.getBody(received[0])).contains("Ana Petrovi", "18:00", "Centar");
+		assertThat(db.outboxRow(reservationId)).containsEntry("STATUS", "SENT").containsEntry("ATTEMPTS", 1);
+	}
+
+	@Test
+	void appointmentCancellationGoesToAllConfirmedMembers() {
+		long appointmentId = db.appointment();
+		db.reservation(appointmentId, "Ana", "CONFIRMED");
+		db.reservation(appointmentId, "Marko", "CONFIRMED");
+		db.reservation(appointmentId, "Jelena", "CANCELLED");
+
+		assertThat(db.outboxRepository.enqueueForAppointment(
+				NotificationOutboxRepository.Type.APPOINTMENT_CANCELLED, appointmentId)).isEqualTo(2);
+
+		NotificationOutboxWorker worker = db.worker(greenMail.getSmtp().getPort(), properties);
+		try {
+			assertThat(worker.drainOnce()).isEqualTo(2);
+		} finally {
+			worker.shutdown();
+		}
+
+		assertThat(Arrays.stream(greenMail.getReceivedMessages()).map(GreenMailUtil::getBody))
+				.hasSize(2)
+				.allMatch(body -> body.contains("otkazan"))
+				.anyMatch(body -> body.contains("Ana Petrovi"))
+				.anyMatch(body -> body.contains("Marko Petrovi"));
+	}
+
+	@Test
+	void failedSendIsRetriedWithBackoffUntilMaxAttempts() throws Exception {
+		long reservationId = db.reservation(db.appointment(), "Ana", "CONFIRMED");
+		db.outboxRepository.enqueueForReservation(NotificationOutboxRepository.Type.BOOKING_CONFIRMED, reservationId);
+		properties.setMaxAttempts(2);
+
+		NotificationOutboxWorker worker = db.worker(closedPort(), properties);
+		try {
+			LocalDateTime before = LocalDateTime.now();
+			assertThat(worker.drainOnce()).isEqualTo(1);
+			Map<String, Object> row = db.outboxRow(reservationId);
+			assertThat(row).containsEntry("STATUS", "PENDING").containsEntry("ATTEMPTS", 1);
+			assertThat(((Timestamp) row.get("NEXT_ATTEMPT_AT")).toLocalDateTime())
+					.isAfterOrEqualTo(before.plusSeconds(properties.getBackoffBaseSeconds()));
+
+			// Pre isteka backoff-a red se ne preuzima
+			assertThat(worker.drainOnce()).isZero();
+
+			db.jdbcTemplate.update("UPDATE notification_outbox SET next_attempt_at = ?",
+					Timestamp.valueOf(LocalDateTime.now().minusSeconds(1)));
+			assertThat(worker.drainOnce()).isEqualTo(1);
+			assertThat(db.outboxRow(reservationId)).containsEntry("STATUS", "FAILED").containsEntry("ATTEMPTS", 2);
+		} finally {
+			worker.shutdown();
+		}
+	}
+
+	@Test
+	void outcomeOfExpiredLeaseDoesNotOverwriteNewClaim() {
+		long reservationId = db.reservation(db.appointment(), "Ana", "CONFIRMED");
+		db.outboxRepository.enqueueForReservation(NotificationOutboxRepository.Type.BOOKING_CONFIRMED, reservationId);
+		long outboxId = (Long) db.outboxRow(reservationId).get("ID");
+		LocalDateTime now = LocalDateTime.now();
+
+		// Prva instanca preuzima red, zakup joj istekne i red preuzima druga
+		assertThat(db.outboxRepository.claim(List.of(outboxId), "stari", now.minusSeconds(1))).isEqualTo(1);
+		assertThat(db.outboxRepository.releaseExpiredLeases(now)).isEqualTo(1);
+		assertThat(db.outboxRepository.claim(List.of(outboxId), "novi", now.plusMinutes(2))).isEqualTo(1);
+
+		assertThat(db.outboxRepository.markSent(List.of(outboxId), "stari", now)).isZero();
+		assertThat(db.outboxRepository.reschedule(List.of(
+				new NotificationOutboxRepository.Retry(outboxId, true, now, "greška")), "stari")).isZero();
+		assertThat(db.outboxRow(reservationId)).containsEntry("STATUS", "SENDING").containsEntry("ATTEMPTS", 0);
+
+		assertThat(db.outboxRepository.markSent(List.of(outboxId), "novi", now)).isEqualTo(1);
+		assertThat(db.outboxRow(reservationId)).containsEntry("STATUS", "SENT").containsEntry("ATTEMPTS", 1);
+	}
+
+	@Test
+	void backoffDoublesAndIsCapped() {
+		properties.setBackoffBaseSeconds(30);
+		properties.setBackoffMaxSeconds(600);
+		NotificationOutboxWorker worker = db.worker(greenMail.getSmtp().getPort(), properties);
+		try {
+			assertThat(worker.backoffSeconds(1)).isEqualTo(30);
+			assertThat(worker.backoffSeconds(3)).isEqualTo(120);
+			assertThat(worker.backoffSeconds(10)).isEqualTo(600);
+		} finally {
+			worker.shutdown();
+		}
+	}
+
+	private static int closedPort() throws Exception {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+}
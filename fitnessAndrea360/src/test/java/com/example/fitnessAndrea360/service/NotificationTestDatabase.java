@@ -0,0 +1,72 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.config.NotificationProperties;
+import com.example.fitnessAndrea360.repository.NotificationOutboxRepository;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * TestDatabase sa outbox repozitorijumom, rasporedom podsetnika i worker-om povezanim na zadati SMTP port.
+ */
+class NotificationTestDatabase {
+
+	final TestDatabase db;
+	final JdbcTemplate jdbcTemplate;
+	final NotificationOutboxRepository outboxRepository;
+
+	NotificationTestDatabase() {
+		db = TestDatabase.open();
+		jdbcTemplate = db.jdbcTemplate;
+		outboxRepository = new NotificationOutboxRepository(jdbcTemplate);
+	}
+
+	ClassReminderScheduler reminderScheduler(NotificationProperties properties) {
+		return new ClassReminderScheduler(outboxRepository, db.shardRouter, properties);
+	}
+
+	NotificationOutboxWorker worker(int smtpPort, NotificationProperties properties) {
+		JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+		mailSender.setHost("localhost");
+		mailSender.setPort(smtpPort);
+		StaticListableBeanFactory beans = new StaticListableBeanFactory(Map.of("mailSender", mailSender));
+		return new NotificationOutboxWorker(outboxRepository, new NotificationTemplates(),
+				beans.getBeanProvider(JavaMailSender.class), db.shardRouter, properties);
+	}
+
+	// Termin "Joga" na lokaciji "Centar" sutra od 18:00 do 19:00
+	long appointment() {
+		return appointment(LocalDateTime.now().plusDays(1).withHour(18).withMinute(0).withSecond(0).withNano(0));
+	}
+
+	long appointment(LocalDateTime start) {
+		long locationId = db.location("Centar");
+		long serviceId = db.service("Joga", locationId);
+		return db.appointment(serviceId, db.member(locationId, "Trener"), locationId, start, 1000);
+	}
+
+	// Novi član sa kupovinom od jedne sesije za uslugu termina
+	long reservation(long appointmentId, String firstName, String status) {
+		Map<String, Object> appointment = jdbcTemplate.queryForMap(
+				"SELECT location_id, service_id FROM appointments WHERE id = ?", appointmentId);
+		long memberId = db.member((Long) appointment.get("location_id"), firstName);
+		long purchaseId = db.purchase(memberId, (Long) appointment.get("service_id"), 1, null);
+		return db.reservation(memberId, appointmentId, purchaseId, status);
+	}
+
+	int outboxCount(NotificationOutboxRepository.Type type) {
+		return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM notification_outbox WHERE type = ?", Integer.class, type.name());
+	}
+
+	Map<String, Object> outboxRow(long reservationId) {
+		return jdbcTemplate.queryForMap("SELECT * FROM notification_outbox WHERE reservation_id = ?", reservationId);
+	}
+
+	void close() {
+		db.close();
+	}
+}
@@ -0,0 +1,65 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.config.NotificationProperties;
+import com.example.fitnessAndrea360.repository.NotificationOutboxRepository;
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Propusnost outbox worker-a do lokalnog SMTP servera (GreenMail): koliko poruka u sekundi
+ * prođe od preuzimanja iz outbox-a do prijema. Pokreće se ručno:
+ * mvn test -Dtest=NotificationThroughputBenchmarkTest -Dbenchmark=true
+ * (opciono -Dbenchmark.mails=5000 -Dbenchmark.classes=50 -Dbenchmark.threads=8).
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class NotificationThroughputBenchmarkTest {
+
+	@RegisterExtension
+	static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+	@Test
+	void mailsPerSecond() {
+		int mails = Integer.getInteger("benchmark.mails", 2000);
+		int classes = Integer.getInteger("benchmark.classes", 20);
+
+		NotificationTestDatabase db = new NotificationTestDatabase();
+		NotificationProperties properties = new NotificationProperties();
+		properties.setWorkerThreads(Integer.getInteger("benchmark.threads", 4));
+		NotificationOutboxWorker worker = db.worker(greenMail.getSmtp().getPort(), properties);
+		try {
+			List<Long> appointments = new ArrayList<>();
+			for (int i = 0; i < classes; i++) {
+				appointments.add(db.appointment());
+			}
+			List<Long> reservations = new ArrayList<>();
+			for (int i = 0; i < mails; i++) {
+				reservations.add(db.reservation(appointments.get(i % classes), "Clan" + i, "CONFIRMED"));
+			}
+			db.outboxRepository.enqueueForReservations(NotificationOutboxRepository.Type.BOOKING_CONFIRMED, reservations);
+
+			long start = System.nanoTime();
+			int sent = 0;
+			int drained;
+			while ((drained = worker.drainOnce()) > 0) {
+				sent += drained;
+			}
+			double seconds = (System.nanoTime() - start) / 1e9;
+
+			System.out.printf("Notification benchmark: %d poruka (%d termina, %d niti, batch %d) za %.2f s (%.0f poruka/s)%n",
+					sent, classes, properties.getWorkerThreads(), properties.getBatchSize(), seconds, sent / seconds);
+
+			assertThat(greenMail.getReceivedMessages()).hasSize(mails);
+		} finally {
+			worker.shutdown();
+			db.close();
+		}
+	}
+}
@@ -0,0 +1,230 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.repository.ArchiveJdbcRepository;
+import com.example.fitnessAndrea360.repository.PartitionJdbcRepository;
+import com.example.fitnessAndrea360.repository.PartitionJdbcRepository.Partition;
+import com.example.fitnessAndrea360.repository.ReservationJdbcRepository;
+import com.example.fitnessAndrea360.repository.SchemaMigrationJdbcRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PartitionMaintenanceServiceTest {
+
+	private static final YearMonth CURRENT = YearMonth.of(2026, 10);
+
+	private TestDatabase db;
+	private StubPartitions partitions;
+	private StubArchive archive;
+	private CountingReservations reservations;
+	private PartitionMaintenanceService maintenanceService;
+
+	@BeforeEach
+	void setUp() {
+		db = TestDatabase.open();
+		partitions = new StubPartitions();
+		archive = new StubArchive();
+		reservations = new CountingReservations(db);
+		maintenanceService = new PartitionMaintenanceService(partitions, archive, reservations,
+				new SchemaMigrationJdbcRepository(db.jdbcTemplate), db.shardRouter);
+		ReflectionTestUtils.setField(maintenanceService, "monthsAhead", 1);
+		ReflectionTestUtils.setField(maintenanceService, "retentionMonths", 24);
+		ReflectionTestUtils.setField(maintenanceService, "archiveExpired", true);
+	}
+
+	@AfterEach
+	void tearDown() {
+		db.close();
+	}
+
+	@Test
+	void migrationAndBackfillRunOncePerShard() {
+		maintenanceService.onApplicationReady();
+		maintenanceService.onApplicationReady();
+		assertThat(archive.backfills).isEqualTo(1);
+
+		maintenanceService.maintain();
+		maintenanceService.maintain();
+
+		// Dopuna pri pokretanju + jednom pri migraciji; tabele se particionišu samo prvi put
+		assertThat(reservations.backfills).isEqualTo(2);
+		assertThat(partitions.partitionedTables).containsExactly("appointments", "reservations");
+	}
+
+	@Test
+	void partitionWithRowsMissingFromArchiveIsKept() {
+		YearMonth expired = YearMonth.now().minusMonths(30);
+		YearMonth older = expired.minusMonths(1);
+		for (String table : List.of("appointments", "reservations")) {
+			partitions.existing.put(table, new ArrayList<>(List.of(monthly(older), monthly(expired), monthly(YearMonth.now()), future())));
+		}
+		// Kopiranje nije prenelo sve rezervacije jednog meseca (npr. sudar id-a u arhivi)
+		archive.unarchived.put("reservations." + PartitionJdbcRepository.partitionName(expired), 3L);
+		ReflectionTestUtils.setField(maintenanceService, "monthsAhead", 0);
+		new SchemaMigrationJdbcRepository(db.jdbcTemplate).markApplied(PartitionMaintenanceService.PARTITIONING_MIGRATION);
+
+		maintenanceService.maintain();
+
+		String olderName = PartitionJdbcRepository.partitionName(older);
+		assertThat(partitions.dropped).containsExactly("reservations." + olderName, "appointments." + olderName);
+		// Termini meseca ostaju dok njihove rezervacije nisu u arhivi
+		assertThat(partitions.existing.get("appointments")).extracting(Partition::name)
+				.contains(PartitionJdbcRepository.partitionName(expired));
+	}
+
+	@Test
+	void initialMonthsSpanFromOldestRowToMonthsAhead() {
+		assertThat(PartitionMaintenanceService.initialMonths(YearMonth.of(2026, 7), CURRENT, 2))
+				.containsExactly(YearMonth.of(2026, 7), YearMonth.of(2026, 8), YearMonth.of(2026, 9),
+						YearMonth.of(2026, 10), YearMonth.of(2026, 11), YearMonth.of(2026, 12));
+		// Prazna tabela ili samo budući termini - počinje se od tekućeg meseca
+		assertThat(PartitionMaintenanceService.initialMonths(YearMonth.of(2027, 3), CURRENT, 1))
+				.containsExactly(YearMonth.of(2026, 10), YearMonth.of(2026, 11));
+	}
+
+	@Test
+	void missingMonthsAreAddedAfterLastMonthlyPartition() {
+		List<Partition> existing = List.of(
+				monthly(YearMonth.of(2026, 9)), monthly(YearMonth.of(2026, 10)), monthly(YearMonth.of(2026, 11)), future());
+
+		assertThat(PartitionMaintenanceService.monthsToAdd(existing, CURRENT, 3))
+				.containsExactly(YearMonth.of(2026, 12), YearMonth.of(2027, 1));
+		assertThat(PartitionMaintenanceService.monthsToAdd(existing, CURRENT, 1)).isEmpty();
+		// Neparticionisana tabela se ne dopunjuje - prvo ide migracija
+		assertThat(PartitionMaintenanceService.monthsToAdd(List.of(), CURRENT, 3)).isEmpty();
+	}
+
+	@Test
+	void onlyWhollyExpiredMonthsAreDroppedAndFutureNever() {
+		List<Partition> existing = List.of(
+				monthly(YearMonth.of(2024, 8)), monthly(YearMonth.of(2024, 9)), monthly(YearMonth.of(2024, 10)),
+				monthly(YearMonth.of(2026, 10)), future());
+
+		// Granica je 2024-10-01: septembar se završava tačno na njoj, oktobar je još u zadržavanju
+		assertThat(PartitionMaintenanceService.expiredPartitions(existing, CURRENT, 24))
+				.containsExactly("p202408", "p202409");
+		assertThat(PartitionMaintenanceService.expiredPartitions(existing, CURRENT, 0)).isEmpty();
+	}
+
+	private static Partition monthly(YearMonth month) {
+		return new Partition(PartitionJdbcRepository.partitionName(month), month.plusMonths(1).atDay(1), 0);
+	}
+
+	private static Partition future() {
+		return new Partition(PartitionJdbcRepository.FUTURE_PARTITION, null, 0);
+	}
+
+	// Particije u memoriji - EXPLAIN i information_schema nisu dostupni u H2
+	private static final class StubPartitions extends PartitionJdbcRepository {
+
+		private final Map<String, List<Partition>> existing = new HashMap<>();
+		private final List<String> partitionedTables = new ArrayList<>();
+		private final List<String> dropped = new ArrayList<>();
+
+		StubPartitions() {
+			super(null);
+		}
+
+		@Override
+		public boolean isPartitioned(String table) {
+			return existing.containsKey(table);
+		}
+
+		@Override
+		public List<Partition> findPartitions(String table) {
+			return existing.getOrDefault(table, List.of());
+		}
+
+		@Override
+		public List<ForeignKey> findForeignKeys(String table) {
+			return List.of();
+		}
+
+		@Override
+		public Optional<LocalDateTime> findOldestStartTime(String table) {
+			return Optional.empty();
+		}
+
+		@Override
+		public void partitionByMonth(String table, List<YearMonth> months) {
+			partitionedTables.add(table);
+			List<Partition> created = new ArrayList<>(months.stream().map(PartitionMaintenanceServiceTest::monthly).toList());
+			created.add(future());
+			existing.put(table, created);
+		}
+
+		@Override
+		public void addMonths(String table, List<YearMonth> months) {
+		}
+
+		@Override
+		public void dropPartition(String table, String partition) {
+			dropped.add(table + "." + partition);
+			existing.get(table).removeIf(p -> p.name().equals(partition));
+		}
+
+		@Override
+		public List<String> explainPartitions(String sql, Object... params) {
+			return List.of();
+		}
+	}
+
+	private static final class StubArchive extends ArchiveJdbcRepository {
+
+		private final Map<String, Long> unarchived = new HashMap<>();
+		private int backfills;
+
+		StubArchive() {
+			super(null);
+		}
+
+		@Override
+		public int copyAppointmentPartition(String partition, LocalDateTime archivedAt) {
+			return 0;
+		}
+
+		@Override
+		public int copyReservationPartition(String partition, LocalDateTime archivedAt) {
+			return 0;
+		}
+
+		@Override
+		public long countUnarchivedInPartition(String table, String partition) {
+			return unarchived.getOrDefault(table + "." + partition, 0L);
+		}
+
+		@Override
+		public int backfillAppointmentCopies() {
+			backfills++;
+			return 0;
+		}
+	}
+
+	// UPDATE ... JOIN dopune nije podržan u H2 - beleži se samo poziv
+	private static final class CountingReservations extends ReservationJdbcRepository {
+
+		private int backfills;
+
+		CountingReservations(TestDatabase db) {
+			super(db.jdbcTemplate);
+		}
+
+		@Override
+		public int backfillAppointmentCopies() {
+			backfills++;
+			return 0;
+		}
+	}
+}
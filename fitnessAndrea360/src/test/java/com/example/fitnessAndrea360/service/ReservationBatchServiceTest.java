@@ -0,0 +1,182 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.dto.ReservationBatchItemResultDTO;
+import com.example.fitnessAndrea360.dto.ReservationBatchRequestDTO;
+import com.example.fitnessAndrea360.dto.ReservationBatchResultDTO;
+import com.example.fitnessAndrea360.dto.ReservationRequestDTO;
+import com.example.fitnessAndrea360.repository.AppointmentRepository;
+import com.example.fitnessAndrea360.repository.ChangeLogRepository;
+import com.example.fitnessAndrea360.repository.MemberRepository;
+import com.example.fitnessAndrea360.repository.NotificationOutboxRepository;
+import com.example.fitnessAndrea360.repository.PurchaseRepository;
+import com.example.fitnessAndrea360.repository.ReservationJdbcRepository;
+import com.example.fitnessAndrea360.repository.ReservationMonthlyStatRepository;
+import com.example.fitnessAndrea360.repository.ReservationRepository;
+import com.example.fitnessAndrea360.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReservationBatchServiceTest {
+
+	private static final LocalDateTime START = LocalDateTime.now().plusDays(3).withHour(18).withMinute(0).withSecond(0).withNano(0);
+
+	private TestDatabase db;
+	private JdbcTemplate jdbcTemplate;
+	private long locationId;
+	private long serviceId;
+	private long memberId;
+	private ReservationBatchService batchService;
+
+	@BeforeEach
+	void setUp() {
+		db = TestDatabase.open();
+		jdbcTemplate = db.jdbcTemplate;
+		locationId = db.location("Centar");
+		serviceId = db.service("Pilates", locationId);
+		memberId = db.member(locationId, "Ana");
+
+		EntitlementCache entitlementCache = new EntitlementCache(db.creditLedgerRepository(), 10, 100);
+		batchService = db.transactional(new ReservationBatchService(
+				db.repository(AppointmentRepository.class),
+				db.repository(PurchaseRepository.class),
+				db.repository(ReservationRepository.class),
+				new ReservationJdbcRepository(jdbcTemplate),
+				new ReportingService(db.repository(ReservationMonthlyStatRepository.class),
+						db.repository(ReservationRepository.class), db.repository(UserRepository.class), db.shardRouter),
+				event -> { },
+				new ChangeLogRepository(jdbcTemplate),
+				new NotificationOutboxRepository(jdbcTemplate),
+				db.ledgerService(entitlementCache, event -> { }),
+				entitlementCache,
+				new CurrentMemberResolver(db.repository(MemberRepository.class), 10)));
+
+		// Član iz tokena (memberId claim) - CurrentMemberResolver ga učitava iz baze
+		TestDatabase.signIn("ana@fitness.rs", "MEMBER", Map.of("memberId", memberId));
+	}
+
+	@AfterEach
+	void tearDown() {
+		db.close();
+	}
+
+	@Test
+	void invalidItemsGetTheirOwnResultAndValidOnesAreWrittenTogether() {
+		long first = appointment(10);
+		long second = appointment(10);
+		long full = appointment(5);
+		jdbcTemplate.update("UPDATE appointments SET current_capacity = 5 WHERE id = ?", full);
+		long purchaseId = db.purchase(memberId, serviceId, 5, LocalDate.now().plusDays(30));
+
+		ReservationBatchResultDTO result = batchService.createReservations(request(
+				item(second, purchaseId), item(first, purchaseId), item(first, purchaseId), item(full, purchaseId),
+				item(full + 100, purchaseId)));
+
+		assertThat(result.getReservedCount()).isEqualTo(2);
+		assertThat(result.getFailedCount()).isEqualTo(3);
+		assertThat(result.getItems()).extracting(ReservationBatchItemResultDTO::getError).containsExactly(
+				null, null, "Već imate rezervaciju za ovaj termin", "Termin je popunjen. Nema slobodnih mesta.",
+				"Termin nije pronađen");
+
+		// Termini, kupovine pa rezervacije člana - isti redosled zaključavanja u svakoj transakciji
+		assertThat(db.statements()).filteredOn(sql -> sql.endsWith("for update"))
+				.extracting(sql -> sql.contains(" appointments ") ? "appointments"
+						: sql.contains(" purchases ") ? "purchases"
+						: sql.contains(" reservations ") ? "reservations" : sql)
+				.containsExactly("appointments", "purchases", "reservations");
+
+		assertThat(jdbcTemplate.queryForList("SELECT current_capacity FROM appointments ORDER BY id", Integer.class))
+				.containsExactly(1, 1, 5);
+		assertThat(jdbcTemplate.queryForObject("SELECT remaining_uses FROM purchases WHERE id = ?", Integer.class, purchaseId))
+				.isEqualTo(3);
+		List<Long> reservationIds = result.getItems().stream()
+				.map(ReservationBatchItemResultDTO::getReservationId)
+				.filter(Objects::nonNull)
+				.toList();
+		assertThat(jdbcTemplate.queryForList("SELECT id FROM reservations ORDER BY id", Long.class))
+				.containsExactlyElementsOf(reservationIds);
+		assertThat(jdbcTemplate.queryForList("SELECT reservation_id FROM credit_ledger WHERE entry_type = 'CONSUME' ORDER BY id",
+				Long.class)).containsExactlyElementsOf(reservationIds);
+		assertThat(jdbcTemplate.queryForList("SELECT location_id FROM reservations", Long.class)).containsOnly(locationId);
+		assertThat(jdbcTemplate.queryForList("SELECT reservation_id FROM notification_outbox ORDER BY id", Long.class))
+				.containsExactlyElementsOf(reservationIds);
+		assertThat(jdbcTemplate.queryForObject("SELECT reservation_count FROM reservation_monthly_stats WHERE location_id = ?",
+				Long.class, locationId)).isEqualTo(2);
+	}
+
+	@Test
+	void sessionsUsedEarlierInTheBatchAreCounted() {
+		long first = appointment(10);
+		long second = appointment(10);
+		long purchaseId = db.purchase(memberId, serviceId, 1, LocalDate.now().plusDays(30));
+
+		ReservationBatchResultDTO result = batchService.createReservations(request(item(first, purchaseId), item(second, purchaseId)));
+
+		assertThat(result.getItems()).extracting(ReservationBatchItemResultDTO::getError)
+				.containsExactly(null, CreditLedgerService.NO_CREDITS_MESSAGE);
+		assertThat(jdbcTemplate.queryForObject("SELECT status FROM purchases WHERE id = ?", String.class, purchaseId))
+				.isEqualTo("USED");
+		assertThat(jdbcTemplate.queryForObject("SELECT current_capacity FROM appointments WHERE id = ?", Integer.class, second))
+				.isZero();
+	}
+
+	@Test
+	void reservationCommittedWhileWaitingForLocksIsReportedPerItem() throws Exception {
+		long first = appointment(10);
+		long second = appointment(10);
+		long purchaseId = db.purchase(memberId, serviceId, 5, LocalDate.now().plusDays(30));
+		long otherPurchaseId = db.purchase(memberId, serviceId, 1, LocalDate.now().plusDays(30));
+		// Pojedinačna rezervacija istog člana potvrđena dok grupna čeka na zaključavanje termina
+		db.onStatement(sql -> {
+			if (sql.endsWith("for update") && sql.contains(" appointments ")) {
+				db.onStatement(null);
+				try (Connection connection = db.dataSource.getConnection()) {
+					new JdbcTemplate(new SingleConnectionDataSource(connection, true)).update(
+							"INSERT INTO reservations (member_id, appointment_id, purchase_id, status, start_time, location_id, service_id) " +
+							"SELECT ?, id, ?, 'CONFIRMED', start_time, location_id, service_id FROM appointments WHERE id = ?",
+							memberId, otherPurchaseId, second);
+				} catch (SQLException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		});
+
+		ReservationBatchResultDTO result = batchService.createReservations(request(item(first, purchaseId), item(second, purchaseId)));
+
+		assertThat(result.getItems()).extracting(ReservationBatchItemResultDTO::getError)
+				.containsExactly(null, "Već imate rezervaciju za ovaj termin");
+		assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM reservations WHERE appointment_id = ?", Integer.class, second))
+				.isEqualTo(1);
+		assertThat(jdbcTemplate.queryForObject("SELECT remaining_uses FROM purchases WHERE id = ?", Integer.class, purchaseId))
+				.isEqualTo(4);
+	}
+
+	private long appointment(int maxCapacity) {
+		return db.appointment(serviceId, memberId, locationId, START, maxCapacity);
+	}
+
+	private static ReservationBatchRequestDTO request(ReservationRequestDTO... items) {
+		ReservationBatchRequestDTO request = new ReservationBatchRequestDTO();
+		request.setReservations(List.of(items));
+		return request;
+	}
+
+	private static ReservationRequestDTO item(Long appointmentId, Long purchaseId) {
+		ReservationRequestDTO item = new ReservationRequestDTO();
+		item.setAppointmentId(appointmentId);
+		item.setPurchaseId(purchaseId);
+		return item;
+	}
+}
@@ -0,0 +1,81 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.model.Reservation;
+import com.example.fitnessAndrea360.repository.ReservationJdbcRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Vreme upisne putanje ReservationService.createReservation (zauzimanje mesta, uslovna potrošnja sesije,
+ * INSERT rezervacije, CONSUME unos) nad H2 bazom sa šemom iz schema.sql, transakcija po rezervaciji. Pokreće se ručno:
+ * mvn test -Dtest=ReservationBookingBenchmarkTest -Dbenchmark=true
+ * (opciono -Dbenchmark.bookings=5000 -Dbenchmark.appointments=200).
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ReservationBookingBenchmarkTest {
+
+	@Test
+	void bookingsPerSecond() {
+		int bookings = Integer.getInteger("benchmark.bookings", 5000);
+		int appointments = Integer.getInteger("benchmark.appointments", 200);
+		int seatsPerAppointment = (bookings + appointments - 1) / appointments;
+
+		TestDatabase db = TestDatabase.open();
+		try {
+			JdbcTemplate jdbcTemplate = db.jdbcTemplate;
+			long locationId = db.location("Centar");
+			long serviceId = db.service("Pilates", locationId);
+			LocalDateTime start = LocalDateTime.now().plusDays(1);
+			long trainerId = db.member(locationId, "Trener");
+			List<Long> appointmentIds = new ArrayList<>();
+			for (int i = 0; i < appointments; i++) {
+				appointmentIds.add(db.appointment(serviceId, trainerId, locationId, start, seatsPerAppointment));
+			}
+			// Član po rezervaciji, kupovina sa jednom sesijom - svaka rezervacija zatvara kupovinu (USED)
+			List<long[]> memberPurchases = new ArrayList<>();
+			for (int i = 0; i < bookings; i++) {
+				long memberId = db.member(locationId, "Clan");
+				memberPurchases.add(new long[]{memberId, db.purchase(memberId, serviceId, 1, null)});
+			}
+
+			EntitlementCache entitlementCache = new EntitlementCache(db.creditLedgerRepository(), 10, 100);
+			CreditLedgerService ledgerService = db.ledgerService(entitlementCache, event -> {
+			});
+			ReservationJdbcRepository reservationRepository = new ReservationJdbcRepository(jdbcTemplate);
+			TransactionTemplate transactionTemplate = db.transactionTemplate();
+
+			long started = System.nanoTime();
+			for (int i = 0; i < bookings; i++) {
+				long member = memberPurchases.get(i)[0];
+				long purchase = memberPurchases.get(i)[1];
+				long appointmentId = appointmentIds.get(i % appointments);
+				transactionTemplate.executeWithoutResult(status -> {
+					assertThat(reservationRepository.reserveSeat(appointmentId)).isEqualTo(1);
+					assertThat(ledgerService.tryConsumeForAppointment(purchase, member, appointmentId)).isTrue();
+					Long reservationId = reservationRepository.insertReservation(new ReservationJdbcRepository.NewReservation(
+							member, appointmentId, purchase, Reservation.Status.CONFIRMED.name(), null));
+					ledgerService.recordConsumed(List.of(new CreditLedgerService.Consumption(member, purchase, reservationId)));
+				});
+			}
+			double seconds = (System.nanoTime() - started) / 1e9;
+
+			System.out.printf("Booking benchmark: %d rezervacija (%d termina) za %.2f s (%.0f rezervacija/s, %.0f µs po rezervaciji)%n",
+					bookings, appointments, seconds, bookings / seconds, seconds * 1e6 / bookings);
+			assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM reservations", Integer.class)).isEqualTo(bookings);
+			assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM purchases WHERE status = 'USED'", Integer.class))
+					.isEqualTo(bookings);
+			assertThat(jdbcTemplate.queryForObject("SELECT SUM(current_capacity) FROM appointments", Integer.class))
+					.isEqualTo(bookings);
+		} finally {
+			db.close();
+		}
+	}
+}
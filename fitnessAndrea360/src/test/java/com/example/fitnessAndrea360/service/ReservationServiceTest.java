@@ -0,0 +1,207 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.dto.ReservationRequestDTO;
+import com.example.fitnessAndrea360.dto.ReservationResponseDTO;
+import com.example.fitnessAndrea360.exception.ValidationException;
+import com.example.fitnessAndrea360.repository.ReservationJdbcRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ReservationServiceTest {
+
+	private static final LocalDateTime START = LocalDateTime.now().plusDays(2).withHour(18).withMinute(0).withSecond(0).withNano(0);
+
+	private TestDatabase db;
+	private JdbcTemplate jdbcTemplate;
+	private TestServices services;
+	private long locationId;
+	private long serviceId;
+	private long appointmentId;
+
+	@BeforeEach
+	void setUp() {
+		db = TestDatabase.open();
+		jdbcTemplate = db.jdbcTemplate;
+		services = new TestServices(db);
+		locationId = db.location("Centar");
+		serviceId = db.service("Joga", locationId);
+		appointmentId = db.appointment(serviceId, db.member(locationId, "Trener"), locationId, START, 10);
+		db.user("admin@example.com", "ADMIN", null);
+		TestDatabase.signIn("admin@example.com", "ADMIN", Map.of());
+	}
+
+	@AfterEach
+	void tearDown() {
+		db.close();
+	}
+
+	@Test
+	void cancelAndDeleteReleaseSeatWithConditionalUpdate() {
+		long cancelled = confirmedReservation("Ana");
+		long deleted = confirmedReservation("Marko");
+		// Još jedno mesto zauzeto mimo ovih rezervacija - oslobađa se od stanja u bazi, ne od entiteta
+		jdbcTemplate.update("UPDATE appointments SET current_capacity = 3 WHERE id = ?", appointmentId);
+
+		services.reservationService.updateReservationStatus(cancelled, "CANCELLED");
+		services.reservationService.deleteReservation(deleted);
+
+		assertThat(capacity()).isEqualTo(1);
+		assertThat(jdbcTemplate.queryForList("SELECT remaining_uses FROM purchases ORDER BY id", Integer.class))
+				.containsExactly(1, 1);
+	}
+
+	@Test
+	void seatIsNeverReleasedBelowZero() {
+		long reservationId = confirmedReservation("Ana");
+		jdbcTemplate.update("UPDATE appointments SET current_capacity = 0 WHERE id = ?", appointmentId);
+
+		services.reservationService.deleteReservation(reservationId);
+
+		assertThat(capacity()).isZero();
+		assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM reservations", Integer.class)).isZero();
+	}
+
+	@Test
+	void repeatedCancelRefundsOnceAndCancelledReservationCannotBeRevived() {
+		long reservationId = confirmedReservation("Ana");
+
+		services.reservationService.updateReservationStatus(reservationId, "CANCELLED");
+		services.reservationService.updateReservationStatus(reservationId, "CANCELLED");
+
+		assertThatThrownBy(() -> services.reservationService.updateReservationStatus(reservationId, "CONFIRMED"))
+				.isInstanceOf(ValidationException.class)
+				.hasMessage("Otkazana rezervacija se ne može ponovo aktivirati. Napravite novu rezervaciju.");
+		assertThat(capacity()).isZero();
+		assertThat(jdbcTemplate.queryForList("SELECT remaining_uses FROM purchases", Integer.class)).containsExactly(1);
+		assertThat(jdbcTemplate.queryForList("SELECT dedup_key FROM credit_ledger WHERE entry_type = 'REFUND'", String.class))
+				.containsExactly("refund:" + reservationId + ":1");
+	}
+
+	@Test
+	void reservationCancelledAfterItWasLoadedIsNotRefundedAgain() {
+		// Paralelno otkazivanje se potvrđuje između učitavanja entiteta i uslovnog UPDATE-a
+		services = new TestServices(db, new CancelledMeanwhile(db));
+		long cancelled = confirmedReservation("Ana");
+		long deleted = confirmedReservation("Marko");
+
+		services.reservationService.updateReservationStatus(cancelled, "CANCELLED");
+		services.reservationService.deleteReservation(deleted);
+
+		// Mesta i sesije je vratila transakcija koja je otkazala - ovde ništa
+		assertThat(capacity()).isEqualTo(2);
+		assertThat(jdbcTemplate.queryForList("SELECT remaining_uses FROM purchases ORDER BY id", Integer.class))
+				.containsExactly(0, 0);
+		assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM credit_ledger", Integer.class)).isZero();
+		assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM notification_outbox", Integer.class)).isZero();
+	}
+
+	@Test
+	void bookingWithoutPurchaseUsesTheEarliestExpiringOne() {
+		long memberId = signInMember("Ana");
+		long withoutExpiry = db.purchase(memberId, serviceId, 3, null);
+		long later = db.purchase(memberId, serviceId, 3, LocalDate.now().plusDays(30));
+		long soonest = db.purchase(memberId, serviceId, 1, LocalDate.now().plusDays(5));
+		// Istekla kupovina i kupovina druge usluge se preskaču iako ističu ranije
+		db.purchase(memberId, serviceId, 3, LocalDate.now().minusDays(1));
+		db.purchase(memberId, db.service("Pilates", locationId), 3, LocalDate.now().plusDays(1));
+
+		ReservationResponseDTO reservation = services.reservationService.createReservation(request(null));
+
+		assertThat(reservation.getPurchaseId()).isEqualTo(soonest);
+		assertThat(jdbcTemplate.queryForObject("SELECT status FROM purchases WHERE id = ?", String.class, soonest))
+				.isEqualTo("USED");
+		assertThat(jdbcTemplate.queryForList("SELECT remaining_uses FROM purchases WHERE id IN (?, ?) ORDER BY id",
+				Integer.class, withoutExpiry, later)).containsExactly(3, 3);
+		assertThat(jdbcTemplate.queryForObject("SELECT purchase_id FROM credit_ledger WHERE entry_type = 'CONSUME'",
+				Long.class)).isEqualTo(soonest);
+	}
+
+	@Test
+	void purchaseConsumedSinceTheCacheWasLoadedIsSkipped() {
+		long memberId = signInMember("Ana");
+		long soonest = db.purchase(memberId, serviceId, 1, LocalDate.now().plusDays(5));
+		long later = db.purchase(memberId, serviceId, 2, LocalDate.now().plusDays(30));
+		// Keš vidi obe kupovine; prvu zatim potroši druga instanca (bez događaja ka ovom kešu)
+		assertThat(services.entitlementCache.forMember(memberId).bookable(serviceId, LocalDate.now())).hasSize(2);
+		jdbcTemplate.update("UPDATE purchases SET remaining_uses = 0, status = 'USED' WHERE id = ?", soonest);
+
+		ReservationResponseDTO reservation = services.reservationService.createReservation(request(null));
+
+		assertThat(reservation.getPurchaseId()).isEqualTo(later);
+		assertThat(jdbcTemplate.queryForList("SELECT remaining_uses FROM purchases ORDER BY id", Integer.class))
+				.containsExactly(0, 1);
+		assertThat(capacity()).isEqualTo(1);
+	}
+
+	@Test
+	void purchaseBoughtElsewhereIsFoundAfterReloadingTheCache() {
+		long memberId = signInMember("Ana");
+		long stale = db.purchase(memberId, serviceId, 1, LocalDate.now().plusDays(5));
+		services.entitlementCache.forMember(memberId);
+		jdbcTemplate.update("UPDATE purchases SET remaining_uses = 0, status = 'USED' WHERE id = ?", stale);
+		long bought = db.purchase(memberId, serviceId, 1, null);
+
+		assertThat(services.reservationService.createReservation(request(null)).getPurchaseId()).isEqualTo(bought);
+
+		// Bez ijedne sesije - uobičajena poruka, a mesto se vraća sa rollback-om
+		long otherAppointment = db.appointment(serviceId, db.member(locationId, "Trener"), locationId, START.plusDays(1), 10);
+		ReservationRequestDTO second = request(null);
+		second.setAppointmentId(otherAppointment);
+		assertThatThrownBy(() -> services.reservationService.createReservation(second))
+				.isInstanceOf(ValidationException.class)
+				.hasMessage(CreditLedgerService.NO_CREDITS_MESSAGE);
+		assertThat(jdbcTemplate.queryForObject("SELECT current_capacity FROM appointments WHERE id = ?", Integer.class,
+				otherAppointment)).isZero();
+	}
+
+	// Potvrđena rezervacija sa potrošenom sesijom i zauzetim mestom
+	private long confirmedReservation(String firstName) {
+		long memberId = db.member(locationId, firstName);
+		long purchaseId = db.purchase(memberId, serviceId, 0, LocalDate.now().plusDays(30));
+		jdbcTemplate.update("UPDATE appointments SET current_capacity = current_capacity + 1 WHERE id = ?", appointmentId);
+		return db.reservation(memberId, appointmentId, purchaseId, "CONFIRMED");
+	}
+
+	private long signInMember(String firstName) {
+		long memberId = db.member(locationId, firstName);
+		String email = jdbcTemplate.queryForObject("SELECT email FROM members WHERE id = ?", String.class, memberId);
+		TestDatabase.signIn(email, "MEMBER", Map.of("memberId", memberId));
+		return memberId;
+	}
+
+	private ReservationRequestDTO request(Long purchaseId) {
+		ReservationRequestDTO request = new ReservationRequestDTO();
+		request.setAppointmentId(appointmentId);
+		request.setPurchaseId(purchaseId);
+		return request;
+	}
+
+	private int capacity() {
+		return jdbcTemplate.queryForObject("SELECT current_capacity FROM appointments WHERE id = ?", Integer.class, appointmentId);
+	}
+
+	private static final class CancelledMeanwhile extends ReservationJdbcRepository {
+
+		private final JdbcTemplate jdbcTemplate;
+
+		CancelledMeanwhile(TestDatabase db) {
+			super(db.jdbcTemplate);
+			this.jdbcTemplate = db.jdbcTemplate;
+		}
+
+		@Override
+		public int updateStatusUnlessCancelled(Long reservationId, String status) {
+			jdbcTemplate.update("UPDATE reservations SET status = 'CANCELLED' WHERE id = ?", reservationId);
+			return super.updateStatusUnlessCancelled(reservationId, status);
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.event.CatalogChangedEvent;
+import com.example.fitnessAndrea360.event.ScheduleChangedEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ResourceVersionRegistryTest {
+
+	private TestDatabase db;
+	private AnnotationConfigApplicationContext context;
+	private ResourceVersionRegistry registry;
+
+	@BeforeEach
+	void setUp() {
+		db = TestDatabase.open();
+		// @TransactionalEventListener radi kao u aplikaciji: slušalac se registruje kroz kontekst sa
+		// @EnableTransactionManagement, događaj se objavljuje iz transakcije nad test bazom
+		context = new AnnotationConfigApplicationContext();
+		context.register(TransactionalEvents.class);
+		// Prozor zastarelosti duži od trajanja testa - ETag se menja samo sa verzijom
+		context.registerBean(ResourceVersionRegistry.class, () -> new ResourceVersionRegistry(Long.MAX_VALUE));
+		context.refresh();
+		registry = context.getBean(ResourceVersionRegistry.class);
+	}
+
+	@AfterEach
+	void tearDown() {
+		context.close();
+		db.close();
+	}
+
+	@Test
+	void scheduleVersionChangesOnlyAfterCommit() {
+		String before = registry.locationScheduleEtag(1L);
+		String otherLocation = registry.locationScheduleEtag(2L);
+		AtomicReference<String> insideTransaction = new AtomicReference<>();
+
+		db.transactionTemplate().executeWithoutResult(status -> {
+			context.publishEvent(new ScheduleChangedEvent(1L, 10L, ScheduleChangedEvent.Type.RESERVATION_CREATED));
+			insideTransaction.set(registry.locationScheduleEtag(1L));
+		});
+
+		assertThat(insideTransaction.get()).isEqualTo(before);
+		assertThat(registry.locationScheduleEtag(1L)).isNotEqualTo(before);
+		assertThat(registry.locationScheduleEtag(2L)).isEqualTo(otherLocation);
+	}
+
+	@Test
+	void rolledBackChangeKeepsTheVersion() {
+		String before = registry.scheduleEtag();
+
+		db.transactionTemplate().executeWithoutResult(status -> {
+			context.publishEvent(new ScheduleChangedEvent(1L, 10L, ScheduleChangedEvent.Type.APPOINTMENT_UPDATED));
+			status.setRollbackOnly();
+		});
+
+		assertThat(registry.scheduleEtag()).isEqualTo(before);
+	}
+
+	@Test
+	void serviceChangeBumpsItsLocationsAndTheSchedule() {
+		String services = registry.servicesEtag(1L);
+		String otherServices = registry.servicesEtag(2L);
+		String allServices = registry.servicesEtag(null);
+		String schedule = registry.locationScheduleEtag(2L);
+
+		// Van transakcije (fallbackExecution) - odmah
+		context.publishEvent(new CatalogChangedEvent(CatalogChangedEvent.Catalog.SERVICES, 5L, Set.of(1L)));
+
+		assertThat(registry.servicesEtag(1L)).isNotEqualTo(services);
+		assertThat(registry.servicesEtag(2L)).isEqualTo(otherServices);
+		assertThat(registry.servicesEtag(null)).isNotEqualTo(allServices);
+		// Termini nose naziv usluge - i raspored druge lokacije dobija novu verziju
+		assertThat(registry.locationScheduleEtag(2L)).isNotEqualTo(schedule);
+	}
+
+	@Configuration
+	@EnableTransactionManagement
+	static class TransactionalEvents {
+	}
+}
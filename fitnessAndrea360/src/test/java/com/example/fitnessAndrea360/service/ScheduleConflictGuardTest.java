@@ -0,0 +1,69 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.repository.AppointmentRepository;
+import com.example.fitnessAndrea360.repository.LocationRepository;
+import com.example.fitnessAndrea360.repository.MemberRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ScheduleConflictGuardTest {
+
+	private static final LocalDateTime NINE = LocalDateTime.of(2026, 11, 2, 9, 0);
+
+	private TestDatabase db;
+	private long locationId;
+	private long serviceId;
+	private long memberId;
+	private ScheduleConflictGuard guard;
+
+	@BeforeEach
+	void setUp() {
+		db = TestDatabase.open();
+		locationId = db.location("Centar");
+		serviceId = db.service("Joga", locationId);
+		memberId = db.member(locationId, "Ana");
+		guard = new ScheduleConflictGuard(db.repository(AppointmentRepository.class),
+				db.repository(MemberRepository.class), db.repository(LocationRepository.class));
+	}
+
+	@AfterEach
+	void tearDown() {
+		db.close();
+	}
+
+	@Test
+	void memberConflictUsesBufferAndExcludesItself() {
+		long appointmentId = db.appointment(serviceId, memberId, locationId, NINE, 10);
+
+		// Kraj u 10:00, novi termin u 10:20 - unutar razmaka od 30 minuta
+		assertThat(guard.hasMemberConflict(memberId, NINE.plusMinutes(80), NINE.plusMinutes(140), null)).isTrue();
+		assertThat(guard.hasMemberConflict(memberId, NINE.plusMinutes(90), NINE.plusMinutes(150), null)).isFalse();
+		// Pomeranje istog termina nije konflikt sa samim sobom
+		assertThat(guard.hasMemberConflict(memberId, NINE.plusMinutes(15), NINE.plusMinutes(75), appointmentId)).isFalse();
+	}
+
+	@Test
+	void locationConflictHasNoBufferAndTouchingIsFree() {
+		db.appointment(serviceId, db.member(locationId, "Marko"), locationId, NINE, 10);
+
+		assertThat(guard.hasLocationConflict(locationId, NINE.plusMinutes(30), NINE.plusMinutes(90), null)).isTrue();
+		assertThat(guard.hasLocationConflict(locationId, NINE.plusHours(1), NINE.plusHours(2), null)).isFalse();
+	}
+
+	@Test
+	void locationIsLockedBeforeMember() {
+		db.transactionTemplate().executeWithoutResult(status -> {
+			guard.lock(memberId, locationId);
+			guard.lock(memberId, null);
+		});
+
+		assertThat(db.statements()).filteredOn(sql -> sql.endsWith("for update"))
+				.extracting(sql -> sql.contains(" locations ") ? "location" : sql.contains(" members ") ? "member" : sql)
+				.containsExactly("location", "member", "member");
+	}
+}
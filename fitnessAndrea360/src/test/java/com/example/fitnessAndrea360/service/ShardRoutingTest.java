@@ -0,0 +1,124 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.config.ShardContext;
+import com.example.fitnessAndrea360.config.ShardingProperties;
+import com.example.fitnessAndrea360.dto.MonthlyReservationStatsDTO;
+import com.example.fitnessAndrea360.dto.ReservationResponseDTO;
+import com.example.fitnessAndrea360.exception.ValidationException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Date;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * Admin čitanja preko šardova: lokacija 1 je na podrazumevanom šardu, lokacija 2 na "novi-sad".
+ * Oba šarda imaju iste referentne redove (lokacije, usluge), pa isti ID-evi rezervacija postoje na oba.
+ */
+class ShardRoutingTest {
+
+	private static final String NOVI_SAD = "novi-sad";
+	private static final LocalDateTime START = LocalDateTime.now().plusDays(2).withHour(18).withMinute(0).withSecond(0).withNano(0);
+
+	private TestDatabase db;
+	private TestServices services;
+
+	@BeforeEach
+	void setUp() {
+		db = TestDatabase.sharded(Map.of(2L, NOVI_SAD));
+		services = new TestServices(db);
+		db.user("admin@example.com", "ADMIN", null);
+		onShard(ShardingProperties.DEFAULT_SHARD, () -> reservationAt(1, "Ana"));
+		onShard(NOVI_SAD, () -> reservationAt(2, "Marko"));
+		TestDatabase.signIn("admin@example.com", "ADMIN", Map.of());
+	}
+
+	@AfterEach
+	void tearDown() {
+		db.close();
+	}
+
+	@Test
+	void adminListsAreMergedFromAllShardsAndTagged() {
+		assertThat(services.reservationService.getAllReservations())
+				.extracting(ReservationResponseDTO::getShard, ReservationResponseDTO::getLocationId, ReservationResponseDTO::getMemberName)
+				.containsExactlyInAnyOrder(
+						tuple(ShardingProperties.DEFAULT_SHARD, 1L, "Ana Petrović"),
+						tuple(NOVI_SAD, 2L, "Marko Petrović"));
+		assertThat(services.reservationService.getReservationsByStatus("CONFIRMED"))
+				.extracting(ReservationResponseDTO::getShard)
+				.containsExactlyInAnyOrder(ShardingProperties.DEFAULT_SHARD, NOVI_SAD);
+		assertThat(services.reservationService.getReservationsByDateRange(START.toLocalDate(), START.toLocalDate()))
+				.extracting(ReservationResponseDTO::getShard)
+				.containsExactlyInAnyOrder(ShardingProperties.DEFAULT_SHARD, NOVI_SAD);
+	}
+
+	@Test
+	void locationReadsGoToTheLocationShard() {
+		assertThat(services.reservationService.getReservationsByLocation(2L)).singleElement().satisfies(reservation -> {
+			assertThat(reservation.getShard()).isEqualTo(NOVI_SAD);
+			assertThat(reservation.getMemberName()).isEqualTo("Marko Petrović");
+		});
+
+		onShard(NOVI_SAD, () -> db.insert("reservation_monthly_stats", Map.of("location_id", 2L,
+				"period_start", Date.valueOf(YearMonth.from(START).atDay(1)), "reservation_count", 4, "cancelled_count", 1)));
+		assertThat(services.reportingService.getMonthlyReservationStats(2L, YearMonth.from(START), YearMonth.from(START)))
+				.singleElement()
+				.extracting(MonthlyReservationStatsDTO::getReservationCount, MonthlyReservationStatsDTO::getActiveCount)
+				.containsExactly(4L, 3L);
+	}
+
+	@Test
+	void locationWriteRequiresItsShard() {
+		assertThatThrownBy(() -> db.shardRouter.requireLocationShard(2L))
+				.isInstanceOf(ValidationException.class)
+				.hasMessage("Upis za lokaciju 2 zahteva zaglavlje X-Location-Id te lokacije");
+		assertThatCode(() -> db.shardRouter.requireLocationShard(1L)).doesNotThrowAnyException();
+		assertThatThrownBy(() -> services.reportingService.rebuildMonthlyStats(2L, YearMonth.from(START), YearMonth.from(START)))
+				.isInstanceOf(ValidationException.class);
+
+		ShardContext.set(NOVI_SAD);
+		assertThatCode(() -> db.shardRouter.requireLocationShard(2L)).doesNotThrowAnyException();
+		assertThatThrownBy(() -> db.shardRouter.requireLocationShard(1L)).isInstanceOf(ValidationException.class);
+	}
+
+	// Lokacije 1 i 2 i usluga na šardu, pa termin i potvrđena rezervacija na zadatoj lokaciji
+	private void reservationAt(long locationId, String firstName) {
+		Map<Long, Long> locations = new LinkedHashMap<>();
+		for (String name : List.of("Centar", "Novi Sad")) {
+			long id = db.location(name);
+			locations.put(id, db.service("Joga", id));
+		}
+		long serviceId = locations.get(locationId);
+		long memberId = db.member(locationId, firstName);
+		long appointmentId = db.appointment(serviceId, memberId, locationId, START, 10);
+		db.reservation(memberId, appointmentId, db.purchase(memberId, serviceId, 1, null), "CONFIRMED");
+	}
+
+	private <T> T onShard(String shard, Supplier<T> action) {
+		ShardContext.set(shard);
+		try {
+			return action.get();
+		} finally {
+			ShardContext.clear();
+		}
+	}
+
+	private void onShard(String shard, Runnable action) {
+		onShard(shard, () -> {
+			action.run();
+			return null;
+		});
+	}
+}
@@ -0,0 +1,163 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.dto.SyncResponseDTO;
+import com.example.fitnessAndrea360.repository.AppointmentRepository;
+import com.example.fitnessAndrea360.repository.ChangeLogRepository;
+import com.example.fitnessAndrea360.repository.PurchaseRepository;
+import com.example.fitnessAndrea360.repository.ReservationRepository;
+import com.example.fitnessAndrea360.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SyncServiceTest {
+
+	private static final String INSERT_SQL =
+			"INSERT INTO change_log (entity_type, entity_id, operation, location_id, member_id) VALUES (?, ?, ?, 1, NULL)";
+
+	private TestDatabase db;
+	private JdbcTemplate jdbcTemplate;
+	private ChangeLogRepository changeLogRepository;
+	private SyncService syncService;
+
+	@BeforeEach
+	void setUp() {
+		db = TestDatabase.open();
+		jdbcTemplate = db.jdbcTemplate;
+		db.user("admin@example.com", "ADMIN", null);
+
+		TestServices services = new TestServices(db);
+		changeLogRepository = services.changeLogRepository;
+		// Nijedan zapis ne postoji - svaka izmena koja nije DELETE se javlja kao obrisan zapis
+		syncService = new SyncService(changeLogRepository,
+				db.repository(AppointmentRepository.class),
+				db.repository(ReservationRepository.class),
+				db.repository(PurchaseRepository.class),
+				services.currentMemberResolver,
+				db.repository(UserRepository.class),
+				services.appointmentService,
+				services.reservationService,
+				services.purchaseService,
+				db.shardRouter, db.transactionManager);
+		ReflectionTestUtils.setField(syncService, "pageSize", 500);
+		ReflectionTestUtils.setField(syncService, "maxPageSize", 2000);
+		ReflectionTestUtils.setField(syncService, "sequenceBatchSize", 2);
+		ReflectionTestUtils.setField(syncService, "retentionDays", 7);
+
+		TestDatabase.signIn("admin@example.com", "ADMIN", Map.of());
+	}
+
+	@AfterEach
+	void tearDown() {
+		db.close();
+	}
+
+	@Test
+	void changeCommittedAfterClientReadIsStillDelivered() throws Exception {
+		syncService.sequenceChanges();
+
+		try (Connection slow = db.dataSource.getConnection()) {
+			slow.setAutoCommit(false);
+			// Duža transakcija dobija manji id, ali se commit-uje posle brže
+			insert(slow, 10L);
+			record(ChangeLogRepository.EntityType.APPOINTMENT, 20L, ChangeLogRepository.Operation.DELETE);
+			syncService.sequenceChanges();
+
+			SyncResponseDTO first = syncService.getChangesSince(null, null, null);
+			assertThat(first.getResetRequired()).isTrue();
+			assertThat(first.getCursor()).isEqualTo(1L);
+
+			slow.commit();
+		}
+		syncService.sequenceChanges();
+
+		SyncResponseDTO next = syncService.getChangesSince(1L, null, null);
+		assertThat(next.getResetRequired()).isFalse();
+		assertThat(next.getDeletedAppointmentIds()).containsExactly(10L);
+		assertThat(next.getCursor()).isEqualTo(2L);
+	}
+
+	@Test
+	void rowsWrittenBeforeSequencerKeepTheirIdAsCursor() {
+		for (long appointmentId = 1; appointmentId <= 3; appointmentId++) {
+			record(ChangeLogRepository.EntityType.APPOINTMENT, appointmentId, ChangeLogRepository.Operation.DELETE);
+		}
+		syncService.sequenceChanges();
+		// Novi redovi nastavljaju posle najvećeg id-a, u delovima od sequence-batch-size
+		for (long appointmentId = 4; appointmentId <= 6; appointmentId++) {
+			record(ChangeLogRepository.EntityType.APPOINTMENT, appointmentId, ChangeLogRepository.Operation.DELETE);
+		}
+		syncService.sequenceChanges();
+
+		assertThat(jdbcTemplate.queryForList("SELECT seq FROM change_log ORDER BY id", Long.class))
+				.containsExactly(1L, 2L, 3L, 4L, 5L, 6L);
+		SyncResponseDTO response = syncService.getChangesSince(2L, null, null);
+		assertThat(response.getDeletedAppointmentIds()).containsExactly(3L, 4L, 5L, 6L);
+		assertThat(response.getCursor()).isEqualTo(6L);
+	}
+
+	@Test
+	void lastOperationWinsAndVanishedRecordsAreReportedDeleted() {
+		record(ChangeLogRepository.EntityType.APPOINTMENT, 1L, ChangeLogRepository.Operation.DELETE);
+		syncService.sequenceChanges();
+		long cursor = syncService.getChangesSince(null, null, null).getCursor();
+
+		record(ChangeLogRepository.EntityType.RESERVATION, 7L, ChangeLogRepository.Operation.INSERT);
+		record(ChangeLogRepository.EntityType.RESERVATION, 7L, ChangeLogRepository.Operation.DELETE);
+		// Izmenjen, pa obrisan pre čitanja (npr. arhiviran) - klijent ga briše iz lokalne kopije
+		record(ChangeLogRepository.EntityType.PURCHASE, 8L, ChangeLogRepository.Operation.UPDATE);
+		syncService.sequenceChanges();
+
+		SyncResponseDTO response = syncService.getChangesSince(cursor, null, null);
+		assertThat(response.getResetRequired()).isFalse();
+		assertThat(response.getReservations()).isEmpty();
+		assertThat(response.getDeletedReservationIds()).containsExactly(7L);
+		assertThat(response.getDeletedPurchaseIds()).containsExactly(8L);
+		assertThat(response.getCursor()).isEqualTo(cursor + 3);
+	}
+
+	@Test
+	void purgeKeepsNewestAndUnsequencedRowsAndOldCursorsReset() {
+		for (long appointmentId = 1; appointmentId <= 3; appointmentId++) {
+			record(ChangeLogRepository.EntityType.APPOINTMENT, appointmentId, ChangeLogRepository.Operation.DELETE);
+		}
+		syncService.sequenceChanges();
+		// Red bez kursora (sekvencer ga još nije video) ne sme nestati pre nego što ga klijenti dobiju
+		record(ChangeLogRepository.EntityType.APPOINTMENT, 4L, ChangeLogRepository.Operation.DELETE);
+		jdbcTemplate.update("UPDATE change_log SET changed_at = ?", Timestamp.valueOf(LocalDateTime.now().minusDays(30)));
+
+		syncService.purgeExpiredChanges();
+
+		assertThat(jdbcTemplate.queryForList("SELECT entity_id FROM change_log ORDER BY id", Long.class))
+				.containsExactly(3L, 4L);
+		assertThat(syncService.getChangesSince(1L, null, null).getResetRequired()).isTrue();
+
+		syncService.sequenceChanges();
+		SyncResponseDTO response = syncService.getChangesSince(3L, null, null);
+		assertThat(response.getResetRequired()).isFalse();
+		assertThat(response.getDeletedAppointmentIds()).containsExactly(4L);
+	}
+
+	private void record(ChangeLogRepository.EntityType type, Long entityId, ChangeLogRepository.Operation operation) {
+		changeLogRepository.record(type, entityId, operation, 1L, null);
+	}
+
+	private static void insert(Connection connection, Long appointmentId) throws Exception {
+		try (PreparedStatement statement = connection.prepareStatement(INSERT_SQL)) {
+			statement.setString(1, ChangeLogRepository.EntityType.APPOINTMENT.name());
+			statement.setLong(2, appointmentId);
+			statement.setString(3, ChangeLogRepository.Operation.DELETE.name());
+			statement.executeUpdate();
+		}
+	}
+}
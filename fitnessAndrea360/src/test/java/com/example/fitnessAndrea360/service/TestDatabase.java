@@ -0,0 +1,322 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.config.ShardContext;
+import com.example.fitnessAndrea360.config.ShardRouter;
+import com.example.fitnessAndrea360.config.ShardRoutingDataSource;
+import com.example.fitnessAndrea360.config.ShardingProperties;
+import com.example.fitnessAndrea360.repository.CreditLedgerRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * H2 baza (MySQL mod) sa šemom iz schema.sql - istim skriptom koji aplikacija izvršava pri pokretanju
+ * (continue-on-error: naredbe za nadogradnju starih baza ovde padaju i preskaču se) - i pravim JPA repozitorijumima nad njom.
+ *
+ * Baza i EntityManagerFactory se prave jednom po JVM-u (po skupu šardova), a open() prazni sve tabele,
+ * pa svaki test kreće od prazne baze. Pomoćne metode upisuju redove sa svim NOT NULL kolonama i roditeljskim redovima,
+ * jer strani ključevi i CHECK ograničenja iz šeme važe i ovde.
+ */
+final class TestDatabase {
+
+	private static final Map<Set<String>, Engine> ENGINES = new ConcurrentHashMap<>();
+
+	final DataSource dataSource;
+	final JdbcTemplate jdbcTemplate;
+	final PlatformTransactionManager transactionManager;
+	final ShardRouter shardRouter;
+	private final Engine engine;
+	private final AtomicLong sequence = new AtomicLong();
+
+	private TestDatabase(Engine engine, ShardingProperties properties) {
+		this.engine = engine;
+		this.dataSource = engine.dataSource;
+		this.jdbcTemplate = new JdbcTemplate(engine.dataSource);
+		this.transactionManager = engine.transactionManager;
+		this.shardRouter = new ShardRouter(properties, engine.transactionManager);
+	}
+
+	// Jedna baza, šardovanje isključeno
+	static TestDatabase open() {
+		return open(new ShardingProperties());
+	}
+
+	// Podrazumevani šard i po jedna baza za svaki šard iz properties (lokacija -> šard)
+	static TestDatabase sharded(Map<Long, String> locations) {
+		ShardingProperties properties = new ShardingProperties();
+		properties.setEnabled(true);
+		properties.setScatterThreads(2);
+		properties.setLocations(locations);
+		locations.values().forEach(shard -> properties.getShards().put(shard, new ShardingProperties.Node()));
+		return open(properties);
+	}
+
+	private static TestDatabase open(ShardingProperties properties) {
+		Set<String> shards = new TreeSet<>(properties.getShards().keySet());
+		shards.add(ShardingProperties.DEFAULT_SHARD);
+		Engine engine = ENGINES.computeIfAbsent(shards, Engine::new);
+		engine.truncate();
+		return new TestDatabase(engine, properties);
+	}
+
+	<R> R repository(Class<R> type) {
+		return type.cast(engine.repositories.computeIfAbsent(type, engine.repositoryFactory::getRepository));
+	}
+
+	// Servis sa @Transactional kao iz Spring konteksta (proxy klase, ista pravila propagacije)
+	@SuppressWarnings("unchecked")
+	<T> T transactional(T service) {
+		ProxyFactory factory = new ProxyFactory(service);
+		factory.setProxyTargetClass(true);
+		factory.addAdvice(new TransactionInterceptor(transactionManager, new AnnotationTransactionAttributeSource()));
+		return (T) factory.getProxy();
+	}
+
+	TransactionTemplate transactionTemplate() {
+		return new TransactionTemplate(transactionManager);
+	}
+
+	// SQL koji je Hibernate izvršio od open() - redosled zaključavanja i broj upita
+	List<String> statements() {
+		return List.copyOf(engine.statements);
+	}
+
+	void clearStatements() {
+		engine.statements.clear();
+	}
+
+	// Poziva se pre izvršavanja svakog Hibernate upita - izmena "druge transakcije" usred učitavanja
+	void onStatement(Consumer<String> listener) {
+		engine.listener = listener;
+	}
+
+	// H2 ne prihvata negativan fetch size (MySQL streaming)
+	CreditLedgerRepository creditLedgerRepository() {
+		return new CreditLedgerRepository(jdbcTemplate, dataSource, 100);
+	}
+
+	CreditLedgerService ledgerService(EntitlementCache entitlementCache, ApplicationEventPublisher eventPublisher) {
+		CreditLedgerService ledgerService = new CreditLedgerService(creditLedgerRepository(), entitlementCache, shardRouter,
+				eventPublisher, transactionManager, new SimpleMeterRegistry());
+		ReflectionTestUtils.setField(ledgerService, "expireBatchSize", 500);
+		return ledgerService;
+	}
+
+	long location(String name) {
+		return insert("locations", Map.of("name", name, "address", "Bulevar " + sequence.incrementAndGet()));
+	}
+
+	// Usluga od 60 minuta, dostupna na zadatoj lokaciji
+	long service(String name, long locationId) {
+		long serviceId = insert("services", Map.of("name", name, "price_eur", 10, "duration_minutes", 60));
+		jdbcTemplate.update("INSERT INTO service_locations (service_id, location_id) VALUES (?, ?)", serviceId, locationId);
+		return serviceId;
+	}
+
+	long user(String email, String roleName, Long locationId) {
+		Map<String, Object> values = new LinkedHashMap<>();
+		values.put("email", email);
+		values.put("password", "hash");
+		values.put("role_id", role(roleName));
+		values.put("first_name", roleName);
+		values.put("last_name", "Test");
+		values.put("location_id", locationId);
+		return insert("users", values);
+	}
+
+	// Član sa svojim korisnikom (uloga MEMBER); email je jedinstven po pozivu
+	long member(long locationId, String firstName) {
+		String email = firstName.toLowerCase() + "-" + sequence.incrementAndGet() + "@fitness.rs";
+		long userId = user(email, "MEMBER", locationId);
+		Map<String, Object> values = new LinkedHashMap<>();
+		values.put("user_id", userId);
+		values.put("location_id", locationId);
+		values.put("first_name", firstName);
+		values.put("last_name", "Petrović");
+		values.put("email", email);
+		values.put("phone", "0641234567");
+		return insert("members", values);
+	}
+
+	// Kupovina bez unosa u dnevnik - GRANT upisuje CreditLedgerService kada ga test traži
+	long purchase(long memberId, long serviceId, int remainingUses, LocalDate expiryDate) {
+		Map<String, Object> values = new LinkedHashMap<>();
+		values.put("member_id", memberId);
+		values.put("service_id", serviceId);
+		values.put("quantity", remainingUses);
+		values.put("remaining_uses", remainingUses);
+		values.put("total_price_eur", 10 * remainingUses);
+		values.put("purchase_date", Date.valueOf(LocalDate.now()));
+		values.put("expiry_date", expiryDate != null ? Date.valueOf(expiryDate) : null);
+		values.put("status", "ACTIVE");
+		return insert("purchases", values);
+	}
+
+	// Zakazan termin od sat vremena
+	long appointment(long serviceId, long memberId, long locationId, LocalDateTime start, int maxCapacity) {
+		Map<String, Object> values = new LinkedHashMap<>();
+		values.put("service_id", serviceId);
+		values.put("member_id", memberId);
+		values.put("location_id", locationId);
+		values.put("max_capacity", maxCapacity);
+		values.put("current_capacity", 0);
+		values.put("start_time", Timestamp.valueOf(start));
+		values.put("end_time", Timestamp.valueOf(start.plusHours(1)));
+		values.put("status", "SCHEDULED");
+		return insert("appointments", values);
+	}
+
+	// Rezervacija sa kopijama polja termina; zauzeto mesto se ne dodaje (termin je već pun ili test to radi sam)
+	long reservation(long memberId, long appointmentId, long purchaseId, String status) {
+		Map<String, Object> appointment = jdbcTemplate.queryForMap(
+				"SELECT start_time, location_id, service_id FROM appointments WHERE id = ?", appointmentId);
+		Map<String, Object> values = new LinkedHashMap<>();
+		values.put("member_id", memberId);
+		values.put("appointment_id", appointmentId);
+		values.put("purchase_id", purchaseId);
+		values.put("status", status);
+		values.putAll(appointment);
+		return insert("reservations", values);
+	}
+
+	long insert(String table, Map<String, Object> values) {
+		List<String> columns = new ArrayList<>(values.keySet());
+		String sql = "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES ("
+				+ String.join(", ", columns.stream().map(column -> "?").toList()) + ")";
+		KeyHolder keyHolder = new GeneratedKeyHolder();
+		jdbcTemplate.update(connection -> {
+			PreparedStatement statement = connection.prepareStatement(sql, new String[]{"id"});
+			for (int i = 0; i < columns.size(); i++) {
+				statement.setObject(i + 1, values.get(columns.get(i)));
+			}
+			return statement;
+		}, keyHolder);
+		return keyHolder.getKey().longValue();
+	}
+
+	// Prijavljen korisnik kao posle JwtAuthenticationFilter-a - claim-ovi tokena su u details
+	static void signIn(String email, String role, Map<String, Object> details) {
+		UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+				email, null, List.of(new SimpleGrantedAuthority("ROLE_" + role)));
+		authentication.setDetails(new HashMap<>(details));
+		SecurityContextHolder.getContext().setAuthentication(authentication);
+	}
+
+	void close() {
+		SecurityContextHolder.clearContext();
+		ShardContext.clear();
+		shardRouter.shutdown();
+	}
+
+	long role(String name) {
+		List<Long> ids = jdbcTemplate.queryForList("SELECT id FROM roles WHERE name = ?", Long.class, name);
+		return ids.isEmpty() ? insert("roles", Map.of("name", name)) : ids.get(0);
+	}
+
+	// Baza po šardu, EntityManagerFactory nad njima i zabeleženi SQL - deli se između testova
+	private static final class Engine {
+
+		private final Map<String, EmbeddedDatabase> shards = new LinkedHashMap<>();
+		private final DataSource dataSource;
+		private final EntityManagerFactory entityManagerFactory;
+		private final PlatformTransactionManager transactionManager;
+		private final JpaRepositoryFactory repositoryFactory;
+		private final Map<Class<?>, Object> repositories = new ConcurrentHashMap<>();
+		private final List<String> statements = new CopyOnWriteArrayList<>();
+		private volatile Consumer<String> listener;
+
+		private Engine(Set<String> shardNames) {
+			ResourceDatabasePopulator schema = new ResourceDatabasePopulator(new ClassPathResource("schema.sql"));
+			schema.setContinueOnError(true);
+			for (String shard : shardNames) {
+				EmbeddedDatabase database = new EmbeddedDatabaseBuilder()
+						.setType(EmbeddedDatabaseType.H2)
+						.setName("test-" + String.join("-", shardNames) + "-" + shard + ";MODE=MySQL")
+						.build();
+				schema.execute(database);
+				shards.put(shard, database);
+			}
+			// Kao ShardingConfig: rutiranje po ShardContext-u, konekcija tek kada je šard postavljen
+			dataSource = shardNames.size() == 1
+					? shards.get(ShardingProperties.DEFAULT_SHARD)
+					: new LazyConnectionDataSourceProxy(new ShardRoutingDataSource(Map.copyOf(shards)));
+
+			LocalContainerEntityManagerFactoryBean factoryBean = new LocalContainerEntityManagerFactoryBean();
+			factoryBean.setDataSource(dataSource);
+			factoryBean.setPackagesToScan("com.example.fitnessAndrea360.model");
+			factoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+			factoryBean.setJpaPropertyMap(Map.of(
+					"hibernate.hbm2ddl.auto", "none",
+					"hibernate.session_factory.statement_inspector", (StatementInspector) sql -> {
+						statements.add(sql);
+						Consumer<String> current = listener;
+						if (current != null) {
+							current.accept(sql);
+						}
+						return sql;
+					}));
+			factoryBean.afterPropertiesSet();
+			entityManagerFactory = factoryBean.getObject();
+			transactionManager = new JpaTransactionManager(entityManagerFactory);
+			repositoryFactory = new JpaRepositoryFactory(SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory));
+		}
+
+		private void truncate() {
+			for (EmbeddedDatabase database : shards.values()) {
+				JdbcTemplate template = new JdbcTemplate(database);
+				List<String> tables = template.queryForList(
+						"SELECT table_name FROM information_schema.tables WHERE table_schema = 'PUBLIC'", String.class);
+				template.execute("SET REFERENTIAL_INTEGRITY FALSE");
+				try {
+					tables.forEach(table -> template.execute("TRUNCATE TABLE " + table + " RESTART IDENTITY"));
+				} finally {
+					template.execute("SET REFERENTIAL_INTEGRITY TRUE");
+				}
+			}
+			statements.clear();
+			listener = null;
+		}
+	}
+}
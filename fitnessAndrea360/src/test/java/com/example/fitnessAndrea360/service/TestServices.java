@@ -0,0 +1,132 @@
+package com.example.fitnessAndrea360.service;
+
+import com.example.fitnessAndrea360.event.EntitlementChangedEvent;
+import com.example.fitnessAndrea360.repository.AppointmentRepository;
+import com.example.fitnessAndrea360.repository.ArchiveJdbcRepository;
+import com.example.fitnessAndrea360.repository.ChangeLogRepository;
+import com.example.fitnessAndrea360.repository.LocationRepository;
+import com.example.fitnessAndrea360.repository.MemberRepository;
+import com.example.fitnessAndrea360.repository.NotificationOutboxRepository;
+import com.example.fitnessAndrea360.repository.PurchaseRepository;
+import com.example.fitnessAndrea360.repository.ReservationJdbcRepository;
+import com.example.fitnessAndrea360.repository.ReservationMonthlyStatRepository;
+import com.example.fitnessAndrea360.repository.ReservationRepository;
+import com.example.fitnessAndrea360.repository.RoleRepository;
+import com.example.fitnessAndrea360.repository.ServiceRepository;
+import com.example.fitnessAndrea360.repository.UserCopyJdbcRepository;
+import com.example.fitnessAndrea360.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Servisi povezani kao u Spring kontekstu, nad TestDatabase: pravi repozitorijumi, @Transactional preko proxy-ja.
+ * Objavljeni događaji se beleže u events; EntitlementChangedEvent se odmah prosleđuje kešu, kao slušalac
+ * bez transakcije (fallbackExecution).
+ */
+final class TestServices {
+
+	final TestDatabase db;
+	final List<Object> events = new CopyOnWriteArrayList<>();
+	final ApplicationEventPublisher eventPublisher;
+
+	final ChangeLogRepository changeLogRepository;
+	final NotificationOutboxRepository outboxRepository;
+	final ReservationJdbcRepository reservationJdbcRepository;
+	final EntitlementCache entitlementCache;
+	final CurrentMemberResolver currentMemberResolver;
+	final CreditLedgerService creditLedgerService;
+	final ReportingService reportingService;
+	final ArchiveService archiveService;
+	final AppointmentIntervalIndex appointmentIntervalIndex;
+	final ScheduleConflictGuard scheduleConflictGuard;
+	final MemberService memberService;
+	final AppointmentService appointmentService;
+	final ReservationService reservationService;
+	final PurchaseService purchaseService;
+
+	TestServices(TestDatabase db) {
+		this(db, new ReservationJdbcRepository(db.jdbcTemplate));
+	}
+
+	// reservationJdbcRepository: test može ubaciti izmenu "druge transakcije" pre uslovnog UPDATE-a
+	TestServices(TestDatabase db, ReservationJdbcRepository reservationJdbcRepository) {
+		this.db = db;
+		this.entitlementCache = new EntitlementCache(db.creditLedgerRepository(), 10, 100);
+		this.eventPublisher = event -> {
+			events.add(event);
+			if (event instanceof EntitlementChangedEvent changed) {
+				this.entitlementCache.onEntitlementChanged(changed);
+			}
+		};
+
+		changeLogRepository = new ChangeLogRepository(db.jdbcTemplate);
+		outboxRepository = new NotificationOutboxRepository(db.jdbcTemplate);
+		this.reservationJdbcRepository = reservationJdbcRepository;
+		currentMemberResolver = new CurrentMemberResolver(db.repository(MemberRepository.class), 100);
+		creditLedgerService = db.transactional(db.ledgerService(entitlementCache, eventPublisher));
+		reportingService = db.transactional(new ReportingService(db.repository(ReservationMonthlyStatRepository.class),
+				db.repository(ReservationRepository.class), db.repository(UserRepository.class), db.shardRouter));
+
+		ArchiveService archive = new ArchiveService(new ArchiveJdbcRepository(db.jdbcTemplate), db.shardRouter,
+				db.transactionManager, new SimpleMeterRegistry());
+		ReflectionTestUtils.setField(archive, "enabled", true);
+		ReflectionTestUtils.setField(archive, "retentionDays", 365);
+		ReflectionTestUtils.setField(archive, "batchSize", 500);
+		archiveService = db.transactional(archive);
+
+		appointmentIntervalIndex = new AppointmentIntervalIndex(db.repository(AppointmentRepository.class), 90, 5, 100);
+		scheduleConflictGuard = new ScheduleConflictGuard(db.repository(AppointmentRepository.class),
+				db.repository(MemberRepository.class), db.repository(LocationRepository.class));
+		memberService = db.transactional(new MemberService(db.repository(MemberRepository.class),
+				db.repository(UserRepository.class), db.repository(LocationRepository.class), db.repository(RoleRepository.class),
+				new BCryptPasswordEncoder(4), db.shardRouter, currentMemberResolver,
+				new GlobalUserWriter(db.repository(UserRepository.class), new UserCopyJdbcRepository(db.jdbcTemplate),
+						db.shardRouter)));
+
+		appointmentService = db.transactional(new AppointmentService(
+				db.repository(AppointmentRepository.class),
+				db.repository(ServiceRepository.class),
+				db.repository(MemberRepository.class),
+				currentMemberResolver,
+				scheduleConflictGuard,
+				db.repository(LocationRepository.class),
+				db.repository(UserRepository.class),
+				memberService,
+				db.repository(ReservationRepository.class),
+				appointmentIntervalIndex,
+				db.shardRouter,
+				eventPublisher,
+				changeLogRepository,
+				outboxRepository,
+				archiveService,
+				entitlementCache,
+				reportingService));
+		reservationService = db.transactional(new ReservationService(
+				db.repository(ReservationRepository.class),
+				db.repository(AppointmentRepository.class),
+				db.repository(PurchaseRepository.class),
+				db.repository(UserRepository.class),
+				reportingService,
+				reservationJdbcRepository,
+				eventPublisher,
+				changeLogRepository,
+				outboxRepository,
+				archiveService,
+				creditLedgerService,
+				entitlementCache,
+				currentMemberResolver,
+				db.shardRouter));
+		purchaseService = db.transactional(new PurchaseService(
+				db.repository(PurchaseRepository.class),
+				db.repository(MemberRepository.class),
+				db.repository(ServiceRepository.class),
+				changeLogRepository,
+				creditLedgerService,
+				currentMemberResolver));
+	}
+}